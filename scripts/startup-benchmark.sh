@@ -0,0 +1,27 @@
+#!/usr/bin/env bash
+# Measures wall-clock time from JVM launch to the first answered HTTP request.
+# Usage: scripts/startup-benchmark.sh <runs> [extra java options...]
+#   scripts/startup-benchmark.sh 5
+#   scripts/startup-benchmark.sh 5 -XX:SharedArchiveFile=application.jsa -Dspring.aot.enabled=true
+# JAR and PROFILES can be overridden through the environment.
+set -euo pipefail
+
+RUNS="${1:-5}"
+shift || true
+JAR="${JAR:-target/spring-security-0.0.1-SNAPSHOT.jar}"
+PROFILES="${PROFILES:-fast-startup}"
+PORT="${PORT:-8080}"
+URL="http://localhost:${PORT}/api/auth/login"
+
+for run in $(seq 1 "$RUNS"); do
+  start=$(date +%s%N)
+  java "$@" -jar "$JAR" --spring.profiles.active="$PROFILES" --server.port="$PORT" > "startup-run-${run}.log" 2>&1 &
+  pid=$!
+  # Any HTTP status counts: the goal is the first request the server answers
+  until curl -s -o /dev/null -X POST -H 'Content-Type: application/json' -d '{}' "$URL"; do
+    sleep 0.05
+  done
+  end=$(date +%s%N)
+  echo "run ${run}: time-to-first-request $(( (end - start) / 1000000 )) ms"
+  kill "$pid" && wait "$pid" 2>/dev/null || true
+done
@@ -0,0 +1,37 @@
+package com.security.spring_security.activity;
+
+// Activity of one user accumulated by the UserActivityTracker since its last flush
+public final class UserActivity {
+    private long logins; // Successful logins
+    private long lastLoginAt; // Epoch millis, 0 when not logged in since the last flush
+    private long lastSeenAt; // Epoch millis, 0 when not seen since the last flush
+
+    public long getLogins() {
+        return logins;
+    }
+
+    public long getLastLoginAt() {
+        return lastLoginAt;
+    }
+
+    public long getLastSeenAt() {
+        return lastSeenAt;
+    }
+
+    void login(long now) {
+        logins++;
+        lastLoginAt = now;
+        lastSeenAt = now;
+    }
+
+    void seen(long now) {
+        lastSeenAt = now;
+    }
+
+    // Folds activity that could not be written back into this entry
+    void merge(UserActivity other) {
+        logins += other.logins;
+        lastLoginAt = Math.max(lastLoginAt, other.lastLoginAt);
+        lastSeenAt = Math.max(lastSeenAt, other.lastSeenAt);
+    }
+}
@@ -0,0 +1,158 @@
+package com.security.spring_security.activity;
+
+import com.security.spring_security.store.UserStore;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/*
+    The UserActivityTracker records last-login time, login count and last-seen time per user without writing to the database on the request path.
+
+    Logins and authenticated requests update a per-user entry in a ConcurrentHashMap. A single flusher thread runs every
+    app.activity.flush-interval, takes every pending entry out of the map and hands them to the UserStore in one call
+    (the JPA store writes them with one batched UPDATE per shard), so any number of requests from the same user between two flushes
+    cost a single row update. At most one interval of activity is lost if the process dies, and the remaining entries are flushed
+    on a normal shutdown.
+
+    Entries are only ever changed inside ConcurrentHashMap.compute() and taken out with remove(), so an update either lands in the
+    entry being flushed or in a new entry for the next flush; it is never lost in between. Entries the store could not write are merged
+    back into the map and retried on the next run. When more than app.activity.max-pending-users entries are waiting, a flush is
+    started early so the map stays bounded.
+
+    Stores never overwrite the activity fields in save(), so a concurrent update of the user cannot undo a flush.
+ */
+
+@Component // Shared by the login path and the JWT filter
+public class UserActivityTracker {
+    private static final Logger log = LoggerFactory.getLogger(UserActivityTracker.class);
+
+    private final UserStore userStore; // Destination of the flushed activity
+    private final boolean enabled; // False turns every record call into a no-op
+    private final Duration flushInterval; // Upper bound on the activity lost in a crash
+    private final int maxPendingUsers; // Triggers an early flush above this many waiting users
+    private final ConcurrentHashMap<String, UserActivity> pending = new ConcurrentHashMap<>(); // Username -> activity since the last flush
+    private final AtomicBoolean earlyFlushScheduled = new AtomicBoolean(); // Avoids queueing an early flush per request
+    private ScheduledExecutorService flusher; // Single flusher thread
+
+    public UserActivityTracker(UserStore userStore,
+                               @Value("${app.activity.enabled:true}") boolean enabled,
+                               @Value("${app.activity.flush-interval:10s}") Duration flushInterval,
+                               @Value("${app.activity.max-pending-users:100000}") int maxPendingUsers) {
+        this.userStore = userStore;
+        this.enabled = enabled;
+        this.flushInterval = flushInterval;
+        this.maxPendingUsers = maxPendingUsers;
+    }
+
+    @PostConstruct // Starts the periodic flush
+    void start() {
+        if (!enabled) {
+            return;
+        }
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "activity-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMillis = flushInterval.toMillis();
+        flusher.scheduleWithFixedDelay(this::flushSafely, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // Records a successful login
+    public void recordLogin(String username) {
+        long now = System.currentTimeMillis();
+        record(username, entry -> entry.login(now));
+    }
+
+    // Records an authenticated request
+    public void recordSeen(String username) {
+        long now = System.currentTimeMillis();
+        record(username, entry -> entry.seen(now));
+    }
+
+    private void record(String username, Consumer<UserActivity> update) {
+        if (!enabled || username == null) {
+            return;
+        }
+        pending.compute(username, (key, entry) -> {
+            UserActivity target = entry != null ? entry : new UserActivity();
+            update.accept(target);
+            return target;
+        });
+        if (pending.size() > maxPendingUsers && earlyFlushScheduled.compareAndSet(false, true)) {
+            flusher.execute(this::flushSafely);
+        }
+    }
+
+    // Number of users with activity waiting to be written
+    public int getPendingUsers() {
+        return pending.size();
+    }
+
+    // Writes every pending entry; runs on the flusher thread and at shutdown
+    synchronized void flush() {
+        earlyFlushScheduled.set(false);
+        if (pending.isEmpty()) {
+            return;
+        }
+        Map<String, UserActivity> taken = new HashMap<>();
+        for (String username : pending.keySet()) {
+            UserActivity entry = pending.remove(username); // No update can reach this entry once it is removed
+            if (entry != null) {
+                taken.put(username, entry);
+            }
+        }
+        Collection<String> failed;
+        try {
+            failed = userStore.applyActivity(taken);
+        } catch (RuntimeException e) {
+            taken.forEach(this::requeue); // Retried on the next flush instead of being lost
+            throw e;
+        }
+        failed.forEach(username -> requeue(username, taken.get(username)));
+    }
+
+    private void flushSafely() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.warn("Activity flush failed, {} users will be retried", pending.size(), e);
+        }
+    }
+
+    // Merges a taken entry back into whatever has been recorded since
+    private void requeue(String username, UserActivity entry) {
+        pending.merge(username, entry, (current, failed) -> {
+            current.merge(failed);
+            return current;
+        });
+    }
+
+    @PreDestroy // Stops the schedule and writes what is left
+    void shutdown() {
+        if (flusher == null) {
+            return;
+        }
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flushSafely();
+    }
+}
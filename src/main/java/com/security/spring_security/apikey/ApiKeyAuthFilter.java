@@ -0,0 +1,60 @@
+package com.security.spring_security.apikey;
+
+import com.security.spring_security.activity.UserActivityTracker;
+import com.security.spring_security.usage.UsageMeter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/*
+    The ApiKeyAuthFilter authenticates requests that carry an X-API-Key header, and runs before the JWTAuthFilter.
+    Requests without the header pass through untouched. A key the ApiKeyService does not accept is answered with 401 right away
+    instead of falling through as an anonymous request, so a client with a revoked or mistyped key gets a clear error.
+    A valid key authenticates the request as the key's user, with the roles stored on the key; the user is not loaded from the store.
+ */
+
+@Component // Added to the security filter chain by SecurityConfig
+public class ApiKeyAuthFilter extends OncePerRequestFilter {
+    private final ApiKeyService apiKeyService; // Verifies keys against the in-memory index
+    private final UserActivityTracker userActivityTracker; // Buffers last-seen updates for authenticated users
+    private final UsageMeter usageMeter; // Counts calls per user and endpoint
+
+    public ApiKeyAuthFilter(ApiKeyService apiKeyService, UserActivityTracker userActivityTracker, UsageMeter usageMeter) {
+        this.apiKeyService = apiKeyService;
+        this.userActivityTracker = userActivityTracker;
+        this.usageMeter = usageMeter;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        final String apiKey = request.getHeader(ApiKeyService.HEADER); // Retrieves the API key header from the request
+        if (apiKey == null || apiKey.isBlank()) {
+            filterChain.doFilter(request, response); // Not an API key request
+            return;
+        }
+
+        UsernamePasswordAuthenticationToken token = apiKeyService.authenticate(apiKey.trim());
+        if (token == null) {
+            response.sendError(HttpStatus.UNAUTHORIZED.value(), "Invalid API key");
+            return;
+        }
+        token.setDetails(new WebAuthenticationDetailsSource().buildDetails(request)); // Sets details like the IP address
+        SecurityContext securityContext = SecurityContextHolder.createEmptyContext();
+        securityContext.setAuthentication(token);
+        SecurityContextHolder.setContext(securityContext);
+        userActivityTracker.recordSeen(token.getName()); // Key usage counts as user activity
+        usageMeter.record((UserDetails) token.getPrincipal(), request); // Metered like token-authenticated calls
+        filterChain.doFilter(request, response);
+    }
+}
@@ -0,0 +1,375 @@
+package com.security.spring_security.apikey;
+
+import com.security.spring_security.audit.AuditEventType;
+import com.security.spring_security.audit.AuditLog;
+import com.security.spring_security.dto.ApiKeyDTO;
+import com.security.spring_security.entity.ApiKey;
+import com.security.spring_security.entity.OurUser;
+import com.security.spring_security.store.UserStore;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/*
+    The ApiKeyService issues, resolves and revokes API keys for machine-to-machine clients, which send them in the X-API-Key header
+    instead of logging in and carrying a JWT.
+
+    A key looks like ak_<prefix>.<secret>: an 8-character prefix that identifies it and may appear in logs and listings, and a
+    256-bit random secret that is shown once, at issuance. Because the secret is high-entropy, it is stored as an HMAC-SHA256 under a
+    server-side pepper (app.api-keys.pepper) rather than BCrypt: nobody can brute-force 256 bits, and checking a key costs about a
+    microsecond instead of a few hundred milliseconds. Without a configured pepper one is derived from jwt.secret with HKDF-SHA256,
+    so the token signing key itself never doubles as the pepper.
+
+    Every key is held in an in-memory index by prefix, together with a ready-made principal, so authenticating a request is one map
+    lookup, one HMAC and a constant-time compare, without touching the database. A prefix missing from the index is looked up in the
+    UserStore once (a key issued on another instance), and the whole index is reloaded every app.api-keys.refresh-interval to pick up
+    keys revoked elsewhere. Prefixes the store does not know are remembered for app.api-keys.miss-ttl, so a client retrying a bad
+    key, or anyone sending made-up ones, does not reach the database on every request. At most app.api-keys.max-misses are
+    remembered; while that many are, further unknown prefixes are rejected without a lookup until entries expire or the next reload,
+    which bounds the lookups a flood of random prefixes can cause (a key issued elsewhere meanwhile works after the next reload). Keys carry the roles of their user and follow it when the user is renamed, changes roles or is deleted.
+    Keys live on the default shard, so with sharding enabled those changes commit on their own: if the user update rolls back, the
+    keys are moved back; if a deletion rolls back, its keys stay revoked.
+ */
+
+@Service // Used by the ApiKeyAuthFilter and the admin endpoints
+public class ApiKeyService {
+    private static final Logger log = LoggerFactory.getLogger(ApiKeyService.class);
+    static final String HEADER = "X-API-Key";
+    private static final String KEY_MARKER = "ak_";
+    private static final int PREFIX_LENGTH = 8;
+    private static final int SECRET_BYTES = 32;
+    private static final char[] PREFIX_ALPHABET = "abcdefghijklmnopqrstuvwxyz0123456789".toCharArray();
+    private static final byte[] PEPPER_INFO = "api-key-pepper".getBytes(StandardCharsets.UTF_8); // HKDF context for the derived pepper
+
+    private final UserStore userStore; // Where keys are persisted
+    private final AuditLog auditLog; // Records issuance and revocation
+    private final ThreadLocal<Mac> mac; // Per-thread HMAC under the pepper
+    private final SecureRandom random = new SecureRandom(); // Only used when issuing
+    private final Duration refreshInterval;
+    private final Map<String, ResolvedKey> index = new ConcurrentHashMap<>(); // Prefix -> key ready for verification
+    private final Map<String, Long> misses = new ConcurrentHashMap<>(); // Unknown prefix -> nanoTime until which it is not looked up again
+    private final long missTtlNanos;
+    private final int maxMisses;
+    private volatile long nextMissPurge; // nanoTime before which a full miss cache is not scanned again
+    private final Object lock = new Object(); // Orders index reloads with revocations
+    private volatile long generation; // Bumped under lock by every revocation and reload
+    private ScheduledExecutorService refresher; // Single reload thread
+
+    public ApiKeyService(UserStore userStore, AuditLog auditLog,
+                         @Value("${app.api-keys.pepper:}") String pepper,
+                         @Value("${jwt.secret}") String jwtSecret,
+                         @Value("${app.api-keys.refresh-interval:30s}") Duration refreshInterval,
+                         @Value("${app.api-keys.miss-ttl:30s}") Duration missTtl,
+                         @Value("${app.api-keys.max-misses:10000}") int maxMisses) {
+        this.userStore = userStore;
+        this.auditLog = auditLog;
+        this.refreshInterval = refreshInterval;
+        this.missTtlNanos = missTtl.toNanos();
+        this.maxMisses = maxMisses;
+        byte[] pepperBytes = pepper.isBlank() ? derivePepper(Base64.getDecoder().decode(jwtSecret)) : Base64.getDecoder().decode(pepper);
+        SecretKeySpec key = new SecretKeySpec(pepperBytes, "HmacSHA256");
+        this.mac = ThreadLocal.withInitial(() -> {
+            try {
+                Mac instance = Mac.getInstance("HmacSHA256");
+                instance.init(key);
+                return instance;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("HmacSHA256 is not available", e);
+            }
+        });
+    }
+
+    @PostConstruct // Builds the index and schedules its reloads
+    void start() {
+        refresh();
+        refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "api-key-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMillis = refreshInterval.toMillis();
+        refresher.scheduleWithFixedDelay(this::refreshSafely, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (refresher != null) {
+            refresher.shutdownNow();
+        }
+    }
+
+    // An authentication for the key's user, or null if the key is malformed, unknown, revoked or wrong
+    public UsernamePasswordAuthenticationToken authenticate(String presentedKey) {
+        if (presentedKey == null || presentedKey.length() <= KEY_MARKER.length() + PREFIX_LENGTH + 1
+                || !presentedKey.startsWith(KEY_MARKER) || presentedKey.charAt(KEY_MARKER.length() + PREFIX_LENGTH) != '.') {
+            return null;
+        }
+        String prefix = presentedKey.substring(KEY_MARKER.length(), KEY_MARKER.length() + PREFIX_LENGTH);
+        ResolvedKey key = index.get(prefix);
+        if (key == null) {
+            key = loadMissing(prefix);
+            if (key == null) {
+                return null;
+            }
+        }
+        byte[] presentedHash = hash(presentedKey.substring(KEY_MARKER.length() + PREFIX_LENGTH + 1));
+        if (!MessageDigest.isEqual(presentedHash, key.secretHash)) { // Constant time
+            return null;
+        }
+        return new UsernamePasswordAuthenticationToken(key.principal, null, key.authorities);
+    }
+
+    // Issues a new key for an existing user; the returned DTO is the only place the full key ever appears
+    public ApiKeyDTO issue(String username, String name) {
+        OurUser user = userStore.findByUsername(username)
+                .orElseThrow(() -> new UsernameNotFoundException("User not found with email: " + username));
+        for (int attempt = 0; ; attempt++) {
+            String prefix = randomPrefix();
+            byte[] secretBytes = new byte[SECRET_BYTES];
+            random.nextBytes(secretBytes);
+            String secret = Base64.getUrlEncoder().withoutPadding().encodeToString(secretBytes);
+
+            ApiKey apiKey = new ApiKey();
+            apiKey.setPrefix(prefix);
+            apiKey.setSecretHash(Base64.getEncoder().encodeToString(hash(secret)));
+            apiKey.setName(name != null && !name.isBlank() ? name : prefix);
+            apiKey.setUsername(user.getUsername());
+            apiKey.setRoles(user.getRoles());
+            apiKey.setCreatedAt(Instant.now());
+            try {
+                ApiKey saved = userStore.saveApiKey(apiKey);
+                index.put(prefix, resolve(saved));
+                misses.remove(prefix);
+                auditLog.publish(AuditEventType.API_KEY_ISSUED, saved.getUsername(), prefix);
+                ApiKeyDTO issued = toDTO(saved);
+                issued.setKey(KEY_MARKER + prefix + "." + secret);
+                return issued;
+            } catch (DataIntegrityViolationException e) {
+                if (attempt == 2) {
+                    throw e; // Three prefix collisions in a row means something else is wrong
+                }
+            }
+        }
+    }
+
+    // Revokes a key everywhere; other instances stop accepting it at their next reload
+    public boolean revoke(String prefix) {
+        Optional<ApiKey> apiKey = userStore.findApiKey(prefix);
+        synchronized (lock) {
+            generation++;
+            index.remove(prefix);
+        }
+        if (apiKey.isEmpty()) {
+            return false;
+        }
+        userStore.deleteApiKey(prefix);
+        synchronized (lock) {
+            generation++;
+            index.remove(prefix); // Also drops a copy a concurrent miss may have loaded before the delete
+        }
+        auditLog.publish(AuditEventType.API_KEY_REVOKED, apiKey.get().getUsername(), prefix);
+        return true;
+    }
+
+    public List<ApiKeyDTO> list() {
+        return userStore.findAllApiKeys().stream().map(ApiKeyService::toDTO).toList();
+    }
+
+    // Moves the user's keys to the new username and roles after an update, and back if the update rolls back
+    public void onUserUpdated(String previousUsername, OurUser user) {
+        for (ApiKey apiKey : keysOf(previousUsername)) {
+            if (!apiKey.getUsername().equals(user.getUsername()) || !apiKey.getRoles().equals(user.getRoles())) {
+                String username = apiKey.getUsername();
+                String roles = apiKey.getRoles();
+                moveKey(apiKey, user.getUsername(), user.getRoles());
+                afterRollback(() -> moveKey(apiKey, username, roles));
+            }
+        }
+    }
+
+    private void moveKey(ApiKey apiKey, String username, String roles) {
+        apiKey.setUsername(username);
+        apiKey.setRoles(roles);
+        ApiKey saved = userStore.saveApiKey(apiKey);
+        synchronized (lock) {
+            generation++;
+            index.put(saved.getPrefix(), resolve(saved));
+        }
+    }
+
+    // Revokes every key of a deleted user
+    public void onUserDeleted(String username) {
+        for (ApiKey apiKey : keysOf(username)) {
+            revoke(apiKey.getPrefix());
+        }
+    }
+
+    // Reloads the index from the store, dropping keys that were revoked on other instances
+    void refresh() {
+        synchronized (lock) {
+            Map<String, ResolvedKey> loaded = new HashMap<>();
+            for (ApiKey apiKey : userStore.findAllApiKeys()) {
+                loaded.put(apiKey.getPrefix(), resolve(apiKey));
+            }
+            generation++;
+            index.keySet().retainAll(loaded.keySet());
+            index.putAll(loaded);
+            misses.clear(); // Everything the store holds is indexed now
+        }
+    }
+
+    private void refreshSafely() {
+        try {
+            refresh();
+        } catch (RuntimeException e) {
+            log.warn("Could not reload API keys, keeping the current index", e);
+        }
+    }
+
+    // A prefix the index does not know yet, e.g. issued on another instance since the last reload
+    private ResolvedKey loadMissing(String prefix) {
+        long now = System.nanoTime();
+        Long absentUntil = misses.get(prefix);
+        if (absentUntil != null) {
+            if (now - absentUntil < 0) {
+                return null; // Looked up recently and not there
+            }
+            misses.remove(prefix, absentUntil);
+        }
+        if (misses.size() >= maxMisses && !purgeMisses(now)) {
+            return null; // Too many unknown prefixes at once, wait for entries to expire or the next reload
+        }
+        long seen = generation;
+        Optional<ApiKey> apiKey = userStore.findApiKey(prefix);
+        if (apiKey.isEmpty()) {
+            misses.put(prefix, now + missTtlNanos);
+            return null;
+        }
+        ResolvedKey key = resolve(apiKey.get());
+        synchronized (lock) {
+            if (generation == seen) { // Otherwise a revocation or reload ran meanwhile and the row may be gone
+                index.putIfAbsent(prefix, key);
+            }
+        }
+        return key;
+    }
+
+    // The key changes may have committed on their own (another shard), and the index has been updated either way. Runs on another
+    // thread, since this one still holds the finished transaction's persistence context until cleanup.
+    private static void afterRollback(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_ROLLED_BACK) {
+                        try {
+                            CompletableFuture.runAsync(action).join();
+                        } catch (RuntimeException e) {
+                            log.error("Could not move API keys back after a rolled back user update", e);
+                        }
+                    }
+                }
+            });
+        }
+    }
+
+    // Drops expired misses, scanning at most once a second; true if there is room for another one afterwards
+    private boolean purgeMisses(long now) {
+        if (now - nextMissPurge >= 0) {
+            nextMissPurge = now + TimeUnit.SECONDS.toNanos(1);
+            misses.values().removeIf(until -> now - until >= 0);
+        }
+        return misses.size() < maxMisses;
+    }
+
+    // HKDF-SHA256 (RFC 5869) with an all-zero salt: one expand block of the JWT secret under the "api-key-pepper" context
+    static byte[] derivePepper(byte[] jwtSecret) {
+        try {
+            Mac hmac = Mac.getInstance("HmacSHA256");
+            hmac.init(new SecretKeySpec(new byte[32], "HmacSHA256"));
+            byte[] pseudoRandomKey = hmac.doFinal(jwtSecret); // Extract
+            hmac.init(new SecretKeySpec(pseudoRandomKey, "HmacSHA256"));
+            hmac.update(PEPPER_INFO);
+            hmac.update((byte) 1);
+            return hmac.doFinal(); // Expand, 32 bytes
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 is not available", e);
+        }
+    }
+
+    private List<ApiKey> keysOf(String username) {
+        List<ApiKey> keys = new ArrayList<>();
+        for (ApiKey apiKey : userStore.findAllApiKeys()) {
+            if (apiKey.getUsername().equalsIgnoreCase(username)) {
+                keys.add(apiKey);
+            }
+        }
+        return keys;
+    }
+
+    private String randomPrefix() {
+        char[] prefix = new char[PREFIX_LENGTH];
+        for (int i = 0; i < PREFIX_LENGTH; i++) {
+            prefix[i] = PREFIX_ALPHABET[random.nextInt(PREFIX_ALPHABET.length)];
+        }
+        return new String(prefix);
+    }
+
+    private byte[] hash(String secret) {
+        return mac.get().doFinal(secret.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static ResolvedKey resolve(ApiKey apiKey) {
+        OurUser principal = new OurUser(); // Same principal type as the JWT path, without the password
+        principal.setUsername(apiKey.getUsername());
+        principal.setRoles(apiKey.getRoles());
+        return new ResolvedKey(Base64.getDecoder().decode(apiKey.getSecretHash()), principal, List.copyOf(principal.getAuthorities()));
+    }
+
+    private static ApiKeyDTO toDTO(ApiKey apiKey) {
+        return new ApiKeyDTO(apiKey.getPrefix(), apiKey.getName(), apiKey.getUsername(), apiKey.getRoles(), apiKey.getCreatedAt());
+    }
+
+    // An indexed key: its secret hash and the principal it authenticates as
+    private static final class ResolvedKey {
+        private final byte[] secretHash;
+        private final OurUser principal;
+        private final Collection<? extends GrantedAuthority> authorities; // Built once, shared by every request
+
+        private ResolvedKey(byte[] secretHash, OurUser principal, Collection<? extends GrantedAuthority> authorities) {
+            this.secretHash = secretHash;
+            this.principal = principal;
+            this.authorities = authorities;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.security.spring_security.audit;
+
+/*
+    The AuditEvent is a mutable slot in the AuditRingBuffer.
+    The buffer allocates every slot once at startup and request threads overwrite the fields in place,
+    so publishing an event does not allocate. Sinks must copy anything they need before returning from write().
+ */
+public class AuditEvent {
+    private long timestamp;          // Epoch milliseconds when the event was published
+    private AuditEventType type;     // What happened
+    private String username;         // Who it happened to (may be null)
+    private String detail;           // Optional short context, e.g. the target user ID
+
+    // Overwrites the slot with a new event
+    void set(long timestamp, AuditEventType type, String username, String detail) {
+        this.timestamp = timestamp;
+        this.type = type;
+        this.username = username;
+        this.detail = detail;
+    }
+
+    // Drops references once the writer is done so the slot does not keep strings alive
+    void clear() {
+        this.username = null;
+        this.detail = null;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public AuditEventType getType() {
+        return type;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getDetail() {
+        return detail;
+    }
+}
@@ -0,0 +1,17 @@
+package com.security.spring_security.audit;
+
+// Kinds of security-relevant actions recorded in the audit trail
+public enum AuditEventType {
+    LOGIN_SUCCESS,            // Credentials were verified and tokens issued
+    LOGIN_FAILURE,            // Credentials were rejected
+    TOKEN_REFRESH,            // A refresh token was exchanged for new tokens
+    TOKEN_REFRESH_FAILURE,    // A refresh token was rejected
+    USER_REGISTERED,          // A new account was created
+    PASSWORD_RESET_REQUESTED, // A reset code was emailed
+    PASSWORD_CHANGED,         // A password was changed with a reset code
+    PASSWORD_CHANGE_FAILURE,  // A reset code or username did not match
+    USER_UPDATED,             // An account was modified through the users API
+    USER_DELETED,             // An account was deleted through the users API
+    API_KEY_ISSUED,           // An admin issued an API key for a user
+    API_KEY_REVOKED           // An API key was revoked, by an admin or with its user
+}
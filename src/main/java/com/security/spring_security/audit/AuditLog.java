@@ -0,0 +1,160 @@
+package com.security.spring_security.audit;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+    The AuditLog is the entry point services use to record authentication and account events.
+
+    Request threads call publish(), which copies the event into a pre-allocated slot of the AuditRingBuffer and returns.
+    A single daemon writer thread drains the buffer in batches, writes each batch to the configured AuditSink (an append-only file
+    by default, or the audit_entry table) and flushes once per batch, so no request ever waits on disk or database I/O.
+
+    When the buffer is full the configured AuditOverflowPolicy decides whether the event is dropped, whether the caller waits
+    for a free slot, or whether only every Nth overflowing event is kept. Dropped events are counted and exposed through getDroppedCount().
+    Setting app.audit.sink=none disables auditing entirely.
+ */
+
+@Component // Shared audit publisher injected into the services
+public class AuditLog {
+    private static final Logger log = LoggerFactory.getLogger(AuditLog.class);
+
+    private final AuditSink sink; // Destination of the drained events, null when auditing is disabled
+    private final AuditRingBuffer ringBuffer; // Pre-allocated event slots shared by all request threads
+    private final AuditOverflowPolicy overflowPolicy; // Behaviour when the buffer is full
+    private final int sampleRate; // SAMPLE policy keeps one in this many overflowing events
+    private final int batchSize; // Maximum events written per sink flush
+    private final AtomicLong droppedCount = new AtomicLong(); // Events lost to the DROP and SAMPLE policies
+    private final AtomicLong overflowCount = new AtomicLong(); // Publishes that found the buffer full
+    private volatile boolean running; // Cleared on shutdown to stop the writer thread
+    private Thread writerThread; // Single consumer of the ring buffer
+
+    public AuditLog(ObjectProvider<AuditSink> sinkProvider,
+                    @Value("${app.audit.buffer-size:8192}") int bufferSize,
+                    @Value("${app.audit.overflow-policy:DROP}") AuditOverflowPolicy overflowPolicy,
+                    @Value("${app.audit.sample-rate:100}") int sampleRate,
+                    @Value("${app.audit.batch-size:512}") int batchSize) {
+        this.sink = sinkProvider.getIfAvailable();
+        this.ringBuffer = new AuditRingBuffer(bufferSize);
+        this.overflowPolicy = overflowPolicy;
+        this.sampleRate = Math.max(1, sampleRate);
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    @PostConstruct // Starts the writer once the sink is available
+    void start() {
+        if (sink == null) {
+            return; // Auditing disabled
+        }
+        running = true;
+        writerThread = new Thread(this::runWriter, "audit-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    // Records an event without a detail field
+    public void publish(AuditEventType type, String username) {
+        publish(type, username, null);
+    }
+
+    // Records an event; never blocks unless the BLOCK or SAMPLE policy asks it to wait for space
+    public void publish(AuditEventType type, String username, String detail) {
+        if (sink == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (ringBuffer.tryPublish(now, type, username, detail)) {
+            return; // Fast path: a slot was free
+        }
+        long overflows = overflowCount.incrementAndGet();
+        switch (overflowPolicy) {
+            case DROP -> droppedCount.incrementAndGet();
+            case BLOCK -> publishBlocking(now, type, username, detail);
+            case SAMPLE -> {
+                if (overflows % sampleRate == 0) {
+                    publishBlocking(now, type, username, detail); // Keeps a representative sample of the overflow
+                } else {
+                    droppedCount.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    // Spins briefly, then parks, until the writer frees a slot or the application shuts down
+    private void publishBlocking(long timestamp, AuditEventType type, String username, String detail) {
+        int spins = 0;
+        while (!ringBuffer.tryPublish(timestamp, type, username, detail)) {
+            if (!running) {
+                droppedCount.incrementAndGet(); // No consumer left to make room
+                return;
+            }
+            if (++spins < 100) {
+                Thread.onSpinWait();
+            } else {
+                LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(50));
+            }
+        }
+    }
+
+    // Writer loop: drain a batch, flush it, and park briefly when idle
+    private void runWriter() {
+        while (running) {
+            if (drainBatch() == 0) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+            }
+        }
+        while (drainBatch() > 0) {
+            // Drains whatever was published before shutdown
+        }
+    }
+
+    // Writes one batch to the sink and flushes it; sink failures are logged and the batch is lost
+    private int drainBatch() {
+        int drained = ringBuffer.drain(this::writeToSink, batchSize);
+        if (drained > 0) {
+            try {
+                sink.flush();
+            } catch (Exception e) {
+                log.warn("Failed to flush {} audit events", drained, e);
+            }
+        }
+        return drained;
+    }
+
+    private void writeToSink(AuditEvent event) {
+        try {
+            sink.write(event);
+        } catch (Exception e) {
+            log.warn("Failed to write audit event {}", event.getType(), e);
+        }
+    }
+
+    @PreDestroy // Stops the writer after it has drained every pending event
+    void stop() throws Exception {
+        if (sink == null) {
+            return;
+        }
+        running = false;
+        writerThread.join(TimeUnit.SECONDS.toMillis(10));
+        sink.close();
+    }
+
+    // Events lost because the buffer was full
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    // Events currently waiting for the writer
+    public long getPendingCount() {
+        return ringBuffer.size();
+    }
+}
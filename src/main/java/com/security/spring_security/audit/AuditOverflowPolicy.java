@@ -0,0 +1,8 @@
+package com.security.spring_security.audit;
+
+// What a request thread does when the audit ring buffer has no free slot
+public enum AuditOverflowPolicy {
+    DROP,   // Discard the event and count it, never delaying the request
+    BLOCK,  // Wait for the writer to free a slot, never losing an event
+    SAMPLE  // Keep one in every N overflowing events (waiting for a slot) and discard the rest
+}
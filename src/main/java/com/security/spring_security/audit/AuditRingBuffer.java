@@ -0,0 +1,83 @@
+package com.security.spring_security.audit;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+    The AuditRingBuffer is a bounded, pre-allocated, lock-free queue with many producers and exactly one consumer.
+
+    Producers claim the next sequence number with a CAS on the claim cursor, but only while the consumer is less than
+    one full lap behind. They then fill the slot at (sequence & mask) in place and publish it by storing the sequence in
+    the slot's entry of the published array. The consumer walks forward from its own cursor for as long as each slot's published
+    sequence matches, hands the slot to a handler, and only then advances the consumer cursor, which releases the slot to producers.
+
+    No locks are taken and no objects are allocated on either side. A producer that finds the buffer full gets -1 back and
+    the caller decides what to do about it (see AuditOverflowPolicy).
+ */
+class AuditRingBuffer {
+    private final AuditEvent[] slots; // Pre-allocated event slots
+    private final AtomicLongArray published; // Sequence last published into each slot
+    private final int mask; // capacity - 1, capacity is a power of two
+    private final AtomicLong claimCursor = new AtomicLong(); // Next sequence a producer will claim
+    private volatile long consumerCursor; // Next sequence the consumer will read
+
+    AuditRingBuffer(int requestedCapacity) {
+        int capacity = Integer.highestOneBit(Math.max(2, requestedCapacity - 1)) << 1; // Rounds up to a power of two
+        this.slots = new AuditEvent[capacity];
+        this.published = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = new AuditEvent();
+            published.set(i, -1L); // No sequence has been published yet
+        }
+        this.mask = capacity - 1;
+    }
+
+    // Claims, fills and publishes one slot; returns false if the buffer is full
+    boolean tryPublish(long timestamp, AuditEventType type, String username, String detail) {
+        long sequence;
+        do {
+            sequence = claimCursor.get();
+            if (sequence - consumerCursor >= slots.length) {
+                return false; // The consumer has not freed the slot one lap back yet
+            }
+        } while (!claimCursor.compareAndSet(sequence, sequence + 1));
+
+        int index = (int) sequence & mask;
+        slots[index].set(timestamp, type, username, detail);
+        published.set(index, sequence); // Volatile store makes the slot contents visible to the consumer
+        return true;
+    }
+
+    // Hands up to maxEvents published events to the handler in order; returns how many were consumed
+    int drain(Handler handler, int maxEvents) {
+        long next = consumerCursor;
+        int drained = 0;
+        while (drained < maxEvents) {
+            int index = (int) next & mask;
+            if (published.get(index) != next) {
+                break; // Not published yet (or a producer is still filling it)
+            }
+            AuditEvent event = slots[index];
+            handler.onEvent(event);
+            event.clear();
+            next++;
+            drained++;
+        }
+        consumerCursor = next; // Releases every consumed slot back to the producers in one volatile store
+        return drained;
+    }
+
+    // Number of events claimed but not yet consumed
+    long size() {
+        return claimCursor.get() - consumerCursor;
+    }
+
+    int capacity() {
+        return slots.length;
+    }
+
+    // Callback used by the consumer to process each slot in place; must not throw
+    interface Handler {
+        void onEvent(AuditEvent event);
+    }
+}
@@ -0,0 +1,16 @@
+package com.security.spring_security.audit;
+
+// Destination the single audit writer thread sends events to
+public interface AuditSink {
+
+    // Buffers one event; the event object is reused after this returns
+    void write(AuditEvent event) throws Exception;
+
+    // Makes every event written since the last flush durable
+    void flush() throws Exception;
+
+    // Releases files or connections when the application stops
+    default void close() throws Exception {
+        flush();
+    }
+}
@@ -0,0 +1,58 @@
+package com.security.spring_security.audit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+
+/*
+    The FileAuditSink appends one tab-separated line per event to an audit file.
+    The file is only ever opened in append mode, and each flush pushes the writer's buffer to the operating system,
+    so the writer thread turns a whole batch of events into a single write call.
+ */
+
+@Component // Default audit destination
+@ConditionalOnProperty(name = "app.audit.sink", havingValue = "file", matchIfMissing = true)
+public class FileAuditSink implements AuditSink {
+    private final BufferedWriter writer; // Buffered append-only writer shared by every batch
+
+    public FileAuditSink(@Value("${app.audit.file:logs/audit.log}") String file) throws IOException {
+        Path path = Path.of(file);
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent()); // Creates the log directory on first start
+        }
+        this.writer = new BufferedWriter(new OutputStreamWriter(
+                Files.newOutputStream(path, StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.WRITE),
+                StandardCharsets.UTF_8), 64 * 1024);
+    }
+
+    @Override
+    public void write(AuditEvent event) throws IOException {
+        writer.write(Instant.ofEpochMilli(event.getTimestamp()).toString());
+        writer.write('\t');
+        writer.write(event.getType().name());
+        writer.write('\t');
+        writer.write(event.getUsername() != null ? event.getUsername() : "-");
+        writer.write('\t');
+        writer.write(event.getDetail() != null ? event.getDetail() : "-");
+        writer.newLine();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close(); // Flushes and closes the file
+    }
+}
@@ -0,0 +1,51 @@
+package com.security.spring_security.audit;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+    The JdbcAuditSink writes events to the audit_entry table (mapped by the AuditEntry entity).
+    Events are copied into a reusable batch and inserted with one JDBC batch per flush,
+    so a burst of logins costs one round trip instead of one insert per request.
+ */
+
+@Component // Audit destination used when app.audit.sink=jdbc
+@ConditionalOnProperty(name = "app.audit.sink", havingValue = "jdbc")
+public class JdbcAuditSink implements AuditSink {
+    private static final String INSERT_SQL =
+            "INSERT INTO audit_entry (occurred_at, event_type, username, detail) VALUES (?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate; // Plain JDBC, no persistence context needed for append-only rows
+    private final List<Object[]> batch = new ArrayList<>(); // Rows collected since the last flush, only touched by the writer thread
+
+    public JdbcAuditSink(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void write(AuditEvent event) {
+        batch.add(new Object[]{
+                new Timestamp(event.getTimestamp()),
+                event.getType().name(),
+                event.getUsername(),
+                event.getDetail()
+        });
+    }
+
+    @Override
+    public void flush() {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            jdbcTemplate.batchUpdate(INSERT_SQL, batch); // One multi-statement round trip per batch
+        } finally {
+            batch.clear(); // A failed batch is logged by the caller and not retried forever
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.security.spring_security.authentication;
+
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.core.userdetails.UserDetails;
+
+/*
+    A DaoAuthenticationProvider that skips the password hash verification for service accounts whose identical credentials were
+    verified moments ago, according to the VerifiedCredentialCache. Everything else (loading the user, the locked/disabled/expired
+    checks, failed logins, every other account) goes through the regular DaoAuthenticationProvider path.
+ */
+public class CachingAuthenticationProvider extends DaoAuthenticationProvider {
+    private final VerifiedCredentialCache verifiedCredentialCache; // Recent successful verifications of opted-in accounts
+
+    public CachingAuthenticationProvider(VerifiedCredentialCache verifiedCredentialCache) {
+        this.verifiedCredentialCache = verifiedCredentialCache;
+    }
+
+    @Override
+    protected void additionalAuthenticationChecks(UserDetails userDetails, UsernamePasswordAuthenticationToken authentication)
+            throws AuthenticationException {
+        String username = userDetails.getUsername();
+        if (!verifiedCredentialCache.isCached(username) || authentication.getCredentials() == null) {
+            super.additionalAuthenticationChecks(userDetails, authentication);
+            return;
+        }
+        String password = authentication.getCredentials().toString();
+        if (verifiedCredentialCache.matches(username, password, userDetails.getPassword())) {
+            return; // Verified against this very hash within the TTL
+        }
+        super.additionalAuthenticationChecks(userDetails, authentication); // Throws on a wrong password, which is never cached
+        verifiedCredentialCache.put(username, password, userDetails.getPassword());
+    }
+}
@@ -0,0 +1,113 @@
+package com.security.spring_security.authentication;
+
+import com.security.spring_security.util.UsernameHashing;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/*
+    The VerifiedCredentialCache remembers recent successful password checks of the service accounts listed in
+    app.credential-cache.accounts, so machine clients that log in many times a minute do not pay a BCrypt verification each time.
+
+    Only an HMAC-SHA256 of the submitted username and password is kept, under a random key generated at startup that never leaves
+    the process, together with the stored password hash the credentials were verified against. A login is a hit only when the HMAC
+    matches, the entry is younger than app.credential-cache.ttl, and the user's stored password hash is still the one verified, so a
+    password changed anywhere (including on another instance) invalidates the entry on the next login. The services also drop the
+    entry as soon as a user is updated, deleted or changes their password.
+
+    Failed logins are never cached and always pay the full verification, and accounts that are not listed are not affected at all.
+ */
+
+@Component // Used by the CachingAuthenticationProvider and invalidated by the user services
+public class VerifiedCredentialCache {
+    private final Set<String> accounts; // Normalized usernames that opted in
+    private final long ttlMillis; // Longest a verification is reused
+    private final ThreadLocal<Mac> mac; // Per-thread Mac under the process-local key
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>(); // Normalized username -> last verification
+    private final Counter hits;
+    private final Counter misses;
+
+    public VerifiedCredentialCache(@Value("${app.credential-cache.accounts:}") List<String> accounts,
+                                   @Value("${app.credential-cache.ttl:60s}") Duration ttl,
+                                   MeterRegistry meterRegistry) {
+        this.accounts = accounts.stream().map(String::trim).filter(account -> !account.isEmpty())
+                .map(UsernameHashing::normalize).collect(Collectors.toUnmodifiableSet());
+        this.ttlMillis = ttl.toMillis();
+        byte[] key = new byte[32];
+        new SecureRandom().nextBytes(key);
+        SecretKeySpec keySpec = new SecretKeySpec(key, "HmacSHA256");
+        this.mac = ThreadLocal.withInitial(() -> {
+            try {
+                Mac instance = Mac.getInstance("HmacSHA256");
+                instance.init(keySpec);
+                return instance;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("HmacSHA256 is not available", e);
+            }
+        });
+        this.hits = Counter.builder("auth.credential.cache").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("auth.credential.cache").tag("result", "miss").register(meterRegistry);
+    }
+
+    // Whether the account opted in; logins of other accounts never consult the cache
+    public boolean isCached(String username) {
+        return !accounts.isEmpty() && username != null && accounts.contains(UsernameHashing.normalize(username));
+    }
+
+    // True when these exact credentials were verified against this stored password hash within the TTL
+    public boolean matches(String username, String password, String encodedPassword) {
+        Entry entry = entries.get(UsernameHashing.normalize(username));
+        boolean hit = entry != null
+                && System.currentTimeMillis() < entry.expiresAt
+                && entry.encodedPassword.equals(encodedPassword)
+                && MessageDigest.isEqual(entry.mac, mac(username, password)); // Constant time
+        (hit ? hits : misses).increment();
+        return hit;
+    }
+
+    // Records a successful verification
+    public void put(String username, String password, String encodedPassword) {
+        entries.put(UsernameHashing.normalize(username),
+                new Entry(mac(username, password), encodedPassword, System.currentTimeMillis() + ttlMillis));
+    }
+
+    // Forgets the user's last verification; called when the user is updated, deleted or changes their password
+    public void invalidate(String username) {
+        if (username != null && !entries.isEmpty()) {
+            entries.remove(UsernameHashing.normalize(username));
+        }
+    }
+
+    private byte[] mac(String username, String password) {
+        Mac instance = mac.get();
+        instance.update(username.getBytes(StandardCharsets.UTF_8));
+        instance.update((byte) 0); // Separator, so "ab"+"c" and "a"+"bc" differ
+        return instance.doFinal(password.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static final class Entry {
+        private final byte[] mac; // HMAC of username and password
+        private final String encodedPassword; // Stored hash the password was verified against
+        private final long expiresAt; // Epoch millis
+
+        private Entry(byte[] mac, String encodedPassword, long expiresAt) {
+            this.mac = mac;
+            this.encodedPassword = encodedPassword;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.security.spring_security.authorization;
+
+import com.security.spring_security.profiling.AuthorizationDecisionEvent;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.authorization.AuthorizationDecision;
+import org.springframework.security.authorization.AuthorizationManager;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.web.access.intercept.RequestAuthorizationContext;
+import org.springframework.stereotype.Component;
+
+import java.util.function.Supplier;
+
+/*
+    The CompiledAuthorizationManager plugs the EndpointAuthorizationRules into Spring Security's AuthorizationFilter.
+    It resolves the request's rule from the compiled trie and compares role bitmasks, so authorization is enforced in the filter chain
+    before the request reaches the controller, and no SpEL expression is evaluated anywhere. Paths under /api and /actuator always
+    resolve to a rule, at worst to a deny or admin-only catch-all. Public rules are granted without resolving the Authentication at all.
+    The two decisions are shared constants, so a decision allocates nothing.
+ */
+
+@Component // Registered in SecurityConfig through anyRequest().access(...)
+public class CompiledAuthorizationManager implements AuthorizationManager<RequestAuthorizationContext> {
+    private static final AuthorizationDecision GRANTED = new AuthorizationDecision(true);
+    private static final AuthorizationDecision DENIED = new AuthorizationDecision(false);
+
+    private final EndpointAuthorizationRules rules; // Compiled endpoint rules
+
+    public CompiledAuthorizationManager(EndpointAuthorizationRules rules) {
+        this.rules = rules;
+    }
+
+    @Override
+    public AuthorizationDecision check(Supplier<Authentication> authenticationSupplier, RequestAuthorizationContext context) {
+        AuthorizationDecisionEvent event = new AuthorizationDecisionEvent(); // JFR event, recorded only when slower than its threshold
+        event.begin();
+        EndpointRule rule = rules.match(context.getRequest());
+        AuthorizationDecision decision = decide(rule, authenticationSupplier);
+        if (event.shouldCommit()) {
+            event.rule = rule != null ? rule.toString() : null;
+            event.granted = decision.isGranted();
+            event.commit();
+        }
+        return decision;
+    }
+
+    // Grants public rules, then requires an authenticated caller holding one of the rule's roles
+    private AuthorizationDecision decide(EndpointRule rule, Supplier<Authentication> authenticationSupplier) {
+        if (rule != null && rule.isPermitAll()) {
+            return GRANTED; // Public endpoint
+        }
+
+        Authentication authentication = authenticationSupplier.get();
+        if (authentication == null || !authentication.isAuthenticated() || authentication instanceof AnonymousAuthenticationToken) {
+            return DENIED; // Every non-public endpoint requires a logged-in caller
+        }
+        if (rule == null) {
+            return GRANTED; // Outside /api and /actuator (e.g. /error), authentication is enough; those two always match a rule
+        }
+        return rule.permits(rules.roleMask(authentication.getAuthorities())) ? GRANTED : DENIED;
+    }
+}
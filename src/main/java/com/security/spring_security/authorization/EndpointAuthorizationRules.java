@@ -0,0 +1,131 @@
+package com.security.spring_security.authorization;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.stereotype.Component;
+import org.springframework.web.util.UrlPathHelper;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+    The EndpointAuthorizationRules class is the single place where endpoint access is declared.
+    It replaces the permitAll matcher list that used to live in SecurityConfig and the @PreAuthorize SpEL expressions on AuthController.
+
+    The declarations below are compiled once at startup. Every role name gets a bit in a long, every rule gets the bitmask of the roles
+    it allows, and all rules are loaded into an EndpointRuleTrie keyed by path segment. At request time the filter chain resolves the rule
+    with one trie walk and decides with one bitwise AND, with no expression parsing or evaluation.
+    The rules are the only authorization check, so they fail closed: the catch-all rules at the end of the declarations deny every
+    undeclared path under /api and keep undeclared actuator endpoints admin-only. A new controller method therefore answers 403 until
+    its rule is declared here (HandlerRuleCoverageTests fails for it). Requests outside /api and /actuator that match no rule, such as
+    the /error dispatch, only require an authenticated caller, which is what anyRequest().authenticated() used to do.
+
+    Rules are matched against the path Spring MVC routes on: percent-decoded, without ;-parameters and within the application. The
+    raw request URI is only used as is when it contains neither '%' nor ';', since it is then already in that form; repeated and
+    trailing slashes are skipped by the trie walk.
+ */
+
+@Component // Compiled once and shared by the filter chain
+public class EndpointAuthorizationRules {
+    private static final String ROLE_PREFIX = "ROLE_";
+
+    private final Map<String, Long> roleBits = new HashMap<>(); // Granted authority name -> bit, e.g. ROLE_ADMIN -> 1
+    private final List<EndpointRule> declared = new ArrayList<>(); // Rules in declaration order, indexed by rule id
+    private final EndpointRuleTrie trie = new EndpointRuleTrie(); // Compiled lookup structure
+
+    public EndpointAuthorizationRules() {
+        // Public endpoints (any HTTP method)
+        permitAll(null, "/api/auth/login");                // Login endpoint
+        permitAll(null, "/api/auth/register");             // Registration endpoint
+        permitAll(null, "/api/auth/refresh");              // Token refresh
+        permitAll(null, "/api/auth/refresh-token");        // Token refresh (alias)
+        permitAll(null, "/public/**");                     // Any public resources
+        permitAll(null, "/actuator/metrics/**");           // Actuator metrics for monitoring
+        permitAll(null, "/targets");                       // Prometheus targets
+        permitAll(null, "/actuator/prometheus");           // Prometheus metrics
+        permitAll(null, "/actuator/health/**");            // Liveness and readiness probes
+        permitAll(null, "/api/auth/send-reset-code/**");   // Password reset code
+        permitAll(null, "/api/auth/change-password");      // Change password
+
+        // User management endpoints
+        hasAnyRole("GET", "/api/users", "ADMIN");             // List all users
+        hasAnyRole("GET", "/api/users/search", "ADMIN");      // Search users by username fragment
+        hasAnyRole("PUT", "/api/users/{userId}", "ADMIN", "USER"); // Update user information
+        hasAnyRole("DELETE", "/api/users/{userId}", "ADMIN"); // Delete user
+        hasAnyRole("GET", "/api/usage", "ADMIN", "USER");      // Caller's own API usage
+
+        // Operational endpoints
+        hasAnyRole(null, "/actuator/flightrecorder/**", "ADMIN"); // On-demand JFR recordings
+        hasAnyRole(null, "/actuator/shards/**", "ADMIN");         // Shard status and rebalancing
+        hasAnyRole(null, "/api/admin/api-keys/**", "ADMIN");      // Issuing, listing and revoking API keys
+        hasAnyRole("GET", "/api/admin/usage/**", "ADMIN");        // Any user's API usage
+        hasAnyRole(null, "/api/admin/campaigns/**", "ADMIN");     // Mail campaigns to every user
+
+        // Catch-alls; the more specific rules above win
+        denyAll(null, "/api/**");                                 // API endpoints without a rule of their own
+        hasAnyRole(null, "/actuator/**", "ADMIN");                // Actuator endpoints without a rule of their own
+    }
+
+    // Declares a public endpoint; a null method matches every method
+    private void permitAll(String method, String pattern) {
+        add(new EndpointRule(declared.size(), method, pattern, true, 0L));
+    }
+
+    // Declares an endpoint nobody may call, whatever their roles
+    private void denyAll(String method, String pattern) {
+        add(new EndpointRule(declared.size(), method, pattern, false, 0L));
+    }
+
+    // Declares an endpoint open to any of the given roles
+    private void hasAnyRole(String method, String pattern, String... roles) {
+        long mask = 0L;
+        for (String role : roles) {
+            mask |= roleBits.computeIfAbsent(ROLE_PREFIX + role, name -> {
+                if (roleBits.size() == Long.SIZE) {
+                    throw new IllegalStateException("At most 64 distinct roles can be compiled into role bitmasks");
+                }
+                return 1L << roleBits.size();
+            });
+        }
+        add(new EndpointRule(declared.size(), method, pattern, false, mask));
+    }
+
+    private void add(EndpointRule rule) {
+        declared.add(rule);
+        trie.add(rule);
+    }
+
+    // Resolves the rule for a request on the decoded path within the application, or null if none was declared
+    public EndpointRule match(HttpServletRequest request) {
+        String uri = request.getRequestURI();
+        if (uri.indexOf('%') < 0 && uri.indexOf(';') < 0) {
+            return trie.match(request.getMethod(), uri, request.getContextPath().length()); // Nothing to decode or strip, no allocation
+        }
+        return trie.match(request.getMethod(), UrlPathHelper.defaultInstance.getPathWithinApplication(request), 0);
+    }
+
+    // Resolves the rule for an already decoded path (offset skips the servlet context path), or null if none was declared
+    public EndpointRule match(String method, String path, int offset) {
+        return trie.match(method, path, offset);
+    }
+
+    // Compiles granted authorities into the role bitmask; authorities that no rule mentions contribute nothing
+    public long roleMask(Collection<? extends GrantedAuthority> authorities) {
+        long mask = 0L;
+        for (GrantedAuthority authority : authorities) {
+            Long bit = roleBits.get(authority.getAuthority());
+            if (bit != null) {
+                mask |= bit;
+            }
+        }
+        return mask;
+    }
+
+    // Every declared rule, indexed by EndpointRule.getId()
+    public List<EndpointRule> getRules() {
+        return List.copyOf(declared);
+    }
+}
@@ -0,0 +1,56 @@
+package com.security.spring_security.authorization;
+
+/*
+    An EndpointRule is one compiled authorization rule: an HTTP method (or any method), a path pattern,
+    and the roles allowed to call it encoded as a bitmask. Deciding a request is a single AND of two longs.
+ */
+public final class EndpointRule {
+    private final int id; // Dense index of the rule, usable as an array index by callers
+    private final String method; // HTTP method, or null when the rule applies to every method
+    private final String pattern; // Path pattern as declared, e.g. /api/users/*
+    private final boolean permitAll; // True for public endpoints
+    private final long requiredRoles; // Bit per allowed role, any one of them is sufficient
+
+    EndpointRule(int id, String method, String pattern, boolean permitAll, long requiredRoles) {
+        this.id = id;
+        this.method = method;
+        this.pattern = pattern;
+        this.permitAll = permitAll;
+        this.requiredRoles = requiredRoles;
+    }
+
+    // Returns true if a caller holding the given role bits may use this endpoint
+    public boolean permits(long grantedRoles) {
+        return permitAll || (grantedRoles & requiredRoles) != 0;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public String getPattern() {
+        return pattern;
+    }
+
+    public boolean isPermitAll() {
+        return permitAll;
+    }
+
+    // True for the catch-all that refuses undeclared paths
+    public boolean isDenyAll() {
+        return !permitAll && requiredRoles == 0L;
+    }
+
+    public long getRequiredRoles() {
+        return requiredRoles;
+    }
+
+    @Override
+    public String toString() {
+        return (method != null ? method : "*") + " " + pattern;
+    }
+}
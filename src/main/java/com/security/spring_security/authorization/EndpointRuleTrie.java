@@ -0,0 +1,164 @@
+package com.security.spring_security.authorization;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+    The EndpointRuleTrie resolves a request path to its EndpointRule by walking one trie node per path segment.
+
+    Patterns are split on '/'. A segment is either a literal, '*' (exactly one segment, e.g. a path variable) or '**' (any number of segments,
+    only meaningful at the end of a pattern). Literals win over '*', which wins over '**', and the walk backtracks when a more specific branch dead-ends.
+    Each node holds one slot per common HTTP method plus an any-method slot. HEAD falls back to GET, the same way Spring MVC serves it.
+
+    Lookups compare path segments in place with regionMatches, so resolving a request allocates nothing.
+ */
+final class EndpointRuleTrie {
+    private static final String[] METHODS = {"GET", "HEAD", "POST", "PUT", "PATCH", "DELETE", "OPTIONS", "TRACE"};
+    private static final int ANY_METHOD = METHODS.length; // Slot for rules declared without a method
+
+    private final Node root = new Node();
+
+    // Adds a rule; the first rule declared for a pattern and method wins, like the order of requestMatchers
+    void add(EndpointRule rule) {
+        Node node = root;
+        for (String segment : rule.getPattern().split("/")) {
+            if (!segment.isEmpty()) {
+                node = node.child(segment);
+            }
+        }
+        int slot = rule.getMethod() == null ? ANY_METHOD : methodSlot(rule.getMethod());
+        if (slot < 0) {
+            throw new IllegalArgumentException("Unsupported HTTP method in rule " + rule);
+        }
+        if (node.rules[slot] == null) {
+            node.rules[slot] = rule;
+        }
+    }
+
+    // Resolves the rule for a method and the part of the path starting at offset, or null when no rule matches
+    EndpointRule match(String method, String path, int offset) {
+        int slot = methodSlot(method);
+        return match(root, path, skipSlashes(path, offset), slot);
+    }
+
+    private EndpointRule match(Node node, String path, int pos, int slot) {
+        if (pos >= path.length()) {
+            EndpointRule rule = node.ruleFor(slot);
+            if (rule == null && node.doubleWildcard != null) {
+                rule = node.doubleWildcard.ruleFor(slot); // '**' also matches zero segments
+            }
+            return rule;
+        }
+        int end = path.indexOf('/', pos);
+        if (end < 0) {
+            end = path.length();
+        }
+        int length = end - pos;
+        int next = skipSlashes(path, end);
+
+        for (int i = 0; i < node.literalCount; i++) {
+            String literal = node.literals[i];
+            if (literal.length() == length && path.regionMatches(pos, literal, 0, length)) {
+                EndpointRule rule = match(node.literalChildren[i], path, next, slot);
+                if (rule != null) {
+                    return rule;
+                }
+                break; // Literals are unique per node
+            }
+        }
+        if (node.wildcard != null) {
+            EndpointRule rule = match(node.wildcard, path, next, slot);
+            if (rule != null) {
+                return rule;
+            }
+        }
+        if (node.doubleWildcard != null) {
+            return node.doubleWildcard.ruleFor(slot); // '**' swallows the rest of the path
+        }
+        return null;
+    }
+
+    private static int skipSlashes(String path, int pos) {
+        while (pos < path.length() && path.charAt(pos) == '/') {
+            pos++;
+        }
+        return pos;
+    }
+
+    private static int methodSlot(String method) {
+        for (int i = 0; i < METHODS.length; i++) {
+            if (METHODS[i].equals(method)) {
+                return i;
+            }
+        }
+        return -1; // Unknown methods only match any-method rules
+    }
+
+    // Every rule in declaration order, for diagnostics
+    List<EndpointRule> rules() {
+        List<EndpointRule> rules = new ArrayList<>();
+        collect(root, rules);
+        rules.sort((a, b) -> Integer.compare(a.getId(), b.getId()));
+        return rules;
+    }
+
+    private static void collect(Node node, List<EndpointRule> out) {
+        for (EndpointRule rule : node.rules) {
+            if (rule != null) {
+                out.add(rule);
+            }
+        }
+        for (int i = 0; i < node.literalCount; i++) {
+            collect(node.literalChildren[i], out);
+        }
+        if (node.wildcard != null) {
+            collect(node.wildcard, out);
+        }
+        if (node.doubleWildcard != null) {
+            collect(node.doubleWildcard, out);
+        }
+    }
+
+    private static final class Node {
+        private String[] literals = new String[0]; // Literal segment keys, scanned linearly (nodes have few children)
+        private Node[] literalChildren = new Node[0];
+        private int literalCount;
+        private Node wildcard; // Child for '*'
+        private Node doubleWildcard; // Child for '**'
+        private final EndpointRule[] rules = new EndpointRule[METHODS.length + 1]; // One slot per method plus any-method
+
+        private Node child(String segment) {
+            if ("*".equals(segment) || (segment.startsWith("{") && segment.endsWith("}"))) {
+                return wildcard != null ? wildcard : (wildcard = new Node());
+            }
+            if ("**".equals(segment)) {
+                return doubleWildcard != null ? doubleWildcard : (doubleWildcard = new Node());
+            }
+            for (int i = 0; i < literalCount; i++) {
+                if (literals[i].equals(segment)) {
+                    return literalChildren[i];
+                }
+            }
+            literals = Arrays.copyOf(literals, literalCount + 1);
+            literalChildren = Arrays.copyOf(literalChildren, literalCount + 1);
+            literals[literalCount] = segment;
+            Node child = new Node();
+            literalChildren[literalCount++] = child;
+            return child;
+        }
+
+        private EndpointRule ruleFor(int slot) {
+            if (slot >= 0) {
+                EndpointRule rule = rules[slot];
+                if (rule != null) {
+                    return rule;
+                }
+                if (slot == 1 && rules[0] != null) {
+                    return rules[0]; // HEAD is served by GET handlers
+                }
+            }
+            return rules[ANY_METHOD];
+        }
+    }
+}
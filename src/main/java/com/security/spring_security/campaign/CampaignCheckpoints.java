@@ -0,0 +1,60 @@
+package com.security.spring_security.campaign;
+
+import com.security.spring_security.entity.CampaignCheckpoint;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+
+/*
+    The CampaignCheckpoints keep the progress of mail campaigns in the campaign_checkpoint table (mapped by the CampaignCheckpoint
+    entity), one row per campaign and shard. Each save is a single upsert, so a checkpoint costs one statement per batch of mail. Like
+    the audit entries and API usage, the table lives on the default shard.
+ */
+
+@Component // Progress store of the CampaignService
+@ConditionalOnProperty(name = "app.user-store.type", havingValue = "jpa", matchIfMissing = true)
+public class CampaignCheckpoints {
+    private static final String UPSERT_SQL = "INSERT INTO campaign_checkpoint (campaign, shard_id, last_user_id, sent, failed, completed, updated_at) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?) ON DUPLICATE KEY UPDATE last_user_id = VALUES(last_user_id), sent = VALUES(sent), "
+            + "failed = VALUES(failed), completed = VALUES(completed), updated_at = VALUES(updated_at)"; // MySQL syntax; H2 accepts it in MODE=MySQL
+    private static final String FIND_SQL = "SELECT last_user_id, sent, failed, completed, updated_at FROM campaign_checkpoint "
+            + "WHERE campaign = ? AND shard_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public CampaignCheckpoints(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    // Stored progress of the campaign on the shard, or a fresh checkpoint when the campaign never ran there
+    public CampaignCheckpoint find(String campaign, int shardId) {
+        List<CampaignCheckpoint> found = jdbcTemplate.query(FIND_SQL, (row, rowNum) -> {
+            CampaignCheckpoint checkpoint = checkpoint(campaign, shardId);
+            checkpoint.setLastUserId(row.getLong(1));
+            checkpoint.setSent(row.getLong(2));
+            checkpoint.setFailed(row.getLong(3));
+            checkpoint.setCompleted(row.getBoolean(4));
+            Timestamp updatedAt = row.getTimestamp(5);
+            checkpoint.setUpdatedAt(updatedAt != null ? updatedAt.toInstant() : null);
+            return checkpoint;
+        }, campaign, shardId);
+        return found.isEmpty() ? checkpoint(campaign, shardId) : found.get(0);
+    }
+
+    public void save(CampaignCheckpoint checkpoint) {
+        checkpoint.setUpdatedAt(Instant.now());
+        jdbcTemplate.update(UPSERT_SQL, checkpoint.getCampaign(), checkpoint.getShardId(), checkpoint.getLastUserId(),
+                checkpoint.getSent(), checkpoint.getFailed(), checkpoint.isCompleted(), Timestamp.from(checkpoint.getUpdatedAt()));
+    }
+
+    private static CampaignCheckpoint checkpoint(String campaign, int shardId) {
+        CampaignCheckpoint checkpoint = new CampaignCheckpoint();
+        checkpoint.setCampaign(campaign);
+        checkpoint.setShardId(shardId);
+        return checkpoint;
+    }
+}
@@ -0,0 +1,111 @@
+package com.security.spring_security.campaign;
+
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.Session;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.MimeMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/*
+    Sends campaign batches over a small pool of SMTP connections that stay open for the whole campaign. JavaMailSenderImpl opens,
+    authenticates (STARTTLS and AUTH) and closes a connection on every send() call; here a batch borrows an open connection, writes
+    each message with one MAIL FROM/RCPT TO/DATA exchange, and hands the connection back for the next batch.
+
+    The host, port, credentials and JavaMail properties come from the application's JavaMailSenderImpl, so campaigns use the same
+    server as the password reset mail. A rejected recipient fails only its own message. Any other error is taken as a broken
+    connection: it is closed, a new one is opened and the message is tried once more, and a second failure fails the batch.
+ */
+
+final class CampaignMailer implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(CampaignMailer.class);
+
+    private final JavaMailSenderImpl mailSender; // Server settings and Session
+    private final Session session;
+    private final ConcurrentLinkedQueue<Transport> idle = new ConcurrentLinkedQueue<>(); // Open connections not in use
+
+    CampaignMailer(JavaMailSenderImpl mailSender) {
+        this.mailSender = mailSender;
+        this.session = mailSender.getSession();
+    }
+
+    Session getSession() {
+        return session;
+    }
+
+    // Sends the messages over one pooled connection; returns how many recipients were rejected
+    int send(List<MimeMessage> batch) throws MessagingException {
+        Transport transport = idle.poll();
+        int rejected = 0;
+        try {
+            if (transport == null || !transport.isConnected()) {
+                transport = reconnect(transport);
+            }
+            for (MimeMessage message : batch) {
+                try {
+                    sendOne(transport, message);
+                } catch (SendFailedException e) {
+                    rejected++; // Bad address; the connection is still usable
+                } catch (MessagingException e) {
+                    log.debug("Campaign connection failed, reconnecting", e);
+                    transport = reconnect(transport);
+                    try {
+                        sendOne(transport, message);
+                    } catch (SendFailedException retryRejected) {
+                        rejected++;
+                    }
+                }
+            }
+        } catch (MessagingException | RuntimeException e) {
+            closeQuietly(transport); // Not handed back; the next batch opens a new connection
+            throw e;
+        }
+        idle.add(transport);
+        return rejected;
+    }
+
+    private static void sendOne(Transport transport, MimeMessage message) throws MessagingException {
+        transport.sendMessage(message, message.getAllRecipients());
+    }
+
+    private Transport reconnect(Transport broken) throws MessagingException {
+        closeQuietly(broken);
+        Transport transport = session.getTransport(protocol());
+        transport.connect(mailSender.getHost(), mailSender.getPort(), mailSender.getUsername(), mailSender.getPassword());
+        return transport;
+    }
+
+    // Resolved like JavaMailSenderImpl does: its own setting, then mail.transport.protocol, then smtp
+    private String protocol() {
+        String protocol = mailSender.getProtocol();
+        if (protocol == null) {
+            protocol = session.getProperty("mail.transport.protocol");
+        }
+        return protocol != null ? protocol : JavaMailSenderImpl.DEFAULT_PROTOCOL;
+    }
+
+    private static void closeQuietly(Transport transport) {
+        if (transport == null) {
+            return;
+        }
+        try {
+            transport.close();
+        } catch (MessagingException e) {
+            log.debug("Could not close a campaign connection", e);
+        }
+    }
+
+    // Closes every pooled connection; call once no batch is being sent
+    @Override
+    public void close() {
+        Transport transport;
+        while ((transport = idle.poll()) != null) {
+            closeQuietly(transport);
+        }
+    }
+}
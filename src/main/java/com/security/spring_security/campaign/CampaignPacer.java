@@ -0,0 +1,37 @@
+package com.security.spring_security.campaign;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+    Spaces the batches of a campaign so that, across every sender thread, mail leaves at most at the configured rate. Each batch
+    reserves the next free slot and sleeps until it starts; a batch of n messages moves the slot n intervals ahead. Time spent idle
+    is not banked, so a sender that was slow does not earn a burst afterwards. A rate of zero or less disables pacing.
+ */
+
+final class CampaignPacer {
+    private final long nanosPerMessage; // 0 when unpaced
+    private long nextSlot; // System.nanoTime() at which the next batch may start; guarded by this
+
+    CampaignPacer(double messagesPerSecond) {
+        this.nanosPerMessage = messagesPerSecond > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / messagesPerSecond) : 0;
+    }
+
+    // Blocks until a batch of the given size may be sent
+    void acquire(int messages) throws InterruptedException {
+        if (nanosPerMessage == 0) {
+            return;
+        }
+        long wait;
+        synchronized (this) {
+            long now = System.nanoTime();
+            if (nextSlot - now < 0) {
+                nextSlot = now;
+            }
+            wait = nextSlot - now;
+            nextSlot += messages * nanosPerMessage;
+        }
+        if (wait > 0) {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+    }
+}
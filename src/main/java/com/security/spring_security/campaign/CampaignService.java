@@ -0,0 +1,410 @@
+package com.security.spring_security.campaign;
+
+import com.security.spring_security.dto.CampaignStatus;
+import com.security.spring_security.entity.CampaignCheckpoint;
+import com.security.spring_security.repository.OurUserRepository;
+import com.security.spring_security.sharding.ShardRouter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.Message;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.AddressException;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.data.domain.Limit;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/*
+    The CampaignService mails one message to every user, e.g. to announce a policy change, without holding the user table in
+    memory. One campaign runs at a time, on its own thread:
+
+    - Recipients are read shard by shard in user ID order, in keyset chunks of app.campaign.chunk-size rows, each streamed through
+      a read-only JDBC cursor. The chunks bound both the read transaction (it stays open while its chunk is being mailed) and what
+      the MySQL driver buffers, since it reads whole result sets unless useCursorFetch is set.
+    - The subject and body are compiled into CampaignTemplates once, and rendered per recipient into reused buffers.
+    - Messages are grouped into batches of app.campaign.batch-size and sent by app.campaign.connections threads, each batch over
+      one of as many persistent SMTP connections (CampaignMailer), paced to app.campaign.rate messages per second across all of
+      them (CampaignPacer). At most two batches per connection are built ahead, so memory does not grow with the user count.
+    - Batches can finish out of order, so each shard's checkpoint only moves past a batch once every earlier batch is done too, and
+      is saved right away (CampaignCheckpoints). Starting a campaign with the name of one that failed, was cancelled or was
+      interrupted by a restart resumes after its checkpoints; delivery is at least once, and a resume may repeat the batches that
+      were in flight when it stopped.
+
+    Addresses the server rejects are counted as failed and not retried. Any other send error stops the campaign as FAILED.
+ */
+
+@Service // Runs mail campaigns for the admin campaign endpoints
+@ConditionalOnProperty(name = "app.user-store.type", havingValue = "jpa", matchIfMissing = true)
+public class CampaignService {
+    private static final Logger log = LoggerFactory.getLogger(CampaignService.class);
+    private static final int MAX_NAME_LENGTH = 100; // Column length of CampaignCheckpoint.campaign
+    private static final int BATCHES_PER_CONNECTION = 2; // Built ahead of the senders
+
+    private final OurUserRepository ourUserRepository; // Streams recipients on the shard selected by the ShardRouter
+    private final ShardRouter shardRouter;
+    private final CampaignCheckpoints checkpoints;
+    private final JavaMailSenderImpl mailSender; // Lazy proxy; server settings and Session of the pooled connections
+    private final String from; // Sender address; the SMTP username when blank
+    private final int connections;
+    private final int batchSize;
+    private final int chunkSize;
+    private final double rate;
+    private final Counter sentCounter;
+    private final Counter failedCounter;
+    private final ExecutorService runner; // Single campaign thread
+    private volatile Run current; // Last campaign started, or null
+
+    public CampaignService(OurUserRepository ourUserRepository, ShardRouter shardRouter, CampaignCheckpoints checkpoints,
+                           @Lazy JavaMailSenderImpl mailSender,
+                           @Value("${app.campaign.from:}") String from,
+                           @Value("${app.campaign.connections:2}") int connections,
+                           @Value("${app.campaign.batch-size:50}") int batchSize,
+                           @Value("${app.campaign.chunk-size:1000}") int chunkSize,
+                           @Value("${app.campaign.rate:20}") double rate,
+                           MeterRegistry meterRegistry) {
+        this.ourUserRepository = ourUserRepository;
+        this.shardRouter = shardRouter;
+        this.checkpoints = checkpoints;
+        this.mailSender = mailSender;
+        this.from = from;
+        this.connections = Math.max(1, connections);
+        this.batchSize = Math.max(1, batchSize);
+        this.chunkSize = Math.max(this.batchSize, chunkSize);
+        this.rate = rate;
+        this.sentCounter = meterRegistry.counter("mail.campaign.sent");
+        this.failedCounter = meterRegistry.counter("mail.campaign.failed");
+        this.runner = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "campaign-runner");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Starts or resumes the named campaign in the background; throws IllegalStateException while another one runs and
+    // IllegalArgumentException for a bad name or template
+    public synchronized CampaignStatus start(String name, String subject, String body) {
+        if (name == null || name.isBlank() || name.length() > MAX_NAME_LENGTH) {
+            throw new IllegalArgumentException("A campaign needs a name of at most " + MAX_NAME_LENGTH + " characters");
+        }
+        if (subject == null || subject.isBlank() || body == null || body.isBlank()) {
+            throw new IllegalArgumentException("A campaign needs a subject and a body");
+        }
+        Run run = new Run(name, CampaignTemplate.compile(subject), CampaignTemplate.compile(body));
+        if (current != null && current.finishedAt == null) {
+            throw new IllegalStateException("Campaign " + current.name + " is still running");
+        }
+        current = run;
+        runner.execute(() -> run(run));
+        return run.status();
+    }
+
+    // Progress of the last campaign started, or null when none was started since this instance came up
+    public CampaignStatus status() {
+        Run run = current;
+        return run != null ? run.status() : null;
+    }
+
+    // Stops the running campaign after the batches in flight; returns false when none is running
+    public boolean cancel() {
+        Run run = current;
+        if (run == null || run.finishedAt != null) {
+            return false;
+        }
+        run.cancelled = true;
+        return true;
+    }
+
+    private void run(Run run) {
+        log.info("Campaign {} started", run.name);
+        ExecutorService senders = Executors.newFixedThreadPool(connections, new SenderThreads());
+        CampaignMailer mailer = new CampaignMailer(mailSender);
+        Semaphore inFlight = new Semaphore(connections * BATCHES_PER_CONNECTION); // Batches built but not sent yet
+        CampaignPacer pacer = new CampaignPacer(rate);
+        try {
+            InternetAddress sender = new InternetAddress(from.isBlank() ? mailSender.getUsername() : from, true);
+            for (int shardId : shardRouter.getShardIds()) {
+                if (run.stopped()) {
+                    break;
+                }
+                ShardProgress progress = new ShardProgress(checkpoints.find(run.name, shardId));
+                run.sent.addAndGet(progress.checkpoint.getSent());
+                run.failed.addAndGet(progress.checkpoint.getFailed());
+                if (!progress.checkpoint.isCompleted()) {
+                    Batches batches = new Batches(run, progress, sender, mailer, pacer, senders, inFlight);
+                    long after = progress.checkpoint.getLastUserId();
+                    int rows;
+                    do {
+                        long chunkAfter = after;
+                        rows = shardRouter.read(shardId, () -> batches.sendChunk(chunkAfter));
+                        after = batches.streamedUpTo;
+                    } while (rows == chunkSize && !run.stopped());
+                    inFlight.acquire(connections * BATCHES_PER_CONNECTION); // Waits for the shard's last batches
+                    inFlight.release(connections * BATCHES_PER_CONNECTION);
+                    progress.finish(run.stopped());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            run.fail(e);
+        } catch (AddressException | RuntimeException e) {
+            run.fail(e);
+        } finally {
+            senders.shutdown();
+            try {
+                senders.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            mailer.close();
+            run.finish();
+            log.info("Campaign {} ended {}: {} sent, {} failed", run.name, run.state(), run.sent.get(), run.failed.get());
+        }
+    }
+
+    @PreDestroy // Stops the running campaign; it resumes from its checkpoints when started again
+    void shutdown() {
+        cancel();
+        runner.shutdown();
+        try {
+            runner.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Builds the batches of one shard and hands them to the senders
+    private final class Batches {
+        private final Run run;
+        private final ShardProgress progress;
+        private final InternetAddress sender;
+        private final CampaignMailer mailer;
+        private final CampaignPacer pacer;
+        private final ExecutorService senders;
+        private final Semaphore inFlight;
+        private final StringBuilder subjectBuffer = new StringBuilder(); // Reused for every recipient
+        private final StringBuilder bodyBuffer = new StringBuilder();
+        private long streamedUpTo; // Last user ID read; only touched by the campaign thread
+
+        private Batches(Run run, ShardProgress progress, InternetAddress sender, CampaignMailer mailer, CampaignPacer pacer,
+                        ExecutorService senders, Semaphore inFlight) {
+            this.run = run;
+            this.progress = progress;
+            this.sender = sender;
+            this.mailer = mailer;
+            this.pacer = pacer;
+            this.senders = senders;
+            this.inFlight = inFlight;
+        }
+
+        // Mails up to chunkSize recipients after the user ID; runs inside a read transaction on the shard and returns the rows read
+        private int sendChunk(long afterUserId) {
+            int rows = 0;
+            List<MimeMessage> batch = new ArrayList<>(batchSize);
+            int invalid = 0; // Recipients of the batch whose address could not be used
+            try (Stream<Object[]> recipients = ourUserRepository.streamRecipientsAfter(afterUserId, Limit.of(chunkSize))) {
+                for (Object[] row : (Iterable<Object[]>) recipients::iterator) {
+                    if (run.stopped()) {
+                        return rows; // The unsent part of the batch is picked up by a resume
+                    }
+                    long userId = (Long) row[0];
+                    rows++;
+                    streamedUpTo = userId;
+                    try {
+                        batch.add(message(userId, (String) row[1]));
+                    } catch (MessagingException e) {
+                        invalid++;
+                    }
+                    if (batch.size() + invalid == batchSize) {
+                        submit(batch, invalid, userId);
+                        batch = new ArrayList<>(batchSize);
+                        invalid = 0;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for a sender", e);
+            }
+            if (batch.size() + invalid > 0) {
+                try {
+                    submit(batch, invalid, streamedUpTo);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for a sender", e);
+                }
+            }
+            return rows;
+        }
+
+        private MimeMessage message(long userId, String username) throws MessagingException {
+            MimeMessage message = new MimeMessage(mailer.getSession());
+            message.setFrom(sender);
+            message.setRecipient(Message.RecipientType.TO, new InternetAddress(username, true));
+            message.setSubject(run.subject.render(userId, username, subjectBuffer), "UTF-8");
+            message.setText(run.body.render(userId, username, bodyBuffer), "UTF-8");
+            message.saveChanges();
+            return message;
+        }
+
+        private void submit(List<MimeMessage> messages, int invalid, long lastUserId) throws InterruptedException {
+            inFlight.acquire(); // Blocks while every sender has its share of batches
+            Batch batch = progress.enqueue(lastUserId);
+            senders.execute(() -> {
+                try {
+                    if (run.stopped()) {
+                        return; // Left for a resume, like everything after it
+                    }
+                    int rejected = 0;
+                    if (!messages.isEmpty()) {
+                        pacer.acquire(messages.size());
+                        rejected = mailer.send(messages);
+                    }
+                    int sent = messages.size() - rejected;
+                    sentCounter.increment(sent);
+                    failedCounter.increment(rejected + invalid);
+                    run.sent.addAndGet(sent);
+                    run.failed.addAndGet(rejected + invalid);
+                    progress.completed(batch, sent, rejected + invalid);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    run.fail(e);
+                } catch (MessagingException | RuntimeException e) {
+                    run.fail(e);
+                } finally {
+                    inFlight.release();
+                }
+            });
+        }
+    }
+
+    // Orders the batches of one shard so its checkpoint only covers recipients whose batches have all completed
+    private final class ShardProgress {
+        private final CampaignCheckpoint checkpoint; // Guarded by this
+        private final ArrayDeque<Batch> inFlight = new ArrayDeque<>(); // In submission order; guarded by this
+
+        private ShardProgress(CampaignCheckpoint checkpoint) {
+            this.checkpoint = checkpoint;
+        }
+
+        private synchronized Batch enqueue(long lastUserId) {
+            Batch batch = new Batch(lastUserId);
+            inFlight.add(batch);
+            return batch;
+        }
+
+        // Marks the batch done and saves the checkpoint if the batches before it are done as well
+        private synchronized void completed(Batch batch, int sent, int failed) {
+            batch.sent = sent;
+            batch.failed = failed;
+            batch.done = true;
+            boolean advanced = false;
+            while (!inFlight.isEmpty() && inFlight.peek().done) {
+                Batch head = inFlight.poll();
+                checkpoint.setLastUserId(head.lastUserId);
+                checkpoint.setSent(checkpoint.getSent() + head.sent);
+                checkpoint.setFailed(checkpoint.getFailed() + head.failed);
+                advanced = true;
+            }
+            if (advanced) {
+                checkpoints.save(checkpoint);
+            }
+        }
+
+        // Marks the shard done once every recipient was read and every batch completed
+        private synchronized void finish(boolean stopped) {
+            if (!stopped && inFlight.isEmpty()) {
+                checkpoint.setCompleted(true);
+                checkpoints.save(checkpoint);
+            }
+        }
+    }
+
+    private static final class Batch {
+        private final long lastUserId; // Highest user ID in the batch
+        private int sent;
+        private int failed;
+        private boolean done; // Guarded by the ShardProgress
+
+        private Batch(long lastUserId) {
+            this.lastUserId = lastUserId;
+        }
+    }
+
+    // One campaign run
+    private static final class Run {
+        private final String name;
+        private final CampaignTemplate subject;
+        private final CampaignTemplate body;
+        private final Instant startedAt = Instant.now();
+        private final AtomicLong sent = new AtomicLong(); // Including earlier runs, as loaded from the checkpoints
+        private final AtomicLong failed = new AtomicLong();
+        private volatile boolean cancelled;
+        private volatile Throwable failure; // First send or checkpoint error
+        private volatile Instant finishedAt;
+
+        private Run(String name, CampaignTemplate subject, CampaignTemplate body) {
+            this.name = name;
+            this.subject = subject;
+            this.body = body;
+        }
+
+        private boolean stopped() {
+            return cancelled || failure != null;
+        }
+
+        private synchronized void fail(Throwable e) {
+            if (failure == null) {
+                failure = e;
+                log.warn("Campaign {} failed, it resumes from its checkpoints when started again", name, e);
+            }
+        }
+
+        private void finish() {
+            finishedAt = Instant.now();
+        }
+
+        private String state() {
+            if (finishedAt == null) {
+                return "RUNNING";
+            }
+            return failure != null ? "FAILED" : cancelled ? "CANCELLED" : "COMPLETED";
+        }
+
+        private CampaignStatus status() {
+            Throwable error = failure;
+            return new CampaignStatus(name, state(), sent.get(), failed.get(), startedAt, finishedAt,
+                    error != null ? error.toString() : null);
+        }
+    }
+
+    // Daemon threads named campaign-sender-N
+    private static final class SenderThreads implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "campaign-sender-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
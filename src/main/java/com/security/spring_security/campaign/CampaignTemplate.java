@@ -0,0 +1,69 @@
+package com.security.spring_security.campaign;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+    A CampaignTemplate is the subject or body of a campaign, parsed once when the campaign starts into literal segments and
+    placeholders, so rendering it for each recipient is a few appends to a reused StringBuilder with no scanning or regex. The
+    placeholders are {{username}} and {{userId}}; anything else between double braces is rejected when the template is compiled
+    rather than mailed out verbatim to every user.
+ */
+
+public final class CampaignTemplate {
+    private static final String OPEN = "{{";
+    private static final String CLOSE = "}}";
+    private static final int USERNAME = 0;
+    private static final int USER_ID = 1;
+
+    private final String[] literals; // literals[i] precedes fields[i]; one more literal than fields
+    private final int[] fields; // USERNAME or USER_ID
+    private final String constant; // The whole text when there are no placeholders, otherwise null
+
+    private CampaignTemplate(String[] literals, int[] fields) {
+        this.literals = literals;
+        this.fields = fields;
+        this.constant = fields.length == 0 ? literals[0] : null;
+    }
+
+    // Parses the text; throws IllegalArgumentException on an unknown or unterminated placeholder
+    public static CampaignTemplate compile(String text) {
+        List<String> literals = new ArrayList<>();
+        List<Integer> fields = new ArrayList<>();
+        int from = 0;
+        int open;
+        while ((open = text.indexOf(OPEN, from)) >= 0) {
+            int close = text.indexOf(CLOSE, open + OPEN.length());
+            if (close < 0) {
+                throw new IllegalArgumentException("Unterminated placeholder at " + open);
+            }
+            String name = text.substring(open + OPEN.length(), close).trim();
+            switch (name) {
+                case "username" -> fields.add(USERNAME);
+                case "userId" -> fields.add(USER_ID);
+                default -> throw new IllegalArgumentException("Unknown placeholder {{" + name + "}}, use {{username}} or {{userId}}");
+            }
+            literals.add(text.substring(from, open));
+            from = close + CLOSE.length();
+        }
+        literals.add(text.substring(from));
+        return new CampaignTemplate(literals.toArray(new String[0]), fields.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    // Text for one recipient; buffer is cleared and reused, and a template without placeholders returns the same string every time
+    public String render(long userId, String username, StringBuilder buffer) {
+        if (constant != null) {
+            return constant;
+        }
+        buffer.setLength(0);
+        for (int i = 0; i < fields.length; i++) {
+            buffer.append(literals[i]);
+            if (fields[i] == USERNAME) {
+                buffer.append(username);
+            } else {
+                buffer.append(userId);
+            }
+        }
+        return buffer.append(literals[fields.length]).toString();
+    }
+}
@@ -5,6 +5,9 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 
 /*
     The AppStartUpConfig class is a Spring configuration class that initializes an admin user during application startup.
@@ -13,6 +16,9 @@ import org.springframework.context.annotation.Configuration;
     The CommandLineRunner checks if the user database is empty by calling the isUserDatabaseEmpty() method in the UserManagementService.
     If no users exist, it creates an admin user with the injected credentials using the createAdminUserIfNotExists method.
     This ensures the application has a secure admin user available immediately after startup, preventing unauthorized access or an empty user database scenario.
+
+    When app.startup.async-admin-seed is enabled (the fast-startup profile does this), the count() query and the BCrypt encode
+    run on a background thread instead, so they no longer delay the application from reporting itself as started.
  */
 
 @Configuration // Marks this class as a source of bean definitions for the Spring container
@@ -27,11 +33,22 @@ public class AppStartUpConfig {
     @Value("${spring.security.user.role}") // Injects the admin role value from the application properties
     private String adminRole;
 
+    @Value("${app.startup.async-admin-seed:false}") // Moves admin seeding off the startup critical path when true
+    private boolean asyncAdminSeed;
+
     @Bean // Defines a bean that will run at application startup
+    @Order(Ordered.LOWEST_PRECEDENCE - 2) // Checks for an empty database before the DatasetGenerator fills it
     public CommandLineRunner initAdminUser(UserManagementService userManagementService) {
         return args -> {
-            if (userManagementService.isUserDatabaseEmpty()) // Checks if the user database is empty
-                userManagementService.createAdminUserIfNotExists(adminEmail, adminPassword, adminRole); // Creates an admin user if no users exist
+            Runnable seedAdmin = () -> {
+                if (userManagementService.isUserDatabaseEmpty()) // Checks if the user database is empty
+                    userManagementService.createAdminUserIfNotExists(adminEmail, adminPassword, adminRole); // Creates an admin user if no users exist
+            };
+            if (asyncAdminSeed) {
+                new SimpleAsyncTaskExecutor("admin-seed-").execute(seedAdmin); // Seeds the admin user on a background thread
+            } else {
+                seedAdmin.run(); // Seeds the admin user before startup completes
+            }
         };
     }
 }
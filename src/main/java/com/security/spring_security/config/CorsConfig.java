@@ -1,4 +1,78 @@
 package com.security.spring_security.config;
 
+import com.security.spring_security.cors.CorsOriginMatcher;
+import com.security.spring_security.cors.CorsProperties;
+import com.security.spring_security.cors.PreflightFilter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.web.cors.CorsConfiguration;
+import org.springframework.web.cors.CorsConfigurationSource;
+import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
+
+/*
+    The CorsConfig class builds the cross-origin setup from app.cors.* (see CorsProperties).
+
+    The CorsConfigurationSource is picked up by .cors(Customizer.withDefaults()) in SecurityConfig, so Spring Security's CorsFilter
+    adds the CORS headers to actual cross-origin requests. Its origin check is replaced by the precompiled CorsOriginMatcher instead
+    of scanning origin lists and patterns per request.
+
+    Preflight requests are answered by the PreflightFilter, registered ahead of every other servlet filter, with the same settings
+    and an Access-Control-Max-Age of app.cors.max-age so browsers only repeat them rarely. With app.cors.preflight-fast-path=false
+    they go through the security chain again and the CorsFilter answers them there.
+ */
+
+@Configuration // Always loaded; with no allowed origins every cross-origin request is refused
+@EnableConfigurationProperties(CorsProperties.class)
 public class CorsConfig {
+
+    @Bean
+    public CorsOriginMatcher corsOriginMatcher(CorsProperties properties) {
+        CorsOriginMatcher matcher = new CorsOriginMatcher(properties.getAllowedOrigins());
+        if (matcher.isAny() && properties.isAllowCredentials()) {
+            throw new IllegalStateException("app.cors.allow-credentials cannot be combined with the * origin"); // Any site could act as the user
+        }
+        return matcher;
+    }
+
+    @Bean
+    public CorsConfigurationSource corsConfigurationSource(CorsProperties properties, CorsOriginMatcher corsOriginMatcher) {
+        CorsConfiguration configuration = new CompiledCorsConfiguration(corsOriginMatcher);
+        configuration.setAllowedMethods(properties.getAllowedMethods());
+        configuration.setAllowedHeaders(properties.getAllowedHeaders());
+        configuration.setExposedHeaders(properties.getExposedHeaders());
+        configuration.setAllowCredentials(properties.isAllowCredentials());
+        configuration.setMaxAge(properties.getMaxAge());
+        UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
+        source.registerCorsConfiguration("/**", configuration);
+        return source;
+    }
+
+    @Bean // First servlet filter, ahead of request observation and the security chain
+    @ConditionalOnProperty(name = "app.cors.preflight-fast-path", havingValue = "true", matchIfMissing = true)
+    public FilterRegistrationBean<PreflightFilter> preflightFilter(CorsProperties properties, CorsOriginMatcher corsOriginMatcher,
+                                                                   MeterRegistry meterRegistry) {
+        FilterRegistrationBean<PreflightFilter> registration =
+                new FilterRegistrationBean<>(new PreflightFilter(properties, corsOriginMatcher, meterRegistry));
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return registration;
+    }
+
+    // CorsConfiguration whose origin check is the precompiled matcher
+    static final class CompiledCorsConfiguration extends CorsConfiguration {
+        private final CorsOriginMatcher matcher;
+
+        CompiledCorsConfiguration(CorsOriginMatcher matcher) {
+            this.matcher = matcher;
+        }
+
+        @Override
+        public String checkOrigin(String origin) {
+            return matcher.matches(origin) ? origin : null;
+        }
+    }
 }
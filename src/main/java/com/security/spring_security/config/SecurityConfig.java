@@ -1,14 +1,17 @@
 package com.security.spring_security.config;
 
+import com.security.spring_security.apikey.ApiKeyAuthFilter;
+import com.security.spring_security.authentication.CachingAuthenticationProvider;
+import com.security.spring_security.authentication.VerifiedCredentialCache;
+import com.security.spring_security.authorization.CompiledAuthorizationManager;
 import com.security.spring_security.jwt.JWTAuthFilter;
+import com.security.spring_security.profiling.ProfiledPasswordEncoder;
 import com.security.spring_security.service.OurUserDetailsService;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.AuthenticationProvider;
-import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
 import org.springframework.security.config.Customizer;
-import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
 import org.springframework.security.config.annotation.authentication.configuration.AuthenticationConfiguration;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
@@ -28,14 +31,18 @@ import org.springframework.web.cors.CorsConfigurationSource;
 
     The core functionality is defined in the securityFilterChain method, which configures the security policies.
     This method starts by disabling CSRF protection, as this is a stateless API where CSRF tokens are unnecessary.
-    It then enables CORS (Cross-Origin Resource Sharing), which allows requests from other domains.
-    The authorization rules are specified next, allowing public access to endpoints such as login and specific API paths.
+    It then enables CORS (Cross-Origin Resource Sharing) for the origins in app.cors.allowed-origins, using the CorsConfigurationSource from CorsConfig;
+    preflight requests never get this far, the PreflightFilter answers them before the security filter chain.
+    The authorization rules are declared in EndpointAuthorizationRules and enforced by the CompiledAuthorizationManager,
+    which resolves each request against a precompiled path trie and role bitmasks instead of evaluating @PreAuthorize SpEL expressions.
 
     Session management is configured as stateless to ensure that no session data is stored on the server, making it suitable for APIs.
     The method also integrates a custom authentication provider and adds the JWTAuthFilter before the UsernamePasswordAuthenticationFilter,
-    allowing the application to validate and process JWT tokens.
+    allowing the application to validate and process JWT tokens. The ApiKeyAuthFilter runs just before it and authenticates
+    machine clients that send an X-API-Key header instead.
 
-    The authenticationProvider bean configures a DaoAuthenticationProvider, which links the OurUserDetailsService for fetching user data and a PasswordEncoder
+    The authenticationProvider bean configures a DaoAuthenticationProvider (a CachingAuthenticationProvider, which can skip the hash check
+    for listed service accounts that logged in with the same credentials moments ago), which links the OurUserDetailsService for fetching user data and a PasswordEncoder
     for securely hashing passwords. The passwordEncoder bean uses the bcrypt algorithm with a strength of 12 to ensure robust password security.
     Additionally, the authenticationManager bean exposes an AuthenticationManager, enabling programmatic authentication for login or other scenarios.
 
@@ -45,15 +52,21 @@ import org.springframework.web.cors.CorsConfigurationSource;
 
 @Configuration // Marks this class as a source of bean definitions for the Spring container
 @EnableWebSecurity // Enables Spring Security for the application
-@EnableMethodSecurity // Enables method-level security annotations like @PreAuthorize
 public class SecurityConfig {
 
     private final JWTAuthFilter jwtAuthFilter; // Custom JWT authentication filter
+    private final ApiKeyAuthFilter apiKeyAuthFilter; // Authenticates X-API-Key requests
     private final OurUserDetailsService ourUserDetailsService; // Custom UserDetailsService implementation
+    private final CompiledAuthorizationManager compiledAuthorizationManager; // Precompiled endpoint authorization rules
+    private final VerifiedCredentialCache verifiedCredentialCache; // Recent password verifications of service accounts
 
-    public SecurityConfig(JWTAuthFilter jwtAuthFilter, OurUserDetailsService ourUserDetailsService) {
+    public SecurityConfig(JWTAuthFilter jwtAuthFilter, ApiKeyAuthFilter apiKeyAuthFilter, OurUserDetailsService ourUserDetailsService,
+                          CompiledAuthorizationManager compiledAuthorizationManager, VerifiedCredentialCache verifiedCredentialCache) {
         this.jwtAuthFilter = jwtAuthFilter; // Injecting JWTAuthFilter
+        this.apiKeyAuthFilter = apiKeyAuthFilter; // Injecting ApiKeyAuthFilter
         this.ourUserDetailsService = ourUserDetailsService; // Injecting OurUserDetailsService
+        this.compiledAuthorizationManager = compiledAuthorizationManager; // Injecting CompiledAuthorizationManager
+        this.verifiedCredentialCache = verifiedCredentialCache; // Injecting VerifiedCredentialCache
     }
 
     @Bean
@@ -61,27 +74,18 @@ public class SecurityConfig {
         httpSecurity
                 .csrf(AbstractHttpConfigurer::disable) // Disables CSRF protection for stateless APIs
 
-                .cors(Customizer.withDefaults()) // Enables CORS with default configuration
+                .cors(Customizer.withDefaults()) // Enables CORS with the CorsConfigurationSource bean from CorsConfig
 
                 .authorizeHttpRequests(auth -> auth
-                        .requestMatchers(
-                                "/api/auth/login",           // Login endpoint
-                                "/api/auth/register",        // Registration endpoint
-                                "/public/**",                // Any public resources
-                                "/actuator/metrics/**",      // Actuator metrics for monitoring
-                                "/targets",                  // Prometheus targets
-                                "/actuator/prometheus",      // Prometheus metrics
-                                "/api/auth/send-reset-code/**", // Password reset code
-                                "/api/auth/change-password"  // Change password
-                        ).permitAll() // Allows public access to the listed endpoints
-
-                        .anyRequest().authenticated() // Requires authentication for all other endpoints
+                        .anyRequest().access(compiledAuthorizationManager) // Public endpoints and role rules come from EndpointAuthorizationRules
                 )
 
                 .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS)) // Configures session management as stateless for JWT-based authentication
 
                 .authenticationProvider(authenticationProvider()) // Sets the custom authentication provider
 
+                .addFilterBefore(apiKeyAuthFilter, UsernamePasswordAuthenticationFilter.class) // Adds the API key filter first, so key requests skip the JWT path
+
                 .addFilterBefore(jwtAuthFilter, UsernamePasswordAuthenticationFilter.class); // Adds JWT filter before the default UsernamePasswordAuthenticationFilter
 
         return httpSecurity.build(); // Builds and returns the SecurityFilterChain
@@ -89,7 +93,7 @@ public class SecurityConfig {
 
     @Bean
     public AuthenticationProvider authenticationProvider() {
-        DaoAuthenticationProvider daoAuthProvider = new DaoAuthenticationProvider(); // Creates a DAO-based authentication provider
+        CachingAuthenticationProvider daoAuthProvider = new CachingAuthenticationProvider(verifiedCredentialCache); // Creates a DAO-based authentication provider
         daoAuthProvider.setUserDetailsService(ourUserDetailsService); // Links the custom UserDetailsService
         daoAuthProvider.setPasswordEncoder(passwordEncoder()); // Sets the password encoder for hashing and validation
         return daoAuthProvider; // Returns the authentication provider
@@ -97,7 +101,8 @@ public class SecurityConfig {
 
     @Bean
     public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder(12); // Creates a BCrypt password encoder with strength 12
+        // Creates a BCrypt password encoder with strength 12, wrapped so slow hashes show up as JFR events
+        return new ProfiledPasswordEncoder(new BCryptPasswordEncoder(12));
     }
 
     @Bean
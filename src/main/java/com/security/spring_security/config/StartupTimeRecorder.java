@@ -0,0 +1,55 @@
+package com.security.spring_security.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/*
+    The StartupTimeRecorder measures how long a cold instance takes to become useful.
+    It logs the JVM uptime when the ApplicationReadyEvent fires and again when the very first HTTP request has been served,
+    which is the time-to-first-request figure used to compare the default and fast-startup configurations.
+    After the first request has been recorded the filter only performs a single volatile read per request.
+ */
+
+@Component // Registers the recorder as a servlet filter and event listener
+@Order(Ordered.HIGHEST_PRECEDENCE) // Runs before every other filter so the full first request is measured
+public class StartupTimeRecorder extends OncePerRequestFilter {
+    private static final Logger log = LoggerFactory.getLogger(StartupTimeRecorder.class);
+
+    private final AtomicBoolean firstRequestRecorded = new AtomicBoolean(); // Flips once the first request completes
+
+    @EventListener(ApplicationReadyEvent.class) // Fires once the context is refreshed and all runners have completed
+    public void onApplicationReady() {
+        log.info("Application ready after {} ms of JVM uptime", jvmUptimeMillis());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        try {
+            filterChain.doFilter(request, response); // Serves the request first so its latency is included
+        } finally {
+            if (!firstRequestRecorded.get() && firstRequestRecorded.compareAndSet(false, true)) {
+                log.info("First request {} {} served after {} ms of JVM uptime",
+                        request.getMethod(), request.getRequestURI(), jvmUptimeMillis());
+            }
+        }
+    }
+
+    // Milliseconds since the JVM was launched, which includes class loading before Spring starts
+    private static long jvmUptimeMillis() {
+        return ManagementFactory.getRuntimeMXBean().getUptime();
+    }
+}
@@ -0,0 +1,47 @@
+package com.security.spring_security.controller;
+
+import com.security.spring_security.apikey.ApiKeyService;
+import com.security.spring_security.dto.ApiKeyDTO;
+import com.security.spring_security.dto.ApiKeyRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController // Admin endpoints for API keys; access is declared in EndpointAuthorizationRules
+@RequestMapping("/api/admin/api-keys") // Base path for all endpoints in this controller
+public class ApiKeyController {
+
+    private final ApiKeyService apiKeyService; // Issues, lists and revokes keys
+
+    public ApiKeyController(ApiKeyService apiKeyService) {
+        this.apiKeyService = apiKeyService;
+    }
+
+    // Lists every key without its secret
+    @GetMapping
+    public ResponseEntity<List<ApiKeyDTO>> listKeys() {
+        return ResponseEntity.ok(apiKeyService.list());
+    }
+
+    // Issues a key for an existing user; the response is the only time the full key is shown
+    @PostMapping
+    public ResponseEntity<ApiKeyDTO> issueKey(@RequestBody ApiKeyRequest apiKeyRequest) {
+        if (apiKeyRequest.getUsername() == null || apiKeyRequest.getUsername().isBlank()) {
+            return ResponseEntity.badRequest().build(); // A key always belongs to a user
+        }
+        try {
+            return ResponseEntity.status(HttpStatus.CREATED).body(apiKeyService.issue(apiKeyRequest.getUsername(), apiKeyRequest.getName()));
+        } catch (UsernameNotFoundException e) {
+            return ResponseEntity.notFound().build(); // No such user
+        }
+    }
+
+    // Revokes a key by its prefix
+    @DeleteMapping("/{prefix}")
+    public ResponseEntity<Void> revokeKey(@PathVariable String prefix) {
+        return apiKeyService.revoke(prefix) ? ResponseEntity.noContent().build() : ResponseEntity.notFound().build();
+    }
+}
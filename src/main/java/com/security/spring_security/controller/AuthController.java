@@ -3,16 +3,19 @@ package com.security.spring_security.controller;
 import com.security.spring_security.dto.*;
 import com.security.spring_security.entity.OurUser;
 import com.security.spring_security.entity.PasswordReset;
+import com.security.spring_security.index.UsernameSearchIndex;
 import com.security.spring_security.repository.PasswordResetCodeRepository;
 import com.security.spring_security.service.PasswordResetCodeService;
+import com.security.spring_security.service.UserListingCache;
 import com.security.spring_security.service.UserManagementService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.web.bind.annotation.*;
-
-import java.util.List;
+import org.springframework.web.context.request.WebRequest;
 
 @RestController // Marks this class as a Spring REST controller
 @RequestMapping("/api") // Base path for all endpoints in this controller
@@ -34,9 +37,22 @@ public class AuthController {
         return ResponseEntity.ok(authResponse); // Returns the authentication response
     }
 
-    // Public endpoint for user registration
+    // Public endpoint for exchanging a refresh token for a new token pair; /auth/refresh-token is kept as an alias
+    @PostMapping({"/auth/refresh", "/auth/refresh-token"}) // Maps POST requests to /api/auth/refresh
+    public ResponseEntity<AuthResponse> refreshToken(@RequestBody AuthResponse refreshTokenRequest) {
+        try {
+            return ResponseEntity.ok(userManagementService.refreshToken(refreshTokenRequest)); // Returns the new tokens
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build(); // Invalid, expired or unknown refresh token
+        }
+    }
+
+    // Public endpoint for user registration; with ?login=true the new user is also logged in and the tokens are returned
     @PostMapping("/auth/register") // Maps POST requests to /api/auth/register
-    public ResponseEntity<String> register(@RequestBody RegisterRequest registerRequest) {
+    public ResponseEntity<?> register(@RequestBody RegisterRequest registerRequest, @RequestParam(defaultValue = "false") boolean login) {
+        if (login) {
+            return ResponseEntity.ok(userManagementService.registerAndLogin(registerRequest)); // Same AuthResponse as /auth/login
+        }
         boolean isRegistered = userManagementService.register(registerRequest); // Registers a new user
         if (isRegistered) {
             return ResponseEntity.ok("User registered successfully!"); // Success response
@@ -69,9 +85,8 @@ public class AuthController {
         }
     }
 
-    // Update user information (ADMIN and USER)
+    // Update user information (ADMIN and USER, enforced by EndpointAuthorizationRules)
     @PutMapping("/users/{userId}") // Maps PUT requests to /api/users/{userId}
-    @PreAuthorize("hasRole('ADMIN') or hasRole('USER')") // Restricts access to ADMIN and USER roles
     public ResponseEntity<String> updateUser(@PathVariable Long userId, @RequestBody OurUser updatedUser) {
         boolean isUpdated = userManagementService.updateUser(userId, updatedUser); // Updates user information
         if (isUpdated) {
@@ -81,9 +96,8 @@ public class AuthController {
         }
     }
 
-    // Delete user (ADMIN only)
+    // Delete user (ADMIN only, enforced by EndpointAuthorizationRules)
     @DeleteMapping("/users/{userId}") // Maps DELETE requests to /api/users/{userId}
-    @PreAuthorize("hasRole('ADMIN')") // Restricts access to ADMIN role
     public ResponseEntity<String> deleteUser(@PathVariable Long userId) {
         boolean isDeleted = userManagementService.deleteUser(userId); // Deletes a user
         if (isDeleted) {
@@ -93,11 +107,33 @@ public class AuthController {
         }
     }
 
-    // List all users (ADMIN only)
+    // Search users by username or email fragment (ADMIN only, enforced by EndpointAuthorizationRules)
+    @GetMapping("/users/search") // Maps GET requests to /api/users/search?q=...&page=0&size=20
+    public ResponseEntity<UserSearchPage> searchUsers(@RequestParam("q") String query,
+                                                      @RequestParam(defaultValue = "0") int page,
+                                                      @RequestParam(defaultValue = "20") int size) {
+        if (query.isBlank() || page < 0 || size < 1 || size > 100 || (long) (page + 1) * size > UsernameSearchIndex.MAX_WINDOW) {
+            return ResponseEntity.badRequest().build(); // Deep pages are not served; narrow the query instead
+        }
+        try {
+            return ResponseEntity.ok(userManagementService.searchUsers(query, page, size)); // Returns the page of matches
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header("Retry-After", "5").build(); // Index still being built
+        }
+    }
+
+    // List all users (ADMIN only, enforced by EndpointAuthorizationRules); answers If-None-Match with 304 while nothing changed
     @GetMapping("/users") // Maps GET requests to /api/users
-    @PreAuthorize("hasRole('ADMIN')") // Restricts access to ADMIN role
-    public ResponseEntity<List<OurUserDTO>> getAllUsers() {
-        List<OurUserDTO> users = userManagementService.getAllUsers(); // Retrieves all users
-        return ResponseEntity.ok(users); // Returns the list of users
+    public ResponseEntity<byte[]> getAllUsers(WebRequest request) {
+        UserListingCache.Listing listing = userManagementService.getUserListing(); // Cached JSON body of all users
+        CacheControl cacheControl = CacheControl.noCache().cachePrivate(); // Clients may keep the body but must revalidate it
+        if (request.checkNotModified(listing.getEtag())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(listing.getEtag()).cacheControl(cacheControl).build();
+        }
+        return ResponseEntity.ok()
+                .eTag(listing.getEtag())
+                .cacheControl(cacheControl)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(listing.getBody()); // Returns the list of users
     }
 }
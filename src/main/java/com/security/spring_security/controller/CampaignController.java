@@ -0,0 +1,47 @@
+package com.security.spring_security.controller;
+
+import com.security.spring_security.campaign.CampaignService;
+import com.security.spring_security.dto.CampaignRequest;
+import com.security.spring_security.dto.CampaignStatus;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController // Admin endpoints for mail campaigns; access is declared in EndpointAuthorizationRules
+@RequestMapping("/api/admin/campaigns") // Base path for all endpoints in this controller
+@ConditionalOnProperty(name = "app.user-store.type", havingValue = "jpa", matchIfMissing = true) // Recipients are streamed from the database
+public class CampaignController {
+
+    private final CampaignService campaignService; // Runs one campaign at a time
+
+    public CampaignController(CampaignService campaignService) {
+        this.campaignService = campaignService;
+    }
+
+    // Starts a campaign, or resumes it when the name was used before; the mail is sent in the background
+    @PostMapping
+    public ResponseEntity<CampaignStatus> startCampaign(@RequestBody CampaignRequest campaignRequest) {
+        try {
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(
+                    campaignService.start(campaignRequest.getName(), campaignRequest.getSubject(), campaignRequest.getBody()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build(); // Missing name or text, or an unknown placeholder
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(campaignService.status()); // Another campaign is running
+        }
+    }
+
+    // Progress of the running or last campaign
+    @GetMapping("/current")
+    public ResponseEntity<CampaignStatus> currentCampaign() {
+        CampaignStatus status = campaignService.status();
+        return status != null ? ResponseEntity.ok(status) : ResponseEntity.notFound().build();
+    }
+
+    // Stops the running campaign after the batches in flight; start it again with the same name to resume
+    @DeleteMapping("/current")
+    public ResponseEntity<Void> cancelCampaign() {
+        return campaignService.cancel() ? ResponseEntity.noContent().build() : ResponseEntity.notFound().build();
+    }
+}
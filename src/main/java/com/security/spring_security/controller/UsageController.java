@@ -0,0 +1,45 @@
+package com.security.spring_security.controller;
+
+import com.security.spring_security.dto.UsageReport;
+import com.security.spring_security.entity.OurUser;
+import com.security.spring_security.usage.UsageMeter;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+
+@RestController // API usage per user and day; access is declared in EndpointAuthorizationRules
+@RequestMapping("/api") // Base path for all endpoints in this controller
+public class UsageController {
+
+    private final UsageMeter usageMeter; // Stored totals plus the counts not flushed yet
+
+    public UsageController(UsageMeter usageMeter) {
+        this.usageMeter = usageMeter;
+    }
+
+    // Usage of the calling user; today (UTC) unless a day is given
+    @GetMapping("/usage")
+    public ResponseEntity<UsageReport> ownUsage(Authentication authentication,
+                                                @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate day) {
+        if (!(authentication.getPrincipal() instanceof OurUser user) || user.getUserId() == null) {
+            return ResponseEntity.notFound().build(); // Not a metered account
+        }
+        return ResponseEntity.ok(report(user.getUserId(), day));
+    }
+
+    // Usage of any user, for billing and support
+    @GetMapping("/admin/usage/{userId}")
+    public ResponseEntity<UsageReport> userUsage(@PathVariable long userId,
+                                                 @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate day) {
+        return ResponseEntity.ok(report(userId, day));
+    }
+
+    private UsageReport report(long userId, LocalDate day) {
+        LocalDate reported = day != null ? day : LocalDate.now(ZoneOffset.UTC);
+        return new UsageReport(userId, reported, usageMeter.usage(userId, reported));
+    }
+}
@@ -0,0 +1,88 @@
+package com.security.spring_security.cors;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/*
+    The CorsOriginMatcher decides whether a request's Origin header is allowed. The configured origins are compiled once: exact
+    origins go into a hash set, and subdomain wildcards (https://*.example.com, optionally with a port) are split into the part
+    before and after the '*'. A check is one hash lookup plus a prefix and suffix comparison per wildcard, and allocates nothing.
+
+    Browsers send the origin serialized in lower case without a trailing slash, so configured origins are normalized the same way
+    and request origins are compared as they are. A wildcard matches one or more subdomain labels, never the bare domain.
+ */
+public final class CorsOriginMatcher {
+    private final boolean any; // "*" was configured
+    private final Set<String> exact = new HashSet<>();
+    private final String[] wildcardPrefixes; // Scheme and "://", e.g. "https://"
+    private final String[] wildcardSuffixes; // Parent domain and port, e.g. ".example.com" or ".example.com:8443"
+
+    public CorsOriginMatcher(Collection<String> origins) {
+        boolean any = false;
+        List<String> prefixes = new ArrayList<>();
+        List<String> suffixes = new ArrayList<>();
+        for (String configured : origins) {
+            String origin = configured.trim().toLowerCase(Locale.ROOT);
+            if (origin.endsWith("/")) {
+                origin = origin.substring(0, origin.length() - 1);
+            }
+            if (origin.equals("*")) {
+                any = true;
+                continue;
+            }
+            int wildcard = origin.indexOf("://*.");
+            if (wildcard > 0) {
+                String suffix = origin.substring(wildcard + 4);
+                if (suffix.indexOf('*') >= 0 || suffix.indexOf('/') >= 0) {
+                    throw new IllegalArgumentException("Invalid CORS origin pattern: " + configured);
+                }
+                prefixes.add(origin.substring(0, wildcard + 3));
+                suffixes.add(suffix);
+            } else if (origin.indexOf('*') >= 0 || !origin.contains("://")) {
+                throw new IllegalArgumentException("CORS origins are scheme://host[:port], https://*.host or *, got " + configured);
+            } else {
+                exact.add(origin);
+            }
+        }
+        this.any = any;
+        this.wildcardPrefixes = prefixes.toArray(String[]::new);
+        this.wildcardSuffixes = suffixes.toArray(String[]::new);
+    }
+
+    public boolean isAny() {
+        return any;
+    }
+
+    public boolean matches(String origin) {
+        if (origin == null) {
+            return false;
+        }
+        if (any || exact.contains(origin)) {
+            return true;
+        }
+        for (int i = 0; i < wildcardPrefixes.length; i++) {
+            String prefix = wildcardPrefixes[i];
+            String suffix = wildcardSuffixes[i];
+            if (origin.length() > prefix.length() + suffix.length() && origin.startsWith(prefix) && origin.endsWith(suffix)
+                    && isSubdomain(origin, prefix.length(), origin.length() - suffix.length())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // The characters the wildcard stands for must be host labels, so "https://evil.com/.example.com" cannot match
+    private static boolean isSubdomain(String origin, int from, int to) {
+        for (int i = from; i < to; i++) {
+            char c = origin.charAt(i);
+            if (!(c >= 'a' && c <= 'z' || c >= '0' && c <= '9' || c == '-' || c == '.')) {
+                return false;
+            }
+        }
+        return origin.charAt(from) != '.' && origin.charAt(to - 1) != '.';
+    }
+}
@@ -0,0 +1,75 @@
+package com.security.spring_security.cors;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+// Cross-origin settings bound from app.cors.*
+@ConfigurationProperties(prefix = "app.cors")
+public class CorsProperties {
+    private List<String> allowedOrigins = new ArrayList<>(); // Exact origins, https://*.example.com subdomain wildcards, or *; empty allows none
+    private List<String> allowedMethods = new ArrayList<>(List.of("GET", "POST", "PUT", "DELETE"));
+    private List<String> allowedHeaders = new ArrayList<>(List.of("Authorization", "Content-Type", "X-API-Key", "If-None-Match"));
+    private List<String> exposedHeaders = new ArrayList<>(List.of("ETag", "Retry-After"));
+    private boolean allowCredentials; // Bearer tokens and API keys are headers, so cookies are not needed
+    private Duration maxAge = Duration.ofHours(24); // How long browsers may cache a preflight; Chromium caps this at 2 hours
+    private boolean preflightFastPath = true; // Answer preflights before the security filter chain
+
+    public List<String> getAllowedOrigins() {
+        return allowedOrigins;
+    }
+
+    public void setAllowedOrigins(List<String> allowedOrigins) {
+        this.allowedOrigins = allowedOrigins;
+    }
+
+    public List<String> getAllowedMethods() {
+        return allowedMethods;
+    }
+
+    public void setAllowedMethods(List<String> allowedMethods) {
+        this.allowedMethods = allowedMethods;
+    }
+
+    public List<String> getAllowedHeaders() {
+        return allowedHeaders;
+    }
+
+    public void setAllowedHeaders(List<String> allowedHeaders) {
+        this.allowedHeaders = allowedHeaders;
+    }
+
+    public List<String> getExposedHeaders() {
+        return exposedHeaders;
+    }
+
+    public void setExposedHeaders(List<String> exposedHeaders) {
+        this.exposedHeaders = exposedHeaders;
+    }
+
+    public boolean isAllowCredentials() {
+        return allowCredentials;
+    }
+
+    public void setAllowCredentials(boolean allowCredentials) {
+        this.allowCredentials = allowCredentials;
+    }
+
+    public Duration getMaxAge() {
+        return maxAge;
+    }
+
+    public void setMaxAge(Duration maxAge) {
+        this.maxAge = maxAge;
+    }
+
+    public boolean isPreflightFastPath() {
+        return preflightFastPath;
+    }
+
+    public void setPreflightFastPath(boolean preflightFastPath) {
+        this.preflightFastPath = preflightFastPath;
+    }
+}
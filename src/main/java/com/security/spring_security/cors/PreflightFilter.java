@@ -0,0 +1,130 @@
+package com.security.spring_security.cors;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.Filter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/*
+    The PreflightFilter answers CORS preflight requests (OPTIONS with Origin and Access-Control-Request-Method) as the very first
+    servlet filter, so they never reach the security filter chain, the JWT and API key filters or the controllers. Browsers send a
+    preflight ahead of most cross-origin API calls; together with a long Access-Control-Max-Age this takes them off the request path.
+
+    Every response header value is built once at startup. The origin is checked with the CorsOriginMatcher, the method with a hash
+    set, and the requested headers are compared in place against the allowed names, so answering a preflight allocates nothing.
+    A preflight that is not allowed gets 403, which is what Spring's CorsFilter answers. Other requests, including plain OPTIONS
+    requests, pass through untouched; actual cross-origin requests get their CORS headers from the CorsFilter in the security chain,
+    which uses the same settings (see CorsConfig).
+ */
+public class PreflightFilter implements Filter {
+    private static final String VARY = HttpHeaders.ORIGIN + ", " + HttpHeaders.ACCESS_CONTROL_REQUEST_METHOD + ", "
+            + HttpHeaders.ACCESS_CONTROL_REQUEST_HEADERS;
+
+    private final CorsOriginMatcher origins;
+    private final Set<String> allowedMethods; // Upper case, compared as sent
+    private final String[] allowedHeaders; // Null when any header is allowed
+    private final String allowMethods; // Access-Control-Allow-Methods value
+    private final String allowHeaders; // Access-Control-Allow-Headers value, null when requested headers are echoed
+    private final String maxAge; // Access-Control-Max-Age value in seconds
+    private final boolean allowCredentials;
+    private final Counter allowed;
+    private final Counter rejected;
+
+    public PreflightFilter(CorsProperties properties, CorsOriginMatcher origins, MeterRegistry meterRegistry) {
+        this.origins = origins;
+        this.allowedMethods = new HashSet<>();
+        for (String method : properties.getAllowedMethods()) {
+            allowedMethods.add(method.trim().toUpperCase(Locale.ROOT));
+        }
+        allowedMethods.add("OPTIONS");
+        boolean anyHeader = properties.getAllowedHeaders().stream().anyMatch(header -> header.trim().equals("*"));
+        this.allowedHeaders = anyHeader ? null : properties.getAllowedHeaders().stream().map(String::trim).toArray(String[]::new);
+        this.allowMethods = String.join(", ", allowedMethods.stream().sorted().toList());
+        this.allowHeaders = anyHeader ? null : String.join(", ", allowedHeaders);
+        this.maxAge = Long.toString(properties.getMaxAge().toSeconds());
+        this.allowCredentials = properties.isAllowCredentials();
+        this.allowed = Counter.builder("http.cors.preflight").tag("result", "allowed").register(meterRegistry);
+        this.rejected = Counter.builder("http.cors.preflight").tag("result", "rejected").register(meterRegistry);
+    }
+
+    @Override
+    public void doFilter(ServletRequest servletRequest, ServletResponse servletResponse, FilterChain chain) throws IOException, ServletException {
+        HttpServletRequest request = (HttpServletRequest) servletRequest;
+        String origin;
+        String requestedMethod;
+        if (!"OPTIONS".equals(request.getMethod())
+                || (origin = request.getHeader(HttpHeaders.ORIGIN)) == null
+                || (requestedMethod = request.getHeader(HttpHeaders.ACCESS_CONTROL_REQUEST_METHOD)) == null) {
+            chain.doFilter(servletRequest, servletResponse); // Not a preflight
+            return;
+        }
+
+        HttpServletResponse response = (HttpServletResponse) servletResponse;
+        response.setHeader(HttpHeaders.VARY, VARY); // The answer depends on these, so caches must not share it across origins
+        String requestedHeaders = request.getHeader(HttpHeaders.ACCESS_CONTROL_REQUEST_HEADERS);
+        if (!origins.matches(origin) || !allowedMethods.contains(requestedMethod) || !headersAllowed(requestedHeaders)) {
+            rejected.increment();
+            response.setStatus(HttpServletResponse.SC_FORBIDDEN);
+            return;
+        }
+        response.setHeader(HttpHeaders.ACCESS_CONTROL_ALLOW_ORIGIN, origin);
+        response.setHeader(HttpHeaders.ACCESS_CONTROL_ALLOW_METHODS, allowMethods);
+        if (requestedHeaders != null && !requestedHeaders.isBlank()) {
+            response.setHeader(HttpHeaders.ACCESS_CONTROL_ALLOW_HEADERS, allowHeaders != null ? allowHeaders : requestedHeaders);
+        }
+        if (allowCredentials) {
+            response.setHeader(HttpHeaders.ACCESS_CONTROL_ALLOW_CREDENTIALS, "true");
+        }
+        response.setHeader(HttpHeaders.ACCESS_CONTROL_MAX_AGE, maxAge);
+        response.setStatus(HttpServletResponse.SC_OK);
+        allowed.increment();
+    }
+
+    // Checks each comma-separated name of Access-Control-Request-Headers in place
+    private boolean headersAllowed(String requested) {
+        if (requested == null || allowedHeaders == null) {
+            return true;
+        }
+        int length = requested.length();
+        int start = 0;
+        while (start < length) {
+            int end = requested.indexOf(',', start);
+            if (end < 0) {
+                end = length;
+            }
+            int from = start;
+            int to = end;
+            while (from < to && Character.isWhitespace(requested.charAt(from))) {
+                from++;
+            }
+            while (to > from && Character.isWhitespace(requested.charAt(to - 1))) {
+                to--;
+            }
+            if (to > from && !isAllowedHeader(requested, from, to - from)) {
+                return false;
+            }
+            start = end + 1;
+        }
+        return true;
+    }
+
+    private boolean isAllowedHeader(String requested, int offset, int length) {
+        for (String header : allowedHeaders) {
+            if (header.length() == length && header.regionMatches(true, 0, requested, offset, length)) {
+                return true; // Header names are case-insensitive
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,284 @@
+package com.security.spring_security.datagen;
+
+import com.security.spring_security.sharding.ShardRouter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.Ordered;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
+
+/*
+    The DatasetGenerator fills the user tables with synthetic users for scale testing (datagen profile). Registering millions of users
+    through /api/auth/register costs a BCrypt(12) hash each; this writes the same rows directly, at database speed.
+
+    Every generated user has the password app.datagen.password, so load tests can log in as any of them. The password is hashed only
+    app.datagen.hash-templates times with the real PasswordEncoder, and the users take turns with these hashes, so the rows carry real,
+    differently salted BCrypt hashes without a hash per row. Roles are drawn from app.datagen.roles (weights, e.g. USER=98;ADMIN=2),
+    and app.datagen.reset-code-percent of the users also get a pending password reset code.
+
+    Users are numbered from app.datagen.first-index, which makes usernames and user IDs unique across runs that continue where the
+    previous one stopped. Usernames look like maria.garcia1234@datagen.invalid (a reserved TLD, so reset mails go nowhere). User IDs use
+    the index as their millisecond timestamp, i.e. a time in 1970, so they can never collide with the IDs of registered users.
+    With sharding enabled every user goes to its home shard and the ID encodes it, exactly as for a registered user.
+
+    app.datagen.producers threads each take the next app.datagen.batch-size users, split them by shard, and write each part as one
+    multi-row INSERT (plus one for its reset codes) in a transaction of its own. Multi-row VALUES lists work on MySQL and H2 alike,
+    and need no driver option such as rewriteBatchedStatements.
+
+    It runs before the warm-up and before the username Bloom filter and search index are built (those load once the application is
+    ready), so with app.datagen.exit-when-done=false the instance goes on to serve the generated users. By default it exits instead.
+ */
+
+@Component // Only present in the datagen profile, and only for the JPA user store
+@Profile("datagen")
+@ConditionalOnProperty(name = "app.user-store.type", havingValue = "jpa", matchIfMissing = true)
+public class DatasetGenerator implements ApplicationRunner, Ordered {
+    private static final Logger log = LoggerFactory.getLogger(DatasetGenerator.class);
+    private static final String[] FIRST_NAMES = {
+            "james", "maria", "wei", "fatima", "olga", "juan", "aiko", "liam", "noah", "emma", "ana", "ivan", "priya", "omar",
+            "chloe", "lucas", "sofia", "mateo", "yuki", "amir", "lena", "david", "sara", "kofi", "nina", "arjun", "elena", "tom"
+    };
+    private static final String[] LAST_NAMES = {
+            "smith", "garcia", "wang", "khan", "ivanova", "martinez", "tanaka", "murphy", "mueller", "rossi", "silva", "novak",
+            "patel", "hassan", "dubois", "johansson", "kim", "nguyen", "mensah", "kowalski", "lopez", "cohen", "schmidt", "brown"
+    };
+
+    private final JdbcTemplate jdbcTemplate; // Joins the per-shard transaction opened by the ShardRouter
+    private final ShardRouter shardRouter; // Home shards, user IDs and per-shard write transactions
+    private final PasswordEncoder passwordEncoder; // Real encoder, used only for the hash templates
+    private final ApplicationContext context; // Closed when exiting; null in tests
+    private final long users;
+    private final long firstIndex;
+    private final String usernameDomain;
+    private final String password;
+    private final String[] roleValues; // Roles column values
+    private final int[] roleWeights; // Cumulative weights, parallel to roleValues
+    private final int resetCodePercent;
+    private final int batchSize; // Users per producer batch, i.e. rows per INSERT without sharding
+    private final int producers;
+    private final int hashTemplates;
+    private final long seed; // The same seed and settings produce the same rows
+    private final boolean exitWhenDone;
+    private final Map<Integer, String> userInserts = new ConcurrentHashMap<>(); // Rows -> INSERT statement
+    private final Map<Integer, String> resetCodeInserts = new ConcurrentHashMap<>();
+
+    public DatasetGenerator(DataSource dataSource, ShardRouter shardRouter, PasswordEncoder passwordEncoder, ApplicationContext context,
+                            @Value("${app.datagen.users:1000000}") long users,
+                            @Value("${app.datagen.first-index:0}") long firstIndex,
+                            @Value("${app.datagen.username-domain:datagen.invalid}") String usernameDomain,
+                            @Value("${app.datagen.password:datagen-password}") String password,
+                            @Value("${app.datagen.roles:USER=98;ADMIN=2}") String roles,
+                            @Value("${app.datagen.reset-code-percent:5}") int resetCodePercent,
+                            @Value("${app.datagen.batch-size:1000}") int batchSize,
+                            @Value("${app.datagen.producers:4}") int producers,
+                            @Value("${app.datagen.hash-templates:16}") int hashTemplates,
+                            @Value("${app.datagen.seed:42}") long seed,
+                            @Value("${app.datagen.exit-when-done:true}") boolean exitWhenDone) {
+        if (users < 0 || firstIndex < 0 || batchSize < 1 || producers < 1 || hashTemplates < 1 || resetCodePercent < 0 || resetCodePercent > 100) {
+            throw new IllegalArgumentException("Invalid app.datagen settings");
+        }
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.shardRouter = shardRouter;
+        this.passwordEncoder = passwordEncoder;
+        this.context = context;
+        this.users = users;
+        this.firstIndex = firstIndex;
+        this.usernameDomain = usernameDomain;
+        this.password = password;
+        String[] entries = roles.split(";");
+        this.roleValues = new String[entries.length];
+        this.roleWeights = new int[entries.length];
+        int total = 0;
+        for (int i = 0; i < entries.length; i++) {
+            int separator = entries[i].lastIndexOf('=');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("app.datagen.roles entries look like ROLES=WEIGHT, got " + entries[i]);
+            }
+            roleValues[i] = entries[i].substring(0, separator).trim();
+            total += Integer.parseInt(entries[i].substring(separator + 1).trim());
+            roleWeights[i] = total;
+        }
+        if (total <= 0) {
+            throw new IllegalArgumentException("app.datagen.roles needs a positive total weight");
+        }
+        this.resetCodePercent = resetCodePercent;
+        this.batchSize = batchSize;
+        this.producers = producers;
+        this.hashTemplates = hashTemplates;
+        this.seed = seed;
+        this.exitWhenDone = exitWhenDone;
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.LOWEST_PRECEDENCE - 1; // After the admin seed, before the warm-up
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        generate();
+        if (exitWhenDone) {
+            System.exit(SpringApplication.exit(context));
+        }
+    }
+
+    // Writes every user and returns how many reset codes were written along with them
+    long generate() throws InterruptedException {
+        long start = System.nanoTime();
+        String[] hashes = IntStream.range(0, hashTemplates).parallel()
+                .mapToObj(i -> passwordEncoder.encode(password))
+                .toArray(String[]::new);
+        log.info("Generating {} users from index {} with {} producers", users, firstIndex, producers);
+
+        long batches = (users + batchSize - 1) / batchSize;
+        AtomicLong nextBatch = new AtomicLong();
+        LongAdder writtenUsers = new LongAdder();
+        LongAdder writtenResetCodes = new LongAdder();
+        AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        ExecutorService executor = Executors.newFixedThreadPool(producers, runnable -> {
+            Thread thread = new Thread(runnable, "datagen");
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < producers; i++) {
+            executor.execute(() -> {
+                long batch;
+                while ((batch = nextBatch.getAndIncrement()) < batches) {
+                    try {
+                        writeBatch(batch, hashes, writtenUsers, writtenResetCodes);
+                    } catch (RuntimeException e) {
+                        failure.compareAndSet(null, e);
+                        nextBatch.set(batches); // Stops the other producers after their current batch
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+        while (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+            log.info("Generated {} of {} users", writtenUsers.sum(), users);
+        }
+        if (failure.get() != null) {
+            throw new IllegalStateException("Dataset generation failed after " + writtenUsers.sum() + " users", failure.get());
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        log.info("Generated {} users and {} reset codes in {} s ({} users/s)", writtenUsers.sum(), writtenResetCodes.sum(),
+                String.format("%.1f", seconds), Math.round(writtenUsers.sum() / Math.max(seconds, 0.001)));
+        return writtenResetCodes.sum();
+    }
+
+    private void writeBatch(long batch, String[] hashes, LongAdder writtenUsers, LongAdder writtenResetCodes) {
+        long from = firstIndex + batch * batchSize;
+        int count = (int) Math.min(batchSize, firstIndex + users - from);
+        SplittableRandom random = new SplittableRandom(seed * 31 + batch); // Per batch, so the rows do not depend on thread timing
+        Map<Integer, List<Row>> byShard = new TreeMap<>();
+        for (int i = 0; i < count; i++) {
+            long index = from + i;
+            String username = usernameOf(index);
+            int role = pickRole(random.nextInt(roleWeights[roleWeights.length - 1]));
+            long resetCode = random.nextInt(100) < resetCodePercent ? 1000000000L + random.nextInt(900000000) : 0; // As PasswordResetCodeService
+            byShard.computeIfAbsent(shardRouter.shardFor(username), shardId -> new ArrayList<>())
+                    .add(new Row(index, username, roleValues[role], resetCode));
+        }
+        for (Map.Entry<Integer, List<Row>> shard : byShard.entrySet()) {
+            List<Row> rows = shard.getValue();
+            int resetCodes = shardRouter.write(shard.getKey(), () -> {
+                insertUsers(rows, hashes);
+                return insertResetCodes(rows);
+            });
+            writtenUsers.add(rows.size());
+            writtenResetCodes.add(resetCodes);
+        }
+    }
+
+    private void insertUsers(List<Row> rows, String[] hashes) {
+        String sql = userInserts.computeIfAbsent(rows.size(), size -> multiRowInsert("our_user (user_id, username, password, roles)", 4, size));
+        jdbcTemplate.update(sql, statement -> {
+            int parameter = 1;
+            for (Row row : rows) {
+                statement.setLong(parameter++, shardRouter.userIdAt(row.index + 1, row.username)); // A timestamp in 1970, see above
+                statement.setString(parameter++, row.username);
+                statement.setString(parameter++, hashes[(int) (row.index % hashes.length)]);
+                statement.setString(parameter++, row.roles);
+            }
+        });
+    }
+
+    private int insertResetCodes(List<Row> rows) {
+        List<Row> withCode = rows.stream().filter(row -> row.resetCode != 0).toList();
+        if (withCode.isEmpty()) {
+            return 0;
+        }
+        String sql = resetCodeInserts.computeIfAbsent(withCode.size(), size -> multiRowInsert("password_reset (username, reset_code)", 2, size));
+        jdbcTemplate.update(sql, statement -> {
+            int parameter = 1;
+            for (Row row : withCode) {
+                statement.setString(parameter++, row.username);
+                statement.setLong(parameter++, row.resetCode);
+            }
+        });
+        return withCode.size();
+    }
+
+    // insert into <table> values (?, ?), (?, ?), ... with the given number of rows
+    private static String multiRowInsert(String table, int columns, int rows) {
+        String tuple = "(" + "?, ".repeat(columns - 1) + "?)";
+        StringBuilder sql = new StringBuilder(32 + rows * (tuple.length() + 2)).append("insert into ").append(table).append(" values ");
+        for (int i = 0; i < rows; i++) {
+            sql.append(i == 0 ? "" : ", ").append(tuple);
+        }
+        return sql.toString();
+    }
+
+    String usernameOf(long index) {
+        String first = FIRST_NAMES[(int) (index % FIRST_NAMES.length)];
+        String last = LAST_NAMES[(int) (index / FIRST_NAMES.length % LAST_NAMES.length)];
+        return first + "." + last + index + "@" + usernameDomain;
+    }
+
+    private int pickRole(int draw) {
+        int role = 0;
+        while (draw >= roleWeights[role]) {
+            role++;
+        }
+        return role;
+    }
+
+    // One generated user
+    private static final class Row {
+        private final long index;
+        private final String username;
+        private final String roles;
+        private final long resetCode; // 0 when the user has none
+
+        private Row(long index, String username, String roles, long resetCode) {
+            this.index = index;
+            this.username = username;
+            this.roles = roles;
+            this.resetCode = resetCode;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.security.spring_security.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.time.Instant;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ApiKeyDTO {
+    private String prefix;     // Public part of the key, used to revoke it
+    private String name;       // Label chosen when the key was issued
+    private String username;   // User the key authenticates as
+    private String roles;      // Roles the key grants
+    private Instant createdAt; // When the key was issued
+    private String key;        // The full key; only set in the response that issues it
+
+    // Constructors
+    public ApiKeyDTO() {}
+
+    public ApiKeyDTO(String prefix, String name, String username, String roles, Instant createdAt) {
+        this.prefix = prefix;
+        this.name = name;
+        this.username = username;
+        this.roles = roles;
+        this.createdAt = createdAt;
+    }
+
+    // Getters and Setters
+    public String getPrefix() {
+        return prefix;
+    }
+
+    public void setPrefix(String prefix) {
+        this.prefix = prefix;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    public String getRoles() {
+        return roles;
+    }
+
+    public void setRoles(String roles) {
+        this.roles = roles;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Instant createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public void setKey(String key) {
+        this.key = key;
+    }
+}
@@ -0,0 +1,22 @@
+package com.security.spring_security.dto;
+
+public class ApiKeyRequest {
+    private String username; // User the new key authenticates as
+    private String name;     // Optional label, e.g. the client that will use the key
+
+    public String getUsername() {
+        return username;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+}
@@ -0,0 +1,31 @@
+package com.security.spring_security.dto;
+
+public class CampaignRequest {
+    private String name;    // Identifies the campaign's checkpoints; starting the same name again resumes it
+    private String subject; // May use {{username}} and {{userId}}
+    private String body;    // Plain text; may use {{username}} and {{userId}}
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getSubject() {
+        return subject;
+    }
+
+    public void setSubject(String subject) {
+        this.subject = subject;
+    }
+
+    public String getBody() {
+        return body;
+    }
+
+    public void setBody(String body) {
+        this.body = body;
+    }
+}
@@ -0,0 +1,83 @@
+package com.security.spring_security.dto;
+
+import java.time.Instant;
+
+public class CampaignStatus {
+    private String name;
+    private String state;       // RUNNING, COMPLETED, CANCELLED or FAILED
+    private long sent;          // Messages accepted by the server, including earlier runs of the same campaign
+    private long failed;        // Recipients that were rejected and will not be retried
+    private Instant startedAt;  // Start of this run
+    private Instant finishedAt; // Null while running
+    private String error;       // Why a FAILED run stopped
+
+    // Constructors
+    public CampaignStatus() {}
+
+    public CampaignStatus(String name, String state, long sent, long failed, Instant startedAt, Instant finishedAt, String error) {
+        this.name = name;
+        this.state = state;
+        this.sent = sent;
+        this.failed = failed;
+        this.startedAt = startedAt;
+        this.finishedAt = finishedAt;
+        this.error = error;
+    }
+
+    // Getters and Setters
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getState() {
+        return state;
+    }
+
+    public void setState(String state) {
+        this.state = state;
+    }
+
+    public long getSent() {
+        return sent;
+    }
+
+    public void setSent(long sent) {
+        this.sent = sent;
+    }
+
+    public long getFailed() {
+        return failed;
+    }
+
+    public void setFailed(long failed) {
+        this.failed = failed;
+    }
+
+    public Instant getStartedAt() {
+        return startedAt;
+    }
+
+    public void setStartedAt(Instant startedAt) {
+        this.startedAt = startedAt;
+    }
+
+    public Instant getFinishedAt() {
+        return finishedAt;
+    }
+
+    public void setFinishedAt(Instant finishedAt) {
+        this.finishedAt = finishedAt;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+}
@@ -1,9 +1,14 @@
 package com.security.spring_security.dto;
 
+import java.time.Instant;
+
 public class OurUserDTO {
     private Long userId;          // User ID
     private String username;  // Username
     private String roles;     // Roles (e.g., "ADMIN,USER")
+    private Instant lastLoginAt;  // Last successful login, up to one activity flush interval behind
+    private Long loginCount;      // Number of successful logins
+    private Instant lastSeenAt;   // Last authenticated request
 
     // Constructors
     public OurUserDTO() {}
@@ -38,5 +43,28 @@ public class OurUserDTO {
     public void setRoles(String roles) {
         this.roles = roles;
     }
-}
 
+    public Instant getLastLoginAt() {
+        return lastLoginAt;
+    }
+
+    public void setLastLoginAt(Instant lastLoginAt) {
+        this.lastLoginAt = lastLoginAt;
+    }
+
+    public Long getLoginCount() {
+        return loginCount;
+    }
+
+    public void setLoginCount(Long loginCount) {
+        this.loginCount = loginCount;
+    }
+
+    public Instant getLastSeenAt() {
+        return lastSeenAt;
+    }
+
+    public void setLastSeenAt(Instant lastSeenAt) {
+        this.lastSeenAt = lastSeenAt;
+    }
+}
@@ -0,0 +1,54 @@
+package com.security.spring_security.dto;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+public class UsageReport {
+    private long userId;                // User the calls were made by
+    private LocalDate day;              // UTC day
+    private long total;                 // Calls to all endpoints
+    private Map<String, Long> endpoints; // Calls by endpoint rule, e.g. "GET /api/users"
+
+    // Constructors
+    public UsageReport() {}
+
+    public UsageReport(long userId, LocalDate day, Map<String, Long> endpoints) {
+        this.userId = userId;
+        this.day = day;
+        this.total = endpoints.values().stream().mapToLong(Long::longValue).sum();
+        this.endpoints = endpoints;
+    }
+
+    // Getters and Setters
+    public long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(long userId) {
+        this.userId = userId;
+    }
+
+    public LocalDate getDay() {
+        return day;
+    }
+
+    public void setDay(LocalDate day) {
+        this.day = day;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public void setTotal(long total) {
+        this.total = total;
+    }
+
+    public Map<String, Long> getEndpoints() {
+        return endpoints;
+    }
+
+    public void setEndpoints(Map<String, Long> endpoints) {
+        this.endpoints = endpoints;
+    }
+}
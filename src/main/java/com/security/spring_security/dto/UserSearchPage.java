@@ -0,0 +1,63 @@
+package com.security.spring_security.dto;
+
+import java.util.List;
+
+public class UserSearchPage {
+    private String query;          // Fragment that was searched for
+    private int page;              // Zero-based page number
+    private int size;              // Page size
+    private long total;            // Number of users matching the fragment
+    private List<OurUserDTO> users; // This page of matches, best first (ID, username and roles only)
+
+    // Constructors
+    public UserSearchPage() {}
+
+    public UserSearchPage(String query, int page, int size, long total, List<OurUserDTO> users) {
+        this.query = query;
+        this.page = page;
+        this.size = size;
+        this.total = total;
+        this.users = users;
+    }
+
+    // Getters and Setters
+    public String getQuery() {
+        return query;
+    }
+
+    public void setQuery(String query) {
+        this.query = query;
+    }
+
+    public int getPage() {
+        return page;
+    }
+
+    public void setPage(int page) {
+        this.page = page;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public void setSize(int size) {
+        this.size = size;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public void setTotal(long total) {
+        this.total = total;
+    }
+
+    public List<OurUserDTO> getUsers() {
+        return users;
+    }
+
+    public void setUsers(List<OurUserDTO> users) {
+        this.users = users;
+    }
+}
@@ -0,0 +1,82 @@
+package com.security.spring_security.entity;
+
+import jakarta.persistence.*;
+
+import java.time.Instant;
+
+// An API key issued to a user; only a keyed hash of its secret is stored, see ApiKeyService
+@Entity
+@Table(indexes = @Index(columnList = "username"))
+public class ApiKey {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    @Column(unique = true, nullable = false, length = 16)
+    private String prefix; // Public part of the key that identifies it
+    @Column(nullable = false, length = 64)
+    private String secretHash; // Base64 HMAC-SHA256 of the secret part
+    @Column(nullable = false)
+    private String name; // Label chosen by the admin who issued it
+    @Column(nullable = false)
+    private String username; // User the key authenticates as
+    @Column(nullable = false)
+    private String roles; // Roles of that user, kept in step by ApiKeyService
+    @Column(nullable = false)
+    private Instant createdAt;
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getPrefix() {
+        return prefix;
+    }
+
+    public void setPrefix(String prefix) {
+        this.prefix = prefix;
+    }
+
+    public String getSecretHash() {
+        return secretHash;
+    }
+
+    public void setSecretHash(String secretHash) {
+        this.secretHash = secretHash;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    public String getRoles() {
+        return roles;
+    }
+
+    public void setRoles(String roles) {
+        this.roles = roles;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Instant createdAt) {
+        this.createdAt = createdAt;
+    }
+}
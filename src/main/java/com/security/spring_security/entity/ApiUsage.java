@@ -0,0 +1,42 @@
+package com.security.spring_security.entity;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDate;
+
+// Calls of one user to one endpoint on one UTC day, accumulated by JdbcUsageSink
+@Entity
+@Table(uniqueConstraints = @UniqueConstraint(columnNames = {"user_id", "usage_day", "endpoint"})) // Upsert key
+public class ApiUsage {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    @Column(nullable = false)
+    private Long userId;
+    @Column(nullable = false)
+    private LocalDate usageDay;
+    @Column(nullable = false, length = 120)
+    private String endpoint; // Matched rule, e.g. "GET /api/users"
+    @Column(nullable = false)
+    private long calls;
+
+    public Long getId() {
+        return id;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public LocalDate getUsageDay() {
+        return usageDay;
+    }
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    public long getCalls() {
+        return calls;
+    }
+}
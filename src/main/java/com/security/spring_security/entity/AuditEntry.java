@@ -0,0 +1,40 @@
+package com.security.spring_security.entity;
+
+import jakarta.persistence.*;
+
+import java.time.Instant;
+
+// Row in the append-only audit table written in batches by JdbcAuditSink
+@Entity
+@Table(indexes = @Index(columnList = "username"))
+public class AuditEntry {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    @Column(nullable = false)
+    private Instant occurredAt;
+    @Column(nullable = false, length = 40)
+    private String eventType;
+    private String username;
+    private String detail;
+
+    public Long getId() {
+        return id;
+    }
+
+    public Instant getOccurredAt() {
+        return occurredAt;
+    }
+
+    public String getEventType() {
+        return eventType;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getDetail() {
+        return detail;
+    }
+}
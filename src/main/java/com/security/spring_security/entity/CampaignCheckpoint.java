@@ -0,0 +1,87 @@
+package com.security.spring_security.entity;
+
+import jakarta.persistence.*;
+
+import java.time.Instant;
+
+// Progress of one mail campaign on one shard, written by CampaignCheckpoints after every batch that completes in order
+@Entity
+@Table(uniqueConstraints = @UniqueConstraint(columnNames = {"campaign", "shard_id"})) // Upsert key
+public class CampaignCheckpoint {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    @Column(nullable = false, length = 100)
+    private String campaign;
+    @Column(nullable = false)
+    private int shardId;
+    @Column(nullable = false)
+    private long lastUserId; // Every recipient up to this user ID has been handled
+    @Column(nullable = false)
+    private long sent;
+    @Column(nullable = false)
+    private long failed; // Addresses the server or JavaMail rejected; not retried
+    @Column(nullable = false)
+    private boolean completed; // The shard has no recipients left
+    private Instant updatedAt;
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getCampaign() {
+        return campaign;
+    }
+
+    public void setCampaign(String campaign) {
+        this.campaign = campaign;
+    }
+
+    public int getShardId() {
+        return shardId;
+    }
+
+    public void setShardId(int shardId) {
+        this.shardId = shardId;
+    }
+
+    public long getLastUserId() {
+        return lastUserId;
+    }
+
+    public void setLastUserId(long lastUserId) {
+        this.lastUserId = lastUserId;
+    }
+
+    public long getSent() {
+        return sent;
+    }
+
+    public void setSent(long sent) {
+        this.sent = sent;
+    }
+
+    public long getFailed() {
+        return failed;
+    }
+
+    public void setFailed(long failed) {
+        this.failed = failed;
+    }
+
+    public boolean isCompleted() {
+        return completed;
+    }
+
+    public void setCompleted(boolean completed) {
+        this.completed = completed;
+    }
+
+    public Instant getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(Instant updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
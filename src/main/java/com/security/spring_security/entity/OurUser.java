@@ -1,5 +1,6 @@
 package com.security.spring_security.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
@@ -9,6 +10,7 @@ import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 
+import java.time.Instant;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
@@ -30,6 +32,15 @@ public class OurUser implements UserDetails {
     private String password;
     @Column(nullable = false)
     private String roles;
+    @Column(updatable = false)
+    private Instant lastLoginAt; // Written only by UserActivityTracker
+    @Column(updatable = false)
+    private Long loginCount; // Written only by UserActivityTracker
+    @Column(updatable = false)
+    private Instant lastSeenAt; // Written only by UserActivityTracker
+    @Transient
+    @JsonIgnore
+    private Integer shardId; // Shard the row was loaded from, set by ShardedUserRepository
 
     public Long getId() {
         return id;
@@ -71,6 +82,38 @@ public class OurUser implements UserDetails {
         this.roles = roles;
     }
 
+    public Instant getLastLoginAt() {
+        return lastLoginAt;
+    }
+
+    public void setLastLoginAt(Instant lastLoginAt) {
+        this.lastLoginAt = lastLoginAt;
+    }
+
+    public Long getLoginCount() {
+        return loginCount;
+    }
+
+    public void setLoginCount(Long loginCount) {
+        this.loginCount = loginCount;
+    }
+
+    public Instant getLastSeenAt() {
+        return lastSeenAt;
+    }
+
+    public void setLastSeenAt(Instant lastSeenAt) {
+        this.lastSeenAt = lastSeenAt;
+    }
+
+    public Integer getShardId() {
+        return shardId;
+    }
+
+    public void setShardId(Integer shardId) {
+        this.shardId = shardId;
+    }
+
     @Override
     public Collection<? extends GrantedAuthority> getAuthorities() {
         return Arrays.stream(roles.split(","))
@@ -0,0 +1,159 @@
+package com.security.spring_security.index;
+
+import com.security.spring_security.store.UserStore;
+import com.security.spring_security.util.UsernameHashing;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+    The UsernameBloomFilter is an in-memory existence index over every username in the user store (on every shard).
+    A Bloom filter can answer "definitely not present" or "maybe present", so callers use it to skip the database
+    for usernames that were never registered, which is what most credential-stuffing and enumeration traffic looks like.
+
+    The bit array is an AtomicLongArray, so bits can be set from request threads without locking while other threads read it.
+    The filter is filled by a single streaming pass over the username column once the application is ready, and register/update
+    add new usernames as they are written. Bloom filters cannot forget, so deleted usernames stay "maybe present", which is safe.
+    Until the startup pass has finished the filter reports every username as "maybe present" and callers fall through to the database.
+
+    Users registered by another instance, or inserted into the database directly, are only seen by the next pass, which runs every
+    app.username-filter.rebuild-interval. Passes only ever set bits, so they never race with the puts of local registrations. A miss
+    is therefore only trusted with app.username-filter.trust-misses=true, which suits a single instance that owns every write: with
+    several instances a user registered elsewhere would be "definitely absent" here, and unable to log in or reset a password on
+    this instance, until the next pass. By default (false) a miss falls through to the database like a hit. Registration never
+    trusts a miss for its duplicate check.
+
+    Usernames are lower-cased and stripped of accents before hashing because MySQL's default collation compares them case- and
+    accent-insensitively; a false "no" would otherwise lock out a user who types their email with different casing.
+ */
+
+@Component // Spring-managed singleton shared by the services that look users up by username
+public class UsernameBloomFilter {
+    private static final Logger log = LoggerFactory.getLogger(UsernameBloomFilter.class);
+
+    private final UserStore userStore; // Source of the usernames for the startup pass
+    private final AtomicLongArray bits; // Bit array, 64 bits per element
+    private final long numBits; // Total number of addressable bits
+    private final int numHashes; // Number of bit positions set per username
+    private final boolean trustMisses; // False makes every username "maybe present"
+    private final Duration rebuildInterval; // Time between passes over the store
+    private volatile boolean ready; // True once the startup pass has loaded every existing username
+    private ScheduledExecutorService refresher; // Single thread for the periodic passes
+
+    public UsernameBloomFilter(UserStore userStore,
+                               @Value("${app.username-filter.expected-insertions:1000000}") long expectedInsertions,
+                               @Value("${app.username-filter.false-positive-probability:0.01}") double falsePositiveProbability,
+                               @Value("${app.username-filter.trust-misses:false}") boolean trustMisses,
+                               @Value("${app.username-filter.rebuild-interval:1m}") Duration rebuildInterval) {
+        this.userStore = userStore;
+        this.trustMisses = trustMisses;
+        this.rebuildInterval = rebuildInterval;
+        // Standard Bloom filter sizing: m = -n ln p / (ln 2)^2 and k = m / n ln 2
+        long optimalBits = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveProbability) / (Math.log(2) * Math.log(2)));
+        int words = (int) Math.max(1, (optimalBits + 63) / 64);
+        this.bits = new AtomicLongArray(words);
+        this.numBits = (long) words * 64;
+        this.numHashes = Math.max(1, (int) Math.round((double) numBits / expectedInsertions * Math.log(2)));
+    }
+
+    // Runs the startup pass, then schedules the periodic ones
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        loadExistingUsernames();
+        refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "username-filter-refresher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMillis = rebuildInterval.toMillis();
+        refresher.scheduleWithFixedDelay(this::refreshSafely, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // Loads every existing username in one streaming pass, without materializing the user table in memory
+    public void loadExistingUsernames() {
+        long start = System.nanoTime();
+        long count = refresh();
+        ready = true; // Only now can a miss be trusted
+        log.info("Username Bloom filter loaded {} usernames into {} bits with {} hashes in {} ms",
+                count, numBits, numHashes, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    // Adds every username in the store, including those written by other instances; returns how many were streamed
+    long refresh() {
+        return userStore.forEachUsername(this::put);
+    }
+
+    private void refreshSafely() {
+        try {
+            refresh();
+        } catch (RuntimeException e) {
+            log.warn("Username Bloom filter refresh failed, retrying in {}", rebuildInterval, e);
+        }
+    }
+
+    @PreDestroy // Stops the periodic passes
+    void shutdown() {
+        if (refresher != null) {
+            refresher.shutdownNow();
+        }
+    }
+
+    // Records a username; must be called before the user row becomes visible so there is never a false "no"
+    public void put(String username) {
+        if (username == null) {
+            return;
+        }
+        long hash = UsernameHashing.hash(username);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= numHashes; i++) {
+            long bit = bitIndex(h1 + i * h2);
+            long mask = 1L << bit;
+            int word = (int) (bit >>> 6);
+            if ((bits.get(word) & mask) == 0) {
+                bits.getAndAccumulate(word, mask, (current, m) -> current | m); // Lock-free set, safe against concurrent writers
+            }
+        }
+    }
+
+    // Returns false only when the username has definitely never been registered
+    public boolean mightContain(String username) {
+        if (!ready || !trustMisses || username == null) {
+            return true; // Not loaded yet, or misses are not trusted, so a miss means nothing
+        }
+        long hash = UsernameHashing.hash(username);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= numHashes; i++) {
+            long bit = bitIndex(h1 + i * h2);
+            if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Convenience inverse of mightContain used by callers that short-circuit on a definite miss
+    public boolean definitelyAbsent(String username) {
+        return !mightContain(username);
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    // Maps a combined hash onto the bit array
+    private long bitIndex(int combinedHash) {
+        return (combinedHash & 0x7fffffffL) % numBits;
+    }
+}
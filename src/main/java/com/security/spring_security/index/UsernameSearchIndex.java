@@ -0,0 +1,445 @@
+package com.security.spring_security.index;
+
+import com.security.spring_security.entity.OurUser;
+import com.security.spring_security.store.UserStore;
+import com.security.spring_security.util.UsernameHashing;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/*
+    The UsernameSearchIndex answers admin searches for a username or email fragment from memory, so a search neither loads every
+    user nor makes the database scan the table for LIKE '%fragment%'.
+
+    Every username is folded like the database collation and split into trigrams (three consecutive characters). Each trigram maps
+    to a posting list of the users containing it. A search for a fragment of three or more characters walks the shortest posting
+    list among the fragment's trigrams and checks each candidate with indexOf, so it only looks at users that share the fragment's
+    rarest trigram. Candidates are first intersected with the next two shortest lists (all lists are in slot order), so most
+    non-matches are ruled out without touching their entries. Usernames are padded with two start markers, which makes one- and
+    two-character searches prefix lookups.
+
+    Matches are ranked exact match first, then prefix matches, then matches at the start of a word ('@', '.', '_', '-', '+'),
+    then other matches; within a rank by match position, then length, then alphabetically. Only the requested window is kept
+    in a bounded heap while the total is counted.
+
+    The index is built by streaming the user store on a background thread once the application is ready; searches are refused
+    until then. The UserManagementService applies registrations, updates and deletions once their transaction has committed. A user that is removed or
+    renamed leaves a dead slot behind. Dead slots are dropped by a rebuild, which also runs every app.user-search.rebuild-interval
+    to pick up writes made by other instances. Changes made while a rebuild streams the store are replayed on top of it.
+ */
+
+@Component // Used by the admin user search
+public class UsernameSearchIndex {
+    private static final Logger log = LoggerFactory.getLogger(UsernameSearchIndex.class);
+    private static final char START = '\u0002'; // Pads the start of every username; cannot occur in a username
+    public static final int MAX_WINDOW = 10_000; // Largest offset + size a search may ask for
+    private static final String WORD_SEPARATORS = "@._-+";
+
+    private final UserStore userStore; // Source of the users for builds and rebuilds
+    private final Duration rebuildInterval;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock(); // Many concurrent searches, exclusive writes
+    private Segment segment = new Segment(); // Guarded by lock
+    private List<Change> rebuildLog; // Changes applied while a rebuild streams the store; guarded by lock, null otherwise
+    private final AtomicBoolean rebuilding = new AtomicBoolean(); // One rebuild at a time
+    private volatile boolean ready; // True once the first build has completed
+    private ScheduledExecutorService rebuilder; // Single rebuild thread
+
+    public UsernameSearchIndex(UserStore userStore, @Value("${app.user-search.rebuild-interval:30m}") Duration rebuildInterval) {
+        this.userStore = userStore;
+        this.rebuildInterval = rebuildInterval;
+    }
+
+    // Starts the first build off the startup path and schedules the periodic rebuilds
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        rebuilder = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "user-search-index");
+            thread.setDaemon(true);
+            return thread;
+        });
+        rebuilder.scheduleWithFixedDelay(this::rebuildSafely, 0, rebuildInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (rebuilder != null) {
+            rebuilder.shutdownNow();
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    // Adds a new user or applies a rename or role change; call it after the write has committed
+    public void put(OurUser user) {
+        if (user.getUserId() == null) {
+            return; // Not addressable through the users API
+        }
+        apply(new Change(user.getUserId(), user.getUsername(), user.getRoles()));
+    }
+
+    // Removes a user; call it after the delete has committed
+    public void remove(OurUser user) {
+        if (user.getUserId() == null) {
+            return;
+        }
+        apply(new Change(user.getUserId(), null, null));
+    }
+
+    // The window [offset, offset + limit) of the ranked matches of the fragment; refused before the first build
+    public Result search(String fragment, int offset, int limit) {
+        if (!ready) {
+            throw new IllegalStateException("The user search index is still being built");
+        }
+        if (offset < 0 || limit < 1 || offset + limit > MAX_WINDOW) {
+            throw new IllegalArgumentException("offset + limit must be at most " + MAX_WINDOW);
+        }
+        String query = UsernameHashing.normalize(fragment.strip());
+        if (query.isEmpty()) {
+            return new Result(0, List.of());
+        }
+        boolean prefixOnly = query.length() < 3;
+        String probe = prefixOnly ? String.valueOf(START).repeat(3 - query.length()) + query : query;
+        long[] trigrams = trigrams(probe);
+
+        int window = offset + limit;
+        Comparator<Candidate> order = Candidate.ORDER;
+        PriorityQueue<Candidate> best = new PriorityQueue<>(Math.min(window, 64), order.reversed()); // Worst kept candidate on top
+        long total = 0;
+
+        lock.readLock().lock();
+        try {
+            Postings[] lists = new Postings[trigrams.length];
+            for (int i = 0; i < trigrams.length; i++) {
+                lists[i] = segment.postings.get(trigrams[i]);
+                if (lists[i] == null) {
+                    return new Result(0, List.of()); // Some trigram of the fragment occurs in no username
+                }
+            }
+            Arrays.sort(lists, Comparator.comparingInt(postings -> postings.size));
+            Postings shortest = lists[0];
+            int filters = Math.min(2, lists.length - 1); // Intersecting with more lists rarely prunes anything the check below would not
+            int[] cursors = new int[filters + 1];
+            candidates:
+            for (int i = 0; i < shortest.size; i++) {
+                int slot = shortest.slots[i];
+                for (int f = 1; f <= filters; f++) {
+                    cursors[f] = seek(lists[f], cursors[f], slot);
+                    if (cursors[f] == lists[f].size || lists[f].slots[cursors[f]] != slot) {
+                        continue candidates; // Rules the user out without touching its entry
+                    }
+                }
+                Entry entry = segment.entries[slot];
+                if (entry == null) {
+                    continue; // Removed or renamed since the last rebuild
+                }
+                int position = prefixOnly ? (entry.normalized.startsWith(query) ? 0 : -1) : entry.normalized.indexOf(query);
+                if (position < 0) {
+                    continue; // Has the trigrams but not the whole fragment
+                }
+                total++;
+                int rank = rank(entry.normalized, query, position);
+                if (best.size() < window) {
+                    best.add(new Candidate(entry, rank, position));
+                } else if (Candidate.ranksBefore(rank, position, entry, best.peek())) {
+                    best.poll();
+                    best.add(new Candidate(entry, rank, position));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        Candidate[] ranked = best.toArray(new Candidate[0]);
+        Arrays.sort(ranked, order);
+        List<Match> matches = new ArrayList<>(Math.max(0, ranked.length - offset));
+        for (int i = offset; i < ranked.length; i++) {
+            Entry entry = ranked[i].entry;
+            matches.add(new Match(entry.userId, entry.username, entry.roles));
+        }
+        return new Result(total, matches);
+    }
+
+    // Rebuilds the index from the user store; changes applied meanwhile are replayed on top of the streamed users
+    void rebuild() {
+        if (!rebuilding.compareAndSet(false, true)) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            lock.writeLock().lock();
+            try {
+                rebuildLog = new ArrayList<>();
+            } finally {
+                lock.writeLock().unlock();
+            }
+            Segment fresh = new Segment();
+            long count = userStore.forEachUser(fresh::put); // Streams without holding the lock, searches keep using the old segment
+            lock.writeLock().lock();
+            try {
+                for (Change change : rebuildLog) {
+                    fresh.apply(change);
+                }
+                segment = fresh;
+            } finally {
+                rebuildLog = null;
+                lock.writeLock().unlock();
+            }
+            ready = true;
+            log.info("User search index built over {} users with {} trigrams in {} ms",
+                    count, fresh.postings.size(), (System.nanoTime() - start) / 1_000_000);
+        } finally {
+            rebuilding.set(false);
+        }
+    }
+
+    private void rebuildSafely() {
+        try {
+            rebuild();
+        } catch (RuntimeException e) {
+            log.warn("Could not rebuild the user search index, keeping the current one", e);
+        }
+    }
+
+    private void apply(Change change) {
+        boolean compact;
+        lock.writeLock().lock();
+        try {
+            segment.apply(change);
+            if (rebuildLog != null) {
+                rebuildLog.add(change);
+            }
+            compact = segment.removed > Math.max(10_000, segment.size - segment.removed); // More dead slots than live ones
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (compact && rebuilder != null && !rebuilding.get()) {
+            rebuilder.execute(this::rebuildSafely);
+        }
+    }
+
+    // First index at or after from whose slot is >= target; gallops, so walking a list in step with another costs O(1) per step
+    private static int seek(Postings postings, int from, int target) {
+        int[] slots = postings.slots;
+        int size = postings.size;
+        if (from >= size || slots[from] >= target) {
+            return from;
+        }
+        int low = from; // slots[low] < target
+        int step = 1;
+        int high = from + 1;
+        while (high < size && slots[high] < target) {
+            low = high;
+            step <<= 1;
+            high = low + step;
+        }
+        int found = Arrays.binarySearch(slots, low + 1, Math.min(high, size), target);
+        return found >= 0 ? found : -found - 1;
+    }
+
+    // 0 exact, 1 prefix, 2 start of a word, 3 anywhere else
+    private static int rank(String username, String query, int position) {
+        if (position == 0) {
+            return username.length() == query.length() ? 0 : 1;
+        }
+        return WORD_SEPARATORS.indexOf(username.charAt(position - 1)) >= 0 ? 2 : 3;
+    }
+
+    // Distinct trigrams of the text, each packed into a long as three 16-bit characters
+    private static long[] trigrams(String text) {
+        int count = Math.max(0, text.length() - 2);
+        long[] trigrams = new long[count];
+        for (int i = 0; i < count; i++) {
+            trigrams[i] = ((long) text.charAt(i) << 32) | ((long) text.charAt(i + 1) << 16) | text.charAt(i + 2);
+        }
+        Arrays.sort(trigrams);
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if (distinct == 0 || trigrams[distinct - 1] != trigrams[i]) {
+                trigrams[distinct++] = trigrams[i];
+            }
+        }
+        return Arrays.copyOf(trigrams, distinct);
+    }
+
+    // One generation of the index: users by slot, posting lists by trigram and slots by user ID
+    private static final class Segment {
+        private Entry[] entries = new Entry[1024];
+        private int size; // Slots handed out, including dead ones
+        private int removed; // Dead slots
+        private final Map<Long, Postings> postings = new HashMap<>();
+        private final Map<Long, Integer> slotsByUserId = new HashMap<>();
+
+        private void apply(Change change) {
+            if (change.username == null) {
+                remove(change.userId);
+            } else {
+                put(change.userId, change.username, change.roles);
+            }
+        }
+
+        private void put(long userId, String username, String roles) {
+            Integer slot = slotsByUserId.get(userId);
+            if (slot != null) {
+                Entry existing = entries[slot];
+                if (existing.username.equals(username)) {
+                    entries[slot] = new Entry(userId, username, existing.normalized, roles); // Same trigrams, nothing to re-index
+                    return;
+                }
+                remove(userId);
+            }
+            String normalized = UsernameHashing.normalize(username);
+            if (size == entries.length) {
+                entries = Arrays.copyOf(entries, size * 2);
+            }
+            int newSlot = size++;
+            entries[newSlot] = new Entry(userId, username, normalized, roles);
+            slotsByUserId.put(userId, newSlot);
+            for (long trigram : trigrams(String.valueOf(START) + START + normalized)) {
+                postings.computeIfAbsent(trigram, key -> new Postings()).add(newSlot);
+            }
+        }
+
+        private void remove(long userId) {
+            Integer slot = slotsByUserId.remove(userId);
+            if (slot != null) {
+                entries[slot] = null; // Its posting list entries are skipped until the next rebuild
+                removed++;
+            }
+        }
+    }
+
+    // Growable list of slots, in insertion order
+    private static final class Postings {
+        private int[] slots = new int[4];
+        private int size;
+
+        private void add(int slot) {
+            if (size == slots.length) {
+                slots = Arrays.copyOf(slots, size * 2);
+            }
+            slots[size++] = slot;
+        }
+    }
+
+    private static final class Entry {
+        private final long userId;
+        private final String username; // As stored
+        private final String normalized; // Folded like the database collation
+        private final String roles;
+
+        private Entry(long userId, String username, String normalized, String roles) {
+            this.userId = userId;
+            this.username = username;
+            this.normalized = normalized;
+            this.roles = roles;
+        }
+    }
+
+    // A registration, update or deletion; a null username removes the user
+    private static final class Change {
+        private final long userId;
+        private final String username;
+        private final String roles;
+
+        private Change(long userId, String username, String roles) {
+            this.userId = userId;
+            this.username = username;
+            this.roles = roles;
+        }
+    }
+
+    private static final class Candidate {
+        private static final Comparator<Candidate> ORDER = Comparator.<Candidate>comparingInt(candidate -> candidate.rank)
+                .thenComparingInt(candidate -> candidate.position)
+                .thenComparingInt(candidate -> candidate.entry.normalized.length())
+                .thenComparing(candidate -> candidate.entry.normalized);
+
+        private final Entry entry;
+        private final int rank;
+        private final int position;
+
+        private Candidate(Entry entry, int rank, int position) {
+            this.entry = entry;
+            this.rank = rank;
+            this.position = position;
+        }
+
+        // Same as ORDER.compare(new Candidate(entry, rank, position), other) < 0, without allocating for the usual rejection
+        private static boolean ranksBefore(int rank, int position, Entry entry, Candidate other) {
+            if (rank != other.rank) {
+                return rank < other.rank;
+            }
+            if (position != other.position) {
+                return position < other.position;
+            }
+            if (entry.normalized.length() != other.entry.normalized.length()) {
+                return entry.normalized.length() < other.entry.normalized.length();
+            }
+            return entry.normalized.compareTo(other.entry.normalized) < 0;
+        }
+    }
+
+    // One matching user
+    public static final class Match {
+        private final long userId;
+        private final String username;
+        private final String roles;
+
+        private Match(long userId, String username, String roles) {
+            this.userId = userId;
+            this.username = username;
+            this.roles = roles;
+        }
+
+        public long getUserId() {
+            return userId;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public String getRoles() {
+            return roles;
+        }
+    }
+
+    // The requested window of matches and how many users matched in total
+    public static final class Result {
+        private final long total;
+        private final List<Match> matches;
+
+        private Result(long total, List<Match> matches) {
+            this.total = total;
+            this.matches = matches;
+        }
+
+        public long getTotal() {
+            return total;
+        }
+
+        public List<Match> getMatches() {
+            return matches;
+        }
+    }
+}
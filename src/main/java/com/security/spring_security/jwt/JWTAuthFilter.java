@@ -1,10 +1,14 @@
 package com.security.spring_security.jwt;
 
-import com.security.spring_security.service.OurUserDetailsService;
+import com.security.spring_security.activity.UserActivityTracker;
+import com.security.spring_security.service.ResilientUserLookup;
+import com.security.spring_security.usage.UsageMeter;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.authentication.AuthenticationServiceException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -21,8 +25,11 @@ import java.io.IOException;
     If the header is missing or blank, the filter skips further processing and allows the request to proceed.
     If the header is present, the JWT token is extracted by removing the "Bearer " prefix.
     The filter uses the JWTUtils class to extract the username from the token and validates the token's authenticity and expiration.
-    If the username is successfully retrieved and the token is valid, the OurUserDetailsService is used to load the user details.
+    In opaque token mode the same calls resolve the token through the OpaqueTokenStore, and an unknown token yields no username.
+    If the username is successfully retrieved and the token is valid, the ResilientUserLookup is used to load the user details.
+    If the database cannot answer in time the lookup falls back to recently loaded details, or the request is answered with 503 when there are none.
     A UsernamePasswordAuthenticationToken is created with the user's details and roles, and the SecurityContextHolder is updated to store the authentication.
+    The request is then counted as user activity and, per endpoint, by the UsageMeter; both only touch memory on the request path.
     This ensures that Spring Security recognizes the user as authenticated for the current request.
     After processing the token, the filter passes the request to the next filter in the chain.
     This setup seamlessly integrates JWT authentication with Spring Security, allowing secure access to protected endpoints.
@@ -31,12 +38,16 @@ import java.io.IOException;
 @Component // Marks this class as a Spring-managed component, making it eligible for dependency injection
 public class JWTAuthFilter extends OncePerRequestFilter {
     private final JWTUtils jwtUtils;  // JWT utility class that validates and parses tokens
-    private final OurUserDetailsService userDetailsService;  // Custom service that loads user details
+    private final ResilientUserLookup userDetailsService;  // Loads user details with a timeout, circuit breaker and stale fallback
+    private final UserActivityTracker userActivityTracker;  // Buffers last-seen updates for authenticated users
+    private final UsageMeter usageMeter;  // Counts calls per user and endpoint
 
-    // Constructor injects JWTUtils and OurUserDetailsService dependencies
-    public JWTAuthFilter(JWTUtils jwtUtils, OurUserDetailsService ourUserDetailsService) {
+    // Constructor injects JWTUtils, ResilientUserLookup, UserActivityTracker and UsageMeter dependencies
+    public JWTAuthFilter(JWTUtils jwtUtils, ResilientUserLookup resilientUserLookup, UserActivityTracker userActivityTracker, UsageMeter usageMeter) {
         this.jwtUtils = jwtUtils;
-        this.userDetailsService = ourUserDetailsService;
+        this.userDetailsService = resilientUserLookup;
+        this.userActivityTracker = userActivityTracker;
+        this.usageMeter = usageMeter;
     }
 
     @Override
@@ -59,7 +70,15 @@ public class JWTAuthFilter extends OncePerRequestFilter {
         // If the userEmail exists and no authentication is set in the SecurityContext, proceed
         if (userEmail != null && SecurityContextHolder.getContext().getAuthentication() == null) {
             // Loads user details using the username extracted from the token
-            UserDetails userDetails = userDetailsService.loadUserByUsername(userEmail);
+            UserDetails userDetails;
+            try {
+                userDetails = userDetailsService.loadUserByUsername(userEmail);
+            } catch (AuthenticationServiceException e) {
+                // The user store is down and no recent copy of this user is available
+                response.setHeader("Retry-After", "5");
+                response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value(), e.getMessage());
+                return;
+            }
 
             // Validates the JWT token against the loaded user details
             if (jwtUtils.isTokenValid(jwtToken, userDetails)) {
@@ -75,6 +94,10 @@ public class JWTAuthFilter extends OncePerRequestFilter {
                 securityContext.setAuthentication(token);
                 // Stores the updated SecurityContext in the SecurityContextHolder
                 SecurityContextHolder.setContext(securityContext);
+                // Records the request as user activity; written to the database by the next batched flush
+                userActivityTracker.recordSeen(userDetails.getUsername());
+                // Counts the call for billing and quotas; flushed in batches by the UsageMeter
+                usageMeter.record(userDetails, request);
             }
         }
         // Proceeds with the filter chain
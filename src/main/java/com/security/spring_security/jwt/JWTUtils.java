@@ -1,8 +1,9 @@
 package com.security.spring_security.jwt;
 
+import com.security.spring_security.profiling.TokenVerifyEvent;
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.Jwts;
-import io.jsonwebtoken.SignatureAlgorithm;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
@@ -20,6 +21,12 @@ import java.util.function.Function;
     It includes utility methods like extractClaims for parsing claims from tokens and extractUsername for retrieving the username.
     Additionally, it validates tokens by checking their expiration and matching the username with the given UserDetails.
     These functionalities collectively enable robust JWT-based authentication in the application.
+    Tokens are minted by the TokenMinter, which produces the same bytes as the jjwt builder from a pre-encoded header,
+    reused per-thread buffers and a per-thread Mac; parsing and verification still go through jjwt.
+    With app.token.mode=opaque the same methods issue and resolve short random tokens through the OpaqueTokenStore instead,
+    which also makes revoke and revokeAll take effect immediately; in JWT mode those two do nothing.
+    Every token records its TokenUse (the token_use claim, or alongside the opaque token), so a refresh token is never accepted
+    as a bearer token and only a refresh token can be exchanged for a new pair.
 
 
     A JWT typically consists of three parts: header, payload, signature
@@ -34,6 +41,7 @@ import java.util.function.Function;
           "sub": "username123",        // Subject (usually the username)
           "iat": 1674768000,           // Issued At (timestamp)
           "exp": 1674771600,           // Expiration Time (timestamp)
+          "token_use": "access",       // Custom claim (access or refresh token)
           "roles": "ROLE_USER"         // Custom claim (user roles)
         }
         What is Claims?
@@ -45,67 +53,120 @@ import java.util.function.Function;
 public class JWTUtils {
     // Secret key used for signing and verifying the JWT
     private final SecretKeySpec Key;
+    // Issues tokens from a fixed template without the jjwt builder
+    private final TokenMinter tokenMinter;
+    // Issues and resolves opaque tokens; null in JWT mode
+    private final OpaqueTokenStore opaqueTokenStore;
 
     // Constructor initializes the signing key using the secret from application properties
-    public JWTUtils(@Value("${jwt.secret}") String secretString) {
+    public JWTUtils(@Value("${jwt.secret}") String secretString, ObjectProvider<OpaqueTokenStore> opaqueTokenStore) {
         // Decodes the secret string and creates the signing key
         byte[] keyBytes = Base64.getDecoder().decode(secretString);
         this.Key = new SecretKeySpec(keyBytes, "HmacSHA256");
+        this.tokenMinter = new TokenMinter(Key);
+        this.opaqueTokenStore = opaqueTokenStore.getIfAvailable(); // Only defined when app.token.mode=opaque
     }
 
     // Generates a JWT access token for the given UserDetails
     public String generateAccessToken(UserDetails userDetails) {
-        // Builds the access token with the username as the subject, current time as issue date,
-        // an expiration time of 30 minutes, and signs it using the key
-        return Jwts.builder()
-                .subject(userDetails.getUsername()) // Sets the username as the token subject
-                .issuedAt(new Date(System.currentTimeMillis())) // Sets issue date
-                .expiration(new Date(System.currentTimeMillis() + 1800000)) // Sets expiration date (30 mins)
-                .signWith(Key) // Signs the token with the HMAC key
-                .compact(); // Returns the final token as a compact string
+        // Mints the access token with the username as the subject, current time as issue date,
+        // an expiration time of 30 minutes, signed with the HMAC key
+        if (opaqueTokenStore != null) {
+            return opaqueTokenStore.issue(userDetails.getUsername(), 1800000, TokenUse.ACCESS);
+        }
+        long now = System.currentTimeMillis();
+        return tokenMinter.mint(userDetails.getUsername(), now, now + 1800000, TokenUse.ACCESS);
     }
 
     // Generates a JWT refresh token for the given UserDetails
     public String generateRefreshToken(UserDetails userDetails) {
-        // Builds the refresh token with the username as the subject, current time as issue date,
-        // an expiration time of 1 hour, and signs it using the key
-        return Jwts.builder()
-                .subject(userDetails.getUsername()) // Sets the username as the token subject
-                .issuedAt(new Date(System.currentTimeMillis())) // Sets issue date
-                .expiration(new Date(System.currentTimeMillis() + 3600000)) // Sets expiration date (1 hour)
-                .signWith(Key) // Signs the token with the HMAC key
-                .compact(); // Returns the final token as a compact string
+        // Mints the refresh token with the username as the subject, current time as issue date,
+        // an expiration time of 1 hour, signed with the HMAC key
+        if (opaqueTokenStore != null) {
+            return opaqueTokenStore.issue(userDetails.getUsername(), 3600000, TokenUse.REFRESH);
+        }
+        long now = System.currentTimeMillis();
+        return tokenMinter.mint(userDetails.getUsername(), now, now + 3600000, TokenUse.REFRESH);
     }
 
     // Extracts claims from a JWT token using a provided function
     public <T> T extractClaims(String token, Function<Claims, T> claimsTFunction) {
         // Parses the token, verifies its signature, and extracts claims using the provided function
-        return claimsTFunction.apply(
-                Jwts.parser()
-                        .verifyWith(Key) // Verifies the token with the signing key
-                        .build()
-                        .parseSignedClaims(token)
-                        .getPayload()
-        );
+        TokenVerifyEvent event = new TokenVerifyEvent(); // JFR event, recorded only when slower than its threshold
+        event.begin();
+        try {
+            T result = claimsTFunction.apply(
+                    Jwts.parser()
+                            .verifyWith(Key) // Verifies the token with the signing key
+                            .build()
+                            .parseSignedClaims(token)
+                            .getPayload()
+            );
+            event.valid = true;
+            return result;
+        } finally {
+            event.commit(); // No-op unless a recording is running and the threshold was exceeded
+        }
     }
 
-    // Extracts the username (subject) from a token
+    // Extracts the username (subject) from a token; in opaque mode null for an unknown, expired or revoked access token
     public String extractUsername(String token) {
+        if (opaqueTokenStore != null) {
+            TokenVerifyEvent event = new TokenVerifyEvent();
+            event.begin();
+            String username = opaqueTokenStore.resolve(token, TokenUse.ACCESS); // One hash lookup, no signature to check
+            event.valid = username != null;
+            event.commit();
+            return username;
+        }
         // Uses the extractClaims method to get the "subject" claim
         return extractClaims(token, Claims::getSubject);
     }
 
+    // Username of a refresh token, or null for an access token; throws like extractClaims for an invalid or expired JWT
+    public String extractRefreshUsername(String token) {
+        if (opaqueTokenStore != null) {
+            return opaqueTokenStore.resolve(token, TokenUse.REFRESH); // Null for unknown, expired, revoked and access tokens
+        }
+        return extractClaims(token, claims -> TokenUse.REFRESH.getClaimValue().equals(claims.get(TokenUse.CLAIM, String.class))
+                ? claims.getSubject()
+                : null);
+    }
+
     // Checks if the token is expired
-    private boolean isTokenExpired(String token) {
-        // Extracts the expiration claim and checks if it's before the current time
-        return extractClaims(token, Claims::getExpiration).before(new Date());
+    private boolean isTokenExpired(Claims claims) {
+        // Checks if the expiration claim is before the current time
+        return claims.getExpiration().before(new Date());
     }
 
-    // Validates if the token is valid for the given UserDetails
+    // Validates if the token is a valid access token for the given UserDetails
     public boolean isTokenValid(String token, UserDetails userDetails) {
-        // Extracts the username from the token and ensures it matches the user's username
-        // Also checks that the token is not expired
-        final String username = extractUsername(token);
-        return (username.equals(userDetails.getUsername()) && !isTokenExpired(token));
+        if (opaqueTokenStore != null) {
+            // The store never resolves an expired token, nor a refresh token as an access token
+            return userDetails.getUsername().equals(extractUsername(token));
+        }
+        // Ensures the subject matches the user's username, that the token is not expired and that it is not a refresh token
+        // (tokens minted before the token_use claim existed have none and are still accepted until they expire)
+        return extractClaims(token, claims -> userDetails.getUsername().equals(claims.getSubject())
+                && !isTokenExpired(claims)
+                && !TokenUse.REFRESH.getClaimValue().equals(claims.get(TokenUse.CLAIM, String.class)));
+    }
+
+    // Invalidates a single token in opaque mode; JWTs stay valid until they expire
+    public void revoke(String token) {
+        if (opaqueTokenStore != null) {
+            opaqueTokenStore.revoke(token);
+        }
+    }
+
+    // Invalidates every token of the user in opaque mode; JWTs stay valid until they expire
+    public void revokeAll(String username) {
+        if (opaqueTokenStore != null && username != null) {
+            opaqueTokenStore.revokeAll(username);
+        }
+    }
+
+    public boolean isOpaqueMode() {
+        return opaqueTokenStore != null;
     }
 }
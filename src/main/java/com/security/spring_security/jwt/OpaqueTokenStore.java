@@ -0,0 +1,320 @@
+package com.security.spring_security.jwt;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/*
+    The OpaqueTokenStore backs the opaque token mode (app.token.mode=opaque), in which access and refresh tokens are 22 random
+    Base64URL characters (128 bits) instead of signed JWTs, and every token is looked up here.
+
+    The store never holds a token itself, only its SHA-256 digest, so neither a heap dump nor the snapshot file hands out usable
+    credentials (128 random bits need no salt or slow hash). Digests are spread over 64 stripes, each a HashMap guarded by its own lock,
+    so resolving a token is one SHA-256 and one hash lookup under a lock that only 1/64th of the other requests compete for. Each entry holds the username, the expiry and the
+    TokenUse, so a refresh token never resolves as an access token or the other way round; expired entries are never returned and are
+    removed by a sweep every app.token.opaque.sweep-interval. Revoking a token, or every token of a user, takes effect on the next request.
+
+    With app.token.opaque.snapshot-file set, the live token digests are written to that file after each sweep and on shutdown (to a
+    temporary file created readable by the owner only, then moved over it) and loaded again at startup, so a restart does not log everybody out; tokens issued since the last
+    snapshot are lost if the process dies. Tokens only exist on the instance that issued them, so several instances need sticky sessions.
+ */
+
+@Component // Only present in opaque token mode
+@ConditionalOnProperty(name = "app.token.mode", havingValue = "opaque")
+public class OpaqueTokenStore {
+    private static final Logger log = LoggerFactory.getLogger(OpaqueTokenStore.class);
+    private static final int STRIPES = 64; // Power of two
+    private static final int TOKEN_BYTES = 16;
+    private static final int SNAPSHOT_VERSION = 3; // 2 added the token use, 3 stores digests instead of tokens
+    private static final int PLAINTEXT_SNAPSHOT_VERSION = 2; // Still read, hashing each token on the way in
+    private static final int DIGEST_BYTES = 32;
+    private static final Set<PosixFilePermission> OWNER_ONLY = PosixFilePermissions.fromString("rw-------");
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final SecureRandom random = new SecureRandom(); // Only used when issuing
+    private final ThreadLocal<MessageDigest> sha256 = ThreadLocal.withInitial(OpaqueTokenStore::newSha256); // Per-thread digest
+    private final Path snapshotFile; // Null when tokens are not persisted
+    private final Duration sweepInterval;
+    private ScheduledExecutorService sweeper; // Single sweeper thread
+
+    public OpaqueTokenStore(@Value("${app.token.opaque.snapshot-file:}") String snapshotFile,
+                            @Value("${app.token.opaque.sweep-interval:1m}") Duration sweepInterval,
+                            MeterRegistry meterRegistry) {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+        this.snapshotFile = snapshotFile.isBlank() ? null : Path.of(snapshotFile);
+        this.sweepInterval = sweepInterval;
+        Gauge.builder("auth.tokens.opaque.active", this, OpaqueTokenStore::size).register(meterRegistry);
+    }
+
+    @PostConstruct // Loads the last snapshot and starts the sweep
+    void start() throws IOException {
+        if (snapshotFile != null && Files.exists(snapshotFile)) {
+            log.info("Loaded {} opaque tokens from {}", load(snapshotFile), snapshotFile);
+        }
+        sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "token-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMillis = sweepInterval.toMillis();
+        sweeper.scheduleWithFixedDelay(this::sweepSafely, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // Issues a new token of the given use for the username, valid for ttlMillis
+    public String issue(String username, long ttlMillis, TokenUse use) {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        TokenDigest digest = digest(token);
+        Stripe stripe = stripeFor(digest);
+        synchronized (stripe) {
+            stripe.entries.put(digest, new Entry(username, System.currentTimeMillis() + ttlMillis, use));
+        }
+        return token;
+    }
+
+    // Username the token was issued to, or null if it is unknown, expired, revoked or was issued for another use
+    public String resolve(String token, TokenUse use) {
+        TokenDigest digest = digest(token);
+        Stripe stripe = stripeFor(digest);
+        Entry entry;
+        synchronized (stripe) {
+            entry = stripe.entries.get(digest);
+        }
+        return entry != null && entry.use == use && entry.expiresAt > System.currentTimeMillis() ? entry.username : null;
+    }
+
+    public void revoke(String token) {
+        TokenDigest digest = digest(token);
+        Stripe stripe = stripeFor(digest);
+        synchronized (stripe) {
+            stripe.entries.remove(digest);
+        }
+    }
+
+    // Revokes every token of the user; walks the whole store, which is fine for password changes and deletions
+    public int revokeAll(String username) {
+        int revoked = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                Iterator<Entry> entries = stripe.entries.values().iterator();
+                while (entries.hasNext()) {
+                    if (entries.next().username.equals(username)) {
+                        entries.remove();
+                        revoked++;
+                    }
+                }
+            }
+        }
+        return revoked;
+    }
+
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.entries.size();
+            }
+        }
+        return size;
+    }
+
+    // Removes expired tokens and writes the snapshot
+    void sweep() throws IOException {
+        long now = System.currentTimeMillis();
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                stripe.entries.values().removeIf(entry -> entry.expiresAt <= now);
+            }
+        }
+        if (snapshotFile != null) {
+            save(snapshotFile);
+        }
+    }
+
+    private void sweepSafely() {
+        try {
+            sweep();
+        } catch (IOException | RuntimeException e) {
+            log.warn("Opaque token sweep failed", e);
+        }
+    }
+
+    // Writes every live token digest; each stripe is copied under its lock so issuing is never blocked on the disk
+    void save(Path file) throws IOException {
+        Path dir = file.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path tmp = createOwnerOnlyFile(dir, file.getFileName().toString());
+        long now = System.currentTimeMillis();
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 64 * 1024))) {
+                out.writeInt(SNAPSHOT_VERSION);
+                for (Stripe stripe : stripes) {
+                    List<Map.Entry<TokenDigest, Entry>> copy;
+                    synchronized (stripe) {
+                        copy = new ArrayList<>(stripe.entries.entrySet());
+                    }
+                    for (Map.Entry<TokenDigest, Entry> token : copy) {
+                        if (token.getValue().expiresAt > now) {
+                            out.writeBoolean(true); // Another token follows
+                            out.write(token.getKey().bytes);
+                            out.writeUTF(token.getValue().username);
+                            out.writeLong(token.getValue().expiresAt);
+                            out.writeByte(token.getValue().use.ordinal());
+                        }
+                    }
+                }
+                out.writeBoolean(false);
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp); // Only left behind when writing or moving failed
+        }
+    }
+
+    // Creates the temporary snapshot with owner-only permissions from the start, so no other user can open it while it is written
+    private static Path createOwnerOnlyFile(Path dir, String name) throws IOException {
+        try {
+            FileAttribute<Set<PosixFilePermission>> ownerOnly = PosixFilePermissions.asFileAttribute(OWNER_ONLY);
+            return Files.createTempFile(dir, name, ".tmp", ownerOnly);
+        } catch (UnsupportedOperationException e) {
+            return Files.createTempFile(dir, name, ".tmp"); // Not a POSIX file system; rely on the directory's permissions
+        }
+    }
+
+    // Adds the unexpired tokens of a snapshot; returns how many were loaded
+    int load(Path file) throws IOException {
+        long now = System.currentTimeMillis();
+        int loaded = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 64 * 1024))) {
+            int version = in.readInt();
+            if (version != SNAPSHOT_VERSION && version != PLAINTEXT_SNAPSHOT_VERSION) {
+                log.warn("Ignoring {}, it was written by an incompatible version", file);
+                return 0;
+            }
+            while (in.readBoolean()) {
+                TokenDigest digest;
+                if (version == PLAINTEXT_SNAPSHOT_VERSION) {
+                    digest = digest(in.readUTF()); // Replaced by a digest-only snapshot at the next sweep
+                } else {
+                    byte[] bytes = new byte[DIGEST_BYTES];
+                    in.readFully(bytes);
+                    digest = new TokenDigest(bytes);
+                }
+                Entry entry = new Entry(in.readUTF(), in.readLong(), TokenUse.values()[in.readByte()]);
+                if (entry.expiresAt > now) {
+                    Stripe stripe = stripeFor(digest);
+                    synchronized (stripe) {
+                        stripe.entries.put(digest, entry);
+                    }
+                    loaded++;
+                }
+            }
+        }
+        return loaded;
+    }
+
+    @PreDestroy // Stops the sweep and writes the final snapshot
+    void shutdown() {
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+        }
+        if (snapshotFile != null) {
+            try {
+                save(snapshotFile);
+            } catch (IOException e) {
+                log.warn("Could not write the opaque token snapshot to {}", snapshotFile, e);
+            }
+        }
+    }
+
+    private TokenDigest digest(String token) {
+        return new TokenDigest(sha256.get().digest(token.getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    private Stripe stripeFor(TokenDigest digest) {
+        return stripes[digest.bytes[4] & (STRIPES - 1)]; // Not the bytes of the hash code, which spreads entries within the stripe
+    }
+
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    // One lock stripe; its monitor guards the map
+    private static final class Stripe {
+        private final Map<TokenDigest, Entry> entries = new HashMap<>(); // Token digest -> owner, expiry and use
+    }
+
+    // SHA-256 of a token, the map key in place of the token itself
+    private static final class TokenDigest {
+        private final byte[] bytes;
+        private final int hash; // The first four digest bytes, already uniformly distributed
+
+        private TokenDigest(byte[] bytes) {
+            this.bytes = bytes;
+            this.hash = (bytes[0] & 0xff) << 24 | (bytes[1] & 0xff) << 16 | (bytes[2] & 0xff) << 8 | (bytes[3] & 0xff);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof TokenDigest digest && Arrays.equals(bytes, digest.bytes);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static final class Entry {
+        private final String username;
+        private final long expiresAt; // Epoch millis
+        private final TokenUse use; // Access or refresh token
+
+        private Entry(String username, long expiresAt, TokenUse use) {
+            this.username = username;
+            this.expiresAt = expiresAt;
+            this.use = use;
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package com.security.spring_security.jwt;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+
+/*
+    The TokenMinter issues signed JWTs without going through the jjwt builder.
+
+    The tokens this application issues always have the same shape: a constant {"alg":"HS..."} header and a payload of
+    {"sub":...,"iat":...,"exp":...,"token_use":...} in that order. The minter therefore Base64URL-encodes the header once at construction time,
+    writes the payload JSON from that fixed template straight into a per-thread byte buffer, encodes it in place, and signs it with
+    a per-thread Mac that is initialised once and reused. The only allocations per token are the resulting String and its backing array.
+
+    The output is byte-for-byte what Jwts.builder().subject(..).issuedAt(..).expiration(..).claim("token_use", ..).signWith(key).compact() produces:
+    the same algorithm selection (from the key's JCA algorithm name), the same Jackson-style string escaping, seconds-precision
+    timestamps and unpadded Base64URL. Tokens are still parsed and verified by jjwt in JWTUtils.
+ */
+final class TokenMinter {
+    private static final byte[] BASE64URL = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] HEX = "0123456789ABCDEF".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] SUB_PREFIX = "{\"sub\":\"".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] IAT_PREFIX = "\"iat\":".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] EXP_PREFIX = ",\"exp\":".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TOKEN_USE_PREFIX = (",\"" + TokenUse.CLAIM + "\":\"").getBytes(StandardCharsets.US_ASCII);
+
+    private final byte[] encodedHeader; // Base64URL of the constant header followed by '.'
+    private final ThreadLocal<State> state; // Reused Mac and buffers, one set per thread
+
+    TokenMinter(SecretKeySpec key) {
+        String jwsAlgorithm = jwsAlgorithm(key.getAlgorithm());
+        byte[] header = ("{\"alg\":\"" + jwsAlgorithm + "\"}").getBytes(StandardCharsets.US_ASCII);
+        byte[] encoded = new byte[base64Length(header.length) + 1];
+        int length = base64Url(header, header.length, encoded, 0);
+        encoded[length] = '.';
+        this.encodedHeader = encoded;
+
+        Mac prototype = newMac(key); // Fails fast on a bad key instead of on the first login
+        this.state = ThreadLocal.withInitial(() -> new State(cloneOrCreate(prototype, key)));
+    }
+
+    // Mints a token for the subject with the given issue and expiry instants (epoch milliseconds); a null use omits the token_use claim
+    String mint(String subject, long issuedAtMillis, long expirationMillis, TokenUse use) {
+        State s = state.get();
+        subject = clean(subject); // jjwt trims string claims and drops them when empty
+
+        // 1. Payload JSON from the fixed template
+        int jsonLength = writePayload(s, subject, issuedAtMillis / 1000, expirationMillis / 1000, use);
+
+        // 2. header '.' base64url(payload)
+        int signingInputLength = encodedHeader.length + base64Length(jsonLength);
+        byte[] out = s.ensureOut(signingInputLength + 1 + base64Length(s.signature.length));
+        System.arraycopy(encodedHeader, 0, out, 0, encodedHeader.length);
+        base64Url(s.json, jsonLength, out, encodedHeader.length);
+
+        // 3. '.' base64url(HMAC(signing input))
+        try {
+            s.mac.update(out, 0, signingInputLength);
+            s.mac.doFinal(s.signature, 0); // Also resets the Mac for the next token
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Unable to sign token", e);
+        }
+        out[signingInputLength] = '.';
+        int total = signingInputLength + 1 + base64Url(s.signature, s.signature.length, out, signingInputLength + 1);
+        return new String(out, 0, total, StandardCharsets.ISO_8859_1); // Base64URL output is pure ASCII
+    }
+
+    // Trims surrounding whitespace and maps empty strings to null, like jjwt's Strings.clean
+    private static String clean(String value) {
+        if (value == null) {
+            return null;
+        }
+        int start = 0;
+        int end = value.length();
+        while (start < end && Character.isWhitespace(value.charAt(start))) {
+            start++;
+        }
+        while (end > start && Character.isWhitespace(value.charAt(end - 1))) {
+            end--;
+        }
+        if (start == end) {
+            return null;
+        }
+        return start == 0 && end == value.length() ? value : value.substring(start, end);
+    }
+
+    // Writes {"sub":"...","iat":n,"exp":n,"token_use":"..."} into the thread's JSON buffer and returns its length
+    private static int writePayload(State s, String subject, long iat, long exp, TokenUse use) {
+        byte[] json = s.ensureJson(SUB_PREFIX.length + (subject != null ? subject.length() * 6 : 0) + 96); // Worst case: every char becomes a six-byte unicode escape
+        int pos;
+        if (subject != null) {
+            System.arraycopy(SUB_PREFIX, 0, json, 0, SUB_PREFIX.length);
+            pos = writeEscaped(subject, json, SUB_PREFIX.length);
+            json[pos++] = '"';
+            json[pos++] = ',';
+        } else {
+            json[0] = '{';
+            pos = 1;
+        }
+        System.arraycopy(IAT_PREFIX, 0, json, pos, IAT_PREFIX.length);
+        pos = writeLong(iat, json, pos + IAT_PREFIX.length);
+        System.arraycopy(EXP_PREFIX, 0, json, pos, EXP_PREFIX.length);
+        pos = writeLong(exp, json, pos + EXP_PREFIX.length);
+        if (use != null) {
+            System.arraycopy(TOKEN_USE_PREFIX, 0, json, pos, TOKEN_USE_PREFIX.length);
+            pos = writeEscaped(use.getClaimValue(), json, pos + TOKEN_USE_PREFIX.length);
+            json[pos++] = '"';
+        }
+        json[pos++] = '}';
+        return pos;
+    }
+
+    // UTF-8 encodes the string with the same escapes Jackson uses for JSON string values
+    private static int writeEscaped(String value, byte[] out, int pos) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                if (c == '"' || c == '\\') {
+                    out[pos++] = '\\';
+                    out[pos++] = (byte) c;
+                } else if (c >= 0x20) {
+                    out[pos++] = (byte) c;
+                } else {
+                    out[pos++] = '\\';
+                    switch (c) {
+                        case '\b' -> out[pos++] = 'b';
+                        case '\t' -> out[pos++] = 't';
+                        case '\n' -> out[pos++] = 'n';
+                        case '\f' -> out[pos++] = 'f';
+                        case '\r' -> out[pos++] = 'r';
+                        default -> pos = writeUnicodeEscape(c, out, pos - 1);
+                    }
+                }
+            } else if (c < 0x800) {
+                out[pos++] = (byte) (0xC0 | (c >> 6));
+                out[pos++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                pos = writeUnicodeEscape(c, out, pos); // Jackson escapes supplementary characters as surrogate pairs
+            } else {
+                out[pos++] = (byte) (0xE0 | (c >> 12));
+                out[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                out[pos++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        return pos;
+    }
+
+    // Writes c as a JSON unicode escape with four upper-case hex digits
+    private static int writeUnicodeEscape(char c, byte[] out, int pos) {
+        out[pos++] = '\\';
+        out[pos++] = 'u';
+        out[pos++] = HEX[(c >> 12) & 0xF];
+        out[pos++] = HEX[(c >> 8) & 0xF];
+        out[pos++] = HEX[(c >> 4) & 0xF];
+        out[pos++] = HEX[c & 0xF];
+        return pos;
+    }
+
+    // Writes a decimal number without going through Long.toString
+    private static int writeLong(long value, byte[] out, int pos) {
+        if (value < 0) {
+            out[pos++] = '-';
+            value = -value;
+        }
+        int digits = 1;
+        for (long v = value; v >= 10; v /= 10) {
+            digits++;
+        }
+        int end = pos + digits;
+        for (int i = end - 1; i >= pos; i--) {
+            out[i] = (byte) ('0' + (value % 10));
+            value /= 10;
+        }
+        return end;
+    }
+
+    // Unpadded Base64URL length for n input bytes
+    private static int base64Length(int n) {
+        return (n / 3) * 4 + (n % 3 == 0 ? 0 : n % 3 + 1);
+    }
+
+    // Unpadded Base64URL encoding of src[0, length) into dst at offset; returns the number of bytes written
+    private static int base64Url(byte[] src, int length, byte[] dst, int offset) {
+        int d = offset;
+        int s = 0;
+        int fullGroups = length / 3 * 3;
+        while (s < fullGroups) {
+            int bits = (src[s++] & 0xFF) << 16 | (src[s++] & 0xFF) << 8 | (src[s++] & 0xFF);
+            dst[d++] = BASE64URL[(bits >>> 18) & 0x3F];
+            dst[d++] = BASE64URL[(bits >>> 12) & 0x3F];
+            dst[d++] = BASE64URL[(bits >>> 6) & 0x3F];
+            dst[d++] = BASE64URL[bits & 0x3F];
+        }
+        int remaining = length - s;
+        if (remaining == 1) {
+            int bits = (src[s] & 0xFF) << 16;
+            dst[d++] = BASE64URL[(bits >>> 18) & 0x3F];
+            dst[d++] = BASE64URL[(bits >>> 12) & 0x3F];
+        } else if (remaining == 2) {
+            int bits = (src[s] & 0xFF) << 16 | (src[s + 1] & 0xFF) << 8;
+            dst[d++] = BASE64URL[(bits >>> 18) & 0x3F];
+            dst[d++] = BASE64URL[(bits >>> 12) & 0x3F];
+            dst[d++] = BASE64URL[(bits >>> 6) & 0x3F];
+        }
+        return d - offset;
+    }
+
+    // Maps the key's JCA algorithm to the JWS name jjwt puts in the header for it
+    private static String jwsAlgorithm(String jcaAlgorithm) {
+        return switch (jcaAlgorithm) {
+            case "HmacSHA256" -> "HS256";
+            case "HmacSHA384" -> "HS384";
+            case "HmacSHA512" -> "HS512";
+            default -> throw new IllegalArgumentException("Unsupported signing key algorithm " + jcaAlgorithm);
+        };
+    }
+
+    private static Mac newMac(SecretKeySpec key) {
+        try {
+            Mac mac = Mac.getInstance(key.getAlgorithm());
+            mac.init(key);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalArgumentException("Invalid JWT signing key", e);
+        }
+    }
+
+    // Cloning an initialised Mac skips the provider lookup and key schedule on each new thread
+    private static Mac cloneOrCreate(Mac prototype, SecretKeySpec key) {
+        try {
+            return (Mac) prototype.clone();
+        } catch (CloneNotSupportedException e) {
+            return newMac(key);
+        }
+    }
+
+    // Per-thread signing state
+    private static final class State {
+        private final Mac mac;
+        private final byte[] signature; // HMAC output, reused
+        private byte[] json = new byte[256]; // Payload JSON, grows for unusually long subjects
+        private byte[] out = new byte[512]; // Compact token bytes, grows for unusually long subjects
+
+        private State(Mac mac) {
+            this.mac = mac;
+            this.signature = new byte[mac.getMacLength()];
+        }
+
+        private byte[] ensureJson(int capacity) {
+            if (json.length < capacity) {
+                json = Arrays.copyOf(json, Math.max(capacity, json.length * 2));
+            }
+            return json;
+        }
+
+        private byte[] ensureOut(int capacity) {
+            if (out.length < capacity) {
+                out = Arrays.copyOf(out, Math.max(capacity, out.length * 2));
+            }
+            return out;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.security.spring_security.jwt;
+
+// What a token may be used for, carried in the token_use claim (or stored with an opaque token)
+public enum TokenUse {
+    ACCESS("access"),   // Bearer token for API requests, accepted by the JWTAuthFilter
+    REFRESH("refresh"); // Exchanged for a new token pair at /api/auth/refresh, never accepted as a bearer token
+
+    public static final String CLAIM = "token_use";
+
+    private final String claimValue; // Value of the token_use claim
+
+    TokenUse(String claimValue) {
+        this.claimValue = claimValue;
+    }
+
+    public String getClaimValue() {
+        return claimValue;
+    }
+}
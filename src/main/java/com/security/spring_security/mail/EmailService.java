@@ -1,11 +1,14 @@
 package com.security.spring_security.mail;
 
+import com.security.spring_security.profiling.EmailSendEvent;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.mail.SimpleMailMessage;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.stereotype.Service;
 
 @Service // Marks this class as a Spring service, making it a candidate for component scanning and dependency injection
+@Lazy // Only created when a caller first needs to send an email
 public class EmailService {
     private final JavaMailSender mailSender; // JavaMailSender is used to send emails
 
@@ -21,6 +24,16 @@ public class EmailService {
         message.setSubject(subject); // Sets the subject of the email
         message.setText(text); // Sets the body of the email
 
-        mailSender.send(message); // Sends the email using JavaMailSender
+        EmailSendEvent event = new EmailSendEvent(); // JFR event, recorded only when slower than its threshold
+        event.begin();
+        try {
+            mailSender.send(message); // Sends the email using JavaMailSender
+            event.succeeded = true;
+        } finally {
+            if (event.shouldCommit()) {
+                event.subject = subject;
+                event.commit();
+            }
+        }
     }
 }
@@ -2,6 +2,7 @@ package com.security.spring_security.mail;
 
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.mail.javamail.JavaMailSenderImpl;
 
 import java.util.Properties;
@@ -10,6 +11,7 @@ import java.util.Properties;
 public class MailConfig {
 
     @Bean // Indicates that this method returns a bean to be managed by the Spring container
+    @Lazy // Defers building the SMTP sender until the first email is actually sent
     public JavaMailSenderImpl mailSender() {
         JavaMailSenderImpl mailSender = new JavaMailSenderImpl(); // Creates an instance of JavaMailSenderImpl
         mailSender.setHost("smtp.gmail.com"); // Sets the SMTP host (Gmail in this case)
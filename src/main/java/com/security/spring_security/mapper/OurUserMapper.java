@@ -13,12 +13,16 @@ public class OurUserMapper {
             return null; // Returns null if the input user is null
         }
 
-        // Creates and returns an instance of 'OurUserDTO' using values from the 'OurUser' entity
-        return new OurUserDTO(
+        // Creates an instance of 'OurUserDTO' using values from the 'OurUser' entity
+        OurUserDTO dto = new OurUserDTO(
                 user.getUserId() != null ? Long.valueOf(user.getUserId().toString()) : null, // Converts userId to Long if not null
                 user.getUsername(), // Maps the username
                 user.getRoles() // Maps the roles
         );
+        dto.setLastLoginAt(user.getLastLoginAt()); // Maps the activity columns
+        dto.setLoginCount(user.getLoginCount());
+        dto.setLastSeenAt(user.getLastSeenAt());
+        return dto; // Returns the populated DTO
     }
 }
 
@@ -0,0 +1,23 @@
+package com.security.spring_security.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+@Name("com.security.auth.AuthorizationDecision")
+@Label("Authorization Decision")
+@Category({"Authentication Pipeline"})
+@Description("Endpoint authorization decision in the security filter chain")
+@Threshold("1 ms") // Only slower instances are recorded unless a recording overrides the threshold
+@StackTrace(false) // Stack traces add overhead and the stage is already identified by the event type
+public class AuthorizationDecisionEvent extends Event {
+    @Label("Rule")
+    public String rule; // Matched endpoint rule, or null when no rule matched
+
+    @Label("Granted")
+    public boolean granted; // Decision outcome
+}
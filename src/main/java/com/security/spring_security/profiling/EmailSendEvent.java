@@ -0,0 +1,23 @@
+package com.security.spring_security.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+@Name("com.security.auth.EmailSend")
+@Label("Email Send")
+@Category({"Authentication Pipeline"})
+@Description("Delivery of one email through the SMTP sender")
+@Threshold("200 ms") // Only slower instances are recorded unless a recording overrides the threshold
+@StackTrace(false) // Stack traces add overhead and the stage is already identified by the event type
+public class EmailSendEvent extends Event {
+    @Label("Subject")
+    public String subject; // Email subject, identifies the kind of email without the recipient
+
+    @Label("Succeeded")
+    public boolean succeeded; // False when the SMTP server rejected the message
+}
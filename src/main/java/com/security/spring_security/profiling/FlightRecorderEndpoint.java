@@ -0,0 +1,146 @@
+package com.security.spring_security.profiling;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Event;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+    The FlightRecorderEndpoint is an actuator endpoint (/actuator/flightrecorder, ADMIN only) that controls a single bounded JFR recording
+    so evidence can be captured from a live instance under real load without a restart or shell access.
+
+        GET  /actuator/flightrecorder          -> state of the current recording
+        POST /actuator/flightrecorder/start    -> starts a recording (optional body: {"durationSeconds": 120})
+        POST /actuator/flightrecorder/stop     -> stops the recording
+        GET  /actuator/flightrecorder/dump     -> downloads the recorded data as a .jfr file (the temporary copy is deleted once sent)
+
+    The recording uses the JDK "profile" settings plus the auth pipeline events with the thresholds from app.profiling.thresholds.*,
+    and it is bounded by a maximum duration, age and size so a forgotten recording cannot fill the disk.
+ */
+
+@Component // Registered with the actuator infrastructure
+@Endpoint(id = "flightrecorder")
+public class FlightRecorderEndpoint {
+    private final Duration maxDuration; // Recording stops on its own after this long
+    private final Duration maxAge; // Older data is discarded from the ring of chunks
+    private final long maxSizeBytes; // Older data is discarded beyond this size
+    private final Map<Class<? extends Event>, Duration> thresholds = new LinkedHashMap<>(); // Per-event thresholds for our custom events
+    private Recording recording; // Current or last recording, guarded by this
+
+    public FlightRecorderEndpoint(@Value("${app.profiling.max-duration:10m}") Duration maxDuration,
+                                  @Value("${app.profiling.max-age:10m}") Duration maxAge,
+                                  @Value("${app.profiling.max-size-mb:100}") long maxSizeMb,
+                                  @Value("${app.profiling.thresholds.token-verify:5ms}") Duration tokenVerify,
+                                  @Value("${app.profiling.thresholds.user-load:10ms}") Duration userLoad,
+                                  @Value("${app.profiling.thresholds.password-hash:100ms}") Duration passwordHash,
+                                  @Value("${app.profiling.thresholds.email-send:200ms}") Duration emailSend,
+                                  @Value("${app.profiling.thresholds.authorization-decision:1ms}") Duration authorizationDecision) {
+        this.maxDuration = maxDuration;
+        this.maxAge = maxAge;
+        this.maxSizeBytes = maxSizeMb * 1024 * 1024;
+        thresholds.put(TokenVerifyEvent.class, tokenVerify);
+        thresholds.put(UserLoadEvent.class, userLoad);
+        thresholds.put(PasswordHashEvent.class, passwordHash);
+        thresholds.put(EmailSendEvent.class, emailSend);
+        thresholds.put(AuthorizationDecisionEvent.class, authorizationDecision);
+    }
+
+    @ReadOperation // Reports the state of the current recording
+    public synchronized Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        if (recording == null) {
+            status.put("state", "NONE");
+            return status;
+        }
+        status.put("state", recording.getState().name());
+        status.put("startTime", recording.getStartTime());
+        status.put("stopTime", recording.getStopTime());
+        status.put("sizeBytes", recording.getSize());
+        status.put("maxDuration", maxDuration.toString());
+        return status;
+    }
+
+    @WriteOperation // Starts or stops the recording, depending on the selector
+    public synchronized Map<String, Object> control(@Selector String action, @Nullable Long durationSeconds) throws IOException, ParseException {
+        switch (action) {
+            case "start" -> start(durationSeconds);
+            case "stop" -> {
+                if (recording != null && recording.getState() == RecordingState.RUNNING) {
+                    recording.stop();
+                }
+            }
+            default -> throw new IllegalArgumentException("Unknown action " + action + ", expected start or stop");
+        }
+        return status();
+    }
+
+    @ReadOperation(produces = "application/octet-stream") // Downloads the recording
+    public synchronized Resource dump(@Selector String action) throws IOException {
+        if (!"dump".equals(action) || recording == null) {
+            return null; // Results in 404
+        }
+        Path file = Files.createTempFile("auth-pipeline-" + Instant.now().getEpochSecond() + "-", ".jfr");
+        try {
+            recording.dump(file); // Works for running and stopped recordings
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+        file.toFile().deleteOnExit(); // Only for a response that is never written; normally the stream below removes the file
+        return new DumpResource(file);
+    }
+
+    // A dump file that is deleted as soon as the response has been streamed from it
+    static final class DumpResource extends FileSystemResource {
+        DumpResource(Path file) {
+            super(file);
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return Files.newInputStream(getFile().toPath(), StandardOpenOption.DELETE_ON_CLOSE);
+        }
+    }
+
+    private void start(Long durationSeconds) throws IOException, ParseException {
+        if (recording != null && recording.getState() == RecordingState.RUNNING) {
+            return; // Only one recording at a time
+        }
+        if (recording != null) {
+            recording.close(); // Releases the previous recording's disk space
+        }
+        Duration duration = durationSeconds != null
+                ? Duration.ofSeconds(Math.min(durationSeconds, maxDuration.toSeconds()))
+                : maxDuration;
+
+        Recording newRecording = new Recording(Configuration.getConfiguration("profile"));
+        newRecording.setName("auth-pipeline");
+        newRecording.setToDisk(true);
+        newRecording.setMaxAge(maxAge);
+        newRecording.setMaxSize(maxSizeBytes);
+        newRecording.setDuration(duration);
+        thresholds.forEach((eventType, threshold) -> newRecording.enable(eventType).withThreshold(threshold));
+        newRecording.start();
+        recording = newRecording;
+    }
+}
@@ -0,0 +1,23 @@
+package com.security.spring_security.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+@Name("com.security.auth.PasswordHash")
+@Label("Password Hash")
+@Category({"Authentication Pipeline"})
+@Description("Password encode or verification with the configured PasswordEncoder")
+@Threshold("100 ms") // Only slower instances are recorded unless a recording overrides the threshold
+@StackTrace(false) // Stack traces add overhead and the stage is already identified by the event type
+public class PasswordHashEvent extends Event {
+    @Label("Operation")
+    public String operation; // encode or matches
+
+    @Label("Matched")
+    public boolean matched; // Result of a matches() call
+}
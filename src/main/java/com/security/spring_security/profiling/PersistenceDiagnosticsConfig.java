@@ -0,0 +1,25 @@
+package com.security.spring_security.profiling;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/*
+    The PersistenceDiagnosticsConfig class wires the JPA diagnostics into Hibernate: the SqlStatementInspector sees every prepared
+    statement and the SlowStatementListener times every execution. Hibernate statistics (spring.jpa.properties.hibernate.generate_statistics)
+    are exported to Micrometer as hibernate.* meters by hibernate-micrometer, and the connection pools as hikaricp.* meters.
+    The customizer is simply unused when the user store does not use JPA.
+ */
+
+@Configuration // Always loaded; only takes effect when Hibernate is bootstrapped
+public class PersistenceDiagnosticsConfig {
+
+    @Bean
+    public HibernatePropertiesCustomizer persistenceDiagnostics(SqlStatementInspector sqlStatementInspector) {
+        return properties -> {
+            properties.put(AvailableSettings.STATEMENT_INSPECTOR, sqlStatementInspector);
+            properties.put(AvailableSettings.AUTO_SESSION_EVENTS_LISTENER, SlowStatementListener.class.getName());
+        };
+    }
+}
@@ -0,0 +1,42 @@
+package com.security.spring_security.profiling;
+
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+// Decorates the real PasswordEncoder so every hash and verification emits a PasswordHashEvent
+public class ProfiledPasswordEncoder implements PasswordEncoder {
+    private final PasswordEncoder delegate; // Encoder doing the actual work (BCrypt)
+
+    public ProfiledPasswordEncoder(PasswordEncoder delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        PasswordHashEvent event = new PasswordHashEvent();
+        event.begin();
+        String encoded = delegate.encode(rawPassword);
+        if (event.shouldCommit()) {
+            event.operation = "encode";
+            event.commit();
+        }
+        return encoded;
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        PasswordHashEvent event = new PasswordHashEvent();
+        event.begin();
+        boolean matched = delegate.matches(rawPassword, encodedPassword);
+        if (event.shouldCommit()) {
+            event.operation = "matches";
+            event.matched = matched;
+            event.commit();
+        }
+        return matched;
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+}
@@ -0,0 +1,35 @@
+package com.security.spring_security.profiling;
+
+import org.hibernate.SessionEventListener;
+
+// Times the JDBC executions of one Hibernate session and reports them to the SqlStatementInspector; created by Hibernate per session
+public class SlowStatementListener implements SessionEventListener {
+    private long startNanos; // A session is used by one thread at a time
+
+    @Override
+    public void jdbcExecuteStatementStart() {
+        startNanos = System.nanoTime();
+    }
+
+    @Override
+    public void jdbcExecuteStatementEnd() {
+        report();
+    }
+
+    @Override
+    public void jdbcExecuteBatchStart() {
+        startNanos = System.nanoTime();
+    }
+
+    @Override
+    public void jdbcExecuteBatchEnd() {
+        report();
+    }
+
+    private void report() {
+        SqlStatementInspector inspector = SqlStatementInspector.current();
+        if (inspector != null) {
+            inspector.executed(System.nanoTime() - startNanos);
+        }
+    }
+}
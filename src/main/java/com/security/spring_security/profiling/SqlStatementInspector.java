@@ -0,0 +1,113 @@
+package com.security.spring_security.profiling;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/*
+    The SqlStatementInspector sees every SQL statement Hibernate prepares (it is registered as Hibernate's StatementInspector by
+    PersistenceDiagnosticsConfig) and backs two diagnostics:
+
+    Slow statement log: the SlowStatementListener times each JDBC execution and reports it here. Executions slower than
+    app.persistence.slow-statement-threshold are logged with the SQL of the statement and counted in db.statements.slow.
+    Hibernate's own hibernate.log_slow_query is not used because it logs the JDBC statement's toString(), which MySQL Connector/J
+    renders with the bound values inlined. Here bound values never reach the log, and literals written into the SQL text
+    (quoted strings and numbers) are replaced by '?' as well.
+
+    Statement capture: startCapture() records every statement prepared until the capture is closed, on any thread, so tests can
+    assert how many statements an endpoint runs, including user lookups made on the auth-lookup pool. Only one capture can be
+    active at a time; outside of a capture the inspector only stores the SQL for the slow log.
+ */
+
+@Component // Handed to Hibernate as an instance, so it can be configured and captured like any bean
+public class SqlStatementInspector implements StatementInspector {
+    private static final Logger log = LoggerFactory.getLogger(SqlStatementInspector.class);
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("(?<![\\w$.])-?\\d+(?:\\.\\d+)?(?![\\w$])");
+    private static volatile SqlStatementInspector current; // Read by the SlowStatementListener, which Hibernate creates per session
+
+    private final long thresholdNanos; // Slowest execution that is not logged
+    private final Counter slowStatements;
+    private final ThreadLocal<String> lastStatement = new ThreadLocal<>(); // SQL about to be executed on this thread
+    private volatile Capture capture; // Active capture, or null
+
+    public SqlStatementInspector(@Value("${app.persistence.slow-statement-threshold:200ms}") Duration threshold, MeterRegistry meterRegistry) {
+        this.thresholdNanos = threshold.toNanos();
+        this.slowStatements = Counter.builder("db.statements.slow").register(meterRegistry);
+        current = this;
+    }
+
+    static SqlStatementInspector current() {
+        return current;
+    }
+
+    @Override
+    public String inspect(String sql) {
+        lastStatement.set(sql);
+        Capture active = capture;
+        if (active != null) {
+            active.add(sql);
+        }
+        return sql; // Never rewrites the statement
+    }
+
+    // Called by the SlowStatementListener after every JDBC execution on this thread
+    void executed(long elapsedNanos) {
+        if (elapsedNanos > thresholdNanos) {
+            slowStatements.increment();
+            String sql = lastStatement.get();
+            log.warn("Slow SQL statement took {} ms: {}", elapsedNanos / 1_000_000, sql != null ? redact(sql) : "(unknown)");
+        }
+    }
+
+    // Starts recording every statement prepared on any thread until the capture is closed
+    public synchronized Capture startCapture() {
+        if (capture != null) {
+            throw new IllegalStateException("A statement capture is already active");
+        }
+        capture = new Capture();
+        return capture;
+    }
+
+    private synchronized void stopCapture(Capture stopped) {
+        if (capture == stopped) {
+            capture = null;
+        }
+    }
+
+    // Replaces string and numeric literals in the SQL text by '?'
+    static String redact(String sql) {
+        return NUMBER_LITERAL.matcher(STRING_LITERAL.matcher(sql).replaceAll("?")).replaceAll("?");
+    }
+
+    // Statements recorded between startCapture() and close()
+    public final class Capture implements AutoCloseable {
+        private final List<String> statements = new ArrayList<>(); // Guarded by this
+
+        private synchronized void add(String sql) {
+            statements.add(sql);
+        }
+
+        public synchronized List<String> getStatements() {
+            return List.copyOf(statements);
+        }
+
+        public synchronized int getCount() {
+            return statements.size();
+        }
+
+        @Override
+        public void close() {
+            stopCapture(this);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.security.spring_security.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+@Name("com.security.auth.TokenVerify")
+@Label("Token Verify")
+@Category({"Authentication Pipeline"})
+@Description("Signature check and claim parsing of a bearer token")
+@Threshold("5 ms") // Only slower instances are recorded unless a recording overrides the threshold
+@StackTrace(false) // Stack traces add overhead and the stage is already identified by the event type
+public class TokenVerifyEvent extends Event {
+    @Label("Valid")
+    public boolean valid; // False when parsing or signature verification failed
+}
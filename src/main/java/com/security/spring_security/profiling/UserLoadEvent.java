@@ -0,0 +1,23 @@
+package com.security.spring_security.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+@Name("com.security.auth.UserLoad")
+@Label("User Load")
+@Category({"Authentication Pipeline"})
+@Description("Loading UserDetails by username for authentication")
+@Threshold("10 ms") // Only slower instances are recorded unless a recording overrides the threshold
+@StackTrace(false) // Stack traces add overhead and the stage is already identified by the event type
+public class UserLoadEvent extends Event {
+    @Label("Found")
+    public boolean found; // False when the username does not exist
+
+    @Label("Skipped Database")
+    public boolean skippedDatabase; // True when the lookup was answered without a query
+}
@@ -0,0 +1,14 @@
+package com.security.spring_security.repository;
+
+import com.security.spring_security.entity.ApiKey;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository // Spring Data repository for ApiKey entities; the table lives on the default shard
+public interface ApiKeyRepository extends JpaRepository<ApiKey, Long> {
+
+    // Finds a key by its public prefix
+    Optional<ApiKey> findByPrefix(String prefix);
+}
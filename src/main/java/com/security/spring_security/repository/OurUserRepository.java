@@ -1,15 +1,24 @@
 package com.security.spring_security.repository;
 
 import com.security.spring_security.entity.OurUser;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository // Indicates that this interface is a Spring Data repository, enabling CRUD and query operations
 public interface OurUserRepository extends JpaRepository<OurUser, Long> {
 
-    // Method to find a user by their username
+    // Method to find a user by their username; the query timeout (seconds) frees the lookup thread when the database stalls
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_TIMEOUT, value = "2"))
     Optional<OurUser> findByUsername(String username);
 
     // Method to find a user by their unique userId
@@ -20,4 +29,33 @@ public interface OurUserRepository extends JpaRepository<OurUser, Long> {
 
     // Method to check if a user exists by their username
     boolean existsByUsername(String username);
+
+    // Method to stream every username with a JDBC cursor (must be consumed inside a transaction). The fetch size only streams on MySQL
+    // with useCursorFetch=true in the JDBC URL; otherwise Connector/J reads the whole result into memory first
+    @Query("select u.username from OurUser u")
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    Stream<String> streamAllUsernames();
+
+    // Method to stream the user ID, username and roles of every user with a JDBC cursor (must be consumed inside a transaction)
+    @Query("select u.userId, u.username, u.roles from OurUser u")
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    Stream<Object[]> streamAllSummaries();
+
+    // Method to stream the user ID and username of up to limit users after a user ID, in user ID order, with a JDBC cursor
+    // (keyset chunks for mail campaigns; must be consumed inside a transaction)
+    @Query("select u.userId, u.username from OurUser u where u.userId > :afterUserId order by u.userId")
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    Stream<Object[]> streamRecipientsAfter(@Param("afterUserId") long afterUserId, Limit limit);
+
+    // Method to read users in primary key order one page at a time (keyset pagination for the shard rebalancer)
+    List<OurUser> findTop500ByIdGreaterThanOrderByIdAsc(Long id);
 }
@@ -1,7 +1,8 @@
 package com.security.spring_security.service;
 
-import com.security.spring_security.entity.OurUser;
-import com.security.spring_security.repository.OurUserRepository;
+import com.security.spring_security.index.UsernameBloomFilter;
+import com.security.spring_security.profiling.UserLoadEvent;
+import com.security.spring_security.store.UserStore;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.authority.AuthorityUtils;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -12,27 +13,46 @@ import org.springframework.stereotype.Service;
 /*
     The OurUserDetailsService class is a custom implementation of Spring Security's UserDetailsService interface.
     It is marked with the @Service annotation to indicate that it is a Spring-managed service bean.
-    This class is responsible for retrieving user details from the database when an authentication request is made.
+    This class is responsible for retrieving user details from the configured UserStore when an authentication request is made.
     The primary purpose of this class is to load user information based on the provided username and provide it to Spring Security for authentication and authorization processes.
+
+    Usernames the UsernameBloomFilter reports as definitely absent are rejected without a query.
+    The login path stays constant-time for unknown users because DaoAuthenticationProvider still runs a BCrypt comparison
+    against a dummy hash whenever this service throws UsernameNotFoundException, so skipping the query does not reveal which accounts exist.
  */
 @Service // Marks this class as a service component in the Spring context
 public class OurUserDetailsService implements UserDetailsService {
 
-    // Repository for accessing user data in the database
-    private final OurUserRepository ourUserRepository;
+    // Store for accessing user data (JPA, in-memory or file, see app.user-store.type)
+    private final UserStore ourUserRepository;
+    // Existence index used to skip the query for unknown usernames
+    private final UsernameBloomFilter usernameBloomFilter;
 
-    // Constructor for dependency injection of OurUserRepository
+    // Constructor for dependency injection of UserStore and UsernameBloomFilter
     @Autowired
-    public OurUserDetailsService(OurUserRepository ourUserRepository) {
+    public OurUserDetailsService(UserStore ourUserRepository, UsernameBloomFilter usernameBloomFilter) {
         this.ourUserRepository = ourUserRepository; // Initialize the repository with injected dependency
+        this.usernameBloomFilter = usernameBloomFilter; // Initialize the existence index with injected dependency
     }
 
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
-        // Fetches the user from the repository by username
-        // If the user is not found, throws a UsernameNotFoundException
-        return ourUserRepository.findByUsername(username).orElseThrow(
-                () -> new UsernameNotFoundException("Username not found!") // Custom exception message for missing user
-        );
+        UserLoadEvent event = new UserLoadEvent(); // JFR event, recorded only when slower than its threshold
+        event.begin();
+        try {
+            if (usernameBloomFilter.definitelyAbsent(username)) {
+                event.skippedDatabase = true;
+                throw new UsernameNotFoundException("Username not found!"); // Same message as a database miss
+            }
+            // Fetches the user from the repository by username
+            // If the user is not found, throws a UsernameNotFoundException
+            UserDetails userDetails = ourUserRepository.findByUsername(username).orElseThrow(
+                    () -> new UsernameNotFoundException("Username not found!") // Custom exception message for missing user
+            );
+            event.found = true;
+            return userDetails;
+        } finally {
+            event.commit(); // No-op unless a recording is running and the threshold was exceeded
+        }
     }
 }
@@ -1,12 +1,17 @@
 package com.security.spring_security.service;
 
+import com.security.spring_security.audit.AuditEventType;
+import com.security.spring_security.audit.AuditLog;
+import com.security.spring_security.authentication.VerifiedCredentialCache;
 import com.security.spring_security.dto.PasswordResetRequest;
 import com.security.spring_security.entity.OurUser;
 import com.security.spring_security.entity.PasswordReset;
+import com.security.spring_security.index.UsernameBloomFilter;
+import com.security.spring_security.jwt.JWTUtils;
 import com.security.spring_security.mail.EmailService;
-import com.security.spring_security.repository.OurUserRepository;
-import com.security.spring_security.repository.PasswordResetCodeRepository;
+import com.security.spring_security.store.UserStore;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
@@ -15,40 +20,59 @@ import java.util.Random;
 
 @Service // Marks this class as a service component in the Spring context
 public class PasswordResetCodeService {
-    // Provides access to password reset code data
-    private final PasswordResetCodeRepository passwordResetCodeRepository;
-    // Provides access to user data
-    private final OurUserRepository ourUserRepository;
+    // Provides access to user and password reset code data in the configured user store
+    private final UserStore userStore;
     // Handles password encoding
     private final PasswordEncoder passwordEncoder;
     // Handles email sending functionality
     private final EmailService emailService;
+    // Skips the database for usernames that were never registered
+    private final UsernameBloomFilter usernameBloomFilter;
+    // Records reset requests and password changes
+    private final AuditLog auditLog;
+    // Holds last-known-good user details for the JWT path; must forget users whose password changes
+    private final ResilientUserLookup resilientUserLookup;
+    // Serialized admin user listing; invalidated when a password changes
+    private final UserListingCache userListingCache;
+    // Revokes the user's opaque tokens after a password change
+    private final JWTUtils jwtUtils;
+    // Recent password verifications of service accounts; must forget the old password
+    private final VerifiedCredentialCache verifiedCredentialCache;
 
     // Initializes dependencies via constructor injection
     @Autowired
-    public PasswordResetCodeService(PasswordResetCodeRepository passwordResetCodeRepository, OurUserRepository ourUserRepository, PasswordEncoder passwordEncoder, EmailService emailService) {
-        this.passwordResetCodeRepository = passwordResetCodeRepository; // Sets the repository for password reset codes
-        this.ourUserRepository = ourUserRepository; // Sets the repository for user data
+    public PasswordResetCodeService(UserStore userStore, PasswordEncoder passwordEncoder, @Lazy EmailService emailService, UsernameBloomFilter usernameBloomFilter, AuditLog auditLog, ResilientUserLookup resilientUserLookup, UserListingCache userListingCache, JWTUtils jwtUtils, VerifiedCredentialCache verifiedCredentialCache) {
+        this.userStore = userStore; // Sets the store for user and reset code data
         this.passwordEncoder = passwordEncoder; // Sets the password encoder
-        this.emailService = emailService; // Sets the email service
+        this.emailService = emailService; // Sets the email service (a lazy proxy, so mail beans are only built on first use)
+        this.usernameBloomFilter = usernameBloomFilter; // Sets the username existence index
+        this.auditLog = auditLog; // Sets the audit log
+        this.resilientUserLookup = resilientUserLookup; // Sets the JWT-path user lookup
+        this.userListingCache = userListingCache; // Sets the user listing cache
+        this.jwtUtils = jwtUtils; // Sets the token utility
+        this.verifiedCredentialCache = verifiedCredentialCache; // Sets the verified credential cache
     }
 
     // Retrieves a password reset entry by username
     public PasswordReset findByUsername(String username) {
-        return passwordResetCodeRepository.findByUsername(username); // Fetches the password reset entry
+        return userStore.findResetCode(username); // Fetches the password reset entry
     }
 
     // Sends a password reset code to the user's email
     public boolean sendPasswordResetCode(String username) {
+        if (usernameBloomFilter.definitelyAbsent(username)) {
+            return false; // Unknown username, no need to touch either table
+        }
+
         // Checks if a password reset entry already exists
-        PasswordReset existingPasswordReset = passwordResetCodeRepository.findByUsername(username);
+        PasswordReset existingPasswordReset = userStore.findResetCode(username);
         if (existingPasswordReset != null) {
             long existingPasswordResetCode = existingPasswordReset.getResetCode(); // Retrieves the existing reset code
-            passwordResetCodeRepository.deleteByResetCode(existingPasswordResetCode); // Deletes the existing reset code
+            userStore.deleteResetCode(username, existingPasswordResetCode); // Deletes the existing reset code
         }
 
         // Checks if the user exists in the user repository
-        if (ourUserRepository.existsByUsername(username)) {
+        if (userStore.existsByUsername(username)) {
             // Generates a random password reset code
             long code = 1000000000L + new Random().nextInt(900000000);
             PasswordReset passwordReset = new PasswordReset();
@@ -56,11 +80,12 @@ public class PasswordResetCodeService {
             passwordReset.setUsername(username); // Sets the username
 
             // Saves the new password reset entry
-            passwordResetCodeRepository.save(passwordReset);
+            userStore.saveResetCode(passwordReset);
 
             // Formats and sends the password reset email
             String message = String.format("%s, your password reset code is %d.", username, code);
             emailService.sendEmail(username, "Password Reset Code Delivery", message); // Sends the email
+            auditLog.publish(AuditEventType.PASSWORD_RESET_REQUESTED, username); // Records the reset request
             return true; // Returns true indicating success
         } else {
             return false; // Returns false if the user does not exist
@@ -69,13 +94,17 @@ public class PasswordResetCodeService {
 
     // Changes the user's password using a reset code
     public boolean changePassword(PasswordResetRequest passwordResetRequest) {
+        if (usernameBloomFilter.definitelyAbsent(passwordResetRequest.getUsername())) {
+            throw new UsernameNotFoundException("Username/Email not found!"); // Same outcome as a database miss
+        }
+
         // Retrieves the user from the repository
-        OurUser ourUser = ourUserRepository.findByUsername(passwordResetRequest.getUsername()).orElseThrow(
+        OurUser ourUser = userStore.findByUsername(passwordResetRequest.getUsername()).orElseThrow(
                 () -> new UsernameNotFoundException("Username/Email not found!") // Throws an exception if the user is not found
         );
 
         // Retrieves the password reset entry from the repository
-        PasswordReset passwordReset = passwordResetCodeRepository.findByUsername(passwordResetRequest.getUsername());
+        PasswordReset passwordReset = userStore.findResetCode(passwordResetRequest.getUsername());
 
         // Validates the username and reset code
         if (passwordReset != null &&
@@ -87,12 +116,18 @@ public class PasswordResetCodeService {
 
             // Updates the user's password
             ourUser.setPassword(encodedPassword);
-            ourUserRepository.save(ourUser); // Saves the updated user
+            userStore.save(ourUser); // Saves the updated user
+            resilientUserLookup.evict(ourUser.getUsername()); // Drops the fallback copy with the old password
+            userListingCache.invalidate(); // Every account write starts a new listing version
+            jwtUtils.revokeAll(ourUser.getUsername()); // Sessions opened with the old password end in opaque mode
+            verifiedCredentialCache.invalidate(ourUser.getUsername()); // The old password must not be accepted from the cache
+            auditLog.publish(AuditEventType.PASSWORD_CHANGED, ourUser.getUsername()); // Records the password change
 
             return true; // Returns true indicating success
         }
 
         // Returns false if validation fails
+        auditLog.publish(AuditEventType.PASSWORD_CHANGE_FAILURE, ourUser.getUsername()); // Records the rejected reset code
         return false;
     }
 }
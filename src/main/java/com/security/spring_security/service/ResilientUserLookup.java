@@ -0,0 +1,206 @@
+package com.security.spring_security.service;
+
+import com.security.spring_security.util.CircuitBreaker;
+import com.security.spring_security.util.UsernameHashing;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.authentication.AuthenticationServiceException;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+    The ResilientUserLookup loads user details for requests authenticated with a JWT, so that a stalled database does not take
+    every authenticated request down with it.
+
+    Details loaded less than app.auth-lookup.fresh-for ago are served straight from the last-known-good store on the request thread,
+    so a user making many requests costs one database read per window and no thread hand-off. Other lookups (a miss, or a copy that
+    needs revalidating) run on a small bounded thread pool and the request waits at most app.auth-lookup.timeout for them. Timeouts
+    and database errors feed a CircuitBreaker; while it is open, lookups do not touch the database at all. A full pool says nothing
+    about the database, so a rejected lookup is counted but does not count against the breaker. Whenever the database cannot
+    answer in time, the last successfully loaded details of that user are served instead, provided they are younger than
+    app.auth-lookup.max-stale. A lookup that timed out keeps running in the background and refreshes the stored details when it completes.
+    With no usable stored copy the lookup fails with an AuthenticationServiceException, which the JWTAuthFilter turns into a 503.
+
+    The last-known-good store is bounded by app.auth-lookup.max-entries. Users are evicted when they are updated, deleted or change
+    their password on this instance; changes made through another instance reach this one within fresh-for. Stale, timed-out, rejected
+    and unavailable lookups are counted in the auth.user.lookup meter, and the breaker state is exposed as a gauge.
+
+    Password logins keep using OurUserDetailsService directly and never see stale data.
+ */
+
+@Service // Used by the JWTAuthFilter
+public class ResilientUserLookup {
+    private final OurUserDetailsService userDetailsService; // Database lookup being protected
+    private final CircuitBreaker circuitBreaker; // Stops calling a database that keeps failing
+    private final ThreadPoolExecutor executor; // Bounded, so a stalled database cannot pile up threads
+    private final long timeoutNanos; // Longest a request waits for the database
+    private final long maxStaleMillis; // Oldest stored copy that may be served
+    private final long freshForMillis; // Stored copies younger than this are served without a lookup
+    private final int maxEntries; // Bound on the last-known-good store
+    private final Map<String, Entry> lastKnownGood = new ConcurrentHashMap<>(); // Normalized username -> details
+    private final AtomicLong lastEvictionNanos = new AtomicLong(System.nanoTime()); // Loads started before this are not stored
+    private final AtomicBoolean trimming = new AtomicBoolean(); // One thread trims the store at a time
+    private final Counter staleServed;
+    private final Counter timeouts;
+    private final Counter rejected;
+    private final Counter unavailable;
+
+    public ResilientUserLookup(OurUserDetailsService userDetailsService, MeterRegistry meterRegistry,
+                               @Value("${app.auth-lookup.timeout:250ms}") Duration timeout,
+                               @Value("${app.auth-lookup.threads:8}") int threads,
+                               @Value("${app.auth-lookup.queue-capacity:256}") int queueCapacity,
+                               @Value("${app.auth-lookup.failure-threshold:5}") int failureThreshold,
+                               @Value("${app.auth-lookup.open-duration:10s}") Duration openDuration,
+                               @Value("${app.auth-lookup.max-stale:5m}") Duration maxStale,
+                               @Value("${app.auth-lookup.max-entries:10000}") int maxEntries,
+                               @Value("${app.auth-lookup.fresh-for:5s}") Duration freshFor) {
+        this.userDetailsService = userDetailsService;
+        this.circuitBreaker = new CircuitBreaker(failureThreshold, openDuration);
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+            Thread thread = new Thread(runnable, "auth-lookup");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.timeoutNanos = timeout.toNanos();
+        this.maxStaleMillis = maxStale.toMillis();
+        this.maxEntries = maxEntries;
+        this.freshForMillis = freshFor.toMillis();
+
+        this.staleServed = Counter.builder("auth.user.lookup").tag("outcome", "stale").register(meterRegistry);
+        this.timeouts = Counter.builder("auth.user.lookup").tag("outcome", "timeout").register(meterRegistry);
+        this.rejected = Counter.builder("auth.user.lookup").tag("outcome", "rejected").register(meterRegistry);
+        this.unavailable = Counter.builder("auth.user.lookup").tag("outcome", "unavailable").register(meterRegistry);
+        Gauge.builder("auth.user.lookup.breaker.open", circuitBreaker, breaker -> breaker.getState() == CircuitBreaker.State.CLOSED ? 0 : 1)
+                .register(meterRegistry);
+        Gauge.builder("auth.user.lookup.store.size", lastKnownGood, Map::size).register(meterRegistry);
+    }
+
+    // Loads the user from the database, or from the last-known-good store when the database cannot answer in time
+    public UserDetails loadUserByUsername(String username) {
+        String key = UsernameHashing.normalize(username);
+        Entry entry = lastKnownGood.get(key);
+        if (entry != null && System.currentTimeMillis() - entry.loadedAt < freshForMillis) {
+            return entry.details; // Fresh enough, no need to ask the database
+        }
+        if (!circuitBreaker.allowRequest()) {
+            return serveStale(key);
+        }
+        Future<UserDetails> future;
+        try {
+            future = executor.submit(() -> load(key, username));
+        } catch (RejectedExecutionException e) {
+            rejected.increment(); // Every lookup thread is busy and the queue is full; the pool is saturated, not the database failing
+            return serveStale(key);
+        }
+        try {
+            return future.get(timeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            timeouts.increment(); // The load keeps running and refreshes the store if it completes
+            circuitBreaker.recordFailure();
+            return serveStale(key);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UsernameNotFoundException notFound) {
+                throw notFound;
+            }
+            return serveStale(key);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return serveStale(key);
+        }
+    }
+
+    // Drops a user's stored details after an update, deletion or password change
+    public void evict(String username) {
+        if (username != null) {
+            lastEvictionNanos.set(System.nanoTime()); // Loads already in flight may have read the old row
+            lastKnownGood.remove(UsernameHashing.normalize(username));
+        }
+    }
+
+    // Runs on the lookup pool
+    private UserDetails load(String key, String username) {
+        long startedAt = System.nanoTime();
+        try {
+            UserDetails details = userDetailsService.loadUserByUsername(username);
+            circuitBreaker.recordSuccess();
+            if (startedAt - lastEvictionNanos.get() > 0) {
+                lastKnownGood.put(key, new Entry(details, System.currentTimeMillis()));
+                trimIfNeeded();
+            }
+            return details;
+        } catch (UsernameNotFoundException e) {
+            circuitBreaker.recordSuccess(); // The database answered
+            lastKnownGood.remove(key);
+            throw e;
+        } catch (RuntimeException e) {
+            circuitBreaker.recordFailure();
+            throw e;
+        }
+    }
+
+    private UserDetails serveStale(String key) {
+        Entry entry = lastKnownGood.get(key);
+        if (entry != null && System.currentTimeMillis() - entry.loadedAt <= maxStaleMillis) {
+            staleServed.increment();
+            return entry.details;
+        }
+        unavailable.increment();
+        throw new AuthenticationServiceException("User store is temporarily unavailable");
+    }
+
+    // Keeps the store within maxEntries, dropping expired copies first
+    private void trimIfNeeded() {
+        if (lastKnownGood.size() <= maxEntries || !trimming.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            long oldest = System.currentTimeMillis() - maxStaleMillis;
+            lastKnownGood.values().removeIf(entry -> entry.loadedAt < oldest);
+            Iterator<String> keys = lastKnownGood.keySet().iterator();
+            while (lastKnownGood.size() > maxEntries && keys.hasNext()) {
+                keys.next();
+                keys.remove(); // Arbitrary victims; every entry is equally recent enough to be useful
+            }
+        } finally {
+            trimming.set(false);
+        }
+    }
+
+    public CircuitBreaker.State getCircuitState() {
+        return circuitBreaker.getState();
+    }
+
+    @PreDestroy // Also called by the JIT warm-up on its private instance
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    // Details of one user and when they were read from the database
+    private static final class Entry {
+        private final UserDetails details;
+        private final long loadedAt; // Epoch millis
+
+        private Entry(UserDetails details, long loadedAt) {
+            this.details = details;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.security.spring_security.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.security.spring_security.dto.OurUserDTO;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/*
+    The UserListingCache holds the serialized admin user listing (GET /api/users) together with its ETag, so that dashboards polling
+    the listing neither reload nor re-serialize every user while nothing has changed.
+
+    Every write to a user account bumps a version counter once its transaction has committed. The cached body belongs to the version
+    that was current when its load started, so a write that commits during a load makes that body stale right away instead of caching
+    the old rows under the new version. The body is also reloaded once it is older than app.user-listing.max-age, which bounds how far
+    behind it can be for changes this counter never sees: activity columns written by the UserActivityTracker and writes made by other
+    instances.
+
+    The ETag is a hash of the serialized body, so it is strong, and an instance that reloads identical content (after max-age, or
+    behind a load balancer) hands out the same ETag and clients still get 304.
+ */
+
+@Component // Shared by UserManagementService and PasswordResetCodeService
+public class UserListingCache {
+    private final ObjectMapper objectMapper; // The MVC object mapper, so the body matches what the controller would have written
+    private final long maxAgeNanos; // Oldest body served without reloading
+    private final AtomicLong version = new AtomicLong(); // Bumped by every committed account write
+    private volatile Listing cached; // Body of the last load, or null
+
+    public UserListingCache(ObjectMapper objectMapper, @Value("${app.user-listing.max-age:10s}") Duration maxAge) {
+        this.objectMapper = objectMapper;
+        this.maxAgeNanos = maxAge.toNanos();
+    }
+
+    // Returns the cached listing when it is still current, otherwise loads, serializes and caches it
+    public Listing get(Supplier<List<OurUserDTO>> loader) {
+        long current = version.get();
+        Listing listing = cached;
+        if (listing != null && listing.version == current && System.nanoTime() - listing.loadedAt < maxAgeNanos) {
+            return listing;
+        }
+        long loadedAt = System.nanoTime();
+        byte[] body;
+        try {
+            body = objectMapper.writeValueAsBytes(loader.get());
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize the user listing", e);
+        }
+        listing = new Listing(current, loadedAt, body, etagOf(body));
+        cached = listing; // Concurrent loads may overwrite each other; each one is a valid body for its version
+        return listing;
+    }
+
+    // Marks the cached listing stale; inside a transaction this happens after it commits, so a reload cannot see the old rows
+    public void invalidate() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    version.incrementAndGet(); // Also after a rollback; a needless reload is harmless
+                }
+            });
+        } else {
+            version.incrementAndGet();
+        }
+    }
+
+    private static String etagOf(byte[] body) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(body);
+            return "\"" + Base64.getUrlEncoder().withoutPadding().encodeToString(digest).substring(0, 22) + "\""; // 132 bits
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // SHA-256 is available on every JVM
+        }
+    }
+
+    // One serialized listing and its ETag
+    public static final class Listing {
+        private final long version;
+        private final long loadedAt; // System.nanoTime()
+        private final byte[] body; // JSON array of OurUserDTO
+        private final String etag; // Quoted, strong
+
+        private Listing(long version, long loadedAt, byte[] body, String etag) {
+            this.version = version;
+            this.loadedAt = loadedAt;
+            this.body = body;
+            this.etag = etag;
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+    }
+}
@@ -1,13 +1,22 @@
 package com.security.spring_security.service;
 
+import com.security.spring_security.activity.UserActivityTracker;
+import com.security.spring_security.apikey.ApiKeyService;
+import com.security.spring_security.audit.AuditEventType;
+import com.security.spring_security.authentication.VerifiedCredentialCache;
+import com.security.spring_security.audit.AuditLog;
 import com.security.spring_security.dto.*;
 import com.security.spring_security.entity.OurUser;
 import com.security.spring_security.exception.UserAlreadyExistWithUsernameException;
+import com.security.spring_security.index.UsernameBloomFilter;
+import com.security.spring_security.index.UsernameSearchIndex;
 import com.security.spring_security.jwt.JWTUtils;
 import com.security.spring_security.mapper.OurUserMapper;
-import com.security.spring_security.repository.OurUserRepository;
+import com.security.spring_security.store.UserStore;
+import com.security.spring_security.util.SingleFlight;
 import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
@@ -15,7 +24,10 @@ import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.time.Duration;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -23,8 +35,8 @@ import java.util.stream.Collectors;
 
 @Service // Indicates that this class provides business logic and is a service component in the Spring context
 public class UserManagementService {
-    // Provides access to user data
-    private final OurUserRepository userRepository;
+    // Provides access to user data in the configured user store
+    private final UserStore userRepository;
     // Handles JWT token generation and validation
     private final JWTUtils jwtUtils;
     // Manages authentication logic
@@ -33,18 +45,50 @@ public class UserManagementService {
     private final PasswordEncoder passwordEncoder;
     // Maps user entities to DTOs
     private final OurUserMapper ourUserMapper;
+    // Tracks which usernames exist so lookups for unknown ones can skip the database
+    private final UsernameBloomFilter usernameBloomFilter;
+    // Records authentication and account events without blocking the request
+    private final AuditLog auditLog;
+    // Buffers last-login and login-count updates and writes them in periodic batches
+    private final UserActivityTracker userActivityTracker;
+    // Holds last-known-good user details for the JWT path; must forget users that change
+    private final ResilientUserLookup resilientUserLookup;
+    // Coalesces concurrent refreshes of the same refresh token into one computation
+    private final SingleFlight<String, AuthResponse> refreshFlights;
+    // Serialized admin user listing; must be invalidated by every account write
+    private final UserListingCache userListingCache;
+    // Recent password verifications of service accounts; must forget users that change
+    private final VerifiedCredentialCache verifiedCredentialCache;
+    // API keys carry their user's name and roles; must follow updates and deletions
+    private final ApiKeyService apiKeyService;
+    // In-memory trigram index behind the admin user search
+    private final UsernameSearchIndex usernameSearchIndex;
 
     // Constructor for injecting dependencies into the service
     @Autowired
-    public UserManagementService(OurUserRepository userRepository,
+    public UserManagementService(UserStore userRepository,
                                  JWTUtils jwtUtils,
                                  AuthenticationManager authenticationManager,
-                                 PasswordEncoder passwordEncoder, OurUserMapper ourUserMapper) {
+                                 PasswordEncoder passwordEncoder, OurUserMapper ourUserMapper,
+                                 UsernameBloomFilter usernameBloomFilter, AuditLog auditLog,
+                                 UserActivityTracker userActivityTracker, ResilientUserLookup resilientUserLookup,
+                                 UserListingCache userListingCache, VerifiedCredentialCache verifiedCredentialCache,
+                                 ApiKeyService apiKeyService, UsernameSearchIndex usernameSearchIndex,
+                                 @Value("${app.refresh.grace-window:2s}") Duration refreshGraceWindow) {
         this.userRepository = userRepository; // Injects the user repository
         this.jwtUtils = jwtUtils; // Injects the JWT utility
         this.authenticationManager = authenticationManager; // Injects the authentication manager
         this.passwordEncoder = passwordEncoder; // Injects the password encoder
         this.ourUserMapper = ourUserMapper; // Injects the user mapper
+        this.usernameBloomFilter = usernameBloomFilter; // Injects the username existence index
+        this.auditLog = auditLog; // Injects the audit log
+        this.userActivityTracker = userActivityTracker; // Injects the activity tracker
+        this.resilientUserLookup = resilientUserLookup; // Injects the JWT-path user lookup
+        this.refreshFlights = new SingleFlight<>(refreshGraceWindow); // Shares one refresh result per token for the grace window
+        this.userListingCache = userListingCache; // Injects the user listing cache
+        this.verifiedCredentialCache = verifiedCredentialCache; // Injects the verified credential cache
+        this.apiKeyService = apiKeyService; // Injects the API key service
+        this.usernameSearchIndex = usernameSearchIndex; // Injects the user search index
     }
 
     // Checks whether the user database is empty by counting the total number of users
@@ -56,32 +100,58 @@ public class UserManagementService {
     public void createAdminUserIfNotExists(String username, String password, String role) {
         if (userRepository.findByUsername(username).isEmpty()) { // Checks if the admin user exists
             OurUser user = new OurUser(); // Creates a new user instance
+            user.setUserId(generateUserId(username)); // Generates and sets a unique user ID
             user.setUsername(username); // Sets the admin username
             user.setPassword(passwordEncoder.encode(password)); // Encodes and sets the admin password
             user.setRoles(role); // Assigns the admin role
+            usernameBloomFilter.put(username); // Records the username before the row becomes visible
             userRepository.save(user); // Persists the admin user in the database
+            userListingCache.invalidate(); // The listing now includes the admin
+            afterCommit(() -> usernameSearchIndex.put(user)); // Searchable once the row is committed
         }
     }
 
-    // Generates a unique user ID using the current timestamp to ensure uniqueness
-    private long generateUserId() {
-        return System.currentTimeMillis(); // Uses the current time as a unique identifier
+    // Generates a unique user ID; the JPA store encodes the user's home shard in it when sharding is enabled
+    private long generateUserId(String username) {
+        return userRepository.newUserId(username); // Monotonic per instance, so two registrations in the same millisecond still differ
     }
 
     @Transactional // Ensures that this method's database operations are executed within a single transaction
     public boolean register(RegisterRequest registerRequest) {
-        Optional<OurUser> user = userRepository.findByUsername(registerRequest.getUsername()); // Checks if the username is already registered
+        OurUser ourUser = createUser(registerRequest); // Creates and persists the new user
+        return ourUser.getUserId() > 0; // Returns true if the user was successfully created
+    }
+
+    // Registers the user and logs them in with the same request: the tokens are minted from the user just persisted,
+    // so sign-up costs one BCrypt hash and one username lookup instead of two of each. If the tokens cannot be issued the
+    // registration rolls back too, also with sharding enabled, where the user row joins this transaction on its home shard.
+    @Transactional // The user row and the login are part of one transaction
+    public AuthResponse registerAndLogin(RegisterRequest registerRequest) {
+        OurUser ourUser = createUser(registerRequest); // Creates and persists the new user
+        AuthResponse authResponse = issueTokens(ourUser); // No password check needed, the caller has just chosen it
+        afterCommit(() -> auditLog.publish(AuditEventType.LOGIN_SUCCESS, ourUser.getUsername())); // Records the login that came with the registration
+        return authResponse;
+    }
+
+    // Creates and persists a new user from the registration request
+    private OurUser createUser(RegisterRequest registerRequest) {
+        // Checks if the username is already registered; always asks the store, since the Bloom filter does not see users
+        // registered by other instances until its next pass
+        Optional<OurUser> user = userRepository.findByUsername(registerRequest.getUsername());
         if (user.isPresent()) {
             throw new UserAlreadyExistWithUsernameException("User already exists with email/username " + registerRequest.getUsername());
-        } else {
-            OurUser ourUser = new OurUser(); // Creates a new user entity
-            ourUser.setUserId(generateUserId()); // Generates and sets a unique user ID
-            ourUser.setUsername(registerRequest.getUsername()); // Sets the username
-            ourUser.setPassword(passwordEncoder.encode(registerRequest.getPassword())); // Encodes and sets the password
-            ourUser.setRoles(registerRequest.getRole()); // Assigns the specified role
-            userRepository.save(ourUser); // Saves the new user to the database
-            return ourUser.getUserId() > 0; // Returns true if the user was successfully created
         }
+        OurUser ourUser = new OurUser(); // Creates a new user entity
+        ourUser.setUserId(generateUserId(registerRequest.getUsername())); // Generates and sets a unique user ID
+        ourUser.setUsername(registerRequest.getUsername()); // Sets the username
+        ourUser.setPassword(passwordEncoder.encode(registerRequest.getPassword())); // Encodes and sets the password
+        ourUser.setRoles(registerRequest.getRole()); // Assigns the specified role
+        usernameBloomFilter.put(ourUser.getUsername()); // Records the username before the row becomes visible
+        userRepository.save(ourUser); // Saves the new user to the database
+        userListingCache.invalidate(); // The listing now includes the new user
+        afterCommit(() -> usernameSearchIndex.put(ourUser)); // Searchable once the row is committed, never after a rollback
+        afterCommit(() -> auditLog.publish(AuditEventType.USER_REGISTERED, ourUser.getUsername())); // Records the registration once it stands
+        return ourUser;
     }
 
     // Authenticates the user and generates JWT tokens upon successful login
@@ -91,30 +161,54 @@ public class UserManagementService {
                     new UsernamePasswordAuthenticationToken(loginRequest.getUsername(), loginRequest.getPassword())
             ); // Validates the user's credentials
             var user = userRepository.findByUsername(loginRequest.getUsername()).orElseThrow(); // Retrieves the user entity
-            var accessToken = jwtUtils.generateAccessToken(user); // Generates an access token
-            var refreshToken = jwtUtils.generateRefreshToken(user); // Generates a refresh token
-
-            AuthResponse authResponse = new AuthResponse(); // Creates a new authentication response object
-            authResponse.setAccessToken(accessToken); // Sets the access token
-            authResponse.setRefreshToken(refreshToken); // Sets the refresh token
-            authResponse.setTokenType("Bearer"); // Specifies the token type
-            authResponse.setExpiresIn(1800L); // Sets the token expiration time to 30 minutes
-
+            AuthResponse authResponse = issueTokens(user); // Generates the access and refresh tokens
+            auditLog.publish(AuditEventType.LOGIN_SUCCESS, loginRequest.getUsername()); // Records the successful login
             return authResponse; // Returns the authentication response
         } catch (Exception e) {
+            auditLog.publish(AuditEventType.LOGIN_FAILURE, loginRequest.getUsername()); // Records the failed login
             throw new RuntimeException("Login failed!"); // Throws an exception if authentication fails
         }
     }
 
+    // Mints a token pair for a user whose credentials have been established and counts the login
+    private AuthResponse issueTokens(OurUser user) {
+        var accessToken = jwtUtils.generateAccessToken(user); // Generates an access token
+        var refreshToken = jwtUtils.generateRefreshToken(user); // Generates a refresh token
+
+        AuthResponse authResponse = new AuthResponse(); // Creates a new authentication response object
+        authResponse.setAccessToken(accessToken); // Sets the access token
+        authResponse.setRefreshToken(refreshToken); // Sets the refresh token
+        authResponse.setTokenType("Bearer"); // Specifies the token type
+        authResponse.setExpiresIn(1800L); // Sets the token expiration time to 30 minutes
+
+        userActivityTracker.recordLogin(user.getUsername()); // Counts the login without writing the user row now
+        return authResponse;
+    }
+
     // Refreshes the user's JWT tokens using the provided refresh token
+    // Concurrent requests with the same refresh token (many tabs reconnecting at once) share a single refresh and receive the same tokens
     public AuthResponse refreshToken(AuthResponse refreshTokenRequest) {
+        String refreshToken = refreshTokenRequest.getRefreshToken();
+        if (refreshToken == null) {
+            auditLog.publish(AuditEventType.TOKEN_REFRESH_FAILURE, null); // Nothing to refresh
+            throw new RuntimeException("Refresh token validation or regeneration failed!");
+        }
+        return refreshFlights.execute(refreshToken, () -> doRefreshToken(refreshToken));
+    }
+
+    // Validates the refresh token, reloads the user and mints a new token pair
+    private AuthResponse doRefreshToken(String refreshToken) {
         try {
-            String username = jwtUtils.extractUsername(refreshTokenRequest.getRefreshToken()); // Extracts the username from the token
+            String username = jwtUtils.extractRefreshUsername(refreshToken); // Extracts the username from the refresh token
+            if (username == null) {
+                throw new IllegalArgumentException("Not a refresh token"); // An access token, or in opaque mode an unknown, expired or revoked token
+            }
             var user = userRepository.findByUsername(username)
                     .orElseThrow(() -> new UsernameNotFoundException("User not found with email: " + username));
 
             String newAccessToken = jwtUtils.generateAccessToken(user); // Generates a new access token
             String newRefreshToken = jwtUtils.generateRefreshToken(user); // Optionally generates a new refresh token
+            jwtUtils.revoke(refreshToken); // Opaque mode rotates refresh tokens; callers within the grace window share the new pair
 
             AuthResponse authResponse = new AuthResponse(); // Creates a new authentication response object
             authResponse.setAccessToken(newAccessToken); // Sets the new access token
@@ -122,8 +216,10 @@ public class UserManagementService {
             authResponse.setTokenType("Bearer"); // Specifies the token type
             authResponse.setExpiresIn(3600L); // Sets the token expiration time to 60 minutes
 
+            auditLog.publish(AuditEventType.TOKEN_REFRESH, username); // Records the token refresh
             return authResponse; // Returns the authentication response
         } catch (Exception e) {
+            auditLog.publish(AuditEventType.TOKEN_REFRESH_FAILURE, null); // The token could not be trusted, so no username is recorded
             throw new RuntimeException("Refresh token validation or regeneration failed!", e); // Throws an exception if token refresh fails
         }
     }
@@ -133,8 +229,10 @@ public class UserManagementService {
         Optional<OurUser> userOptional = userRepository.findByUserId(userId); // Finds the user by ID
         if (userOptional.isPresent()) {
             OurUser existingUser = userOptional.get();
+            String previousUsername = existingUser.getUsername(); // Needed to evict the old details after a rename
 
             if (updatedUser.getUsername() != null) {
+                usernameBloomFilter.put(updatedUser.getUsername()); // Records the new username before it is written
                 existingUser.setUsername(updatedUser.getUsername()); // Updates the username if provided
             }
             if (updatedUser.getPassword() != null) {
@@ -145,6 +243,13 @@ public class UserManagementService {
             }
 
             userRepository.save(existingUser); // Saves the updated user
+            resilientUserLookup.evict(previousUsername); // Stops serving the old details as a fallback
+            jwtUtils.revokeAll(previousUsername); // Opaque tokens issued before the change stop working immediately
+            verifiedCredentialCache.invalidate(previousUsername); // The next login verifies the password again
+            apiKeyService.onUserUpdated(previousUsername, existingUser); // Keys follow the new username and roles
+            userListingCache.invalidate(); // The listing shows the new username and roles
+            afterCommit(() -> usernameSearchIndex.put(existingUser)); // Re-indexes a new username, updates the roles
+            auditLog.publish(AuditEventType.USER_UPDATED, existingUser.getUsername(), String.valueOf(userId)); // Records the change
             return true; // Returns true indicating success
         }
         return false; // Returns false if the user is not found
@@ -154,7 +259,14 @@ public class UserManagementService {
     public boolean deleteUser(Long userId) {
         Optional<OurUser> userOptional = userRepository.findByUserId(userId); // Finds the user by ID
         if (userOptional.isPresent()) {
-            userRepository.deleteByUserId(userId); // Deletes the user
+            userRepository.delete(userOptional.get()); // Deletes the user from its shard
+            resilientUserLookup.evict(userOptional.get().getUsername()); // A deleted user must not be served as a fallback
+            jwtUtils.revokeAll(userOptional.get().getUsername()); // Opaque tokens of the user stop working immediately
+            verifiedCredentialCache.invalidate(userOptional.get().getUsername()); // A recreated account must verify its password
+            apiKeyService.onUserDeleted(userOptional.get().getUsername()); // Keys of a deleted user stop working
+            userListingCache.invalidate(); // The listing no longer includes the user
+            afterCommit(() -> usernameSearchIndex.remove(userOptional.get())); // No longer found by the search
+            auditLog.publish(AuditEventType.USER_DELETED, userOptional.get().getUsername(), String.valueOf(userId)); // Records the deletion
             return true; // Returns true indicating success
         }
         return false; // Returns false if the user is not found
@@ -167,4 +279,32 @@ public class UserManagementService {
                 .map(ourUserMapper::toDTO) // Maps each user entity to a DTO
                 .collect(Collectors.toList()); // Collects and returns the list of user DTOs
     }
+
+    // One page of the users whose username contains the query, best matches first, answered from the in-memory index
+    public UserSearchPage searchUsers(String query, int page, int size) {
+        UsernameSearchIndex.Result result = usernameSearchIndex.search(query, page * size, size);
+        List<OurUserDTO> users = result.getMatches().stream()
+                .map(match -> new OurUserDTO(match.getUserId(), match.getUsername(), match.getRoles()))
+                .collect(Collectors.toList());
+        return new UserSearchPage(query, page, size, result.getTotal(), users);
+    }
+
+    // Serialized user listing with its ETag; served from the cache while no account has changed
+    public UserListingCache.Listing getUserListing() {
+        return userListingCache.get(this::getAllUsers);
+    }
+
+    // Runs the action once the surrounding transaction has committed, or right away when there is none
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
 }
@@ -0,0 +1,31 @@
+package com.security.spring_security.sharding;
+
+import com.security.spring_security.util.UsernameHashing;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+
+/*
+    The ConsistentHashRing maps usernames to shard IDs.
+    Every shard owns a number of virtual nodes placed on a 64-bit ring by hashing "shard-<id>#<n>", and a username belongs to the
+    first virtual node at or after its own hash. Adding or removing a shard therefore only moves the keys adjacent to that shard's nodes
+    (about 1/N of them) instead of reshuffling everything, which keeps rebalancing incremental.
+ */
+final class ConsistentHashRing {
+    private final TreeMap<Long, Integer> ring = new TreeMap<>(); // Ring position -> shard ID
+
+    ConsistentHashRing(Collection<Integer> shardIds, int virtualNodes) {
+        for (int shardId : shardIds) {
+            for (int node = 0; node < virtualNodes; node++) {
+                ring.put(UsernameHashing.hash64("shard-" + shardId + "#" + node), shardId);
+            }
+        }
+    }
+
+    // Shard that owns the username
+    int shardFor(String username) {
+        Map.Entry<Long, Integer> entry = ring.ceilingEntry(UsernameHashing.hash(username));
+        return (entry != null ? entry : ring.firstEntry()).getValue(); // Wraps around the ring
+    }
+}
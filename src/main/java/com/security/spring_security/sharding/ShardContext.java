@@ -0,0 +1,21 @@
+package com.security.spring_security.sharding;
+
+// Holds the shard the current thread's next database connection should come from
+final class ShardContext {
+    private static final ThreadLocal<Integer> CURRENT = new ThreadLocal<>();
+
+    private ShardContext() {
+    }
+
+    static Integer get() {
+        return CURRENT.get();
+    }
+
+    static void set(Integer shardId) {
+        if (shardId == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(shardId);
+        }
+    }
+}
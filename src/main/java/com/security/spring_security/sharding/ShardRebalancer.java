@@ -0,0 +1,174 @@
+package com.security.spring_security.sharding;
+
+import com.security.spring_security.entity.OurUser;
+import com.security.spring_security.entity.PasswordReset;
+import com.security.spring_security.repository.OurUserRepository;
+import com.security.spring_security.repository.PasswordResetCodeRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+    The ShardRebalancer is an actuator endpoint (/actuator/shards, ADMIN only) that moves users to their home shard while the
+    application keeps serving traffic, typically after a shard was added to app.sharding.shards.
+
+        GET  /actuator/shards -> users per shard and the progress of the last rebalance
+        POST /actuator/shards -> starts a rebalance in the background
+
+    Each shard is walked in primary key order one page at a time. A user whose home shard is elsewhere is copied to its home shard
+    together with its pending reset code, and only then removed from the old shard, so it stays visible throughout (lookups fall back
+    to the other shards while a rebalance runs, see ShardRouter.isFallbackActive()). If the old row changed between the copy and the
+    delete, the copy is refreshed from it before the delete instead of losing the write. Other instances only fall back when they run
+    with app.sharding.fallback-lookups=true, which is how a shard should be added.
+ */
+
+@Component // Registered with the actuator infrastructure
+@ConditionalOnProperty(name = "app.user-store.type", havingValue = "jpa", matchIfMissing = true)
+@Endpoint(id = "shards")
+public class ShardRebalancer {
+    private static final Logger log = LoggerFactory.getLogger(ShardRebalancer.class);
+
+    private final ShardRouter shardRouter; // Home shards and per-shard transactions
+    private final OurUserRepository ourUserRepository; // Per-shard user queries
+    private final PasswordResetCodeRepository passwordResetCodeRepository; // Per-shard reset code queries
+    private final AtomicLong scanned = new AtomicLong(); // Users examined by the current or last run
+    private final AtomicLong moved = new AtomicLong(); // Users moved by the current or last run
+    private volatile Thread worker; // Background rebalance, null when idle
+    private volatile Instant startedAt;
+    private volatile Instant finishedAt;
+    private volatile String lastError;
+
+    public ShardRebalancer(ShardRouter shardRouter, OurUserRepository ourUserRepository,
+                           PasswordResetCodeRepository passwordResetCodeRepository) {
+        this.shardRouter = shardRouter;
+        this.ourUserRepository = ourUserRepository;
+        this.passwordResetCodeRepository = passwordResetCodeRepository;
+    }
+
+    @ReadOperation // Reports users per shard and the rebalance progress
+    public Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("enabled", shardRouter.isEnabled());
+        Map<String, Long> users = new LinkedHashMap<>();
+        List<Integer> shardIds = shardRouter.getShardIds();
+        List<Long> counts = shardRouter.scatter(shardId -> ourUserRepository.count());
+        for (int i = 0; i < shardIds.size(); i++) {
+            users.put(String.valueOf(shardIds.get(i)), counts.get(i));
+        }
+        status.put("users", users);
+        status.put("rebalancing", worker != null);
+        status.put("fallbackLookups", shardRouter.isFallbackActive());
+        status.put("startedAt", startedAt);
+        status.put("finishedAt", finishedAt);
+        status.put("scanned", scanned.get());
+        status.put("moved", moved.get());
+        status.put("lastError", lastError);
+        return status;
+    }
+
+    @WriteOperation // Starts a rebalance unless one is already running
+    public synchronized Map<String, Object> rebalance() {
+        if (worker == null && shardRouter.isEnabled()) {
+            scanned.set(0);
+            moved.set(0);
+            lastError = null;
+            startedAt = Instant.now();
+            finishedAt = null;
+            Thread thread = new Thread(this::run, "shard-rebalancer");
+            thread.setDaemon(true);
+            worker = thread;
+            shardRouter.setRebalancing(true);
+            thread.start();
+        }
+        return status();
+    }
+
+    private void run() {
+        try {
+            for (int shardId : shardRouter.getShardIds()) {
+                rebalanceShard(shardId);
+            }
+            log.info("Shard rebalance finished: scanned {} users, moved {}", scanned.get(), moved.get());
+        } catch (RuntimeException e) {
+            lastError = e.toString();
+            log.error("Shard rebalance failed after scanning {} users", scanned.get(), e);
+        } finally {
+            finishedAt = Instant.now();
+            shardRouter.setRebalancing(false);
+            worker = null;
+        }
+    }
+
+    // Walks one shard with keyset pagination and moves every user that belongs elsewhere
+    private void rebalanceShard(int shardId) {
+        long lastId = 0;
+        while (true) {
+            long afterId = lastId;
+            List<OurUser> page = shardRouter.read(shardId, () -> ourUserRepository.findTop500ByIdGreaterThanOrderByIdAsc(afterId));
+            if (page.isEmpty()) {
+                return;
+            }
+            for (OurUser user : page) {
+                scanned.incrementAndGet();
+                int home = shardRouter.shardFor(user.getUsername());
+                if (home != shardId) {
+                    move(user, shardId, home);
+                    moved.incrementAndGet();
+                }
+            }
+            lastId = page.get(page.size() - 1).getId();
+        }
+    }
+
+    // Copies the user and its reset code to the home shard, then deletes them from the source shard
+    private void move(OurUser user, int source, int home) {
+        copyToHome(user, home);
+
+        PasswordReset resetCode = shardRouter.read(source, () -> passwordResetCodeRepository.findByUsername(user.getUsername()));
+        if (resetCode != null) {
+            shardRouter.write(home, () -> {
+                if (passwordResetCodeRepository.findByUsername(user.getUsername()) == null) {
+                    PasswordReset copy = new PasswordReset();
+                    copy.setUsername(resetCode.getUsername());
+                    copy.setResetCode(resetCode.getResetCode());
+                    passwordResetCodeRepository.save(copy);
+                }
+                return null;
+            });
+        }
+
+        shardRouter.write(source, () -> {
+            ourUserRepository.findByUserId(user.getUserId()).ifPresent(current -> {
+                if (!Objects.equals(current.getPassword(), user.getPassword()) || !Objects.equals(current.getRoles(), user.getRoles())) {
+                    copyToHome(current, home); // Written to while we were copying, carry the newer state over
+                }
+                ourUserRepository.delete(current);
+            });
+            if (resetCode != null) {
+                passwordResetCodeRepository.deleteByResetCode(resetCode.getResetCode());
+            }
+            return null;
+        });
+    }
+
+    // Inserts the user on its home shard, or refreshes the copy that is already there
+    private void copyToHome(OurUser user, int home) {
+        shardRouter.write(home, () -> {
+            OurUser target = ourUserRepository.findByUserId(user.getUserId()).orElseGet(() -> ShardedUserRepository.copyOf(user));
+            target.setPassword(user.getPassword());
+            target.setRoles(user.getRoles());
+            return ourUserRepository.save(target);
+        });
+    }
+}
@@ -0,0 +1,295 @@
+package com.security.spring_security.sharding;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.OptionalInt;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+/*
+    The ShardRouter decides which shard a piece of user data lives on and runs data access against that shard.
+
+    A username's home shard comes from a consistent hash ring. Generated user IDs carry the shard they were created on in their low
+    SHARD_BITS bits, so lookups by user ID go straight to the right shard. Above that sit NODE_BITS bits of app.sharding.node-id and a
+    millisecond timestamp that only moves forward on this instance, so instances with distinct node IDs never generate the same ID.
+
+    Every unit of work runs through onShard(), which selects the shard for the current thread; the lazy connection proxy fetches the
+    physical connection on the first statement, so a transaction is bound to the shard of the first work that runs in it. The router
+    records that shard with the transaction and decides per call:
+
+        no transaction yet                  -> starts one on the shard
+        caller's transaction, same shard    -> joins it, so a @Transactional service call stays atomic on its shard
+        caller's transaction, not yet bound -> a write joins and binds it, a read runs in its own transaction
+        caller's transaction, other shard   -> runs in its own transaction (REQUIRES_NEW), committed independently
+        caller's transaction completing     -> runs in its own transaction (work from afterCommit/afterCompletion callbacks)
+
+    Reads do not bind the caller's transaction because a lookup often has to try another shard first (user IDs of renamed users),
+    and a bound transaction could no longer write where the user actually is. Work that had to commit on another shard is not undone
+    by a rollback of the caller; callers that need that register a compensation with onRollback(). With sharding disabled there is
+    only shard 0 and the work always joins the caller's transaction, exactly as the repositories behaved before.
+
+    scatter() runs the same work on every shard in parallel, which is how admin listings and counts are gathered.
+
+    Users normally live on their home shard, so lookups go there only. Right after a shard was added some users still sit on their
+    old shard until the ShardRebalancer has moved them; isFallbackActive() tells the store to look elsewhere on a miss during that
+    time. It is true while this instance runs a rebalance, and on every instance started with app.sharding.fallback-lookups=true.
+ */
+
+@Component // Shared by the JPA user store and the rebalancer
+@ConditionalOnProperty(name = "app.user-store.type", havingValue = "jpa", matchIfMissing = true)
+public class ShardRouter {
+    private static final Logger log = LoggerFactory.getLogger(ShardRouter.class);
+    static final int SHARD_BITS = 6; // Up to 64 shards
+    static final int MAX_SHARD_ID = (1 << SHARD_BITS) - 1;
+    static final int NODE_BITS = 6; // Up to 64 application instances
+    static final int MAX_NODE_ID = (1 << NODE_BITS) - 1;
+
+    private final boolean enabled; // False when running on a single spring.datasource
+    private final List<Integer> shardIds; // Configured shard IDs in configuration order
+    private final int nodeId; // This instance's ID, keeps user IDs unique across instances
+    private final ConsistentHashRing ring; // Username -> shard, null when disabled
+    private final int defaultShard; // Shard of the tables that are not partitioned
+    private final boolean fallbackLookups; // Configured for the duration of a topology change
+    private volatile boolean rebalancing; // A rebalance is running on this instance
+    private final TransactionTemplate readTransaction; // Read-only, joins the caller's transaction on the same shard
+    private final TransactionTemplate writeTransaction; // Read-write, joins the caller's transaction on the same shard
+    private final TransactionTemplate ownReadTransaction; // Read-only, always a transaction of its own
+    private final TransactionTemplate ownWriteTransaction; // Read-write, always a transaction of its own
+    private final ExecutorService scatterExecutor; // Runs per-shard work in parallel for scatter-gather
+    private final AtomicLong lastIdTimestamp = new AtomicLong(); // Guarantees unique, increasing user IDs on this instance
+
+    public ShardRouter(ShardingProperties properties, PlatformTransactionManager transactionManager) {
+        if (properties.getNodeId() < 0 || properties.getNodeId() > MAX_NODE_ID) {
+            throw new IllegalStateException("app.sharding.node-id must be between 0 and " + MAX_NODE_ID + ": " + properties.getNodeId());
+        }
+        this.enabled = properties.isEnabled();
+        this.nodeId = properties.getNodeId();
+        this.shardIds = enabled
+                ? properties.getShards().stream().map(ShardingProperties.Shard::getId).toList()
+                : List.of(0);
+        this.ring = enabled ? new ConsistentHashRing(shardIds, properties.getVirtualNodes()) : null;
+
+        this.defaultShard = enabled ? properties.getDefaultShard() : 0;
+        this.fallbackLookups = enabled && properties.isFallbackLookups();
+
+        this.readTransaction = transaction(transactionManager, TransactionDefinition.PROPAGATION_REQUIRED, true);
+        this.writeTransaction = transaction(transactionManager, TransactionDefinition.PROPAGATION_REQUIRED, false);
+        this.ownReadTransaction = transaction(transactionManager, TransactionDefinition.PROPAGATION_REQUIRES_NEW, true);
+        this.ownWriteTransaction = transaction(transactionManager, TransactionDefinition.PROPAGATION_REQUIRES_NEW, false);
+
+        this.scatterExecutor = enabled
+                ? Executors.newFixedThreadPool(shardIds.size(), runnable -> {
+                    Thread thread = new Thread(runnable, "shard-scatter");
+                    thread.setDaemon(true);
+                    return thread;
+                })
+                : null;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public List<Integer> getShardIds() {
+        return shardIds;
+    }
+
+    // Shard of the tables that are not partitioned by username (API keys, ...)
+    public int getDefaultShard() {
+        return defaultShard;
+    }
+
+    // Whether users may be found outside their home shard, i.e. a topology change has not been rebalanced yet
+    public boolean isFallbackActive() {
+        return fallbackLookups || rebalancing;
+    }
+
+    void setRebalancing(boolean rebalancing) {
+        this.rebalancing = rebalancing;
+    }
+
+    // Home shard of a username
+    public int shardFor(String username) {
+        return enabled ? ring.shardFor(username) : 0;
+    }
+
+    // Shard encoded in a generated user ID, if it names a configured shard
+    public OptionalInt shardOfUserId(long userId) {
+        if (!enabled) {
+            return OptionalInt.of(0);
+        }
+        int shardId = (int) (userId & MAX_SHARD_ID);
+        return shardIds.contains(shardId) ? OptionalInt.of(shardId) : OptionalInt.empty();
+    }
+
+    // Generates a unique user ID for a new user, encoding this instance's node ID and, when sharding is enabled, the user's home shard
+    public long newUserId(String username) {
+        long timestamp = lastIdTimestamp.accumulateAndGet(System.currentTimeMillis(), (last, now) -> Math.max(last + 1, now));
+        return userIdAt(timestamp, username);
+    }
+
+    // User ID for the given millisecond timestamp; unique only if the caller never reuses a timestamp (the DatasetGenerator uses
+    // timestamps long past, which newUserId() never produces)
+    public long userIdAt(long timestamp, String username) {
+        long id = (timestamp << NODE_BITS) | nodeId;
+        return enabled ? (id << SHARD_BITS) | shardFor(username) : id;
+    }
+
+    // Runs work against one shard in a read-only transaction
+    public <T> T read(int shardId, Supplier<T> work) {
+        return onShard(shardId, false, work);
+    }
+
+    // Runs work against one shard in a read-write transaction
+    public <T> T write(int shardId, Supplier<T> work) {
+        return onShard(shardId, true, work);
+    }
+
+    // Runs work against one shard in a read-write transaction of its own, committed before this returns even inside a caller's transaction
+    public <T> T writeIndependently(int shardId, Supplier<T> work) {
+        if (!enabled) {
+            return write(shardId, work); // A single database, nothing to commit separately
+        }
+        Integer previous = ShardContext.get();
+        ShardContext.set(shardId);
+        try {
+            return ownWriteTransaction.execute(status -> {
+                bind(shardId);
+                return work.get();
+            });
+        } finally {
+            ShardContext.set(previous);
+        }
+    }
+
+    // Runs the compensation in its own transactions if the caller's transaction rolls back, for work that committed on another shard.
+    // It runs on another thread: this one still holds the finished transaction's persistence context and connection until cleanup.
+    public void onRollback(Runnable compensation) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return; // No caller transaction, so nothing can roll back
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_ROLLED_BACK) {
+                    try {
+                        CompletableFuture.runAsync(compensation).join();
+                    } catch (RuntimeException e) {
+                        log.error("Could not undo cross-shard work after a rollback", e);
+                    }
+                }
+            }
+        });
+    }
+
+    // Runs read-only work on every shard in parallel and returns the results in shard order
+    public <T> List<T> scatter(IntFunction<T> work) {
+        if (!enabled) {
+            return List.of(read(0, () -> work.apply(0)));
+        }
+        List<CompletableFuture<T>> futures = new ArrayList<>(shardIds.size());
+        for (int shardId : shardIds) {
+            futures.add(CompletableFuture.supplyAsync(() -> read(shardId, () -> work.apply(shardId)), scatterExecutor));
+        }
+        List<T> results = new ArrayList<>(futures.size());
+        for (CompletableFuture<T> future : futures) {
+            results.add(future.join());
+        }
+        return results;
+    }
+
+    private <T> T onShard(int shardId, boolean write, Supplier<T> work) {
+        if (!enabled) {
+            return (write ? writeTransaction : readTransaction).execute(status -> work.get()); // Joins the caller's transaction, if any
+        }
+        TransactionTemplate transaction = joinsCaller(shardId, write)
+                ? (write ? writeTransaction : readTransaction)
+                : (write ? ownWriteTransaction : ownReadTransaction);
+        Integer previous = ShardContext.get();
+        ShardContext.set(shardId);
+        try {
+            return transaction.execute(status -> {
+                bind(shardId);
+                return work.get();
+            });
+        } finally {
+            ShardContext.set(previous); // Restores the outer shard for nested calls
+        }
+    }
+
+    // Whether the work may run in the caller's transaction, see the table above
+    private boolean joinsCaller(int shardId, boolean write) {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            return true; // Starts a new transaction
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return false; // The caller is in afterCompletion, its resources belong to a finished transaction
+        }
+        ShardBinding binding = currentBinding();
+        if (binding == null) {
+            binding = new ShardBinding(); // Unbound, but from now on we know when the caller starts completing
+            TransactionSynchronizationManager.registerSynchronization(binding);
+        }
+        boolean readOnlyCaller = TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+        if (binding.completing || (write && readOnlyCaller)) {
+            return false;
+        }
+        return binding.shardId < 0 ? write : binding.shardId == shardId;
+    }
+
+    // Records the shard of the transaction the work runs in, unless it already has one
+    private void bind(int shardId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        ShardBinding binding = currentBinding();
+        if (binding == null) {
+            binding = new ShardBinding();
+            TransactionSynchronizationManager.registerSynchronization(binding);
+        }
+        if (binding.shardId < 0) {
+            binding.shardId = shardId;
+        }
+    }
+
+    private static ShardBinding currentBinding() {
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (synchronization instanceof ShardBinding binding) {
+                return binding;
+            }
+        }
+        return null;
+    }
+
+    private static TransactionTemplate transaction(PlatformTransactionManager transactionManager, int propagation, boolean readOnly) {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setPropagationBehavior(propagation);
+        template.setReadOnly(readOnly);
+        return template;
+    }
+
+    // The shard a transaction is bound to; kept as a synchronization so it is suspended and resumed together with the transaction
+    private static final class ShardBinding implements TransactionSynchronization {
+        private int shardId = -1; // -1 until the first statement's shard is known
+        private boolean completing; // Set before commit or rollback, from then on nothing may join
+
+        @Override
+        public void beforeCompletion() {
+            completing = true;
+        }
+    }
+}
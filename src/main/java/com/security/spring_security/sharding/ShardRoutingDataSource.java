@@ -0,0 +1,12 @@
+package com.security.spring_security.sharding;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+// Hands out connections from the shard selected in ShardContext, or from the default shard when none is selected
+class ShardRoutingDataSource extends AbstractRoutingDataSource {
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return ShardContext.get();
+    }
+}
@@ -0,0 +1,351 @@
+package com.security.spring_security.sharding;
+
+import com.security.spring_security.activity.UserActivity;
+import com.security.spring_security.entity.ApiKey;
+import com.security.spring_security.entity.OurUser;
+import com.security.spring_security.entity.PasswordReset;
+import com.security.spring_security.repository.ApiKeyRepository;
+import com.security.spring_security.repository.OurUserRepository;
+import com.security.spring_security.repository.PasswordResetCodeRepository;
+import com.security.spring_security.store.UserStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/*
+    The ShardedUserRepository is the JPA UserStore (app.user-store.type=jpa, the default). It routes every call on OurUserRepository and
+    PasswordResetCodeRepository to the shard that owns the row, so the services never deal with shards themselves.
+
+        by username -> home shard from the consistent hash ring
+        by userId   -> shard encoded in the ID, then the other shards
+        listing     -> every shard in parallel (scatter-gather)
+        writes      -> the shard the user was loaded from, or the home shard for new users
+
+    A renamed user is moved to its new home shard within the update, so username lookups and reset codes only need the home shard;
+    a registration, which always misses, costs one query. Only while a topology change is being rebalanced
+    (ShardRouter.isFallbackActive()) does a miss go on to the other shards. The shard encoded in a user ID is where the user was
+    created, which a rename may have changed, so a miss by ID always tries the other shards; those lookups are admin operations.
+
+    Loaded users carry the shard they came from in OurUser.shardId. Writes join the service's transaction on the user's shard (see
+    ShardRouter), so registering, updating, deleting a user or resetting a password commits or rolls back as a whole. Lookups run in
+    their own read-only transactions, so the entities they return are detached and save() writes them back with a merge.
+
+    When a username change moves a user to a different home shard, save() copies the row there (or refreshes an earlier copy) in a
+    transaction of its own and then removes the old one within the service's transaction, so the user is never missing and a failed
+    move can simply be retried. If the service's transaction rolls back, the copy is removed again as long as the old row survived.
+
+    API keys are not partitioned: they live on the default shard. With sharding enabled their writes commit independently of a
+    service transaction that is bound to another shard; ApiKeyService undoes its changes when that transaction rolls back.
+
+    Buffered user activity is written with one batched UPDATE per shard through plain JDBC, so no entities are loaded for it.
+ */
+
+@Component // Used by the services through the UserStore interface
+@ConditionalOnProperty(name = "app.user-store.type", havingValue = "jpa", matchIfMissing = true)
+public class ShardedUserRepository implements UserStore {
+    private static final Logger log = LoggerFactory.getLogger(ShardedUserRepository.class);
+    private static final String ACTIVITY_SQL = "UPDATE our_user SET "
+            + "login_count = COALESCE(login_count, 0) + ?, "
+            + "last_login_at = COALESCE(?, last_login_at), "
+            + "last_seen_at = COALESCE(?, last_seen_at) "
+            + "WHERE username = ?";
+
+    private final ShardRouter shardRouter; // Picks shards and runs work against them
+    private final OurUserRepository ourUserRepository; // Per-shard user queries
+    private final PasswordResetCodeRepository passwordResetCodeRepository; // Per-shard reset code queries
+    private final ApiKeyRepository apiKeyRepository; // API keys, on the default shard
+    private final JdbcTemplate jdbcTemplate; // Batched activity updates
+
+    public ShardedUserRepository(ShardRouter shardRouter, OurUserRepository ourUserRepository,
+                                 PasswordResetCodeRepository passwordResetCodeRepository, ApiKeyRepository apiKeyRepository,
+                                 JdbcTemplate jdbcTemplate) {
+        this.shardRouter = shardRouter;
+        this.ourUserRepository = ourUserRepository;
+        this.passwordResetCodeRepository = passwordResetCodeRepository;
+        this.apiKeyRepository = apiKeyRepository;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public long newUserId(String username) {
+        return shardRouter.newUserId(username); // Encodes the home shard when sharding is enabled
+    }
+
+    // Finds a user by username on the username's home shard
+    @Override
+    public Optional<OurUser> findByUsername(String username) {
+        return findFirst(homeShards(username), shardId -> ourUserRepository.findByUsername(username));
+    }
+
+    // Finds a user by userId, starting at the shard encoded in the ID
+    @Override
+    public Optional<OurUser> findByUserId(long userId) {
+        OptionalInt encoded = shardRouter.shardOfUserId(userId);
+        return findFirst(candidateShards(encoded.orElse(-1)), shardId -> ourUserRepository.findByUserId(userId));
+    }
+
+    @Override
+    public boolean existsByUsername(String username) {
+        return findByUsername(username).isPresent();
+    }
+
+    // Inserts or updates a user on the shard that owns it
+    @Override
+    public OurUser save(OurUser user) {
+        int home = shardRouter.shardFor(user.getUsername());
+        Integer current = user.getShardId();
+        if (current == null || current == home) {
+            OurUser saved = shardRouter.write(home, () -> ourUserRepository.save(user));
+            saved.setShardId(home);
+            return saved;
+        }
+        // The username changed and now hashes to another shard: copy first, so the user is never missing, then delete the old row.
+        // Both steps are keyed by the user ID, so retrying a move that failed half way updates the copy and deletes whatever is left.
+        OurUser saved = shardRouter.writeIndependently(home, () -> {
+            OurUser target = ourUserRepository.findByUserId(user.getUserId()).orElseGet(() -> copyOf(user));
+            target.setUsername(user.getUsername());
+            target.setPassword(user.getPassword());
+            target.setRoles(user.getRoles());
+            return ourUserRepository.save(target);
+        });
+        shardRouter.onRollback(() -> undoMove(user.getUserId(), current, home));
+        shardRouter.write(current, () -> {
+            ourUserRepository.deleteByUserId(user.getUserId()); // No-op when a previous attempt already removed it
+            return null;
+        });
+        saved.setShardId(home);
+        return saved;
+    }
+
+    // Removes the copy of a move whose transaction rolled back, unless the old row is gone too: a user must never go missing
+    private void undoMove(long userId, int source, int home) {
+        if (shardRouter.read(source, () -> ourUserRepository.findByUserId(userId)).isPresent()) {
+            shardRouter.write(home, () -> {
+                ourUserRepository.deleteByUserId(userId);
+                return null;
+            });
+        }
+    }
+
+    // Deletes a user from the shard it was loaded from
+    @Override
+    public void delete(OurUser user) {
+        int shardId = user.getShardId() != null ? user.getShardId() : shardRouter.shardFor(user.getUsername());
+        shardRouter.write(shardId, () -> {
+            ourUserRepository.deleteByUserId(user.getUserId());
+            return null;
+        });
+    }
+
+    // Total number of users across all shards
+    @Override
+    public long count() {
+        return shardRouter.scatter(shardId -> ourUserRepository.count()).stream().mapToLong(Long::longValue).sum();
+    }
+
+    // Every user across all shards, queried in parallel
+    @Override
+    public List<OurUser> findAll() {
+        List<List<OurUser>> perShard = shardRouter.scatter(shardId -> tagged(ourUserRepository.findAll(), shardId));
+        List<OurUser> users = new ArrayList<>(perShard.stream().mapToInt(List::size).sum());
+        perShard.forEach(users::addAll);
+        return users;
+    }
+
+    // Streams every username, one shard at a time, without materializing the user table in memory
+    @Override
+    public long forEachUsername(Consumer<String> action) {
+        long count = 0;
+        for (int shardId : shardRouter.getShardIds()) {
+            count += shardRouter.read(shardId, () -> {
+                long shardCount = 0;
+                try (Stream<String> usernames = ourUserRepository.streamAllUsernames()) {
+                    for (String username : (Iterable<String>) usernames::iterator) {
+                        action.accept(username);
+                        shardCount++;
+                    }
+                }
+                return shardCount;
+            });
+        }
+        return count;
+    }
+
+    // Streams the ID, username and roles of every user, one shard at a time, without materializing the user table in memory
+    @Override
+    public long forEachUser(UserSummaryConsumer action) {
+        long count = 0;
+        for (int shardId : shardRouter.getShardIds()) {
+            count += shardRouter.read(shardId, () -> {
+                long shardCount = 0;
+                try (Stream<Object[]> rows = ourUserRepository.streamAllSummaries()) {
+                    for (Object[] row : (Iterable<Object[]>) rows::iterator) {
+                        if (row[0] != null) { // Rows written before user IDs existed cannot be addressed by the API anyway
+                            action.accept((Long) row[0], (String) row[1], (String) row[2]);
+                            shardCount++;
+                        }
+                    }
+                }
+                return shardCount;
+            });
+        }
+        return count;
+    }
+
+    // Finds the pending reset code of a username, stored alongside the user on its shard
+    @Override
+    public PasswordReset findResetCode(String username) {
+        return findFirst(homeShards(username),
+                shardId -> Optional.ofNullable(passwordResetCodeRepository.findByUsername(username))).orElse(null);
+    }
+
+    // Stores a reset code on the username's home shard
+    @Override
+    public PasswordReset saveResetCode(PasswordReset passwordReset) {
+        return shardRouter.write(shardRouter.shardFor(passwordReset.getUsername()), () -> passwordResetCodeRepository.save(passwordReset));
+    }
+
+    // Deletes a reset code of a username from its home shard, and from the others while a topology change is being rebalanced
+    @Override
+    public void deleteResetCode(String username, long resetCode) {
+        for (int shardId : homeShards(username)) {
+            shardRouter.write(shardId, () -> {
+                passwordResetCodeRepository.deleteByResetCode(resetCode);
+                return null;
+            });
+        }
+    }
+
+    @Override
+    public Optional<ApiKey> findApiKey(String prefix) {
+        return shardRouter.read(shardRouter.getDefaultShard(), () -> apiKeyRepository.findByPrefix(prefix));
+    }
+
+    @Override
+    public List<ApiKey> findAllApiKeys() {
+        return shardRouter.read(shardRouter.getDefaultShard(), apiKeyRepository::findAll);
+    }
+
+    @Override
+    public ApiKey saveApiKey(ApiKey apiKey) {
+        return shardRouter.write(shardRouter.getDefaultShard(), () -> apiKeyRepository.save(apiKey));
+    }
+
+    @Override
+    public void deleteApiKey(String prefix) {
+        shardRouter.write(shardRouter.getDefaultShard(), () -> {
+            apiKeyRepository.findByPrefix(prefix).ifPresent(apiKeyRepository::delete);
+            return null;
+        });
+    }
+
+    // One batched UPDATE per home shard, then, while a topology change is being rebalanced, individual retries elsewhere for users
+    // that are not on their home shard yet
+    @Override
+    public Collection<String> applyActivity(Map<String, UserActivity> activity) {
+        Map<Integer, List<String>> byShard = new HashMap<>();
+        activity.keySet().forEach(username -> byShard.computeIfAbsent(shardRouter.shardFor(username), shard -> new ArrayList<>()).add(username));
+        List<String> failed = new ArrayList<>();
+        byShard.forEach((shardId, usernames) -> {
+            try {
+                applyActivity(shardId, usernames, activity);
+            } catch (RuntimeException e) {
+                log.warn("Could not write activity of {} users to shard {}", usernames.size(), shardId, e);
+                failed.addAll(usernames);
+            }
+        });
+        return failed;
+    }
+
+    private void applyActivity(int shardId, List<String> usernames, Map<String, UserActivity> activity) {
+        List<Object[]> rows = new ArrayList<>(usernames.size());
+        for (String username : usernames) {
+            UserActivity entry = activity.get(username);
+            rows.add(new Object[]{
+                    entry.getLogins(),
+                    entry.getLastLoginAt() > 0 ? new Timestamp(entry.getLastLoginAt()) : null,
+                    entry.getLastSeenAt() > 0 ? new Timestamp(entry.getLastSeenAt()) : null,
+                    username
+            });
+        }
+        int[] updated = shardRouter.write(shardId, () -> jdbcTemplate.batchUpdate(ACTIVITY_SQL, rows));
+        for (int i = 0; i < updated.length; i++) {
+            if (updated[i] == 0 && shardRouter.isFallbackActive()) {
+                Object[] row = rows.get(i); // Not yet rebalanced, or deleted
+                for (int otherShard : shardRouter.getShardIds()) {
+                    if (otherShard != shardId && shardRouter.write(otherShard, () -> jdbcTemplate.update(ACTIVITY_SQL, row)) > 0) {
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    // Runs the lookup on the given shards in order until one returns a row
+    private <T> Optional<T> findFirst(List<Integer> shards, Function<Integer, Optional<T>> lookup) {
+        for (int shardId : shards) {
+            Optional<T> result = shardRouter.read(shardId, () -> lookup.apply(shardId));
+            if (result.isPresent()) {
+                if (result.get() instanceof OurUser user) {
+                    user.setShardId(shardId);
+                }
+                return result;
+            }
+        }
+        return Optional.empty();
+    }
+
+    // The username's home shard, followed by the others only while a topology change is being rebalanced
+    private List<Integer> homeShards(String username) {
+        int home = shardRouter.shardFor(username);
+        return shardRouter.isFallbackActive() ? candidateShards(home) : List.of(home);
+    }
+
+    // The preferred shard followed by every other configured shard
+    private List<Integer> candidateShards(int preferredShard) {
+        List<Integer> shardIds = shardRouter.getShardIds();
+        if (!shardIds.contains(preferredShard)) {
+            return shardIds;
+        }
+        List<Integer> ordered = new ArrayList<>(shardIds.size());
+        ordered.add(preferredShard);
+        for (int shardId : shardIds) {
+            if (shardId != preferredShard) {
+                ordered.add(shardId);
+            }
+        }
+        return ordered;
+    }
+
+    private static List<OurUser> tagged(List<OurUser> users, int shardId) {
+        users.forEach(user -> user.setShardId(shardId));
+        return users;
+    }
+
+    // A new row with the same account data, for inserting on another shard (the primary key is assigned per shard)
+    static OurUser copyOf(OurUser user) {
+        OurUser copy = new OurUser();
+        copy.setUserId(user.getUserId());
+        copy.setUsername(user.getUsername());
+        copy.setPassword(user.getPassword());
+        copy.setRoles(user.getRoles());
+        copy.setLastLoginAt(user.getLastLoginAt()); // Activity columns are insertable, so a moved user keeps its history
+        copy.setLoginCount(user.getLoginCount());
+        copy.setLastSeenAt(user.getLastSeenAt());
+        return copy;
+    }
+}
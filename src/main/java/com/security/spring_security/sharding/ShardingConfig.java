@@ -0,0 +1,65 @@
+package com.security.spring_security.sharding;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+    The ShardingConfig class replaces the single spring.datasource with one connection pool per configured shard when app.sharding.enabled=true.
+
+    The pools sit behind a ShardRoutingDataSource that picks the pool from the shard selected by the ShardRouter for the current thread.
+    That routing DataSource is in turn wrapped in a LazyConnectionDataSourceProxy, so a transaction only takes a physical connection
+    at its first statement, after the ShardRouter has chosen the shard. JPA, Spring Data repositories and JdbcTemplate all keep working
+    unchanged on top of it. Tables that are not partitioned by username live on the default shard.
+ */
+
+@Configuration // Always loaded so ShardingProperties can be injected; the DataSource is only replaced when sharding is enabled
+@EnableConfigurationProperties(ShardingProperties.class)
+public class ShardingConfig {
+
+    @Bean
+    @Primary // Replaces the auto-configured single DataSource
+    @ConditionalOnProperty(name = "app.sharding.enabled", havingValue = "true")
+    public DataSource shardedDataSource(ShardingProperties properties, ObjectProvider<MeterRegistry> meterRegistry) {
+        if (properties.getShards().isEmpty()) {
+            throw new IllegalStateException("app.sharding.enabled=true requires at least one entry in app.sharding.shards");
+        }
+        Map<Object, Object> pools = new HashMap<>();
+        for (ShardingProperties.Shard shard : properties.getShards()) {
+            if (shard.getId() < 0 || shard.getId() > ShardRouter.MAX_SHARD_ID) {
+                throw new IllegalStateException("Shard IDs must be between 0 and " + ShardRouter.MAX_SHARD_ID + ": " + shard.getId());
+            }
+            HikariDataSource pool = new HikariDataSource(); // One pool per physical database
+            pool.setPoolName("shard-" + shard.getId());
+            pool.setJdbcUrl(shard.getUrl());
+            pool.setUsername(shard.getUsername());
+            pool.setPassword(shard.getPassword());
+            pool.setMaximumPoolSize(shard.getMaximumPoolSize());
+            meterRegistry.ifAvailable(registry -> pool.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(registry))); // hikaricp.* meters tagged pool=shard-N
+            if (pools.put(shard.getId(), pool) != null) {
+                throw new IllegalStateException("Duplicate shard ID " + shard.getId());
+            }
+        }
+        ShardRoutingDataSource routing = new ShardRoutingDataSource();
+        routing.setTargetDataSources(pools);
+        Object defaultPool = pools.get(properties.getDefaultShard());
+        if (defaultPool == null) {
+            throw new IllegalStateException("app.sharding.default-shard " + properties.getDefaultShard() + " is not a configured shard");
+        }
+        routing.setDefaultTargetDataSource(defaultPool); // Used when no shard is selected
+        routing.setLenientFallback(false); // An unknown shard ID is a bug, not a reason to write to the default shard
+        routing.afterPropertiesSet();
+        return new LazyConnectionDataSourceProxy(routing);
+    }
+}
@@ -0,0 +1,114 @@
+package com.security.spring_security.sharding;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Shard topology bound from app.sharding.*
+@ConfigurationProperties(prefix = "app.sharding")
+public class ShardingProperties {
+    private boolean enabled; // When false the application uses spring.datasource as a single shard 0
+    private int virtualNodes = 128; // Ring positions per shard, smooths the key distribution
+    private int defaultShard = 0; // Shard for tables that are not partitioned (audit, API keys, ...)
+    private int nodeId = 0; // Distinct per application instance (0-63), encoded in generated user IDs
+    private boolean fallbackLookups; // Look for users on every shard, not just the home shard, while a topology change is pending
+    private List<Shard> shards = new ArrayList<>();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getVirtualNodes() {
+        return virtualNodes;
+    }
+
+    public void setVirtualNodes(int virtualNodes) {
+        this.virtualNodes = virtualNodes;
+    }
+
+    public boolean isFallbackLookups() {
+        return fallbackLookups;
+    }
+
+    public void setFallbackLookups(boolean fallbackLookups) {
+        this.fallbackLookups = fallbackLookups;
+    }
+
+    public int getDefaultShard() {
+        return defaultShard;
+    }
+
+    public void setDefaultShard(int defaultShard) {
+        this.defaultShard = defaultShard;
+    }
+
+    public int getNodeId() {
+        return nodeId;
+    }
+
+    public void setNodeId(int nodeId) {
+        this.nodeId = nodeId;
+    }
+
+    public List<Shard> getShards() {
+        return shards;
+    }
+
+    public void setShards(List<Shard> shards) {
+        this.shards = shards;
+    }
+
+    // One physical database
+    public static class Shard {
+        private int id; // Stable identifier 0-63, encoded in generated user IDs
+        private String url;
+        private String username;
+        private String password;
+        private int maximumPoolSize = 10;
+
+        public int getId() {
+            return id;
+        }
+
+        public void setId(int id) {
+            this.id = id;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public void setUrl(String url) {
+            this.url = url;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public void setUsername(String username) {
+            this.username = username;
+        }
+
+        public String getPassword() {
+            return password;
+        }
+
+        public void setPassword(String password) {
+            this.password = password;
+        }
+
+        public int getMaximumPoolSize() {
+            return maximumPoolSize;
+        }
+
+        public void setMaximumPoolSize(int maximumPoolSize) {
+            this.maximumPoolSize = maximumPoolSize;
+        }
+    }
+}
@@ -0,0 +1,326 @@
+package com.security.spring_security.store;
+
+import com.security.spring_security.entity.ApiKey;
+import com.security.spring_security.entity.PasswordReset;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.zip.CRC32;
+
+/*
+    The FileUserStore is the InMemoryUserStore made durable with an append-only log on local disk (app.user-store.type=file),
+    for single-node deployments without a database.
+
+    Every change is appended to the log as one record, [int length][payload][int CRC32 of the payload], before it is applied in
+    memory. At startup the log is replayed into memory; a record cut short by a crash, or whose checksum does not match, ends the
+    replay and the log is truncated there. Records are written straight to the file channel, so they survive a crash of the process;
+    with app.user-store.file.sync=true each one is also forced to the device, which survives a power loss at the cost of a disk
+    flush per change.
+
+    The log only grows, so it is compacted into a snapshot of the live users, reset codes and API keys at startup and whenever it holds more
+    than twice as many records as there are live entries (and at least 10,000). The snapshot is written to a temporary file, forced,
+    and atomically moved over the log, so a crash during compaction leaves either the old log or the new one.
+ */
+public class FileUserStore extends InMemoryUserStore implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(FileUserStore.class);
+
+    private static final byte PUT_USER = 1;
+    private static final byte DELETE_USER = 2;
+    private static final byte PUT_RESET = 3;
+    private static final byte DELETE_RESET = 4;
+    private static final byte PUT_API_KEY = 5;
+    private static final byte DELETE_API_KEY = 6;
+    private static final int MIN_COMPACTION_RECORDS = 10_000; // Small logs are not worth rewriting
+    private static final int MAX_RECORD_BYTES = 1 << 20; // Anything larger is a corrupt length prefix
+
+    private final Path path; // The log
+    private final boolean sync; // Force every record to the device
+    private FileChannel channel; // Append channel, replaced by compaction; guarded by writeLock
+    private long records; // Records in the log; guarded by writeLock
+
+    public FileUserStore(Path path, boolean sync) throws IOException {
+        this.path = path;
+        this.sync = sync;
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent()); // Creates the data directory on first start
+        }
+        synchronized (writeLock) {
+            long replayed = replay();
+            log.info("Replayed {} records from {}: {} users", replayed, path, count());
+            compact();
+        }
+    }
+
+    @Override
+    protected void journalPut(UserRecord record) {
+        append(PUT_USER, out -> writeUser(out, record));
+    }
+
+    @Override
+    protected void journalDelete(long userId) {
+        append(DELETE_USER, out -> out.writeLong(userId));
+    }
+
+    @Override
+    protected void journalResetPut(PasswordReset passwordReset) {
+        append(PUT_RESET, out -> writeReset(out, passwordReset));
+    }
+
+    @Override
+    protected void journalResetDelete(String username, long resetCode) {
+        append(DELETE_RESET, out -> {
+            out.writeUTF(username);
+            out.writeLong(resetCode);
+        });
+    }
+
+    @Override
+    protected void journalApiKeyPut(ApiKey apiKey) {
+        append(PUT_API_KEY, out -> writeApiKey(out, apiKey));
+    }
+
+    @Override
+    protected void journalApiKeyDelete(String prefix) {
+        append(DELETE_API_KEY, out -> out.writeUTF(prefix));
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (writeLock) {
+            if (channel != null) {
+                channel.force(true);
+                channel.close();
+                channel = null;
+            }
+        }
+    }
+
+    // Called under writeLock; the previous change has been applied in memory, so a compaction here loses nothing
+    private void append(byte op, RecordWriter writer) {
+        try {
+            if (records > Math.max(MIN_COMPACTION_RECORDS, 2L * (count() + resetCodeCount() + apiKeyCount()))) {
+                compact();
+            }
+        } catch (IOException e) {
+            throw new DataAccessResourceFailureException("Could not compact the user store log " + path, e);
+        }
+        long end = -1;
+        try {
+            ByteBuffer frame = frame(op, writer);
+            end = channel.size();
+            while (frame.hasRemaining()) {
+                channel.write(frame);
+            }
+            if (sync) {
+                channel.force(false);
+            }
+            records++;
+        } catch (IOException e) {
+            if (end >= 0) {
+                truncateQuietly(end); // A partial record would hide every record appended after it from the next replay
+            }
+            throw new DataAccessResourceFailureException("Could not write to the user store log " + path, e);
+        }
+    }
+
+    private void truncateQuietly(long size) {
+        try {
+            channel.truncate(size);
+        } catch (IOException e) {
+            log.error("Could not remove a partial record from {}", path, e);
+        }
+    }
+
+    // Reads every intact record into memory and truncates the log after the last one; returns the number of records
+    private long replay() throws IOException {
+        if (!Files.exists(path)) {
+            return 0;
+        }
+        long valid = 0; // Offset just past the last intact record
+        long count = 0;
+        CRC32 crc = new CRC32();
+        try (InputStream file = Files.newInputStream(path);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(file, 64 * 1024))) {
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    break; // Clean end of the log
+                }
+                if (length <= 0 || length > MAX_RECORD_BYTES) {
+                    break;
+                }
+                byte[] payload = new byte[length];
+                int checksum;
+                try {
+                    in.readFully(payload);
+                    checksum = in.readInt();
+                } catch (EOFException e) {
+                    break; // Torn write
+                }
+                crc.reset();
+                crc.update(payload);
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+                apply(new DataInputStream(new ByteArrayInputStream(payload)));
+                valid += 8L + length;
+                count++;
+            }
+        }
+        long size = Files.size(path);
+        if (size > valid) {
+            log.warn("Truncating {} unreadable bytes at the end of {}", size - valid, path);
+            try (FileChannel truncate = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                truncate.truncate(valid);
+                truncate.force(true);
+            }
+        }
+        return count;
+    }
+
+    private void apply(DataInputStream in) throws IOException {
+        byte op = in.readByte();
+        switch (op) {
+            case PUT_USER -> putRecord(new UserRecord(in.readLong(), in.readUTF(), in.readUTF(), in.readUTF(),
+                    in.readLong(), in.readLong(), in.readLong()));
+            case DELETE_USER -> removeRecord(in.readLong());
+            case PUT_RESET -> {
+                PasswordReset passwordReset = new PasswordReset();
+                passwordReset.setId(in.readLong());
+                passwordReset.setUsername(in.readUTF());
+                passwordReset.setResetCode(in.readLong());
+                putResetCode(passwordReset);
+            }
+            case DELETE_RESET -> removeResetCode(in.readUTF(), in.readLong());
+            case PUT_API_KEY -> {
+                ApiKey apiKey = new ApiKey();
+                apiKey.setId(in.readLong());
+                apiKey.setPrefix(in.readUTF());
+                apiKey.setSecretHash(in.readUTF());
+                apiKey.setName(in.readUTF());
+                apiKey.setUsername(in.readUTF());
+                apiKey.setRoles(in.readUTF());
+                apiKey.setCreatedAt(Instant.ofEpochMilli(in.readLong()));
+                putApiKey(apiKey);
+            }
+            case DELETE_API_KEY -> removeApiKey(in.readUTF());
+            default -> throw new IOException("Unknown record type " + op + " in " + path);
+        }
+    }
+
+    // Rewrites the log as a snapshot of the live state and reopens it for appending; called under writeLock
+    private void compact() throws IOException {
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        long written = 0;
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+            for (UserRecord record : userRecords()) {
+                written += write(out, buffer, frame(PUT_USER, dataOut -> writeUser(dataOut, record)));
+            }
+            for (PasswordReset passwordReset : resetCodeRecords()) {
+                written += write(out, buffer, frame(PUT_RESET, dataOut -> writeReset(dataOut, passwordReset)));
+            }
+            for (ApiKey apiKey : apiKeyRecords()) {
+                written += write(out, buffer, frame(PUT_API_KEY, dataOut -> writeApiKey(dataOut, apiKey)));
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+            out.force(true);
+        }
+        if (channel != null) {
+            channel.close();
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        log.debug("Compacted {} from {} to {} records", path, records, written);
+        records = written;
+    }
+
+    // Adds a frame to the buffer, draining it to the channel when full; returns 1 for counting
+    private static int write(FileChannel out, ByteBuffer buffer, ByteBuffer frame) throws IOException {
+        if (frame.remaining() > buffer.remaining()) {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+            buffer.clear();
+        }
+        if (frame.remaining() > buffer.capacity()) {
+            while (frame.hasRemaining()) {
+                out.write(frame);
+            }
+        } else {
+            buffer.put(frame);
+        }
+        return 1;
+    }
+
+    private static void writeUser(DataOutputStream out, UserRecord record) throws IOException {
+        out.writeLong(record.userId);
+        out.writeUTF(record.username);
+        out.writeUTF(record.password);
+        out.writeUTF(record.roles);
+        out.writeLong(record.lastLoginAt);
+        out.writeLong(record.loginCount);
+        out.writeLong(record.lastSeenAt);
+    }
+
+    private static void writeReset(DataOutputStream out, PasswordReset passwordReset) throws IOException {
+        out.writeLong(passwordReset.getId());
+        out.writeUTF(passwordReset.getUsername());
+        out.writeLong(passwordReset.getResetCode());
+    }
+
+    private static void writeApiKey(DataOutputStream out, ApiKey apiKey) throws IOException {
+        out.writeLong(apiKey.getId());
+        out.writeUTF(apiKey.getPrefix());
+        out.writeUTF(apiKey.getSecretHash());
+        out.writeUTF(apiKey.getName());
+        out.writeUTF(apiKey.getUsername());
+        out.writeUTF(apiKey.getRoles());
+        out.writeLong(apiKey.getCreatedAt().toEpochMilli());
+    }
+
+    // [int length][op + fields][int CRC32 of op + fields]
+    private static ByteBuffer frame(byte op, RecordWriter writer) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0); // Length, patched below
+        out.writeByte(op);
+        writer.write(out);
+        out.writeInt(0); // Checksum, patched below
+        ByteBuffer frame = ByteBuffer.wrap(bytes.toByteArray());
+        int length = frame.capacity() - 8;
+        CRC32 crc = new CRC32();
+        crc.update(frame.array(), 4, length);
+        frame.putInt(0, length);
+        frame.putInt(4 + length, (int) crc.getValue());
+        return frame;
+    }
+
+    @FunctionalInterface
+    private interface RecordWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+}
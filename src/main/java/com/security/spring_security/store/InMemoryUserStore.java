@@ -0,0 +1,303 @@
+package com.security.spring_security.store;
+
+import com.security.spring_security.activity.UserActivity;
+import com.security.spring_security.entity.ApiKey;
+import com.security.spring_security.entity.OurUser;
+import com.security.spring_security.entity.PasswordReset;
+import com.security.spring_security.util.LongKeyedMap;
+import com.security.spring_security.util.UsernameHashing;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/*
+    The InMemoryUserStore keeps every user in process memory (app.user-store.type=memory).
+
+    Users live in a LongKeyedMap keyed by userId, so lookups by ID never box the key, and a ConcurrentHashMap from the folded
+    username to the userId serves lookups by username. Reads take no locks. Writes are serialized on one monitor, which keeps the
+    username index and the user map consistent with each other; account changes are rare compared to lookups.
+
+    The write methods call the journal hooks while holding that monitor and before changing anything in memory, which is how
+    the FileUserStore makes every change durable in order.
+ */
+public class InMemoryUserStore implements UserStore {
+    private final LongKeyedMap<UserRecord> users = new LongKeyedMap<>(); // userId -> user
+    private final Map<String, Long> userIdsByUsername = new ConcurrentHashMap<>(); // Folded username -> userId
+    private final Map<String, PasswordReset> resetCodes = new ConcurrentHashMap<>(); // Folded username -> pending reset code
+    private final Map<String, ApiKey> apiKeys = new ConcurrentHashMap<>(); // Prefix -> API key
+    private final AtomicLong lastUserId = new AtomicLong(); // Guarantees unique, increasing user IDs
+    private final AtomicLong lastResetId = new AtomicLong(); // Stand-in for the reset table's primary key
+    private final AtomicLong lastApiKeyId = new AtomicLong(); // Stand-in for the API key table's primary key
+    protected final Object writeLock = new Object(); // Serializes every change
+
+    @Override
+    public long newUserId(String username) {
+        return lastUserId.accumulateAndGet(System.currentTimeMillis(), (last, now) -> Math.max(last + 1, now));
+    }
+
+    @Override
+    public Optional<OurUser> findByUsername(String username) {
+        if (username == null) {
+            return Optional.empty();
+        }
+        Long userId = userIdsByUsername.get(UsernameHashing.normalize(username));
+        return userId != null ? findByUserId(userId) : Optional.empty();
+    }
+
+    @Override
+    public Optional<OurUser> findByUserId(long userId) {
+        UserRecord record = userId > 0 ? users.get(userId) : null;
+        return record != null ? Optional.of(record.toUser()) : Optional.empty();
+    }
+
+    @Override
+    public OurUser save(OurUser user) {
+        if (user.getUsername() == null || user.getPassword() == null || user.getRoles() == null) {
+            throw new DataIntegrityViolationException("username, password and roles are required");
+        }
+        synchronized (writeLock) {
+            if (user.getUserId() == null) {
+                user.setUserId(newUserId(user.getUsername()));
+            }
+            String key = UsernameHashing.normalize(user.getUsername());
+            Long owner = userIdsByUsername.get(key);
+            if (owner != null && owner.longValue() != user.getUserId()) {
+                throw new DuplicateKeyException("Username already exists: " + user.getUsername());
+            }
+            UserRecord record = UserRecord.of(user, users.get(user.getUserId()));
+            journalPut(record);
+            putRecord(record);
+            return record.toUser();
+        }
+    }
+
+    @Override
+    public void delete(OurUser user) {
+        synchronized (writeLock) {
+            if (user.getUserId() != null && users.get(user.getUserId()) != null) {
+                journalDelete(user.getUserId());
+                removeRecord(user.getUserId());
+            }
+        }
+    }
+
+    @Override
+    public long count() {
+        return users.size();
+    }
+
+    @Override
+    public List<OurUser> findAll() {
+        return users.values().stream().map(UserRecord::toUser).toList();
+    }
+
+    @Override
+    public long forEachUsername(Consumer<String> action) {
+        long[] count = new long[1];
+        users.forEach(record -> {
+            action.accept(record.username);
+            count[0]++;
+        });
+        return count[0];
+    }
+
+    @Override
+    public long forEachUser(UserSummaryConsumer action) {
+        long[] count = new long[1];
+        users.forEach(record -> {
+            action.accept(record.userId, record.username, record.roles);
+            count[0]++;
+        });
+        return count[0];
+    }
+
+    @Override
+    public PasswordReset findResetCode(String username) {
+        PasswordReset stored = username != null ? resetCodes.get(UsernameHashing.normalize(username)) : null;
+        return stored != null ? copyOf(stored) : null;
+    }
+
+    @Override
+    public PasswordReset saveResetCode(PasswordReset passwordReset) {
+        synchronized (writeLock) {
+            PasswordReset stored = copyOf(passwordReset);
+            if (stored.getId() == null) {
+                stored.setId(lastResetId.incrementAndGet());
+            }
+            journalResetPut(stored);
+            putResetCode(stored);
+            return copyOf(stored);
+        }
+    }
+
+    @Override
+    public void deleteResetCode(String username, long resetCode) {
+        synchronized (writeLock) {
+            PasswordReset stored = resetCodes.get(UsernameHashing.normalize(username));
+            if (stored != null && stored.getResetCode() == resetCode) {
+                journalResetDelete(username, resetCode);
+                removeResetCode(username, resetCode);
+            }
+        }
+    }
+
+    @Override
+    public Optional<ApiKey> findApiKey(String prefix) {
+        ApiKey stored = prefix != null ? apiKeys.get(prefix) : null;
+        return stored != null ? Optional.of(copyOf(stored)) : Optional.empty();
+    }
+
+    @Override
+    public List<ApiKey> findAllApiKeys() {
+        return apiKeys.values().stream().map(InMemoryUserStore::copyOf).toList();
+    }
+
+    @Override
+    public ApiKey saveApiKey(ApiKey apiKey) {
+        if (apiKey.getPrefix() == null || apiKey.getSecretHash() == null || apiKey.getUsername() == null
+                || apiKey.getName() == null || apiKey.getRoles() == null || apiKey.getCreatedAt() == null) {
+            throw new DataIntegrityViolationException("prefix, secretHash, name, username, roles and createdAt are required");
+        }
+        synchronized (writeLock) {
+            ApiKey existing = apiKeys.get(apiKey.getPrefix());
+            if (existing != null && !existing.getId().equals(apiKey.getId())) {
+                throw new DuplicateKeyException("API key prefix already exists: " + apiKey.getPrefix());
+            }
+            ApiKey stored = copyOf(apiKey);
+            if (stored.getId() == null) {
+                stored.setId(lastApiKeyId.incrementAndGet());
+            }
+            journalApiKeyPut(stored);
+            putApiKey(stored);
+            return copyOf(stored);
+        }
+    }
+
+    @Override
+    public void deleteApiKey(String prefix) {
+        synchronized (writeLock) {
+            if (apiKeys.containsKey(prefix)) {
+                journalApiKeyDelete(prefix);
+                removeApiKey(prefix);
+            }
+        }
+    }
+
+    @Override
+    public Collection<String> applyActivity(Map<String, UserActivity> activity) {
+        synchronized (writeLock) {
+            activity.forEach((username, entry) -> {
+                Long userId = userIdsByUsername.get(UsernameHashing.normalize(username));
+                UserRecord current = userId != null ? users.get(userId) : null;
+                if (current != null) { // Users deleted since the activity was recorded are skipped
+                    UserRecord updated = current.withActivity(entry);
+                    journalPut(updated);
+                    putRecord(updated);
+                }
+            });
+        }
+        return List.of();
+    }
+
+    // Journal hooks, called under writeLock before the change is applied; a failure leaves memory untouched
+    protected void journalPut(UserRecord record) {
+    }
+
+    protected void journalDelete(long userId) {
+    }
+
+    protected void journalResetPut(PasswordReset passwordReset) {
+    }
+
+    protected void journalResetDelete(String username, long resetCode) {
+    }
+
+    protected void journalApiKeyPut(ApiKey apiKey) {
+    }
+
+    protected void journalApiKeyDelete(String prefix) {
+    }
+
+    // Applies changes without journaling; also used to replay a journal
+    void putRecord(UserRecord record) {
+        UserRecord previous = users.put(record.userId, record);
+        if (previous != null && !previous.username.equals(record.username)) {
+            userIdsByUsername.remove(UsernameHashing.normalize(previous.username), previous.userId); // Renamed
+        }
+        userIdsByUsername.put(UsernameHashing.normalize(record.username), record.userId);
+        lastUserId.accumulateAndGet(record.userId, Math::max);
+    }
+
+    void removeRecord(long userId) {
+        UserRecord removed = users.remove(userId);
+        if (removed != null) {
+            userIdsByUsername.remove(UsernameHashing.normalize(removed.username), userId);
+        }
+    }
+
+    void putResetCode(PasswordReset passwordReset) {
+        resetCodes.put(UsernameHashing.normalize(passwordReset.getUsername()), passwordReset);
+        lastResetId.accumulateAndGet(passwordReset.getId(), Math::max);
+    }
+
+    void removeResetCode(String username, long resetCode) {
+        resetCodes.computeIfPresent(UsernameHashing.normalize(username), (key, stored) -> stored.getResetCode() == resetCode ? null : stored);
+    }
+
+    void putApiKey(ApiKey apiKey) {
+        apiKeys.put(apiKey.getPrefix(), apiKey);
+        lastApiKeyId.accumulateAndGet(apiKey.getId(), Math::max);
+    }
+
+    void removeApiKey(String prefix) {
+        apiKeys.remove(prefix);
+    }
+
+    // Snapshot of every live user, reset code and API key, for compacting a journal
+    List<UserRecord> userRecords() {
+        return users.values();
+    }
+
+    Collection<PasswordReset> resetCodeRecords() {
+        return List.copyOf(resetCodes.values());
+    }
+
+    int resetCodeCount() {
+        return resetCodes.size();
+    }
+
+    Collection<ApiKey> apiKeyRecords() {
+        return List.copyOf(apiKeys.values());
+    }
+
+    int apiKeyCount() {
+        return apiKeys.size();
+    }
+
+    private static ApiKey copyOf(ApiKey source) {
+        ApiKey copy = new ApiKey();
+        copy.setId(source.getId());
+        copy.setPrefix(source.getPrefix());
+        copy.setSecretHash(source.getSecretHash());
+        copy.setName(source.getName());
+        copy.setUsername(source.getUsername());
+        copy.setRoles(source.getRoles());
+        copy.setCreatedAt(source.getCreatedAt());
+        return copy;
+    }
+
+    private static PasswordReset copyOf(PasswordReset source) {
+        PasswordReset copy = new PasswordReset();
+        copy.setId(source.getId());
+        copy.setUsername(source.getUsername());
+        copy.setResetCode(source.getResetCode());
+        return copy;
+    }
+}
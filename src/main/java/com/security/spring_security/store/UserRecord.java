@@ -0,0 +1,63 @@
+package com.security.spring_security.store;
+
+import com.security.spring_security.activity.UserActivity;
+import com.security.spring_security.entity.OurUser;
+
+import java.time.Instant;
+
+// Immutable user row held by the in-memory and file stores; callers only ever see OurUser copies of it
+final class UserRecord {
+    static final long NONE = -1L; // Encodes a null timestamp or count
+
+    final long userId;
+    final String username;
+    final String password;
+    final String roles;
+    final long lastLoginAt; // Epoch millis or NONE
+    final long loginCount; // NONE until the first recorded login
+    final long lastSeenAt; // Epoch millis or NONE
+
+    UserRecord(long userId, String username, String password, String roles, long lastLoginAt, long loginCount, long lastSeenAt) {
+        this.userId = userId;
+        this.username = username;
+        this.password = password;
+        this.roles = roles;
+        this.lastLoginAt = lastLoginAt;
+        this.loginCount = loginCount;
+        this.lastSeenAt = lastSeenAt;
+    }
+
+    // The account fields of the user with the activity fields of the previous record, as save() never changes activity
+    static UserRecord of(OurUser user, UserRecord previous) {
+        if (previous != null) {
+            return new UserRecord(user.getUserId(), user.getUsername(), user.getPassword(), user.getRoles(),
+                    previous.lastLoginAt, previous.loginCount, previous.lastSeenAt);
+        }
+        return new UserRecord(user.getUserId(), user.getUsername(), user.getPassword(), user.getRoles(),
+                millis(user.getLastLoginAt()), user.getLoginCount() != null ? user.getLoginCount() : NONE, millis(user.getLastSeenAt()));
+    }
+
+    UserRecord withActivity(UserActivity activity) {
+        return new UserRecord(userId, username, password, roles,
+                activity.getLastLoginAt() > 0 ? Math.max(lastLoginAt, activity.getLastLoginAt()) : lastLoginAt,
+                activity.getLogins() > 0 ? Math.max(loginCount, 0) + activity.getLogins() : loginCount,
+                activity.getLastSeenAt() > 0 ? Math.max(lastSeenAt, activity.getLastSeenAt()) : lastSeenAt);
+    }
+
+    OurUser toUser() {
+        OurUser user = new OurUser();
+        user.setId(userId); // There is no separate primary key outside the database
+        user.setUserId(userId);
+        user.setUsername(username);
+        user.setPassword(password);
+        user.setRoles(roles);
+        user.setLastLoginAt(lastLoginAt != NONE ? Instant.ofEpochMilli(lastLoginAt) : null);
+        user.setLoginCount(loginCount != NONE ? loginCount : null);
+        user.setLastSeenAt(lastSeenAt != NONE ? Instant.ofEpochMilli(lastSeenAt) : null);
+        return user;
+    }
+
+    private static long millis(Instant instant) {
+        return instant != null ? instant.toEpochMilli() : NONE;
+    }
+}
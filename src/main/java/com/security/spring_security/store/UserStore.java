@@ -0,0 +1,77 @@
+package com.security.spring_security.store;
+
+import com.security.spring_security.activity.UserActivity;
+import com.security.spring_security.entity.ApiKey;
+import com.security.spring_security.entity.OurUser;
+import com.security.spring_security.entity.PasswordReset;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/*
+    The UserStore is where the services keep user accounts, pending password reset codes and API keys.
+    The implementation is chosen with app.user-store.type:
+
+        jpa    -> ShardedUserRepository, JPA over MySQL (optionally sharded), the default
+        memory -> InMemoryUserStore, nothing survives a restart; for benchmarks and tests
+        file   -> FileUserStore, an append-only log on local disk replayed into memory at startup; for edge deployments
+
+    Usernames are matched the way MySQL's default collation compares them (case- and accent-insensitively) by every implementation.
+    Returned users are copies: changes only take effect through save().
+ */
+public interface UserStore {
+
+    // Generates a unique user ID for a new user
+    long newUserId(String username);
+
+    Optional<OurUser> findByUsername(String username);
+
+    Optional<OurUser> findByUserId(long userId);
+
+    default boolean existsByUsername(String username) {
+        return findByUsername(username).isPresent();
+    }
+
+    // Inserts a new user or updates an existing one (activity columns are left untouched on update)
+    OurUser save(OurUser user);
+
+    void delete(OurUser user);
+
+    long count();
+
+    List<OurUser> findAll();
+
+    // Calls the action for every username without materializing all users; returns how many there were
+    long forEachUsername(Consumer<String> action);
+
+    // Calls the action with the user ID, username and roles of every user without materializing all users; returns how many there were
+    long forEachUser(UserSummaryConsumer action);
+
+    // Pending reset code of a username, or null
+    PasswordReset findResetCode(String username);
+
+    PasswordReset saveResetCode(PasswordReset passwordReset);
+
+    void deleteResetCode(String username, long resetCode);
+
+    Optional<ApiKey> findApiKey(String prefix);
+
+    // Every issued API key, for building the in-memory key index
+    List<ApiKey> findAllApiKeys();
+
+    ApiKey saveApiKey(ApiKey apiKey);
+
+    void deleteApiKey(String prefix);
+
+    // Adds buffered login counts and timestamps to the users; returns the usernames whose activity could not be written
+    Collection<String> applyActivity(Map<String, UserActivity> activity);
+
+    // Receives the columns of one user streamed by forEachUser
+    @FunctionalInterface
+    interface UserSummaryConsumer {
+        void accept(long userId, String username, String roles);
+    }
+}
@@ -0,0 +1,69 @@
+package com.security.spring_security.store;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/*
+    The UserStoreConfig class creates the UserStore selected by app.user-store.type when it is not the default JPA store
+    (the ShardedUserRepository registers itself for type jpa).
+
+    The memory and file stores do not need a database, and the application-memory-store and application-file-store profiles turn
+    the DataSource auto-configuration off. JPA then provides no transaction manager, so a no-op one is registered in its place:
+    the services keep their @Transactional annotations, and the stores apply each change atomically on their own.
+ */
+
+@Configuration // Always loaded; every bean below is conditional on app.user-store.type
+public class UserStoreConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "app.user-store.type", havingValue = "memory")
+    public UserStore inMemoryUserStore() {
+        return new InMemoryUserStore();
+    }
+
+    @Bean // close() is called on shutdown and forces the log to disk
+    @ConditionalOnProperty(name = "app.user-store.type", havingValue = "file")
+    public UserStore fileUserStore(@Value("${app.user-store.file.path:data/users.log}") String path,
+                                   @Value("${app.user-store.file.sync:false}") boolean sync) throws IOException {
+        return new FileUserStore(Path.of(path), sync);
+    }
+
+    @Bean
+    @ConditionalOnExpression("'${app.user-store.type:jpa}' != 'jpa'")
+    @ConditionalOnMissingBean(PlatformTransactionManager.class)
+    public PlatformTransactionManager transactionManager() {
+        return new LocalTransactionManager();
+    }
+
+    // Lets @Transactional methods run without a database; there is nothing to begin, commit or roll back
+    static final class LocalTransactionManager extends AbstractPlatformTransactionManager {
+
+        @Override
+        protected Object doGetTransaction() {
+            return new Object();
+        }
+
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {
+        }
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {
+        }
+
+        @Override
+        protected void doRollback(DefaultTransactionStatus status) {
+        }
+    }
+}
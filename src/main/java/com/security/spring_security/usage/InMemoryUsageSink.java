@@ -0,0 +1,57 @@
+package com.security.spring_security.usage;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Keeps the totals in process memory for the memory and file user stores, which have no database; lost on restart
+@Component
+@ConditionalOnExpression("'${app.user-store.type:jpa}' != 'jpa'")
+public class InMemoryUsageSink implements UsageSink {
+    private final Map<Key, Long> totals = new ConcurrentHashMap<>();
+
+    @Override
+    public void add(LocalDate day, List<UsageDelta> deltas) {
+        for (UsageDelta delta : deltas) {
+            totals.merge(new Key(delta.getUserId(), day, delta.getEndpoint()), delta.getCalls(), Long::sum);
+        }
+    }
+
+    @Override
+    public Map<String, Long> find(long userId, LocalDate day) {
+        Map<String, Long> calls = new HashMap<>();
+        totals.forEach((key, total) -> {
+            if (key.userId == userId && key.day.equals(day)) {
+                calls.put(key.endpoint, total);
+            }
+        });
+        return calls;
+    }
+
+    private static final class Key {
+        private final long userId;
+        private final LocalDate day;
+        private final String endpoint;
+
+        private Key(long userId, LocalDate day, String endpoint) {
+            this.userId = userId;
+            this.day = day;
+            this.endpoint = endpoint;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Key key && key.userId == userId && key.day.equals(day) && key.endpoint.equals(endpoint);
+        }
+
+        @Override
+        public int hashCode() {
+            return (Long.hashCode(userId) * 31 + day.hashCode()) * 31 + endpoint.hashCode();
+        }
+    }
+}
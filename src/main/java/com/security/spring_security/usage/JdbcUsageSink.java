@@ -0,0 +1,56 @@
+package com.security.spring_security.usage;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+    The JdbcUsageSink keeps the totals in the api_usage table (mapped by the ApiUsage entity), one row per user, endpoint and day.
+    A flush is one JDBC batch of upserts in one transaction: each row's calls are added to the stored count, so flushes from
+    several instances add up instead of overwriting each other. The table is not partitioned by username; with sharding it lives
+    on the default shard, like the audit entries.
+ */
+
+@Component // Usage destination for the JPA user store
+@ConditionalOnProperty(name = "app.user-store.type", havingValue = "jpa", matchIfMissing = true)
+public class JdbcUsageSink implements UsageSink {
+    private static final String UPSERT_SQL = "INSERT INTO api_usage (user_id, usage_day, endpoint, calls) VALUES (?, ?, ?, ?) "
+            + "ON DUPLICATE KEY UPDATE calls = calls + VALUES(calls)"; // MySQL syntax; H2 accepts it in MODE=MySQL
+    private static final String FIND_SQL = "SELECT endpoint, calls FROM api_usage WHERE user_id = ? AND usage_day = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transaction; // All deltas of a flush or none
+
+    public JdbcUsageSink(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transaction = new TransactionTemplate(transactionManager);
+    }
+
+    @Override
+    public void add(LocalDate day, List<UsageDelta> deltas) {
+        Date date = Date.valueOf(day);
+        List<Object[]> rows = new ArrayList<>(deltas.size());
+        for (UsageDelta delta : deltas) {
+            rows.add(new Object[]{delta.getUserId(), date, delta.getEndpoint(), delta.getCalls()});
+        }
+        transaction.executeWithoutResult(status -> jdbcTemplate.batchUpdate(UPSERT_SQL, rows));
+    }
+
+    @Override
+    public Map<String, Long> find(long userId, LocalDate day) {
+        Map<String, Long> calls = new HashMap<>();
+        jdbcTemplate.query(FIND_SQL, row -> {
+            calls.put(row.getString(1), row.getLong(2));
+        }, userId, Date.valueOf(day));
+        return calls;
+    }
+}
@@ -0,0 +1,26 @@
+package com.security.spring_security.usage;
+
+// Calls one user made to one endpoint since the last flush
+public final class UsageDelta {
+    private final long userId;
+    private final String endpoint; // Matched rule, e.g. "GET /api/users", or "other"
+    private final long calls;
+
+    public UsageDelta(long userId, String endpoint, long calls) {
+        this.userId = userId;
+        this.endpoint = endpoint;
+        this.calls = calls;
+    }
+
+    public long getUserId() {
+        return userId;
+    }
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    public long getCalls() {
+        return calls;
+    }
+}
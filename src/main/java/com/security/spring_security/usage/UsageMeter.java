@@ -0,0 +1,237 @@
+package com.security.spring_security.usage;
+
+import com.security.spring_security.authorization.EndpointAuthorizationRules;
+import com.security.spring_security.authorization.EndpointRule;
+import com.security.spring_security.entity.OurUser;
+import com.security.spring_security.util.LongKeyedMap;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+    The UsageMeter counts API calls per authenticated user and endpoint, for billing and quotas. The JWT and API key filters call
+    record() for every authenticated request; the endpoint is the EndpointAuthorizationRules rule the request matches (requests
+    matching no rule are counted as "other").
+
+    Counting never locks or allocates once a user has been seen: the user's entry is found in a LongKeyedMap by user ID
+    (an optimistic, lock-free read), and each endpoint has its own LongAdder, which spreads concurrent increments over per-CPU
+    cells instead of contending on one counter.
+
+    A single flusher thread sends what was counted since the last flush to the UsageSink every app.usage.flush-interval, added to
+    the totals of the current UTC day. Counters are never reset: each remembers how much of its sum has been flushed, and only moves
+    that mark once the sink has stored the delta, so a failed flush is simply retried by the next one and no concurrent increment is
+    lost. Calls made just before midnight can be flushed into the next day; at most one interval is affected.
+
+    Users without calls for EVICT_AFTER_IDLE_FLUSHES flushes are removed from the map so it only holds active users. A request that
+    looked the entry up just before it was removed may still count into it, so removed entries are flushed once more before they
+    are dropped. At most one interval of counts is lost if the process dies; the rest is flushed on a normal shutdown.
+ */
+
+@Component // Shared by the JWT and API key filters and the usage endpoints
+public class UsageMeter {
+    private static final Logger log = LoggerFactory.getLogger(UsageMeter.class);
+    private static final String UNMATCHED = "other"; // Endpoint name of requests that match no rule
+    private static final int EVICT_AFTER_IDLE_FLUSHES = 3;
+
+    private final EndpointAuthorizationRules rules; // Resolves the endpoint of a request
+    private final String[] endpoints; // Counter slot -> endpoint name; rule IDs, then UNMATCHED
+    private final UsageSink sink; // Destination of the flushed deltas
+    private final boolean enabled; // False turns record() into a no-op
+    private final Duration flushInterval;
+    private final LongKeyedMap<UserUsage> users = new LongKeyedMap<>(); // userId -> counters of active users
+    private List<UserUsage> evicted = new ArrayList<>(); // Removed by the last flush, flushed once more; guarded by this
+    private ScheduledExecutorService flusher; // Single flusher thread
+
+    public UsageMeter(EndpointAuthorizationRules rules, UsageSink sink,
+                      @Value("${app.usage.enabled:true}") boolean enabled,
+                      @Value("${app.usage.flush-interval:30s}") Duration flushInterval,
+                      MeterRegistry meterRegistry) {
+        this.rules = rules;
+        List<EndpointRule> declared = rules.getRules();
+        this.endpoints = new String[declared.size() + 1];
+        for (EndpointRule rule : declared) {
+            endpoints[rule.getId()] = rule.toString();
+        }
+        endpoints[declared.size()] = UNMATCHED;
+        this.sink = sink;
+        this.enabled = enabled;
+        this.flushInterval = flushInterval;
+        Gauge.builder("usage.meter.users", users, LongKeyedMap::size).register(meterRegistry);
+    }
+
+    @PostConstruct // Starts the periodic flush
+    void start() {
+        if (!enabled) {
+            return;
+        }
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "usage-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMillis = flushInterval.toMillis();
+        flusher.scheduleWithFixedDelay(this::flushSafely, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // Counts an authenticated request; principals without a user ID are not metered
+    public void record(UserDetails user, HttpServletRequest request) {
+        if (!enabled || !(user instanceof OurUser ourUser) || ourUser.getUserId() == null || ourUser.getUserId() <= 0) {
+            return;
+        }
+        EndpointRule rule = rules.match(request);
+        record(ourUser.getUserId(), rule != null && !rule.isDenyAll() ? rule.getId() : endpoints.length - 1); // Undeclared paths count as other
+    }
+
+    void record(long userId, int slot) {
+        UserUsage usage = users.get(userId);
+        if (usage == null) {
+            usage = users.putIfAbsent(userId, new UserUsage(userId, endpoints.length));
+        }
+        usage.counter(slot).increment();
+    }
+
+    // Calls of the user on the day by endpoint, including what has not been flushed yet when the day is today
+    public synchronized Map<String, Long> usage(long userId, LocalDate day) {
+        Map<String, Long> calls = new TreeMap<>(sink.find(userId, day));
+        if (day.equals(LocalDate.now(ZoneOffset.UTC))) {
+            List<UserUsage> pending = new ArrayList<>(evicted);
+            pending.add(users.get(userId));
+            for (UserUsage usage : pending) {
+                if (usage != null && usage.userId == userId) {
+                    for (int slot = 0; slot < endpoints.length; slot++) {
+                        LongAdder counter = usage.counters.get(slot);
+                        long unflushed = counter != null ? counter.sum() - usage.flushed[slot] : 0;
+                        if (unflushed > 0) {
+                            calls.merge(endpoints[slot], unflushed, Long::sum);
+                        }
+                    }
+                }
+            }
+        }
+        return calls;
+    }
+
+    // Number of users with counters in memory
+    public int getActiveUsers() {
+        return users.size();
+    }
+
+    // Sends every unflushed count to the sink; runs on the flusher thread and at shutdown
+    synchronized void flush() {
+        List<UsageDelta> deltas = new ArrayList<>();
+        List<UserUsage> owners = new ArrayList<>(); // Parallel to deltas
+        List<Integer> slots = new ArrayList<>();
+        List<UserUsage> dropped = evicted;
+        List<UserUsage> idle = new ArrayList<>();
+        for (UserUsage usage : dropped) {
+            collect(usage, deltas, owners, slots); // Late increments of entries removed by the last flush
+        }
+        users.forEach(usage -> {
+            if (collect(usage, deltas, owners, slots)) {
+                usage.idleFlushes = 0;
+            } else if (++usage.idleFlushes >= EVICT_AFTER_IDLE_FLUSHES) {
+                idle.add(usage);
+            }
+        });
+        for (UserUsage usage : idle) {
+            users.remove(usage.userId); // Counted afterwards by a new entry
+        }
+        evicted = idle;
+        if (deltas.isEmpty()) {
+            return;
+        }
+        try {
+            sink.add(LocalDate.now(ZoneOffset.UTC), deltas);
+        } catch (RuntimeException e) {
+            evicted.addAll(dropped); // Their counts are retried with everything else
+            throw e;
+        }
+        for (int i = 0; i < deltas.size(); i++) {
+            owners.get(i).flushed[slots.get(i)] += deltas.get(i).getCalls();
+        }
+    }
+
+    // Adds the user's unflushed counts to the deltas; returns false when there were none
+    private boolean collect(UserUsage usage, List<UsageDelta> deltas, List<UserUsage> owners, List<Integer> slots) {
+        boolean any = false;
+        for (int slot = 0; slot < endpoints.length; slot++) {
+            LongAdder counter = usage.counters.get(slot);
+            if (counter == null) {
+                continue;
+            }
+            long delta = counter.sum() - usage.flushed[slot]; // Sums only grow, so this never misses an increment
+            if (delta > 0) {
+                deltas.add(new UsageDelta(usage.userId, endpoints[slot], delta));
+                owners.add(usage);
+                slots.add(slot);
+                any = true;
+            }
+        }
+        return any;
+    }
+
+    private void flushSafely() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.warn("Usage flush failed, the counts will be retried", e);
+        }
+    }
+
+    @PreDestroy // Stops the schedule and writes what is left
+    void shutdown() {
+        if (flusher == null) {
+            return;
+        }
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flushSafely();
+    }
+
+    // Counters of one user, created per endpoint on first use
+    private static final class UserUsage {
+        private final long userId;
+        private final AtomicReferenceArray<LongAdder> counters; // Every call since the entry was created, by endpoint slot
+        private final long[] flushed; // Part of each counter the sink has stored; guarded by the meter's lock
+        private int idleFlushes; // Consecutive flushes without calls; only touched by the flusher
+
+        private UserUsage(long userId, int slots) {
+            this.userId = userId;
+            this.counters = new AtomicReferenceArray<>(slots);
+            this.flushed = new long[slots];
+        }
+
+        private LongAdder counter(int slot) {
+            LongAdder counter = counters.get(slot);
+            if (counter == null) {
+                LongAdder created = new LongAdder();
+                counter = counters.compareAndSet(slot, null, created) ? created : counters.get(slot);
+            }
+            return counter;
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.security.spring_security.usage;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+// Stores the per-day call totals the UsageMeter flushes
+public interface UsageSink {
+
+    // Adds the deltas to the totals of the day; either every delta is stored or, on an exception, none
+    void add(LocalDate day, List<UsageDelta> deltas);
+
+    // Stored totals of one user on one day, by endpoint
+    Map<String, Long> find(long userId, LocalDate day);
+}
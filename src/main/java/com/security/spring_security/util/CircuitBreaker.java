@@ -0,0 +1,65 @@
+package com.security.spring_security.util;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+    A minimal lock-free circuit breaker.
+
+    CLOSED     -> calls go through; failureThreshold consecutive failures open the breaker
+    OPEN       -> calls are refused until openDuration has passed
+    HALF_OPEN  -> a single trial call is let through; success closes the breaker, failure opens it again
+
+    Callers ask allowRequest() before the protected call and report the outcome with recordSuccess() or recordFailure().
+ */
+public final class CircuitBreaker {
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final int failureThreshold; // Consecutive failures that open the breaker
+    private final long openNanos; // How long the breaker stays open before a trial call
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final AtomicLong openedAt = new AtomicLong(-1); // System.nanoTime() when opened, -1 when closed
+    private final AtomicBoolean trialInFlight = new AtomicBoolean(); // Only one trial call while half-open
+
+    public CircuitBreaker(int failureThreshold, Duration openDuration) {
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openNanos = openDuration.toNanos();
+    }
+
+    // True when the protected call may be attempted now
+    public boolean allowRequest() {
+        long opened = openedAt.get();
+        if (opened < 0) {
+            return true; // Closed
+        }
+        if (System.nanoTime() - opened < openNanos) {
+            return false; // Open
+        }
+        return trialInFlight.compareAndSet(false, true); // Half-open: let exactly one caller try
+    }
+
+    public void recordSuccess() {
+        consecutiveFailures.set(0);
+        openedAt.set(-1);
+        trialInFlight.set(false);
+    }
+
+    public void recordFailure() {
+        if (openedAt.get() >= 0) {
+            openedAt.set(System.nanoTime()); // A failed trial keeps the breaker open for another period
+            trialInFlight.set(false);
+        } else if (consecutiveFailures.incrementAndGet() >= failureThreshold) {
+            openedAt.compareAndSet(-1, System.nanoTime());
+        }
+    }
+
+    public State getState() {
+        long opened = openedAt.get();
+        if (opened < 0) {
+            return State.CLOSED;
+        }
+        return System.nanoTime() - opened < openNanos ? State.OPEN : State.HALF_OPEN;
+    }
+}
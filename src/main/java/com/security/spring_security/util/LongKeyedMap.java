@@ -0,0 +1,255 @@
+package com.security.spring_security.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+
+/*
+    A concurrent map from positive long keys to values, without boxing the keys.
+
+    The key space is split into lock stripes. Each stripe is an open-addressing table (linear probing, backward-shift deletion,
+    so there are no tombstones) held in a parallel long[] / Object[] pair and guarded by a StampedLock. Reads are optimistic:
+    they probe without locking and only retry under the read lock if a writer touched the stripe meanwhile, so lookups from
+    many request threads never contend with each other.
+ */
+public final class LongKeyedMap<V> {
+    private static final int STRIPES = 64; // Power of two
+    private static final long EMPTY = 0L; // Keys must be positive, so 0 marks a free slot
+
+    private final Stripe<V>[] stripes;
+
+    @SuppressWarnings("unchecked")
+    public LongKeyedMap() {
+        stripes = (Stripe<V>[]) new Stripe[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe<>();
+        }
+    }
+
+    public V get(long key) {
+        checkKey(key);
+        long hash = mix(key);
+        return stripeFor(hash).get(key, hash);
+    }
+
+    // Returns the previous value, or null
+    public V put(long key, V value) {
+        checkKey(key);
+        long hash = mix(key);
+        return stripeFor(hash).put(key, hash, value);
+    }
+
+    // Stores the value unless the key is present; returns the value now in the map
+    public V putIfAbsent(long key, V value) {
+        checkKey(key);
+        long hash = mix(key);
+        return stripeFor(hash).putIfAbsent(key, hash, value);
+    }
+
+    // Returns the removed value, or null
+    public V remove(long key) {
+        checkKey(key);
+        long hash = mix(key);
+        return stripeFor(hash).remove(key, hash);
+    }
+
+    public int size() {
+        int size = 0;
+        for (Stripe<V> stripe : stripes) {
+            size += stripe.size;
+        }
+        return size;
+    }
+
+    // Visits every value; each stripe is copied under its read lock so the action never runs while holding a lock
+    public void forEach(Consumer<V> action) {
+        for (Stripe<V> stripe : stripes) {
+            for (V value : stripe.values()) {
+                action.accept(value);
+            }
+        }
+    }
+
+    public List<V> values() {
+        List<V> values = new ArrayList<>(size());
+        forEach(values::add);
+        return values;
+    }
+
+    private Stripe<V> stripeFor(long hash) {
+        return stripes[(int) (hash >>> 58) & (STRIPES - 1)]; // Top bits pick the stripe, low bits the slot
+    }
+
+    private static void checkKey(long key) {
+        if (key <= 0) {
+            throw new IllegalArgumentException("Keys must be positive: " + key);
+        }
+    }
+
+    // MurmurHash3 finalizer; user IDs are timestamps, so their low bits alone are poorly distributed
+    private static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+
+    private static final class Stripe<V> {
+        private final StampedLock lock = new StampedLock();
+        private long[] keys = new long[16];
+        private Object[] vals = new Object[16];
+        private volatile int size;
+
+        @SuppressWarnings("unchecked")
+        V get(long key, long hash) {
+            long stamp = lock.tryOptimisticRead();
+            long[] k = keys;
+            Object[] v = vals;
+            Object found = k.length == v.length ? probe(k, v, key, hash) : null;
+            if (lock.validate(stamp)) {
+                return (V) found;
+            }
+            stamp = lock.readLock(); // A writer was active, read again under the lock
+            try {
+                return (V) probe(keys, vals, key, hash);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        V put(long key, long hash, V value) {
+            long stamp = lock.writeLock();
+            try {
+                return insert(key, hash, value, false);
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        V putIfAbsent(long key, long hash, V value) {
+            V existing = get(key, hash); // Lock-free when the key is present, which is the common case
+            if (existing != null) {
+                return existing;
+            }
+            long stamp = lock.writeLock();
+            try {
+                V previous = insert(key, hash, value, true);
+                return previous != null ? previous : value;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        // Caller holds the write lock; returns the previous value, or null
+        @SuppressWarnings("unchecked")
+        private V insert(long key, long hash, V value, boolean onlyIfAbsent) {
+            if ((size + 1) * 4 > keys.length * 3) {
+                resize(); // Keeps the load factor below 0.75
+            }
+            int mask = keys.length - 1;
+            for (int i = (int) hash & mask; ; i = (i + 1) & mask) {
+                if (keys[i] == EMPTY) {
+                    keys[i] = key;
+                    vals[i] = value;
+                    size++;
+                    return null;
+                }
+                if (keys[i] == key) {
+                    Object previous = vals[i];
+                    if (!onlyIfAbsent) {
+                        vals[i] = value;
+                    }
+                    return (V) previous;
+                }
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        V remove(long key, long hash) {
+            long stamp = lock.writeLock();
+            try {
+                int mask = keys.length - 1;
+                int i = (int) hash & mask;
+                while (keys[i] != key) {
+                    if (keys[i] == EMPTY) {
+                        return null;
+                    }
+                    i = (i + 1) & mask;
+                }
+                Object removed = vals[i];
+                // Backward-shift deletion: pull later entries of the probe run into the hole so lookups never stop early
+                int hole = i;
+                for (int j = (hole + 1) & mask; keys[j] != EMPTY; j = (j + 1) & mask) {
+                    int home = (int) mix(keys[j]) & mask;
+                    if (((j - home) & mask) >= ((j - hole) & mask)) {
+                        keys[hole] = keys[j];
+                        vals[hole] = vals[j];
+                        hole = j;
+                    }
+                }
+                keys[hole] = EMPTY;
+                vals[hole] = null;
+                size--;
+                return (V) removed;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        List<V> values() {
+            long stamp = lock.readLock();
+            try {
+                List<V> values = new ArrayList<>(size);
+                for (int i = 0; i < keys.length; i++) {
+                    if (keys[i] != EMPTY) {
+                        values.add((V) vals[i]);
+                    }
+                }
+                return values;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        private void resize() {
+            long[] oldKeys = keys;
+            Object[] oldVals = vals;
+            long[] newKeys = new long[oldKeys.length * 2];
+            Object[] newVals = new Object[oldVals.length * 2];
+            int mask = newKeys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != EMPTY) {
+                    int j = (int) mix(oldKeys[i]) & mask;
+                    while (newKeys[j] != EMPTY) {
+                        j = (j + 1) & mask;
+                    }
+                    newKeys[j] = oldKeys[i];
+                    newVals[j] = oldVals[i];
+                }
+            }
+            keys = newKeys;
+            vals = newVals;
+        }
+    }
+
+    // Linear probe; bounded by the table length so a torn optimistic read cannot loop forever
+    private static Object probe(long[] k, Object[] v, long key, long hash) {
+        int mask = k.length - 1;
+        int i = (int) hash & mask;
+        for (int n = 0; n < k.length; n++, i = (i + 1) & mask) {
+            long current = k[i];
+            if (current == key) {
+                return v[i];
+            }
+            if (current == EMPTY) {
+                return null;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,64 @@
+package com.security.spring_security.util;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/*
+    Coalesces concurrent calls for the same key into one computation.
+
+    The first caller for a key runs the supplier; callers arriving while it runs wait for it and receive the same result.
+    A successful result is kept for a short grace window after it completes, so callers arriving just after it finished receive it too
+    instead of starting a new computation. Failures are handed to the callers that were waiting and then forgotten, so the next call retries.
+    Entries remove themselves when their grace window ends.
+ */
+public final class SingleFlight<K, V> {
+    private final ConcurrentHashMap<K, CompletableFuture<V>> calls = new ConcurrentHashMap<>(); // In-flight or recently completed calls
+    private final Executor expiry; // Removes completed entries once the grace window has passed
+
+    public SingleFlight(Duration graceWindow) {
+        this.expiry = CompletableFuture.delayedExecutor(graceWindow.toNanos(), TimeUnit.NANOSECONDS, Runnable::run);
+    }
+
+    // Returns the result of the in-flight or recent computation for the key, or runs the supplier if there is none
+    public V execute(K key, Supplier<V> supplier) {
+        CompletableFuture<V> call = new CompletableFuture<>();
+        CompletableFuture<V> existing = calls.putIfAbsent(key, call);
+        if (existing != null) {
+            return await(existing);
+        }
+        try {
+            V result = supplier.get();
+            call.complete(result);
+            expiry.execute(() -> calls.remove(key, call)); // Shared with late callers until the grace window ends
+            return result;
+        } catch (RuntimeException | Error e) {
+            calls.remove(key, call); // Failures are not shared with later callers
+            call.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    // Number of keys currently in flight or within their grace window
+    public int size() {
+        return calls.size();
+    }
+
+    private static <V> V await(CompletableFuture<V> call) {
+        try {
+            return call.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.security.spring_security.util;
+
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/*
+    Hashing helpers for usernames shared by the in-memory indexes and the shard router.
+    Usernames are folded the way MySQL's default collation compares them (case- and accent-insensitive),
+    so "Alice@Example.com" and "alice@example.com" always hash, and therefore route, identically.
+ */
+public final class UsernameHashing {
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+"); // Accents left over after NFD decomposition
+
+    private UsernameHashing() {
+    }
+
+    // Folds the username the same way the database collation does
+    public static String normalize(String username) {
+        String lower = username.toLowerCase(Locale.ROOT);
+        for (int i = 0; i < lower.length(); i++) {
+            if (lower.charAt(i) >= 0x80) {
+                return COMBINING_MARKS.matcher(Normalizer.normalize(lower, Normalizer.Form.NFD)).replaceAll("");
+            }
+        }
+        return lower; // Fast path: plain ASCII has nothing to decompose
+    }
+
+    // 64-bit hash of the normalized username
+    public static long hash(String username) {
+        return hash64(normalize(username));
+    }
+
+    // 64-bit FNV-1a over the UTF-16 code units, finished with the MurmurHash3 fmix64 avalanche step
+    public static long hash64(String value) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            h ^= value.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,265 @@
+package com.security.spring_security.warmup;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.type.CollectionType;
+import com.security.spring_security.activity.UserActivityTracker;
+import com.security.spring_security.authorization.EndpointAuthorizationRules;
+import com.security.spring_security.dto.AuthResponse;
+import com.security.spring_security.dto.LoginRequest;
+import com.security.spring_security.dto.OurUserDTO;
+import com.security.spring_security.entity.OurUser;
+import com.security.spring_security.index.UsernameBloomFilter;
+import com.security.spring_security.jwt.JWTAuthFilter;
+import com.security.spring_security.jwt.JWTUtils;
+import com.security.spring_security.mapper.OurUserMapper;
+import com.security.spring_security.service.OurUserDetailsService;
+import com.security.spring_security.service.ResilientUserLookup;
+import com.security.spring_security.store.InMemoryUserStore;
+import com.security.spring_security.usage.InMemoryUsageSink;
+import com.security.spring_security.usage.UsageMeter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+    The WarmupRunner exercises the hot request paths with synthetic data right after startup, so that the JIT has compiled them
+    before the instance receives traffic, instead of the first few thousand real requests running interpreted after every
+    autoscale event.
+
+    It runs as the last ApplicationRunner. Spring Boot only publishes ReadinessState.ACCEPTING_TRAFFIC after every runner has
+    returned, so /actuator/health/readiness reports OUT_OF_SERVICE until the warm-up is done and a load balancer keeps the instance
+    out of rotation; liveness is already up, so the instance is not restarted meanwhile. The warm-up stops when it has run
+    app.warmup.iterations rounds and app.warmup.password-hashes BCrypt rounds, or when app.warmup.budget runs out, whichever
+    comes first. A failure is logged and never blocks startup.
+
+    The budget trades time to readiness against how warm the first requests find the code: every second of it keeps the instance out
+    of rotation, and whatever the warm-up did not get to is compiled under real traffic instead. The default is 5s; the log line at
+    the end shows how many rounds fit, which is the number to watch when tuning it. The fast-startup
+    profile, which exists to get instances into rotation as soon as possible, turns the warm-up off and accepts a slower first
+    minute of traffic instead.
+
+    Each round mints and parses tokens with the real JWTUtils (in opaque mode the tokens are revoked again), authenticates a
+    synthetic request through a JWTAuthFilter, maps users with the OurUserMapper and writes and reads the controller payloads with
+    the MVC ObjectMapper. The filter and its user lookup are private instances over an in-memory store, so the warm-up never touches
+    the database or the mail server; the JIT compiles per class, not per instance, so the production beans benefit all the same.
+    The BCrypt rounds use the real PasswordEncoder and run on a second thread in parallel.
+ */
+
+@Component // Runs once at startup unless app.warmup.enabled=false
+@ConditionalOnProperty(name = "app.warmup.enabled", havingValue = "true", matchIfMissing = true)
+public class WarmupRunner implements ApplicationRunner, Ordered {
+    private static final Logger log = LoggerFactory.getLogger(WarmupRunner.class);
+    private static final String USERNAME = "warmup@warmup.invalid"; // Reserved TLD, can never be a real account
+    private static final String PASSWORD = "warmup-password";
+
+    private final JWTUtils jwtUtils; // Real token path: jjwt signing and parsing, or the opaque store
+    private final PasswordEncoder passwordEncoder; // Real BCrypt encoder
+    private final OurUserMapper ourUserMapper;
+    private final ObjectMapper objectMapper; // The MVC object mapper, so the same serializers get compiled
+    private final Duration budget; // Longest the warm-up may delay readiness
+    private final int iterations; // Rounds over the cheap paths
+    private final int passwordHashes; // BCrypt encode + matches pairs
+
+    public WarmupRunner(JWTUtils jwtUtils, PasswordEncoder passwordEncoder, OurUserMapper ourUserMapper, ObjectMapper objectMapper,
+                        @Value("${app.warmup.budget:5s}") Duration budget,
+                        @Value("${app.warmup.iterations:10000}") int iterations,
+                        @Value("${app.warmup.password-hashes:4}") int passwordHashes) {
+        this.jwtUtils = jwtUtils;
+        this.passwordEncoder = passwordEncoder;
+        this.ourUserMapper = ourUserMapper;
+        this.objectMapper = objectMapper;
+        this.budget = budget;
+        this.iterations = iterations;
+        this.passwordHashes = passwordHashes;
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.LOWEST_PRECEDENCE; // After admin seeding, so the warm-up never delays it
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        try {
+            warmUp();
+        } catch (Exception e) {
+            log.warn("JIT warm-up failed, accepting traffic without it", e);
+        }
+    }
+
+    // Runs the warm-up and returns the number of completed rounds over the cheap paths
+    int warmUp() throws Exception {
+        long start = System.nanoTime();
+        long deadline = start + budget.toNanos();
+
+        AtomicInteger hashes = new AtomicInteger(); // Completed BCrypt rounds
+        CompletableFuture<Void> hashing = CompletableFuture.runAsync(() -> hashPasswords(deadline, hashes), runnable -> {
+            Thread thread = new Thread(runnable, "warmup-bcrypt");
+            thread.setDaemon(true);
+            thread.start();
+        });
+
+        Fixture fixture = new Fixture();
+        int rounds = 0;
+        try {
+            while (rounds < iterations && System.nanoTime() < deadline) {
+                fixture.round();
+                rounds++;
+            }
+        } finally {
+            fixture.close();
+        }
+
+        try {
+            hashing.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            // Out of budget; the thread stops after its current hash
+        } catch (ExecutionException e) {
+            throw (Exception) e.getCause();
+        }
+        log.info("JIT warm-up ran {} of {} rounds and {} of {} password hashes in {} ms (budget {} ms)",
+                rounds, iterations, hashes.get(), passwordHashes, (System.nanoTime() - start) / 1_000_000, budget.toMillis());
+        return rounds;
+    }
+
+    private void hashPasswords(long deadline, AtomicInteger done) {
+        while (done.get() < passwordHashes && System.nanoTime() < deadline) {
+            String encoded = passwordEncoder.encode(PASSWORD);
+            passwordEncoder.matches(PASSWORD, encoded);
+            done.incrementAndGet();
+        }
+    }
+
+    // Synthetic users, a private JWTAuthFilter and the payloads of one warm-up round
+    private final class Fixture {
+        private final InMemoryUserStore store = new InMemoryUserStore(); // Stands in for the database
+        private final ResilientUserLookup lookup; // Same lookup code as production, over the in-memory store
+        private final JWTAuthFilter filter;
+        private final OurUser user;
+        private final List<OurUser> users = new ArrayList<>(); // Listing-sized page for the mapper and serializer
+        private final CollectionType listingType = objectMapper.getTypeFactory().constructCollectionType(List.class, OurUserDTO.class);
+        private final byte[] loginBody;
+        private final HttpServletResponse response = (HttpServletResponse) Proxy.newProxyInstance(
+                getClass().getClassLoader(), new Class<?>[]{HttpServletResponse.class}, (proxy, method, args) -> defaultValue(method.getReturnType()));
+        private final FilterChain chain = (request, response) -> { };
+
+        private Fixture() throws JsonProcessingException {
+            for (int i = 0; i < 50; i++) {
+                OurUser synthetic = new OurUser();
+                synthetic.setUsername(i == 0 ? USERNAME : "warmup" + i + "@warmup.invalid");
+                synthetic.setPassword("{noop}" + PASSWORD);
+                synthetic.setRoles(i % 2 == 0 ? "USER" : "ADMIN,USER");
+                synthetic.setLastLoginAt(Instant.now());
+                synthetic.setLoginCount((long) i);
+                users.add(store.save(synthetic));
+            }
+            user = users.get(0);
+
+            UsernameBloomFilter bloomFilter = new UsernameBloomFilter(store, 1000, 0.01, true, Duration.ofMinutes(1));
+            bloomFilter.loadExistingUsernames();
+            lookup = new ResilientUserLookup(new OurUserDetailsService(store, bloomFilter), new SimpleMeterRegistry(),
+                    Duration.ofSeconds(1), 1, 16, 5, Duration.ofSeconds(10), Duration.ofMinutes(5), 100, Duration.ofSeconds(5));
+            UserActivityTracker tracker = new UserActivityTracker(store, true, Duration.ofHours(1), Integer.MAX_VALUE); // Never started, never flushes
+            UsageMeter meter = new UsageMeter(new EndpointAuthorizationRules(), new InMemoryUsageSink(), true, Duration.ofHours(1),
+                    new SimpleMeterRegistry()); // Never started, never flushes
+            filter = new JWTAuthFilter(jwtUtils, lookup, tracker, meter);
+
+            LoginRequest loginRequest = new LoginRequest();
+            loginRequest.setUsername(USERNAME);
+            loginRequest.setPassword(PASSWORD);
+            loginBody = objectMapper.writeValueAsBytes(loginRequest);
+        }
+
+        // One pass over every cheap hot path
+        private void round() throws IOException, ServletException {
+            objectMapper.readValue(loginBody, LoginRequest.class); // Login request body
+
+            String accessToken = jwtUtils.generateAccessToken(user);
+            String refreshToken = jwtUtils.generateRefreshToken(user);
+            try {
+                jwtUtils.extractRefreshUsername(refreshToken); // Refresh token check
+                AuthResponse authResponse = new AuthResponse();
+                authResponse.setAccessToken(accessToken);
+                authResponse.setRefreshToken(refreshToken);
+                authResponse.setExpiresIn(1800L);
+                objectMapper.readValue(objectMapper.writeValueAsBytes(authResponse), AuthResponse.class); // Login and refresh responses
+
+                filter.doFilter(request("Bearer " + accessToken), response, chain); // Token check, user lookup, security context
+            } finally {
+                SecurityContextHolder.clearContext();
+                jwtUtils.revoke(accessToken); // Only does something in opaque mode
+                jwtUtils.revoke(refreshToken);
+            }
+
+            List<OurUserDTO> listing = new ArrayList<>(users.size());
+            for (OurUser each : users) {
+                listing.add(ourUserMapper.toDTO(each));
+            }
+            objectMapper.readValue(objectMapper.writeValueAsBytes(listing), listingType); // Admin user listing
+        }
+
+        private void close() {
+            lookup.shutdown();
+        }
+
+        // Just enough of a request for OncePerRequestFilter, the JWTAuthFilter and WebAuthenticationDetailsSource
+        private HttpServletRequest request(String authorization) {
+            Map<String, Object> attributes = new HashMap<>();
+            return (HttpServletRequest) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{HttpServletRequest.class},
+                    (proxy, method, args) -> switch (method.getName()) {
+                        case "getHeader" -> "Authorization".equalsIgnoreCase((String) args[0]) ? authorization : null;
+                        case "getAttribute" -> attributes.get((String) args[0]);
+                        case "setAttribute" -> attributes.put((String) args[0], args[1]);
+                        case "removeAttribute" -> attributes.remove((String) args[0]);
+                        case "getDispatcherType" -> DispatcherType.REQUEST;
+                        case "getMethod" -> "GET";
+                        case "getRequestURI" -> "/api/users";
+                        case "getContextPath" -> "";
+                        case "getRemoteAddr" -> "127.0.0.1";
+                        default -> defaultValue(method.getReturnType());
+                    });
+        }
+    }
+
+    // Null, false or zero, for the request and response methods the warm-up does not need
+    private static Object defaultValue(Class<?> type) {
+        if (type == boolean.class) {
+            return false;
+        }
+        if (type == int.class) {
+            return 0;
+        }
+        if (type == long.class) {
+            return 0L;
+        }
+        return null;
+    }
+}
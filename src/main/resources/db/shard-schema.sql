@@ -0,0 +1,17 @@
+-- Partitioned tables, created on every shard when its embedded database is opened (see application-sharded-local.yml)
+CREATE TABLE IF NOT EXISTS our_user (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    user_id BIGINT UNIQUE,
+    username VARCHAR(255) NOT NULL UNIQUE,
+    password VARCHAR(255) NOT NULL,
+    roles VARCHAR(255) NOT NULL,
+    last_login_at TIMESTAMP(6),
+    login_count BIGINT,
+    last_seen_at TIMESTAMP(6)
+);
+
+CREATE TABLE IF NOT EXISTS password_reset (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    username VARCHAR(255) NOT NULL,
+    reset_code BIGINT NOT NULL
+);
@@ -0,0 +1,148 @@
+package com.security.spring_security.apikey;
+
+import com.security.spring_security.audit.AuditLog;
+import com.security.spring_security.dto.ApiKeyDTO;
+import com.security.spring_security.entity.ApiKey;
+import com.security.spring_security.entity.OurUser;
+import com.security.spring_security.store.InMemoryUserStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class ApiKeyServiceTests {
+
+	private static final String PEPPER = Base64.getEncoder().encodeToString(new byte[32]);
+
+	private final CountingStore store = new CountingStore();
+	private final ApiKeyService service = newService();
+
+	@AfterEach
+	void stop() {
+		service.shutdown();
+	}
+
+	@Test
+	void authenticatesAnIssuedKeyAsItsUser() {
+		OurUser user = store.save(user("svc@example.com", "USER"));
+		ApiKeyDTO issued = service.issue("svc@example.com", "ci");
+
+		assertThat(issued.getKey()).startsWith("ak_" + issued.getPrefix() + ".");
+		ApiKey stored = store.findApiKey(issued.getPrefix()).orElseThrow();
+		assertThat(stored.getSecretHash()).doesNotContain(issued.getKey().substring(12)); // Only the hash is kept
+		assertThat(service.list()).extracting(ApiKeyDTO::getKey).containsOnlyNulls();
+
+		UsernamePasswordAuthenticationToken token = service.authenticate(issued.getKey());
+		assertThat(token.getName()).isEqualTo(user.getUsername());
+		assertThat(token.getAuthorities()).extracting(GrantedAuthority::getAuthority).containsExactly("ROLE_USER");
+	}
+
+	@Test
+	void rejectsWrongMalformedAndRevokedKeys() {
+		store.save(user("svc@example.com", "USER"));
+		String key = service.issue("svc@example.com", "ci").getKey();
+
+		assertThat(service.authenticate(key.substring(0, key.length() - 1) + (key.endsWith("A") ? "B" : "A"))).isNull();
+		assertThat(service.authenticate("ak_short")).isNull();
+		assertThat(service.authenticate("Bearer " + key)).isNull();
+		assertThat(service.authenticate("ak_zzzzzzzz.secret")).isNull(); // Unknown prefix
+
+		assertThat(service.revoke(key.substring(3, 11))).isTrue();
+		assertThat(service.authenticate(key)).isNull();
+		assertThat(service.revoke(key.substring(3, 11))).isFalse();
+	}
+
+	@Test
+	void followsUserChangesAndKeysIssuedElsewhere() {
+		OurUser user = store.save(user("svc@example.com", "USER"));
+		String key = service.issue("svc@example.com", "ci").getKey();
+
+		user.setUsername("robot@example.com");
+		user.setRoles("ADMIN");
+		store.save(user);
+		service.onUserUpdated("svc@example.com", user);
+		UsernamePasswordAuthenticationToken token = service.authenticate(key);
+		assertThat(token.getName()).isEqualTo("robot@example.com");
+		assertThat(token.getAuthorities()).extracting(GrantedAuthority::getAuthority).containsExactly("ROLE_ADMIN");
+
+		ApiKeyService otherInstance = newService(); // Shares the store, as instances share the database
+		try {
+			String otherKey = otherInstance.issue("robot@example.com", "other").getKey();
+			assertThat(service.authenticate(otherKey)).isNotNull(); // Found by the fallback lookup
+			otherInstance.revoke(otherKey.substring(3, 11));
+			service.refresh();
+			assertThat(service.authenticate(otherKey)).isNull();
+		} finally {
+			otherInstance.shutdown();
+		}
+
+		service.onUserDeleted("robot@example.com");
+		assertThat(service.authenticate(key)).isNull();
+		assertThat(store.findAllApiKeys()).isEmpty();
+	}
+
+	@Test
+	void remembersUnknownPrefixesAndBoundsTheLookupsTheyCause() {
+		ApiKeyService bounded = newService(2);
+		try {
+			bounded.authenticate("ak_unknown1.secret");
+			bounded.authenticate("ak_unknown1.secret");
+			assertThat(store.lookups).isEqualTo(1); // The second attempt is answered from the miss cache
+
+			bounded.authenticate("ak_unknown2.secret");
+			bounded.authenticate("ak_unknown3.secret");
+			assertThat(store.lookups).isEqualTo(2); // Two misses are remembered, the third is rejected without a lookup
+
+			bounded.refresh();
+			bounded.authenticate("ak_unknown3.secret");
+			assertThat(store.lookups).isEqualTo(3); // A reload forgets the misses
+		} finally {
+			bounded.shutdown();
+		}
+	}
+
+	@Test
+	void derivesThePepperFromTheJwtSecretWhenNoneIsConfigured() {
+		byte[] jwtSecret = Base64.getDecoder().decode(PEPPER);
+		byte[] pepper = ApiKeyService.derivePepper(jwtSecret);
+
+		assertThat(pepper).hasSize(32).isNotEqualTo(jwtSecret).isEqualTo(ApiKeyService.derivePepper(jwtSecret));
+	}
+
+	private ApiKeyService newService() {
+		return newService(10_000);
+	}
+
+	private ApiKeyService newService(int maxMisses) {
+		ApiKeyService apiKeyService = new ApiKeyService(store, mock(AuditLog.class), PEPPER, PEPPER, Duration.ofHours(1),
+				Duration.ofHours(1), maxMisses);
+		apiKeyService.start();
+		return apiKeyService;
+	}
+
+	// Counts the lookups of single keys, which is what an unknown prefix costs
+	private static class CountingStore extends InMemoryUserStore {
+		int lookups;
+
+		@Override
+		public Optional<ApiKey> findApiKey(String prefix) {
+			lookups++;
+			return super.findApiKey(prefix);
+		}
+	}
+
+	private static OurUser user(String username, String roles) {
+		OurUser user = new OurUser();
+		user.setUsername(username);
+		user.setPassword("{noop}secret");
+		user.setRoles(roles);
+		return user;
+	}
+}
@@ -0,0 +1,119 @@
+package com.security.spring_security.audit;
+
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/*
+    Measures what auditing costs the request thread: AuditLog.publish() into the ring buffer, against writing and flushing the
+    same event to the FileAuditSink on the calling thread, which is what the services did before the AuditLog existed.
+    Reports ns/op and, through the GC profiler, bytes allocated per publish (gc.alloc.rate.norm). Not part of the regular test
+    run (the name does not match the surefire includes); run it on demand with
+
+        mvn test -Dtest=AuditPublishBenchmark -Dthreads=4
+
+    where -Dthreads sets the number of concurrent publishers (default 1). The async numbers include the writer thread competing
+    for the CPU, so compare both modes on the same machine.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class AuditPublishBenchmark {
+
+	@Test
+	void run() throws Exception {
+		new Runner(new OptionsBuilder()
+				.include(AuditPublishBenchmark.class.getName())
+				.threads(Integer.getInteger("threads", 1))
+				.forks(1)
+				.warmupIterations(3)
+				.warmupTime(TimeValue.seconds(1))
+				.measurementIterations(5)
+				.measurementTime(TimeValue.seconds(1))
+				.addProfiler(GCProfiler.class)
+				.build()).run();
+	}
+
+	@State(Scope.Benchmark)
+	public static class AsyncLog {
+		@Param({"DROP", "BLOCK"})
+		public AuditOverflowPolicy overflowPolicy;
+
+		AuditLog auditLog;
+
+		@Setup(Level.Trial)
+		public void start() {
+			StaticListableBeanFactory beans = new StaticListableBeanFactory();
+			beans.addBean("auditSink", new DiscardingSink());
+			auditLog = new AuditLog(beans.getBeanProvider(AuditSink.class), 8192, overflowPolicy, 100, 512);
+			auditLog.start();
+		}
+
+		@TearDown(Level.Trial)
+		public void stop() throws Exception {
+			System.out.printf("%n%s: %d events dropped%n", overflowPolicy, auditLog.getDroppedCount());
+			auditLog.stop();
+		}
+	}
+
+	@State(Scope.Benchmark)
+	public static class SynchronousFile {
+		Path file;
+		FileAuditSink sink;
+		final AuditEvent event = new AuditEvent();
+
+		@Setup(Level.Trial)
+		public void open() throws Exception {
+			file = Files.createTempFile("audit-benchmark", ".log");
+			sink = new FileAuditSink(file.toString());
+		}
+
+		@TearDown(Level.Trial)
+		public void close() throws Exception {
+			sink.close();
+			Files.deleteIfExists(file);
+		}
+	}
+
+	@Benchmark
+	public void asyncPublish(AsyncLog state) {
+		state.auditLog.publish(AuditEventType.LOGIN_SUCCESS, "user@example.com");
+	}
+
+	// One write and one flush per event, serialized the way a shared file writer has to be
+	@Benchmark
+	public void synchronousWrite(SynchronousFile state) throws Exception {
+		synchronized (state) {
+			state.event.set(System.currentTimeMillis(), AuditEventType.LOGIN_SUCCESS, "user@example.com", null);
+			state.sink.write(state.event);
+			state.sink.flush();
+		}
+	}
+
+	// Measures the producer side only: the writer drains as fast as it can and the events go nowhere
+	static class DiscardingSink implements AuditSink {
+		@Override
+		public void write(AuditEvent event) {
+		}
+
+		@Override
+		public void flush() {
+		}
+	}
+}
@@ -0,0 +1,85 @@
+package com.security.spring_security.authentication;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.crypto.password.NoOpPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.provisioning.InMemoryUserDetailsManager;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CachingAuthenticationProviderTests {
+
+	private final AtomicInteger verifications = new AtomicInteger();
+	private final InMemoryUserDetailsManager users = new InMemoryUserDetailsManager(
+			User.withUsername("svc@example.com").password("secret").roles("USER").build(),
+			User.withUsername("human@example.com").password("secret").roles("USER").build());
+	private final VerifiedCredentialCache cache = new VerifiedCredentialCache(List.of("SVC@example.com"), Duration.ofMinutes(1), new SimpleMeterRegistry());
+	private final CachingAuthenticationProvider provider = newProvider();
+
+	@Test
+	void skipsTheHashCheckForRepeatedServiceAccountLogins() {
+		login("svc@example.com", "secret");
+		login("svc@example.com", "secret");
+		login("svc@example.com", "secret");
+
+		assertThat(verifications).hasValue(1);
+	}
+
+	@Test
+	void alwaysVerifiesWrongPasswordsAndOtherAccounts() {
+		login("svc@example.com", "secret");
+		assertThatThrownBy(() -> login("svc@example.com", "guess")).isInstanceOf(BadCredentialsException.class);
+		assertThatThrownBy(() -> login("svc@example.com", "guess")).isInstanceOf(BadCredentialsException.class);
+
+		login("human@example.com", "secret");
+		login("human@example.com", "secret");
+
+		assertThat(verifications).hasValue(5);
+	}
+
+	@Test
+	void verifiesAgainAfterInvalidationOrAPasswordChange() {
+		login("svc@example.com", "secret");
+		cache.invalidate("svc@example.com");
+		login("svc@example.com", "secret");
+		assertThat(verifications).hasValue(2);
+
+		users.updateUser(User.withUsername("svc@example.com").password("rotated").roles("USER").build());
+		assertThatThrownBy(() -> login("svc@example.com", "secret")).isInstanceOf(BadCredentialsException.class);
+		login("svc@example.com", "rotated");
+		assertThat(verifications).hasValue(4);
+	}
+
+	private void login(String username, String password) {
+		provider.authenticate(new UsernamePasswordAuthenticationToken(username, password));
+	}
+
+	@SuppressWarnings("deprecation")
+	private CachingAuthenticationProvider newProvider() {
+		PasswordEncoder plain = NoOpPasswordEncoder.getInstance();
+		CachingAuthenticationProvider provider = new CachingAuthenticationProvider(cache);
+		provider.setUserDetailsService(users);
+		provider.setPasswordEncoder(new PasswordEncoder() {
+			@Override
+			public String encode(CharSequence rawPassword) {
+				return plain.encode(rawPassword);
+			}
+
+			@Override
+			public boolean matches(CharSequence rawPassword, String encodedPassword) {
+				verifications.incrementAndGet();
+				return plain.matches(rawPassword, encodedPassword);
+			}
+		});
+		return provider;
+	}
+}
@@ -0,0 +1,132 @@
+package com.security.spring_security.authorization;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/*
+	Sends a USER token to every admin-only rule under the path spellings that Spring MVC routes to the same handler (a percent-encoded
+	segment, a trailing slash) or that the firewall must refuse (a double slash, ;jsessionid=). None of them may get through.
+ */
+@SpringBootTest(properties = {
+		"spring.datasource.url=jdbc:h2:mem:path-variants;MODE=MySQL",
+		"spring.datasource.username=sa",
+		"spring.datasource.password=",
+		"spring.jpa.hibernate.ddl-auto=create",
+		"app.warmup.enabled=false",
+		"app.audit.sink=none"
+})
+@AutoConfigureMockMvc
+class AdminPathVariantsTests {
+
+	@Autowired
+	MockMvc mockMvc;
+
+	@Autowired
+	EndpointAuthorizationRules rules;
+
+	@Autowired
+	ObjectMapper objectMapper;
+
+	private String userToken;
+
+	@BeforeEach
+	void registerUser() throws Exception {
+		if (userToken == null) {
+			MvcResult result = mockMvc.perform(post("/api/auth/register?login=true")
+							.contentType(MediaType.APPLICATION_JSON)
+							.content("{\"username\":\"variants-" + System.nanoTime() + "@example.com\",\"password\":\"secret\",\"role\":\"USER\"}"))
+					.andExpect(status().isOk())
+					.andReturn();
+			userToken = objectMapper.readTree(result.getResponse().getContentAsString()).get("accessToken").asText();
+		}
+	}
+
+	@Test
+	void userIsRefusedOnEverySpellingOfEveryAdminRule() throws Exception {
+		long user = rules.roleMask(AuthorityUtils.createAuthorityList("ROLE_USER"));
+		List<String> checked = new ArrayList<>();
+		for (EndpointRule rule : rules.getRules()) {
+			if (rule.isPermitAll() || rule.permits(user)) {
+				continue;
+			}
+			String path = concretePath(rule.getPattern());
+			HttpMethod method = HttpMethod.valueOf(rule.getMethod() != null ? rule.getMethod() : "GET");
+			for (String variant : variants(path)) {
+				int status = mockMvc.perform(request(method, URI.create(variant)).header("Authorization", "Bearer " + userToken))
+						.andReturn().getResponse().getStatus();
+				assertThat(status).as(method + " " + variant).isIn(400, 403);
+				checked.add(variant);
+			}
+		}
+		assertThat(checked).contains("/api/%75sers", "/api/users/%73earch", "/actuator/%66lightrecorder", "/api/users/", "/api//users",
+				"/api/users;jsessionid=0123456789ABCDEF");
+	}
+
+	@Test
+	void undeclaredApiPathsAreDeniedAndActuatorPathsAdminOnly() throws Exception {
+		mockMvc.perform(get("/api/admin/not-declared").header("Authorization", "Bearer " + userToken)).andExpect(status().isForbidden());
+		mockMvc.perform(get("/actuator/env").header("Authorization", "Bearer " + userToken)).andExpect(status().isForbidden());
+		String admin = login("admin@admin.com", "adminpassword");
+		mockMvc.perform(get("/api/not-declared").header("Authorization", "Bearer " + admin)).andExpect(status().isForbidden());
+	}
+
+	@Test
+	void adminStillReachesEncodedAndActuatorPaths() throws Exception {
+		String admin = login("admin@admin.com", "adminpassword");
+		mockMvc.perform(get(URI.create("/api/%75sers")).header("Authorization", "Bearer " + admin)).andExpect(status().isOk());
+		mockMvc.perform(get("/actuator/flightrecorder").header("Authorization", "Bearer " + admin)).andExpect(status().isOk());
+	}
+
+	// Fills path variables and drops a trailing '**'
+	private static String concretePath(String pattern) {
+		StringBuilder path = new StringBuilder();
+		for (String segment : pattern.split("/")) {
+			if (segment.isEmpty() || segment.equals("**")) {
+				continue;
+			}
+			path.append('/').append(segment.equals("*") || segment.startsWith("{") ? "7" : segment);
+		}
+		return path.toString();
+	}
+
+	// The path as declared, with the first letter of its second and of its last segment percent-encoded, with a trailing slash,
+	// with a double slash and with a session ID parameter
+	private static List<String> variants(String path) {
+		int second = path.indexOf('/', 1) + 1;
+		String encoded = second > 0 && second < path.length()
+				? path.substring(0, second) + String.format("%%%02x", (int) path.charAt(second)) + path.substring(second + 1)
+				: "/%" + String.format("%02x", (int) path.charAt(1)) + path.substring(2);
+		String doubled = second > 0 ? path.substring(0, second) + "/" + path.substring(second) : path + "//"; // "//x" would be a host
+		int last = path.lastIndexOf('/') + 1;
+		String encodedLast = path.substring(0, last) + String.format("%%%02x", (int) path.charAt(last)) + path.substring(last + 1);
+		return List.of(path, encoded, encodedLast, path + "/", doubled, path + ";jsessionid=0123456789ABCDEF");
+	}
+
+	private String login(String username, String password) throws Exception {
+		MvcResult result = mockMvc.perform(post("/api/auth/login")
+						.contentType(MediaType.APPLICATION_JSON)
+						.content("{\"username\":\"" + username + "\",\"password\":\"" + password + "\"}"))
+				.andExpect(status().isOk())
+				.andReturn();
+		return objectMapper.readTree(result.getResponse().getContentAsString()).get("accessToken").asText();
+	}
+}
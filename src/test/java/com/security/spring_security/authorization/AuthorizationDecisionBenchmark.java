@@ -0,0 +1,99 @@
+package com.security.spring_security.authorization;
+
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authorization.AuthorizationDecision;
+import org.springframework.security.authorization.method.PreAuthorizeAuthorizationManager;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.util.SimpleMethodInvocation;
+import org.springframework.security.web.access.intercept.RequestAuthorizationContext;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/*
+    Compares the cost of one authorization decision for GET /api/users: the CompiledAuthorizationManager resolving the request
+    against the rule trie, against the PreAuthorizeAuthorizationManager evaluating the @PreAuthorize("hasRole('ADMIN')") expression
+    that AuthController.getAllUsers carried before the rules replaced method security. Reports ns/op and, through the GC profiler, bytes allocated per decision (gc.alloc.rate.norm), for a
+    granted (ADMIN) and a denied (USER) caller. The encoded path takes the decoding branch of EndpointAuthorizationRules.match.
+    Not part of the regular test run (the name does not match the surefire includes); run it on demand with
+
+        mvn test -Dtest=AuthorizationDecisionBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class AuthorizationDecisionBenchmark {
+
+	@Test
+	void run() throws Exception {
+		new Runner(new OptionsBuilder()
+				.include(AuthorizationDecisionBenchmark.class.getName())
+				.forks(1)
+				.warmupIterations(3)
+				.warmupTime(TimeValue.seconds(1))
+				.measurementIterations(5)
+				.measurementTime(TimeValue.seconds(1))
+				.addProfiler(GCProfiler.class)
+				.build()).run();
+	}
+
+	@State(Scope.Benchmark)
+	public static class Decision {
+		@Param({"ADMIN", "USER"})
+		public String role;
+
+		@Param({"/api/users", "/api/%75sers"})
+		public String path;
+
+		CompiledAuthorizationManager compiled;
+		PreAuthorizeAuthorizationManager preAuthorize;
+		Supplier<Authentication> authentication;
+		RequestAuthorizationContext request;
+		SimpleMethodInvocation invocation;
+
+		@Setup(Level.Trial)
+		public void setUp() throws Exception {
+			compiled = new CompiledAuthorizationManager(new EndpointAuthorizationRules());
+			preAuthorize = new PreAuthorizeAuthorizationManager();
+			Authentication caller = UsernamePasswordAuthenticationToken.authenticated("someone@example.com", null,
+					AuthorityUtils.createAuthorityList("ROLE_" + role));
+			authentication = () -> caller;
+			MockHttpServletRequest servletRequest = new MockHttpServletRequest("GET", path);
+			request = new RequestAuthorizationContext(servletRequest);
+			invocation = new SimpleMethodInvocation(new MethodSecuredController(), MethodSecuredController.class.getMethod("getAllUsers"));
+		}
+	}
+
+	@Benchmark
+	public AuthorizationDecision compiledRules(Decision state) {
+		return state.compiled.check(state.authentication, state.request);
+	}
+
+	@Benchmark
+	public AuthorizationDecision preAuthorize(Decision state) {
+		return state.preAuthorize.check(state.authentication, state.invocation);
+	}
+
+	// The listing endpoint as it was secured with method security
+	static class MethodSecuredController {
+		@PreAuthorize("hasRole('ADMIN')")
+		public void getAllUsers() {
+		}
+	}
+}
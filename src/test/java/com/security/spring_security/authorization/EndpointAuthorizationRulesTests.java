@@ -0,0 +1,74 @@
+package com.security.spring_security.authorization;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.core.authority.AuthorityUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EndpointAuthorizationRulesTests {
+
+	private final EndpointAuthorizationRules rules = new EndpointAuthorizationRules();
+
+	@Test
+	void resolvesPublicEndpointsForAnyMethod() {
+		assertThat(rules.match("POST", "/api/auth/login", 0).isPermitAll()).isTrue();
+		assertThat(rules.match("GET", "/api/auth/send-reset-code/someone@example.com", 0).isPermitAll()).isTrue();
+		assertThat(rules.match("GET", "/public", 0).isPermitAll()).isTrue();
+	}
+
+	@Test
+	void prefersMethodSpecificRulesAndFallsBackFromHeadToGet() {
+		assertThat(rules.match("GET", "/api/users", 0).toString()).isEqualTo("GET /api/users");
+		assertThat(rules.match("HEAD", "/api/users", 0).toString()).isEqualTo("GET /api/users");
+		assertThat(rules.match("PUT", "/api/users/42", 0).toString()).isEqualTo("PUT /api/users/{userId}");
+		assertThat(rules.match("DELETE", "/api/users/42", 0).toString()).isEqualTo("DELETE /api/users/{userId}");
+		assertThat(rules.match("POST", "/api/users/42", 0).toString()).isEqualTo("* /api/**"); // Not mapped, falls to the deny-all
+	}
+
+	@Test
+	void skipsTheContextPath() {
+		assertThat(rules.match("GET", "/app/api/users", "/app".length()).toString()).isEqualTo("GET /api/users");
+	}
+
+	@Test
+	void decidesWithRoleBitmasks() {
+		long admin = rules.roleMask(AuthorityUtils.createAuthorityList("ROLE_ADMIN"));
+		long user = rules.roleMask(AuthorityUtils.createAuthorityList("ROLE_USER"));
+		long unknown = rules.roleMask(AuthorityUtils.createAuthorityList("ROLE_AUDITOR"));
+
+		assertThat(rules.match("GET", "/api/users", 0).permits(admin)).isTrue();
+		assertThat(rules.match("GET", "/api/users", 0).permits(user)).isFalse();
+		assertThat(rules.match("PUT", "/api/users/7", 0).permits(user)).isTrue();
+		assertThat(rules.match("DELETE", "/api/users/7", 0).permits(user)).isFalse();
+		assertThat(rules.match("PUT", "/api/users/7", 0).permits(unknown)).isFalse();
+	}
+
+	@Test
+	void matchesRequestsOnTheDecodedPathWithinTheApplication() {
+		assertThat(rules.match(request("GET", "/app", "/app/api/%75sers")).toString()).isEqualTo("GET /api/users");
+		assertThat(rules.match(request("GET", "", "/api/users;jsessionid=abc")).toString()).isEqualTo("GET /api/users");
+		assertThat(rules.match(request("GET", "", "/actuator/%66lightrecorder/dump")).toString()).isEqualTo("* /actuator/flightrecorder/**");
+	}
+
+	@Test
+	void deniesUndeclaredApiPathsAndKeepsUndeclaredActuatorPathsAdminOnly() {
+		long user = rules.roleMask(AuthorityUtils.createAuthorityList("ROLE_USER"));
+		long admin = rules.roleMask(AuthorityUtils.createAuthorityList("ROLE_ADMIN"));
+
+		assertThat(rules.match("GET", "/api/admin/anything", 0).permits(admin)).isFalse();
+		assertThat(rules.match("POST", "/api/admin/usage/7", 0).toString()).isEqualTo("* /api/**");
+		assertThat(rules.match("GET", "/api/profile", 0).permits(admin | user)).isFalse();
+		assertThat(rules.match("GET", "/actuator/env", 0).permits(user)).isFalse();
+		assertThat(rules.match("GET", "/actuator/env", 0).permits(admin)).isTrue();
+		assertThat(rules.match("GET", "/actuator/health/liveness", 0).isPermitAll()).isTrue();
+		assertThat(rules.match("GET", "/error", 0)).isNull(); // Outside /api and /actuator authentication is still enough
+	}
+
+	private static MockHttpServletRequest request(String method, String contextPath, String uri) {
+		MockHttpServletRequest request = new MockHttpServletRequest(method, uri);
+		request.setContextPath(contextPath);
+		return request;
+	}
+
+}
@@ -0,0 +1,90 @@
+package com.security.spring_security.authorization;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.mvc.method.RequestMappingInfo;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/*
+    The endpoint rules are the only authorization check and deny every undeclared /api path, so every controller method and
+    actuator endpoint of the application must resolve to a rule of its own rather than to a catch-all.
+ */
+@SpringBootTest(properties = {
+		"spring.datasource.url=jdbc:h2:mem:rule-coverage;MODE=MySQL",
+		"spring.datasource.username=sa",
+		"spring.datasource.password=",
+		"spring.jpa.hibernate.ddl-auto=create",
+		"app.warmup.enabled=false",
+		"app.audit.sink=none"
+})
+class HandlerRuleCoverageTests {
+	private static final Set<String> CATCH_ALLS = Set.of("/api/**", "/actuator/**");
+
+	@Autowired
+	EndpointAuthorizationRules rules;
+
+	@Autowired
+	@Qualifier("requestMappingHandlerMapping")
+	RequestMappingHandlerMapping handlerMapping;
+
+	@Autowired
+	ApplicationContext applicationContext;
+
+	@Test
+	void everyControllerMethodResolvesToADeclaredRule() {
+		List<String> uncovered = new ArrayList<>();
+		int checked = 0;
+		for (Map.Entry<RequestMappingInfo, HandlerMethod> handler : handlerMapping.getHandlerMethods().entrySet()) {
+			if (!handler.getValue().getBeanType().getPackageName().startsWith("com.security.spring_security")) {
+				continue; // Framework handlers such as /error
+			}
+			RequestMappingInfo info = handler.getKey();
+			Set<RequestMethod> methods = info.getMethodsCondition().getMethods();
+			for (String pattern : info.getPathPatternsCondition().getPatternValues()) {
+				for (RequestMethod method : methods.isEmpty() ? Set.of(RequestMethod.values()) : methods) {
+					if (method == RequestMethod.OPTIONS || method == RequestMethod.TRACE) {
+						continue; // Answered by the PreflightFilter and the framework
+					}
+					EndpointRule rule = rules.match(method.name(), concretePath(pattern), 0);
+					if (rule == null || CATCH_ALLS.contains(rule.getPattern())) {
+						uncovered.add(method + " " + pattern + " -> " + rule);
+					}
+					checked++;
+				}
+			}
+		}
+		assertThat(checked).isGreaterThan(10);
+		assertThat(uncovered).isEmpty();
+	}
+
+	@Test
+	void everyApplicationActuatorEndpointResolvesToADeclaredRule() {
+		for (Object endpoint : applicationContext.getBeansWithAnnotation(Endpoint.class).values()) {
+			Endpoint annotation = endpoint.getClass().getAnnotation(Endpoint.class);
+			if (annotation == null || !endpoint.getClass().getPackageName().startsWith("com.security.spring_security")) {
+				continue;
+			}
+			EndpointRule rule = rules.match("GET", "/actuator/" + annotation.id(), 0);
+			assertThat(rule).as(annotation.id()).isNotNull();
+			assertThat(rule.getPattern()).as(annotation.id()).isNotIn(CATCH_ALLS);
+		}
+	}
+
+	// Fills path variables with a value
+	private static String concretePath(String pattern) {
+		return pattern.replaceAll("\\{[^}]*}", "7");
+	}
+}
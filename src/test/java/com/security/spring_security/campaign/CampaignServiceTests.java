@@ -0,0 +1,164 @@
+package com.security.spring_security.campaign;
+
+import com.security.spring_security.dto.CampaignStatus;
+import jakarta.mail.Address;
+import jakarta.mail.Message;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Provider;
+import jakarta.mail.Session;
+import jakarta.mail.Transport;
+import jakarta.mail.URLName;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {
+		"spring.datasource.url=jdbc:h2:mem:campaigns;MODE=MySQL",
+		"spring.datasource.username=sa",
+		"spring.datasource.password=",
+		"spring.jpa.hibernate.ddl-auto=create",
+		"app.warmup.enabled=false",
+		"app.audit.sink=none",
+		"app.campaign.from=noreply@example.com",
+		"app.campaign.connections=2",
+		"app.campaign.batch-size=10",
+		"app.campaign.chunk-size=50",
+		"app.campaign.rate=0"
+})
+class CampaignServiceTests {
+	private static final int USERS = 230;
+
+	@Autowired
+	CampaignService campaignService;
+
+	@Autowired
+	JdbcTemplate jdbcTemplate;
+
+	private final List<String> addresses = new ArrayList<>(); // Every valid recipient, including the startup admin
+
+	@BeforeEach
+	void seedUsers() {
+		jdbcTemplate.update("delete from our_user where username like '%@campaign.test' or username = 'not-an-address@@campaign'");
+		List<Object[]> rows = new ArrayList<>();
+		for (int i = 0; i < USERS; i++) {
+			rows.add(new Object[]{1_000_000L + i, "user" + i + "@campaign.test"});
+		}
+		rows.add(new Object[]{1_000_000L + USERS, "not-an-address@@campaign"});
+		jdbcTemplate.batchUpdate("insert into our_user (user_id, username, password, roles) values (?, ?, '{noop}x', 'USER')", rows);
+		addresses.clear();
+		addresses.addAll(jdbcTemplate.queryForList("select username from our_user where username <> 'not-an-address@@campaign'", String.class));
+		FakeTransport.sent.clear();
+		FakeTransport.connects.set(0);
+		FakeTransport.failAfter.set(Integer.MAX_VALUE);
+	}
+
+	@Test
+	void mailsEveryUserOnceOverPersistentConnections() throws Exception {
+		campaignService.start("policy-update", "Policy update for {{username}}", "Hello {{username}}, your account {{userId}} ...");
+		CampaignStatus status = awaitEnd();
+
+		assertThat(status.getState()).isEqualTo("COMPLETED");
+		assertThat(status.getSent()).isEqualTo(addresses.size());
+		assertThat(status.getFailed()).isEqualTo(1); // The malformed address
+		assertThat(recipients()).containsExactlyInAnyOrderElementsOf(addresses);
+		assertThat(FakeTransport.connects.get()).isLessThanOrEqualTo(2); // One per sender, kept open across batches
+		assertThat(FakeTransport.sent).anySatisfy(message ->
+				assertThat(message.getSubject()).isEqualTo("Policy update for user7@campaign.test"));
+	}
+
+	@Test
+	void resumesAFailedCampaignFromItsCheckpoint() throws Exception {
+		FakeTransport.failAfter.set(95); // The server goes away mid-campaign
+		campaignService.start("outage-notice", "Notice", "Hello {{username}}");
+		assertThat(awaitEnd().getState()).isEqualTo("FAILED");
+		int firstRun = FakeTransport.sent.size();
+
+		FakeTransport.failAfter.set(Integer.MAX_VALUE);
+		campaignService.start("outage-notice", "Notice", "Hello {{username}}");
+		CampaignStatus status = awaitEnd();
+
+		assertThat(status.getState()).isEqualTo("COMPLETED");
+		assertThat(new HashSet<>(recipients())).containsExactlyInAnyOrderElementsOf(addresses);
+		assertThat(FakeTransport.sent.size() - firstRun).isLessThan(addresses.size()); // Started after the checkpoint
+		assertThat(FakeTransport.sent.size() - addresses.size()).isLessThanOrEqualTo(5 * 10); // At most the batches in flight repeat
+	}
+
+	private CampaignStatus awaitEnd() throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+		CampaignStatus status = campaignService.status();
+		while (status.getFinishedAt() == null && System.nanoTime() < deadline) {
+			Thread.sleep(10);
+			status = campaignService.status();
+		}
+		return status;
+	}
+
+	private static List<String> recipients() throws MessagingException {
+		List<String> recipients = new ArrayList<>();
+		for (Message message : FakeTransport.sent) {
+			recipients.add(message.getAllRecipients()[0].toString());
+		}
+		return recipients;
+	}
+
+	@TestConfiguration
+	static class FakeSmtp {
+
+		@Bean
+		@Primary
+		JavaMailSenderImpl campaignTestMailSender() {
+			Session session = Session.getInstance(new Properties());
+			try {
+				session.setProvider(new Provider(Provider.Type.TRANSPORT, "smtp", FakeTransport.class.getName(), "test", "1"));
+			} catch (MessagingException e) {
+				throw new IllegalStateException(e);
+			}
+			JavaMailSenderImpl mailSender = new JavaMailSenderImpl();
+			mailSender.setSession(session);
+			mailSender.setHost("smtp.campaign.test");
+			return mailSender;
+		}
+	}
+
+	// Records messages instead of talking to a server; fails every send after failAfter messages
+	public static class FakeTransport extends Transport {
+		static final Queue<Message> sent = new ConcurrentLinkedQueue<>();
+		static final AtomicInteger connects = new AtomicInteger();
+		static final AtomicInteger failAfter = new AtomicInteger(Integer.MAX_VALUE);
+
+		public FakeTransport(Session session, URLName urlName) {
+			super(session, urlName);
+		}
+
+		@Override
+		protected boolean protocolConnect(String host, int port, String user, String password) {
+			connects.incrementAndGet();
+			return true;
+		}
+
+		@Override
+		public void sendMessage(Message message, Address[] addresses) throws MessagingException {
+			if (sent.size() >= failAfter.get()) {
+				throw new MessagingException("Connection reset");
+			}
+			sent.add(message);
+		}
+	}
+}
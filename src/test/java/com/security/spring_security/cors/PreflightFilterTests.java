@@ -0,0 +1,73 @@
+package com.security.spring_security.cors;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PreflightFilterTests {
+
+	private final CorsProperties properties = properties();
+	private final PreflightFilter filter = new PreflightFilter(properties,
+			new CorsOriginMatcher(properties.getAllowedOrigins()), new SimpleMeterRegistry());
+
+	@Test
+	void answersAnAllowedPreflightWithoutCallingTheChain() throws Exception {
+		MockFilterChain chain = new MockFilterChain();
+		MockHttpServletResponse response = preflight("https://eu.app.example.com", "PUT", "authorization, Content-Type", chain);
+
+		assertThat(response.getStatus()).isEqualTo(200);
+		assertThat(chain.getRequest()).isNull();
+		assertThat(response.getHeader("Access-Control-Allow-Origin")).isEqualTo("https://eu.app.example.com");
+		assertThat(response.getHeader("Access-Control-Allow-Methods")).isEqualTo("DELETE, GET, OPTIONS, POST, PUT");
+		assertThat(response.getHeader("Access-Control-Allow-Headers")).isEqualTo("Authorization, Content-Type, X-API-Key, If-None-Match");
+		assertThat(response.getHeader("Access-Control-Max-Age")).isEqualTo("86400");
+		assertThat(response.getHeader("Vary")).contains("Origin");
+	}
+
+	@Test
+	void refusesUnknownOriginsMethodsAndHeaders() throws Exception {
+		assertThat(preflight("https://evil.example.org", "GET", null, new MockFilterChain()).getStatus()).isEqualTo(403);
+		assertThat(preflight("https://example.com", "GET", null, new MockFilterChain()).getStatus()).isEqualTo(403); // Wildcards need a subdomain
+		assertThat(preflight("https://evil.com/.example.com", "GET", null, new MockFilterChain()).getStatus()).isEqualTo(403);
+		assertThat(preflight("https://admin.test", "PATCH", null, new MockFilterChain()).getStatus()).isEqualTo(403);
+		MockHttpServletResponse response = preflight("https://admin.test", "GET", "Authorization,X-Debug", new MockFilterChain());
+		assertThat(response.getStatus()).isEqualTo(403);
+		assertThat(response.getHeader("Access-Control-Allow-Origin")).isNull();
+	}
+
+	@Test
+	void passesOtherRequestsThrough() throws Exception {
+		MockFilterChain chain = new MockFilterChain();
+		MockHttpServletRequest request = new MockHttpServletRequest("OPTIONS", "/api/users"); // No Access-Control-Request-Method
+		request.addHeader("Origin", "https://admin.test");
+		filter.doFilter(request, new MockHttpServletResponse(), chain);
+
+		assertThat(chain.getRequest()).isSameAs(request);
+		assertThatThrownBy(() -> new CorsOriginMatcher(List.of("https://*.example.*"))).isInstanceOf(IllegalArgumentException.class);
+	}
+
+	private MockHttpServletResponse preflight(String origin, String method, String headers, MockFilterChain chain) throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest("OPTIONS", "/api/users/42");
+		request.addHeader("Origin", origin);
+		request.addHeader("Access-Control-Request-Method", method);
+		if (headers != null) {
+			request.addHeader("Access-Control-Request-Headers", headers);
+		}
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		filter.doFilter(request, response, chain);
+		return response;
+	}
+
+	private static CorsProperties properties() {
+		CorsProperties properties = new CorsProperties();
+		properties.setAllowedOrigins(List.of("https://admin.test/", "https://*.Example.com"));
+		return properties;
+	}
+}
@@ -0,0 +1,47 @@
+package com.security.spring_security.datagen;
+
+import com.security.spring_security.sharding.ShardRouter;
+import com.security.spring_security.sharding.ShardingProperties;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.security.crypto.password.NoOpPasswordEncoder;
+
+import javax.sql.DataSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DatasetGeneratorTests {
+
+	private final DataSource dataSource = new DriverManagerDataSource(
+			"jdbc:h2:mem:datagen;MODE=MySQL;DB_CLOSE_DELAY=-1;INIT=RUNSCRIPT FROM 'classpath:db/shard-schema.sql'", "sa", "");
+	private final JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+	private final ShardRouter shardRouter = new ShardRouter(new ShardingProperties(), new DataSourceTransactionManager(dataSource));
+
+	@Test
+	void writesUsersRolesAndResetCodesAndContinuesFromTheLastIndex() throws Exception {
+		long resetCodes = generator(0).generate();
+		resetCodes += generator(2500).generate(); // A second run appends without colliding
+
+		assertThat(count("select count(*) from our_user")).isEqualTo(5000);
+		assertThat(count("select count(distinct user_id) from our_user")).isEqualTo(5000);
+		assertThat(count("select count(*) from our_user where roles = 'ADMIN,USER'")).isBetween(1000L, 1500L); // Weight 1 of 4
+		assertThat(count("select count(*) from our_user where password <> 'datagen-password'")).isZero();
+		assertThat(count("select count(*) from password_reset")).isEqualTo(resetCodes).isBetween(350L, 650L); // 10%
+		assertThat(count("select count(*) from password_reset r join our_user u on u.username = r.username")).isEqualTo(resetCodes);
+		String username = generator(0).usernameOf(4321);
+		assertThat(jdbcTemplate.queryForObject("select username from our_user where user_id = ?", String.class,
+				shardRouter.userIdAt(4322, username))).isEqualTo(username); // Index + 1 as the timestamp, node 0
+		assertThat(shardRouter.userIdAt(4322, username)).isEqualTo(4322L << 6);
+	}
+
+	private DatasetGenerator generator(long firstIndex) {
+		return new DatasetGenerator(dataSource, shardRouter, NoOpPasswordEncoder.getInstance(), null,
+				2500, firstIndex, "datagen.invalid", "datagen-password", "USER=3;ADMIN,USER=1", 10, 1000, 3, 2, 42, false);
+	}
+
+	private long count(String sql) {
+		return jdbcTemplate.queryForObject(sql, Long.class);
+	}
+}
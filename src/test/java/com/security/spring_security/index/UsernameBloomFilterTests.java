@@ -0,0 +1,41 @@
+package com.security.spring_security.index;
+
+import com.security.spring_security.entity.OurUser;
+import com.security.spring_security.store.InMemoryUserStore;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UsernameBloomFilterTests {
+
+	private final InMemoryUserStore store = new InMemoryUserStore();
+
+	@Test
+	void picksUpUsersWrittenBehindItsBackOnTheNextPass() {
+		UsernameBloomFilter filter = new UsernameBloomFilter(store, 1000, 0.01, true, Duration.ofMinutes(1));
+		filter.loadExistingUsernames();
+		store.save(user("elsewhere@example.com")); // Registered by another instance, so never put here
+
+		assertThat(filter.definitelyAbsent("elsewhere@example.com")).isTrue();
+		filter.refresh();
+		assertThat(filter.definitelyAbsent("Elsewhere@Example.com")).isFalse();
+	}
+
+	@Test
+	void neverReportsAMissWhenMissesAreNotTrusted() {
+		UsernameBloomFilter filter = new UsernameBloomFilter(store, 1000, 0.01, false, Duration.ofMinutes(1));
+		filter.loadExistingUsernames();
+
+		assertThat(filter.definitelyAbsent("nobody@example.com")).isFalse();
+	}
+
+	private static OurUser user(String username) {
+		OurUser user = new OurUser();
+		user.setUsername(username);
+		user.setPassword("{noop}secret");
+		user.setRoles("USER");
+		return user;
+	}
+}
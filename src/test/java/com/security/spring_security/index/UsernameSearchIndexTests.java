@@ -0,0 +1,69 @@
+package com.security.spring_security.index;
+
+import com.security.spring_security.entity.OurUser;
+import com.security.spring_security.store.InMemoryUserStore;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class UsernameSearchIndexTests {
+
+	private final InMemoryUserStore store = new InMemoryUserStore();
+	private final UsernameSearchIndex index = new UsernameSearchIndex(store, Duration.ofHours(1));
+
+	@Test
+	void ranksExactPrefixWordStartAndInfixMatches() {
+		save("bob.smith@example.com");
+		save("smithers@example.com");
+		save("smith");
+		save("goldsmith@example.com");
+		save("alice@example.com");
+		index.rebuild();
+
+		UsernameSearchIndex.Result result = index.search("SMITH", 0, 10);
+		assertThat(result.getTotal()).isEqualTo(4);
+		assertThat(result.getMatches()).extracting(UsernameSearchIndex.Match::getUsername)
+				.containsExactly("smith", "smithers@example.com", "bob.smith@example.com", "goldsmith@example.com");
+		assertThat(index.search("smith", 1, 2).getMatches()).extracting(UsernameSearchIndex.Match::getUsername)
+				.containsExactly("smithers@example.com", "bob.smith@example.com");
+		assertThat(index.search("sm", 0, 10).getMatches()).extracting(UsernameSearchIndex.Match::getUsername)
+				.containsExactly("smith", "smithers@example.com"); // Short fragments only match prefixes
+		assertThat(index.search("zzz", 0, 10).getTotal()).isZero();
+	}
+
+	@Test
+	void followsRenamesRoleChangesAndDeletions() {
+		OurUser alice = save("alice@example.com");
+		index.rebuild();
+		OurUser bob = save("bob@example.com");
+		index.put(bob);
+
+		alice.setUsername("alicia@example.com");
+		alice.setRoles("ADMIN");
+		index.put(alice);
+		index.remove(bob);
+
+		assertThat(index.search("alice", 0, 10).getTotal()).isZero();
+		assertThat(index.search("alicia", 0, 10).getMatches()).singleElement()
+				.extracting(UsernameSearchIndex.Match::getRoles).isEqualTo("ADMIN");
+		assertThat(index.search("bob", 0, 10).getTotal()).isZero();
+		assertThat(index.search("example", 0, 10).getTotal()).isEqualTo(1);
+	}
+
+	@Test
+	void refusesSearchesBeforeTheFirstBuild() {
+		assertThatThrownBy(() -> index.search("alice", 0, 10)).isInstanceOf(IllegalStateException.class);
+	}
+
+	private OurUser save(String username) {
+		OurUser user = new OurUser();
+		user.setUserId(store.newUserId(username));
+		user.setUsername(username);
+		user.setPassword("{noop}secret");
+		user.setRoles("USER");
+		return store.save(user);
+	}
+}
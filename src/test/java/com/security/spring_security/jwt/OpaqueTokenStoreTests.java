@@ -0,0 +1,87 @@
+package com.security.spring_security.jwt;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OpaqueTokenStoreTests {
+
+	@TempDir
+	Path dir;
+
+	private final OpaqueTokenStore store = newStore();
+
+	@Test
+	void resolvesIssuedTokensUntilTheyAreRevoked() {
+		String alice = store.issue("alice@example.com", 60_000, TokenUse.ACCESS);
+		String aliceRefresh = store.issue("alice@example.com", 60_000, TokenUse.REFRESH);
+		String bob = store.issue("bob@example.com", 60_000, TokenUse.ACCESS);
+
+		assertThat(alice).hasSize(22).isNotEqualTo(aliceRefresh);
+		assertThat(store.resolve(alice, TokenUse.ACCESS)).isEqualTo("alice@example.com");
+		assertThat(store.resolve("unknown-token-00000000", TokenUse.ACCESS)).isNull();
+		assertThat(store.resolve(aliceRefresh, TokenUse.REFRESH)).isEqualTo("alice@example.com");
+		assertThat(store.resolve(aliceRefresh, TokenUse.ACCESS)).isNull(); // A refresh token is not a bearer token
+		assertThat(store.resolve(alice, TokenUse.REFRESH)).isNull(); // Nor can an access token be exchanged
+
+		assertThat(store.revokeAll("alice@example.com")).isEqualTo(2);
+		assertThat(store.resolve(alice, TokenUse.ACCESS)).isNull();
+		assertThat(store.resolve(aliceRefresh, TokenUse.REFRESH)).isNull();
+		assertThat(store.resolve(bob, TokenUse.ACCESS)).isEqualTo("bob@example.com");
+
+		store.revoke(bob);
+		assertThat(store.resolve(bob, TokenUse.ACCESS)).isNull();
+	}
+
+	@Test
+	void neverResolvesAndSweepsExpiredTokens() throws Exception {
+		String expired = store.issue("alice@example.com", -1, TokenUse.ACCESS);
+		store.issue("bob@example.com", 60_000, TokenUse.ACCESS);
+
+		assertThat(store.resolve(expired, TokenUse.ACCESS)).isNull();
+		store.sweep();
+		assertThat(store.size()).isEqualTo(1);
+	}
+
+	@Test
+	void restoresLiveTokensFromASnapshot() throws Exception {
+		String live = store.issue("alice@example.com", 60_000, TokenUse.ACCESS);
+		String refresh = store.issue("alice@example.com", 60_000, TokenUse.REFRESH);
+		String expired = store.issue("bob@example.com", -1, TokenUse.ACCESS);
+		Path snapshot = dir.resolve("tokens.bin");
+		store.save(snapshot);
+
+		OpaqueTokenStore restarted = newStore();
+		assertThat(restarted.load(snapshot)).isEqualTo(2);
+		assertThat(restarted.resolve(live, TokenUse.ACCESS)).isEqualTo("alice@example.com");
+		assertThat(restarted.resolve(refresh, TokenUse.REFRESH)).isEqualTo("alice@example.com");
+		assertThat(restarted.resolve(refresh, TokenUse.ACCESS)).isNull();
+		assertThat(restarted.resolve(expired, TokenUse.ACCESS)).isNull();
+	}
+
+	@Test
+	void writesOnlyDigestsToAnOwnerOnlySnapshot() throws Exception {
+		String token = store.issue("alice@example.com", 60_000, TokenUse.ACCESS);
+		Path snapshot = dir.resolve("tokens.bin");
+		store.save(snapshot);
+
+		assertThat(new String(Files.readAllBytes(snapshot), StandardCharsets.ISO_8859_1)).doesNotContain(token).contains("alice@example.com");
+		assertThat(Files.getPosixFilePermissions(snapshot)).isEqualTo(PosixFilePermissions.fromString("rw-------"));
+		try (Stream<Path> files = Files.list(dir)) {
+			assertThat(files).containsExactly(snapshot); // No temporary file left behind
+		}
+	}
+
+	private static OpaqueTokenStore newStore() {
+		return new OpaqueTokenStore("", Duration.ofMinutes(1), new SimpleMeterRegistry());
+	}
+}
@@ -0,0 +1,68 @@
+package com.security.spring_security.jwt;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+		"spring.datasource.url=jdbc:h2:mem:refresh-token-use;MODE=MySQL",
+		"spring.datasource.username=sa",
+		"spring.datasource.password=",
+		"spring.jpa.hibernate.ddl-auto=create",
+		"app.warmup.enabled=false",
+		"app.audit.sink=none"
+})
+@AutoConfigureMockMvc
+class RefreshTokenUseTests {
+
+	@Autowired
+	MockMvc mockMvc;
+
+	@Autowired
+	ObjectMapper objectMapper;
+
+	@Test
+	void onlyARefreshTokenCanBeExchanged() throws Exception {
+		JsonNode tokens = register("refresh-" + System.nanoTime() + "@example.com");
+
+		refresh(tokens.get("accessToken").asText()).andExpect(status().isUnauthorized());
+		refresh(tokens.get("refreshToken").asText()).andExpect(status().isOk());
+	}
+
+	@Test
+	void aRefreshTokenIsNotABearerToken() throws Exception {
+		JsonNode tokens = register("bearer-" + System.nanoTime() + "@example.com");
+
+		mockMvc.perform(get("/api/usage").header("Authorization", "Bearer " + tokens.get("accessToken").asText()))
+				.andExpect(status().isOk());
+		int status = mockMvc.perform(get("/api/usage").header("Authorization", "Bearer " + tokens.get("refreshToken").asText()))
+				.andReturn().getResponse().getStatus();
+		assertThat(status).isIn(401, 403);
+	}
+
+	private JsonNode register(String username) throws Exception {
+		String body = mockMvc.perform(post("/api/auth/register?login=true")
+						.contentType(MediaType.APPLICATION_JSON)
+						.content("{\"username\":\"" + username + "\",\"password\":\"secret\",\"role\":\"USER\"}"))
+				.andExpect(status().isOk())
+				.andReturn().getResponse().getContentAsString();
+		return objectMapper.readTree(body);
+	}
+
+	private ResultActions refresh(String token) throws Exception {
+		return mockMvc.perform(post("/api/auth/refresh")
+				.contentType(MediaType.APPLICATION_JSON)
+				.content("{\"refreshToken\":\"" + token + "\"}"));
+	}
+}
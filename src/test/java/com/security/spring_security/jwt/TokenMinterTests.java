@@ -0,0 +1,60 @@
+package com.security.spring_security.jwt;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.spec.SecretKeySpec;
+import java.util.Base64;
+import java.util.Date;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TokenMinterTests {
+
+	private static final SecretKeySpec KEY = new SecretKeySpec(Base64.getDecoder().decode(
+			"MmRiMmNjNTQzZGEwMmRlODljOTkyYzkzZjczNGE4YzYyYzAyYTIwOTc4MGIyMDBjNDNiNTA4ZjVjOTEzNmRl"), "HmacSHA256");
+
+	private final TokenMinter minter = new TokenMinter(KEY);
+
+	@Test
+	void matchesTheJjwtBuilderByteForByte() {
+		for (String subject : new String[]{"admin@admin.com", "a\"b\\c", "tab\tnew\nline\u0001", "café   😀", ""}) {
+			long issuedAt = 1_700_000_000_123L;
+			long expiration = issuedAt + 1_800_000;
+
+			String expected = Jwts.builder()
+					.subject(subject)
+					.issuedAt(new Date(issuedAt))
+					.expiration(new Date(expiration))
+					.signWith(KEY)
+					.compact();
+
+			assertThat(minter.mint(subject, issuedAt, expiration, null)).isEqualTo(expected);
+
+			for (TokenUse use : TokenUse.values()) {
+				String expectedWithUse = Jwts.builder()
+						.subject(subject)
+						.issuedAt(new Date(issuedAt))
+						.expiration(new Date(expiration))
+						.claim(TokenUse.CLAIM, use.getClaimValue())
+						.signWith(KEY)
+						.compact();
+
+				assertThat(minter.mint(subject, issuedAt, expiration, use)).isEqualTo(expectedWithUse);
+			}
+		}
+	}
+
+	@Test
+	void producesTokensTheVerifierAccepts() {
+		long now = System.currentTimeMillis();
+		String token = minter.mint("user@example.com", now, now + 60_000, TokenUse.REFRESH);
+
+		Claims claims = Jwts.parser().verifyWith(KEY).build().parseSignedClaims(token).getPayload();
+
+		assertThat(claims.getSubject()).isEqualTo("user@example.com");
+		assertThat(claims.get(TokenUse.CLAIM, String.class)).isEqualTo("refresh");
+	}
+
+}
@@ -0,0 +1,66 @@
+package com.security.spring_security.jwt;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+/*
+    Compares the JWT and opaque token modes: bytes of the Authorization header each one adds to a request, and the time JWTUtils
+    takes to resolve and validate a token on the request path. Not part of the regular test run (the name does not match the
+    surefire includes); run it on demand with
+
+        mvn test -Dtest=TokenModeBenchmark
+
+    and read the numbers from the output. Loop timings on a laptop are indicative only; compare the two modes on the same machine.
+ */
+class TokenModeBenchmark {
+	private static final String SECRET = "MmRiMmNjNTQzZGEwMmRlODljOTkyYzkzZjczNGE4YzYyYzAyYTIwOTc4MGIyMDBjNDNiNTA4ZjVjOTEzNmRl";
+	private static final int TOKENS = 1_000; // Distinct tokens cycled through, so lookups are not all served from one cache line
+	private static final int WARMUP = 200_000;
+	private static final int MEASURED = 1_000_000;
+
+	@Test
+	void compareModes() {
+		StaticListableBeanFactory none = new StaticListableBeanFactory();
+		StaticListableBeanFactory opaque = new StaticListableBeanFactory();
+		opaque.addBean("opaqueTokenStore", new OpaqueTokenStore("", Duration.ofMinutes(1), new SimpleMeterRegistry()));
+
+		run("jwt", new JWTUtils(SECRET, none.getBeanProvider(OpaqueTokenStore.class)));
+		run("opaque", new JWTUtils(SECRET, opaque.getBeanProvider(OpaqueTokenStore.class)));
+	}
+
+	private static void run(String mode, JWTUtils jwtUtils) {
+		UserDetails[] users = new UserDetails[TOKENS];
+		String[] tokens = new String[TOKENS];
+		for (int i = 0; i < TOKENS; i++) {
+			users[i] = User.withUsername("user" + i + "@example.com").password("x").roles("USER").build();
+			tokens[i] = jwtUtils.generateAccessToken(users[i]);
+		}
+		int headerBytes = ("Authorization: Bearer " + tokens[0]).getBytes(StandardCharsets.US_ASCII).length;
+
+		validate(jwtUtils, users, tokens, WARMUP);
+		long started = System.nanoTime();
+		int valid = validate(jwtUtils, users, tokens, MEASURED);
+		double nanosPerToken = (System.nanoTime() - started) / (double) MEASURED;
+
+		System.out.printf("%-6s header %4d bytes, token %4d chars, validation %,9.0f ns/op (%d valid)%n",
+				mode, headerBytes, tokens[0].length(), nanosPerToken, valid);
+	}
+
+	// The same calls the JWTAuthFilter makes per request
+	private static int validate(JWTUtils jwtUtils, UserDetails[] users, String[] tokens, int iterations) {
+		int valid = 0;
+		for (int i = 0; i < iterations; i++) {
+			int n = i % TOKENS;
+			if (jwtUtils.extractUsername(tokens[n]) != null && jwtUtils.isTokenValid(tokens[n], users[n])) {
+				valid++;
+			}
+		}
+		return valid;
+	}
+}
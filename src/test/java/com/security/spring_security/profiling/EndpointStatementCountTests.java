@@ -0,0 +1,125 @@
+package com.security.spring_security.profiling;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.security.spring_security.index.UsernameSearchIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.security.spring_security.profiling.SqlStatementCounts.assertStatements;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/*
+	Pins the number of SQL statements the main endpoints run against an embedded database, so that an added query (an N+1 in a
+	listing, a second lookup on a hot path) fails here instead of showing up as latency in production. When a change legitimately
+	alters a count, update the number together with the change.
+ */
+@SpringBootTest(properties = {
+		"spring.datasource.url=jdbc:h2:mem:statement-counts;MODE=MySQL",
+		"spring.datasource.username=sa",
+		"spring.datasource.password=",
+		"spring.jpa.hibernate.ddl-auto=create",
+		"app.warmup.enabled=false",
+		"app.activity.enabled=false", // Flushes on its own schedule
+		"app.audit.sink=none",
+		"app.api-keys.refresh-interval=1h"
+})
+@AutoConfigureMockMvc
+class EndpointStatementCountTests {
+
+	@Autowired
+	MockMvc mockMvc;
+
+	@Autowired
+	SqlStatementInspector inspector;
+
+	@Autowired
+	UsernameSearchIndex searchIndex;
+
+	@Autowired
+	ObjectMapper objectMapper;
+
+	@BeforeEach
+	void waitForTheSearchIndex() throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+		while (!searchIndex.isReady() && System.nanoTime() < deadline) {
+			Thread.sleep(10); // Built from the store after startup; its query must not land in a capture
+		}
+		assertThat(searchIndex.isReady()).isTrue();
+	}
+
+	@Test
+	void registerAndLogin() throws Exception {
+		// The duplicate check and the insert; the Bloom filter may miss users registered by other instances, so it is not asked
+		assertStatements(inspector, 2, () -> register("counts-register@example.com", ""));
+		assertStatements(inspector, 2, () -> register("counts-auto@example.com", "?login=true"));
+		// Two lookups of the same user: one by the authentication provider, one to build the token claims
+		assertStatements(inspector, 2, () -> login("counts-register@example.com", "secret"));
+	}
+
+	@Test
+	void adminEndpoints() throws Exception {
+		register("counts-target@example.com", "");
+		String admin = login("admin@admin.com", "adminpassword");
+		long userId = findUserId(admin, "counts-target@example.com");
+
+		// The JWTAuthFilter's user lookup is answered by ResilientUserLookup, which loaded the admin moments ago (within
+		// app.auth-lookup.fresh-for), and the listing body is still cached from findUserId
+		assertStatements(inspector, 0, () -> mockMvc.perform(get("/api/users").header("Authorization", "Bearer " + admin))
+				.andExpect(status().isOk()));
+		// The search is answered from the in-memory index
+		assertStatements(inspector, 0, () -> mockMvc.perform(get("/api/users/search").param("q", "counts")
+						.header("Authorization", "Bearer " + admin))
+				.andExpect(status().isOk()));
+		// Load by id, the API key scan that moves the user's keys, update
+		assertStatements(inspector, 3, () -> mockMvc.perform(put("/api/users/" + userId)
+						.header("Authorization", "Bearer " + admin)
+						.contentType(MediaType.APPLICATION_JSON)
+						.content("{\"username\":\"counts-renamed@example.com\",\"roles\":\"USER\"}"))
+				.andExpect(status().isOk()));
+		// The entity loaded twice by id (existence check, then delete), the API key scan, delete
+		assertStatements(inspector, 4, () -> mockMvc.perform(delete("/api/users/" + userId)
+						.header("Authorization", "Bearer " + admin))
+				.andExpect(status().isOk()));
+	}
+
+	private MvcResult register(String username, String query) throws Exception {
+		return mockMvc.perform(post("/api/auth/register" + query)
+						.contentType(MediaType.APPLICATION_JSON)
+						.content("{\"username\":\"" + username + "\",\"password\":\"secret\",\"role\":\"USER\"}"))
+				.andExpect(status().isOk())
+				.andReturn();
+	}
+
+	private String login(String username, String password) throws Exception {
+		MvcResult result = mockMvc.perform(post("/api/auth/login")
+						.contentType(MediaType.APPLICATION_JSON)
+						.content("{\"username\":\"" + username + "\",\"password\":\"" + password + "\"}"))
+				.andExpect(status().isOk())
+				.andReturn();
+		return objectMapper.readTree(result.getResponse().getContentAsString()).get("accessToken").asText();
+	}
+
+	private long findUserId(String token, String username) throws Exception {
+		MvcResult result = mockMvc.perform(get("/api/users").header("Authorization", "Bearer " + token)).andReturn();
+		for (JsonNode user : objectMapper.readTree(result.getResponse().getContentAsByteArray())) {
+			if (username.equals(user.get("username").asText())) {
+				return user.get("userId").asLong();
+			}
+		}
+		throw new AssertionError(username + " is not listed");
+	}
+}
@@ -0,0 +1,41 @@
+package com.security.spring_security.profiling;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.Resource;
+
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FlightRecorderEndpointTests {
+
+	private final FlightRecorderEndpoint endpoint = new FlightRecorderEndpoint(Duration.ofMinutes(1), Duration.ofMinutes(1), 10,
+			Duration.ofMillis(5), Duration.ofMillis(10), Duration.ofMillis(100), Duration.ofMillis(200), Duration.ofMillis(1));
+
+	@AfterEach
+	void stopRecording() throws Exception {
+		endpoint.control("stop", null);
+	}
+
+	@Test
+	void deletesTheDumpFileOnceItHasBeenRead() throws Exception {
+		endpoint.control("start", 60L);
+
+		Resource dump = endpoint.dump("dump");
+		Path file = dump.getFile().toPath();
+		assertThat(file).exists();
+		try (InputStream in = dump.getInputStream()) {
+			assertThat(in.readAllBytes()).isNotEmpty();
+		}
+
+		assertThat(file).doesNotExist();
+	}
+
+	@Test
+	void answersNotFoundWithoutARecording() throws Exception {
+		assertThat(endpoint.dump("dump")).isNull();
+	}
+}
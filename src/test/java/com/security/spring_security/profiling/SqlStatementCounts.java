@@ -0,0 +1,31 @@
+package com.security.spring_security.profiling;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/*
+	Asserts the exact number of SQL statements an action runs, using the SqlStatementInspector's capture. Statements run on other
+	threads while the action is in progress (such as user lookups on the auth-lookup pool) are counted too, so the action must
+	wait for any work it starts. The failure message lists the captured statements.
+ */
+public final class SqlStatementCounts {
+
+	private SqlStatementCounts() {
+	}
+
+	public static <T> T assertStatements(SqlStatementInspector inspector, int expected, StatementAction<T> action) throws Exception {
+		T result;
+		SqlStatementInspector.Capture capture = inspector.startCapture();
+		try (capture) {
+			result = action.run();
+		}
+		assertThat(capture.getStatements())
+				.as("SQL statements run (expected %d)", expected)
+				.hasSize(expected);
+		return result;
+	}
+
+	@FunctionalInterface
+	public interface StatementAction<T> {
+		T run() throws Exception;
+	}
+}
@@ -0,0 +1,53 @@
+package com.security.spring_security.service;
+
+import com.security.spring_security.dto.AuthResponse;
+import com.security.spring_security.dto.RegisterRequest;
+import com.security.spring_security.jwt.JWTUtils;
+import com.security.spring_security.store.UserStore;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doCallRealMethod;
+import static org.mockito.Mockito.doThrow;
+
+@SpringBootTest(properties = {
+		"spring.datasource.url=jdbc:h2:mem:register-and-login;MODE=MySQL",
+		"spring.datasource.username=sa",
+		"spring.datasource.password=",
+		"spring.jpa.hibernate.ddl-auto=create",
+		"app.warmup.enabled=false",
+		"app.audit.sink=none"
+})
+class RegisterAndLoginTests {
+
+	@Autowired
+	UserManagementService userManagementService;
+
+	@Autowired
+	UserStore userStore;
+
+	@MockitoSpyBean
+	JWTUtils jwtUtils;
+
+	@Test
+	void aFailedLoginRollsTheRegistrationBackSoItCanBeRetried() {
+		RegisterRequest request = new RegisterRequest();
+		request.setUsername("retry-" + System.nanoTime() + "@example.com");
+		request.setPassword("password");
+		request.setRole("USER");
+		doThrow(new IllegalStateException("signing failed")).when(jwtUtils).generateRefreshToken(any());
+
+		assertThatThrownBy(() -> userManagementService.registerAndLogin(request)).hasMessage("signing failed");
+		assertThat(userStore.findByUsername(request.getUsername())).isEmpty();
+
+		doCallRealMethod().when(jwtUtils).generateRefreshToken(any());
+		AuthResponse tokens = userManagementService.registerAndLogin(request);
+		assertThat(tokens.getRefreshToken()).isNotBlank();
+		assertThat(userStore.findByUsername(request.getUsername())).isPresent();
+	}
+}
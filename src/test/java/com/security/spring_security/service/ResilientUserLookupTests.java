@@ -0,0 +1,141 @@
+package com.security.spring_security.service;
+
+import com.security.spring_security.entity.OurUser;
+import com.security.spring_security.util.CircuitBreaker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.AuthenticationServiceException;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ResilientUserLookupTests {
+
+	private final OurUserDetailsService database = mock(OurUserDetailsService.class);
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+	private final CountDownLatch stall = new CountDownLatch(1);
+	private final ResilientUserLookup lookup = new ResilientUserLookup(database, meterRegistry, Duration.ofMillis(50), 2, 8,
+			2, Duration.ofMinutes(1), Duration.ofMinutes(5), 100, Duration.ZERO); // Every call asks the database
+
+	@AfterEach
+	void release() {
+		stall.countDown();
+		lookup.shutdown();
+	}
+
+	@Test
+	void servesTheLastKnownGoodCopyWhenTheDatabaseIsSlow() {
+		OurUser alice = user("alice@example.com");
+		AtomicReference<Boolean> slow = new AtomicReference<>(false);
+		when(database.loadUserByUsername(anyString())).thenAnswer(invocation -> {
+			if (slow.get()) {
+				stall.await();
+			}
+			return alice;
+		});
+
+		assertThat(lookup.loadUserByUsername("alice@example.com")).isSameAs(alice);
+		slow.set(true);
+		assertThat(lookup.loadUserByUsername("Alice@Example.com")).isSameAs(alice);
+		assertThat(meterRegistry.counter("auth.user.lookup", "outcome", "stale").count()).isEqualTo(1);
+		assertThat(meterRegistry.counter("auth.user.lookup", "outcome", "timeout").count()).isEqualTo(1);
+	}
+
+	@Test
+	void opensTheBreakerAndFailsWithoutACopy() {
+		when(database.loadUserByUsername(anyString())).thenThrow(new IllegalStateException("connection refused"));
+
+		assertThatThrownBy(() -> lookup.loadUserByUsername("bob@example.com")).isInstanceOf(AuthenticationServiceException.class);
+		assertThatThrownBy(() -> lookup.loadUserByUsername("bob@example.com")).isInstanceOf(AuthenticationServiceException.class);
+		assertThat(lookup.getCircuitState()).isEqualTo(CircuitBreaker.State.OPEN);
+	}
+
+	@Test
+	void doesNotServeEvictedUsers() {
+		OurUser carol = user("carol@example.com");
+		AtomicReference<Boolean> slow = new AtomicReference<>(false);
+		when(database.loadUserByUsername(anyString())).thenAnswer(invocation -> {
+			if (slow.get()) {
+				stall.await();
+			}
+			return carol;
+		});
+
+		UserDetails loaded = lookup.loadUserByUsername("carol@example.com");
+		assertThat(loaded).isSameAs(carol);
+		lookup.evict("carol@example.com");
+		slow.set(true);
+		assertThatThrownBy(() -> lookup.loadUserByUsername("carol@example.com")).isInstanceOf(AuthenticationServiceException.class);
+	}
+
+	@Test
+	void servesAFreshCopyWithoutAskingTheDatabase() {
+		OurUser dave = user("dave@example.com");
+		when(database.loadUserByUsername(anyString())).thenReturn(dave);
+		ResilientUserLookup caching = new ResilientUserLookup(database, meterRegistry, Duration.ofMillis(50), 2, 8,
+				2, Duration.ofMinutes(1), Duration.ofMinutes(5), 100, Duration.ofMinutes(1));
+		try {
+			assertThat(caching.loadUserByUsername("dave@example.com")).isSameAs(dave);
+			assertThat(caching.loadUserByUsername("Dave@Example.com")).isSameAs(dave);
+			verify(database, times(1)).loadUserByUsername(anyString());
+		} finally {
+			caching.shutdown();
+		}
+	}
+
+	@Test
+	void aFullPoolDoesNotOpenTheBreaker() throws Exception {
+		CountDownLatch running = new CountDownLatch(1);
+		when(database.loadUserByUsername(anyString())).thenAnswer(invocation -> {
+			running.countDown();
+			stall.await();
+			return user(invocation.getArgument(0));
+		});
+		ResilientUserLookup saturated = new ResilientUserLookup(database, meterRegistry, Duration.ofSeconds(10), 1, 1,
+				1, Duration.ofMinutes(1), Duration.ofMinutes(5), 100, Duration.ZERO);
+		try {
+			Thread first = background(() -> saturated.loadUserByUsername("first@example.com")); // Occupies the only thread
+			running.await();
+			Thread second = background(() -> saturated.loadUserByUsername("second@example.com")); // Fills the queue
+			while (second.getState() != Thread.State.TIMED_WAITING) {
+				Thread.onSpinWait();
+			}
+
+			assertThatThrownBy(() -> saturated.loadUserByUsername("third@example.com")).isInstanceOf(AuthenticationServiceException.class);
+			assertThat(meterRegistry.counter("auth.user.lookup", "outcome", "rejected").count()).isEqualTo(1);
+			assertThat(saturated.getCircuitState()).isEqualTo(CircuitBreaker.State.CLOSED);
+
+			stall.countDown();
+			first.join();
+			second.join();
+		} finally {
+			saturated.shutdown();
+		}
+	}
+
+	private static Thread background(Runnable runnable) {
+		Thread thread = new Thread(runnable);
+		thread.setDaemon(true);
+		thread.start();
+		return thread;
+	}
+
+	private static OurUser user(String username) {
+		OurUser user = new OurUser();
+		user.setUsername(username);
+		user.setPassword("hash");
+		user.setRoles("USER");
+		return user;
+	}
+}
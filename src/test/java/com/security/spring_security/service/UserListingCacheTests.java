@@ -0,0 +1,51 @@
+package com.security.spring_security.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.security.spring_security.dto.OurUserDTO;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UserListingCacheTests {
+
+	private final UserListingCache cache = new UserListingCache(new ObjectMapper().registerModule(new JavaTimeModule()), Duration.ofMinutes(1));
+
+	@Test
+	void servesTheCachedListingUntilInvalidated() {
+		AtomicInteger loads = new AtomicInteger();
+		List<OurUserDTO> users = List.of(new OurUserDTO(1L, "alice@example.com", "USER"));
+
+		UserListingCache.Listing first = cache.get(() -> {
+			loads.incrementAndGet();
+			return users;
+		});
+		UserListingCache.Listing second = cache.get(() -> {
+			loads.incrementAndGet();
+			return users;
+		});
+		assertThat(loads).hasValue(1);
+		assertThat(second).isSameAs(first);
+
+		cache.invalidate();
+		UserListingCache.Listing reloaded = cache.get(() -> {
+			loads.incrementAndGet();
+			return users;
+		});
+		assertThat(loads).hasValue(2);
+		assertThat(reloaded.getEtag()).isEqualTo(first.getEtag()); // Same content, same ETag
+	}
+
+	@Test
+	void changesTheEtagWhenTheContentChanges() {
+		String before = cache.get(() -> List.of(new OurUserDTO(1L, "alice@example.com", "USER"))).getEtag();
+		cache.invalidate();
+		String after = cache.get(() -> List.of(new OurUserDTO(1L, "alice@example.com", "ADMIN"))).getEtag();
+
+		assertThat(after).isNotEqualTo(before).startsWith("\"").endsWith("\"");
+	}
+}
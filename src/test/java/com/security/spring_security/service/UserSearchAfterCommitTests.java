@@ -0,0 +1,74 @@
+package com.security.spring_security.service;
+
+import com.security.spring_security.dto.RegisterRequest;
+import com.security.spring_security.index.UsernameSearchIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/*
+    Registrations become searchable only once their transaction commits, and never when it rolls back.
+ */
+@SpringBootTest(properties = {
+		"spring.datasource.url=jdbc:h2:mem:search-after-commit;MODE=MySQL",
+		"spring.datasource.username=sa",
+		"spring.datasource.password=",
+		"spring.jpa.hibernate.ddl-auto=create",
+		"app.warmup.enabled=false",
+		"app.audit.sink=none"
+})
+class UserSearchAfterCommitTests {
+
+	@Autowired
+	UserManagementService userManagementService;
+
+	@Autowired
+	UsernameSearchIndex usernameSearchIndex;
+
+	@Autowired
+	PlatformTransactionManager transactionManager;
+
+	@BeforeEach
+	void awaitIndex() throws InterruptedException {
+		for (int i = 0; i < 100 && !usernameSearchIndex.isReady(); i++) {
+			Thread.sleep(100); // Built on a background thread once the application is ready
+		}
+	}
+
+	@Test
+	void indexesARegistrationOnlyAfterItCommits() {
+		String username = "committed-" + System.nanoTime() + "@example.com";
+
+		new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+			userManagementService.register(registerRequest(username));
+			assertThat(usernameSearchIndex.search(username, 0, 10).getTotal()).isZero();
+		});
+
+		assertThat(usernameSearchIndex.search(username, 0, 10).getTotal()).isEqualTo(1);
+	}
+
+	@Test
+	void neverIndexesARolledBackRegistration() {
+		String username = "rolled-back-" + System.nanoTime() + "@example.com";
+
+		new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+			userManagementService.register(registerRequest(username));
+			status.setRollbackOnly();
+		});
+
+		assertThat(usernameSearchIndex.search(username, 0, 10).getTotal()).isZero();
+	}
+
+	private static RegisterRequest registerRequest(String username) {
+		RegisterRequest request = new RegisterRequest();
+		request.setUsername(username);
+		request.setPassword("secret");
+		request.setRole("USER");
+		return request;
+	}
+}
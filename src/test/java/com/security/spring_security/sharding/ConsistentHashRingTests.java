@@ -0,0 +1,45 @@
+package com.security.spring_security.sharding;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ConsistentHashRingTests {
+
+	@Test
+	void spreadsUsernamesAcrossShards() {
+		ConsistentHashRing ring = new ConsistentHashRing(List.of(0, 1, 2), 128);
+		int[] counts = new int[3];
+		for (int i = 0; i < 30_000; i++) {
+			counts[ring.shardFor("user" + i + "@example.com")]++;
+		}
+		for (int count : counts) {
+			assertThat(count).isBetween(7_000, 13_000);
+		}
+	}
+
+	@Test
+	void addingAShardOnlyMovesKeysToTheNewShard() {
+		ConsistentHashRing before = new ConsistentHashRing(List.of(0, 1, 2), 128);
+		ConsistentHashRing after = new ConsistentHashRing(List.of(0, 1, 2, 3), 128);
+		int moved = 0;
+		for (int i = 0; i < 30_000; i++) {
+			String username = "user" + i + "@example.com";
+			int from = before.shardFor(username);
+			int to = after.shardFor(username);
+			if (from != to) {
+				assertThat(to).isEqualTo(3);
+				moved++;
+			}
+		}
+		assertThat(moved).isBetween(4_500, 10_500); // About a quarter of the keys
+	}
+
+	@Test
+	void routesUsernamesCaseInsensitively() {
+		ConsistentHashRing ring = new ConsistentHashRing(List.of(0, 1, 2), 128);
+		assertThat(ring.shardFor("Someone@Example.com")).isEqualTo(ring.shardFor("someone@example.com"));
+	}
+}
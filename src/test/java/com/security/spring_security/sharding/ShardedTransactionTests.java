@@ -0,0 +1,142 @@
+package com.security.spring_security.sharding;
+
+import com.security.spring_security.apikey.ApiKeyService;
+import com.security.spring_security.dto.ApiKeyDTO;
+import com.security.spring_security.dto.RegisterRequest;
+import com.security.spring_security.entity.OurUser;
+import com.security.spring_security.jwt.JWTUtils;
+import com.security.spring_security.repository.OurUserRepository;
+import com.security.spring_security.service.UserManagementService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+
+@SpringBootTest(properties = {
+		"app.warmup.enabled=false",
+		"app.audit.sink=none"
+})
+@ActiveProfiles("sharded-local")
+class ShardedTransactionTests {
+
+	@Autowired
+	UserManagementService userManagementService;
+
+	@Autowired
+	ShardedUserRepository store;
+
+	@Autowired
+	ShardRouter shardRouter;
+
+	@Autowired
+	OurUserRepository ourUserRepository;
+
+	@Autowired
+	ApiKeyService apiKeyService;
+
+	@Autowired
+	PlatformTransactionManager transactionManager;
+
+	@MockitoSpyBean
+	JWTUtils jwtUtils;
+
+	@Test
+	void registerWithLoginRollsTheUserBackWhenTheTokensCannotBeIssued() {
+		doThrow(new IllegalStateException("signing failed")).when(jwtUtils).generateRefreshToken(any());
+		RegisterRequest request = new RegisterRequest();
+		request.setUsername("no-tokens@example.com");
+		request.setPassword("password");
+		request.setRole("USER");
+
+		assertThatThrownBy(() -> userManagementService.registerAndLogin(request)).hasMessage("signing failed");
+
+		for (int shardId : shardRouter.getShardIds()) {
+			assertThat(shardRouter.read(shardId, () -> ourUserRepository.findByUsername("no-tokens@example.com"))).isEmpty();
+		}
+	}
+
+	@Test
+	void aRolledBackRenameLeavesTheUserOnItsOldShardOnly() {
+		OurUser user = new OurUser();
+		user.setUserId(store.newUserId("stays@example.com"));
+		user.setUsername("stays@example.com");
+		user.setPassword("hash");
+		user.setRoles("USER");
+		int oldShard = store.save(user).getShardId();
+		String renamed = usernameOnAnotherShard("stays@example.com");
+
+		new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+			OurUser loaded = store.findByUserId(user.getUserId()).orElseThrow();
+			loaded.setUsername(renamed);
+			store.save(loaded);
+			status.setRollbackOnly();
+		});
+
+		assertThat(rowOn(oldShard, user.getUserId())).map(OurUser::getUsername).contains("stays@example.com");
+		assertThat(rowOn(shardRouter.shardFor(renamed), user.getUserId())).isEmpty();
+	}
+
+	@Test
+	void apiKeysMoveBackWhenTheUserUpdateRollsBack() {
+		OurUser user = new OurUser();
+		user.setUserId(store.newUserId("keyed@example.com"));
+		user.setUsername("keyed@example.com");
+		user.setPassword("hash");
+		user.setRoles("USER");
+		store.save(user);
+		String prefix = apiKeyService.issue("keyed@example.com", "ci").getPrefix();
+		OurUser update = new OurUser();
+		update.setUsername(usernameOnAnotherShard("keyed@example.com"));
+		update.setRoles("ADMIN");
+
+		new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+			userManagementService.updateUser(user.getUserId(), update);
+			status.setRollbackOnly();
+		});
+
+		assertThat(apiKeyService.list()).filteredOn(key -> key.getPrefix().equals(prefix))
+				.extracting(ApiKeyDTO::getUsername, ApiKeyDTO::getRoles)
+				.containsExactly(tuple("keyed@example.com", "USER"));
+	}
+
+	@Test
+	void writesToTheSameShardJoinTheCallersTransaction() {
+		OurUser user = new OurUser();
+		user.setUserId(store.newUserId("joined@example.com"));
+		user.setUsername("joined@example.com");
+		user.setPassword("hash");
+		user.setRoles("USER");
+
+		new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+			store.save(user);
+			status.setRollbackOnly();
+		});
+
+		assertThat(rowOn(shardRouter.shardFor("joined@example.com"), user.getUserId())).isEmpty();
+	}
+
+	private Optional<OurUser> rowOn(int shardId, long userId) {
+		return shardRouter.read(shardId, () -> ourUserRepository.findByUserId(userId));
+	}
+
+	private String usernameOnAnotherShard(String username) {
+		int shard = shardRouter.shardFor(username);
+		for (int i = 0; ; i++) {
+			String candidate = "renamed" + i + "@example.com";
+			if (shardRouter.shardFor(candidate) != shard) {
+				return candidate;
+			}
+		}
+	}
+}
@@ -0,0 +1,99 @@
+package com.security.spring_security.sharding;
+
+import com.security.spring_security.entity.OurUser;
+import com.security.spring_security.repository.OurUserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {
+		"app.warmup.enabled=false",
+		"app.audit.sink=none",
+		"app.sharding.node-id=5"
+})
+@ActiveProfiles("sharded-local")
+class ShardedUserMoveTests {
+
+	@Autowired
+	ShardedUserRepository store;
+
+	@Autowired
+	ShardRouter shardRouter;
+
+	@Autowired
+	OurUserRepository ourUserRepository;
+
+	@Test
+	void encodesTheNodeAndTheHomeShardInNewUserIds() {
+		long first = shardRouter.newUserId("alice@example.com");
+		long second = shardRouter.newUserId("alice@example.com");
+
+		assertThat(second).isGreaterThan(first);
+		assertThat(first & ShardRouter.MAX_SHARD_ID).isEqualTo(shardRouter.shardFor("alice@example.com"));
+		assertThat((first >> ShardRouter.SHARD_BITS) & ShardRouter.MAX_NODE_ID).isEqualTo(5);
+	}
+
+	@Test
+	void retryingAMoveToAnotherShardLeavesOneRowOnTheHomeShard() {
+		String before = "mover@example.com";
+		String after = usernameOnAnotherShard(before);
+		OurUser user = new OurUser();
+		user.setUserId(store.newUserId(before));
+		user.setUsername(before);
+		user.setPassword("hash");
+		user.setRoles("USER");
+		OurUser saved = store.save(user);
+		int oldShard = saved.getShardId();
+
+		saved.setUsername(after);
+		OurUser moved = store.save(saved);
+		moved.setShardId(oldShard); // The caller retries with the entity it loaded before the move
+		moved.setPassword("new-hash");
+		OurUser retried = store.save(moved);
+
+		int home = shardRouter.shardFor(after);
+		assertThat(retried.getShardId()).isEqualTo(home);
+		assertThat(rowOn(home, user.getUserId())).map(OurUser::getPassword).contains("new-hash");
+		assertThat(rowOn(oldShard, user.getUserId())).isEmpty();
+		assertThat(store.findByUsername(after)).map(OurUser::getUserId).contains(user.getUserId());
+	}
+
+	@Test
+	void looksBeyondTheHomeShardOnlyWhileARebalanceRuns() {
+		String username = "unmoved@example.com";
+		int elsewhere = shardRouter.getShardIds().stream().filter(id -> id != shardRouter.shardFor(username)).findFirst().orElseThrow();
+		OurUser user = new OurUser();
+		user.setUserId(store.newUserId(username));
+		user.setUsername(username);
+		user.setPassword("hash");
+		user.setRoles("USER");
+		shardRouter.write(elsewhere, () -> ourUserRepository.save(user)); // Where it lived before a shard was added
+
+		assertThat(store.findByUsername(username)).isEmpty();
+		shardRouter.setRebalancing(true);
+		try {
+			assertThat(store.findByUsername(username)).map(OurUser::getShardId).contains(elsewhere);
+		} finally {
+			shardRouter.setRebalancing(false);
+		}
+	}
+
+	private Optional<OurUser> rowOn(int shardId, long userId) {
+		return shardRouter.read(shardId, () -> ourUserRepository.findByUserId(userId));
+	}
+
+	private String usernameOnAnotherShard(String username) {
+		int shard = shardRouter.shardFor(username);
+		for (int i = 0; ; i++) {
+			String candidate = "mover" + i + "@example.com";
+			if (shardRouter.shardFor(candidate) != shard) {
+				return candidate;
+			}
+		}
+	}
+}
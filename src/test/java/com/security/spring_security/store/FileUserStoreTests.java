@@ -0,0 +1,111 @@
+package com.security.spring_security.store;
+
+import com.security.spring_security.entity.ApiKey;
+import com.security.spring_security.entity.OurUser;
+import com.security.spring_security.entity.PasswordReset;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DuplicateKeyException;
+
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class FileUserStoreTests {
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void replaysUsersAndResetCodesAfterRestart() throws Exception {
+		Path log = dir.resolve("users.log");
+		long aliceId;
+		try (FileUserStore store = new FileUserStore(log, false)) {
+			aliceId = store.save(user("alice@example.com")).getUserId();
+			OurUser bob = store.save(user("bob@example.com"));
+			OurUser renamed = store.findByUsername("alice@example.com").orElseThrow();
+			renamed.setUsername("alice2@example.com");
+			store.save(renamed);
+			store.delete(bob);
+			store.saveResetCode(resetCode("alice2@example.com", 123456));
+			store.saveApiKey(apiKey("abcd1234", "alice2@example.com"));
+			store.saveApiKey(apiKey("efgh5678", "alice2@example.com"));
+			store.deleteApiKey("efgh5678");
+		}
+
+		try (FileUserStore store = new FileUserStore(log, false)) {
+			assertThat(store.count()).isEqualTo(1);
+			assertThat(store.findByUsername("alice@example.com")).isEmpty();
+			assertThat(store.findByUsername("ALICE2@example.com")).get().extracting(OurUser::getUserId).isEqualTo(aliceId);
+			assertThat(store.findByUsername("bob@example.com")).isEmpty();
+			assertThat(store.findResetCode("alice2@example.com").getResetCode()).isEqualTo(123456);
+			assertThat(store.findAllApiKeys()).extracting(ApiKey::getPrefix).containsExactly("abcd1234");
+			assertThat(store.newUserId("carol@example.com")).isGreaterThan(aliceId);
+		}
+	}
+
+	@Test
+	void truncatesATornRecordAtTheEndOfTheLog() throws Exception {
+		Path log = dir.resolve("users.log");
+		try (FileUserStore store = new FileUserStore(log, false)) {
+			store.save(user("alice@example.com"));
+			store.save(user("bob@example.com"));
+		}
+		long size = Files.size(log);
+		try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE)) {
+			channel.truncate(size - 3); // Cuts the last record short, as a crash mid-write would
+		}
+
+		try (FileUserStore store = new FileUserStore(log, false)) {
+			assertThat(store.findByUsername("alice@example.com")).isPresent();
+			assertThat(store.findByUsername("bob@example.com")).isEmpty();
+			store.save(user("carol@example.com")); // Appends after the last intact record
+		}
+		try (FileUserStore store = new FileUserStore(log, false)) {
+			assertThat(store.count()).isEqualTo(2);
+			assertThat(store.findByUsername("carol@example.com")).isPresent();
+		}
+	}
+
+	@Test
+	void rejectsADuplicateUsernameWithoutLoggingIt() throws Exception {
+		Path log = dir.resolve("users.log");
+		try (FileUserStore store = new FileUserStore(log, false)) {
+			store.save(user("alice@example.com"));
+			long size = Files.size(log);
+			assertThatThrownBy(() -> store.save(user("Alice@Example.com"))).isInstanceOf(DuplicateKeyException.class);
+			assertThat(Files.size(log)).isEqualTo(size);
+		}
+	}
+
+	private static OurUser user(String username) {
+		OurUser user = new OurUser();
+		user.setUsername(username);
+		user.setPassword("{noop}secret");
+		user.setRoles("USER");
+		return user;
+	}
+
+	private static ApiKey apiKey(String prefix, String username) {
+		ApiKey apiKey = new ApiKey();
+		apiKey.setPrefix(prefix);
+		apiKey.setSecretHash("aGFzaA==");
+		apiKey.setName("ci");
+		apiKey.setUsername(username);
+		apiKey.setRoles("USER");
+		apiKey.setCreatedAt(Instant.now());
+		return apiKey;
+	}
+
+	private static PasswordReset resetCode(String username, long code) {
+		PasswordReset passwordReset = new PasswordReset();
+		passwordReset.setUsername(username);
+		passwordReset.setResetCode(code);
+		return passwordReset;
+	}
+}
@@ -0,0 +1,85 @@
+package com.security.spring_security.usage;
+
+import com.security.spring_security.authorization.EndpointAuthorizationRules;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+    Measures the request-path cost of UsageMeter.record(userId, slot) with every available core counting at once, in two shapes:
+    many users (each thread mostly touches other users' entries) and one hot user and endpoint (every thread increments the same
+    LongAdder). A flush runs every 100 ms meanwhile, as it would in production at a much longer interval. Not part of the regular
+    test run (the name does not match the surefire includes); run it on demand with
+
+        mvn test -Dtest=UsageMeterBenchmark -Dthreads=64
+
+    and read the numbers from the output. threads defaults to the number of available processors. Per-call times only mean
+    something when the machine has at least as many cores as threads.
+ */
+class UsageMeterBenchmark {
+	private static final int USERS = 100_000;
+	private static final int SLOTS = 16;
+	private static final int CALLS_PER_THREAD = 5_000_000;
+
+	@Test
+	void recordUnderContention() throws Exception {
+		int threads = Integer.getInteger("threads", Runtime.getRuntime().availableProcessors());
+		run("many users", threads, (thread, i) -> 1 + (i * 31L + thread * 7919L) % USERS, (thread, i) -> i % SLOTS);
+		run("one user", threads, (thread, i) -> 1, (thread, i) -> 0);
+	}
+
+	private static void run(String shape, int threads, KeyFunction user, KeyFunction slot) throws Exception {
+		UsageMeter meter = new UsageMeter(new EndpointAuthorizationRules(), new InMemoryUsageSink(), true, Duration.ofHours(1),
+				new SimpleMeterRegistry());
+		for (int round = 0; round < 2; round++) { // The first round warms up the JIT
+			CountDownLatch start = new CountDownLatch(1);
+			LongAdder nanos = new LongAdder();
+			Thread[] workers = new Thread[threads];
+			for (int t = 0; t < threads; t++) {
+				int thread = t;
+				workers[t] = new Thread(() -> {
+					try {
+						start.await();
+					} catch (InterruptedException e) {
+						return;
+					}
+					long began = System.nanoTime();
+					for (int i = 0; i < CALLS_PER_THREAD; i++) {
+						meter.record(user.apply(thread, i), (int) slot.apply(thread, i));
+					}
+					nanos.add(System.nanoTime() - began);
+				});
+				workers[t].start();
+			}
+			Thread flusher = new Thread(() -> {
+				while (!Thread.currentThread().isInterrupted()) {
+					meter.flush();
+					try {
+						Thread.sleep(100);
+					} catch (InterruptedException e) {
+						return;
+					}
+				}
+			});
+			flusher.start();
+			start.countDown();
+			for (Thread worker : workers) {
+				worker.join();
+			}
+			flusher.interrupt();
+			flusher.join();
+			if (round == 1) {
+				System.out.printf("%-10s %3d threads: %6.1f ns per record() per thread%n",
+						shape, threads, nanos.sum() / (double) threads / CALLS_PER_THREAD);
+			}
+		}
+	}
+
+	@FunctionalInterface
+	private interface KeyFunction {
+		long apply(int thread, int call);
+	}
+}
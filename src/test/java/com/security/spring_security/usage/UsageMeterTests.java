@@ -0,0 +1,96 @@
+package com.security.spring_security.usage;
+
+import com.security.spring_security.authorization.EndpointAuthorizationRules;
+import com.security.spring_security.entity.OurUser;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class UsageMeterTests {
+
+	private final InMemoryUsageSink sink = new InMemoryUsageSink();
+	private final LocalDate today = LocalDate.now(ZoneOffset.UTC);
+
+	@Test
+	void countsPerEndpointAndFlushesEachCallOnce() {
+		UsageMeter meter = meter(sink);
+		OurUser user = user(42);
+		for (int i = 0; i < 3; i++) {
+			meter.record(user, new MockHttpServletRequest("GET", "/api/users"));
+		}
+		meter.record(user, new MockHttpServletRequest("PUT", "/api/users/7"));
+		meter.record(user, new MockHttpServletRequest("GET", "/api/unknown"));
+
+		assertThat(meter.usage(42, today)).containsEntry("GET /api/users", 3L).containsEntry("PUT /api/users/{userId}", 1L)
+				.containsEntry("other", 1L).hasSize(3);
+		meter.flush();
+		meter.flush(); // Nothing new, nothing added
+		meter.record(user, new MockHttpServletRequest("GET", "/api/users"));
+
+		assertThat(sink.find(42, today)).containsEntry("GET /api/users", 3L);
+		assertThat(meter.usage(42, today)).containsEntry("GET /api/users", 4L); // Stored plus unflushed
+		assertThat(meter.usage(43, today)).isEmpty();
+	}
+
+	@Test
+	void retriesTheCountsOfAFailedFlush() {
+		AtomicBoolean fail = new AtomicBoolean(true);
+		UsageMeter meter = meter(new UsageSink() {
+			@Override
+			public void add(LocalDate day, List<UsageDelta> deltas) {
+				if (fail.get()) {
+					throw new IllegalStateException("database down");
+				}
+				sink.add(day, deltas);
+			}
+
+			@Override
+			public java.util.Map<String, Long> find(long userId, LocalDate day) {
+				return sink.find(userId, day);
+			}
+		});
+		meter.record(1, 0);
+		assertThatThrownBy(meter::flush).isInstanceOf(IllegalStateException.class);
+		meter.record(1, 0);
+		fail.set(false);
+		meter.flush();
+
+		assertThat(sink.find(1, today).values()).containsExactly(2L);
+	}
+
+	@Test
+	void evictsIdleUsersWithoutLosingTheirCounts() {
+		UsageMeter meter = meter(sink);
+		meter.record(5, 0);
+		meter.flush();
+		for (int i = 0; i < 3; i++) {
+			meter.flush();
+		}
+		assertThat(meter.getActiveUsers()).isZero();
+
+		meter.record(5, 0); // A new entry
+		meter.flush();
+		assertThat(sink.find(5, today).values()).containsExactly(2L);
+	}
+
+	private static UsageMeter meter(UsageSink sink) {
+		return new UsageMeter(new EndpointAuthorizationRules(), sink, true, Duration.ofHours(1), new SimpleMeterRegistry());
+	}
+
+	private static OurUser user(long userId) {
+		OurUser user = new OurUser();
+		user.setUserId(userId);
+		user.setUsername("user" + userId + "@example.com");
+		user.setRoles("USER");
+		return user;
+	}
+}
@@ -0,0 +1,63 @@
+package com.security.spring_security.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SingleFlightTests {
+
+	@Test
+	void concurrentCallersShareOneComputation() throws Exception {
+		SingleFlight<String, Integer> flights = new SingleFlight<>(Duration.ofSeconds(1));
+		AtomicInteger computations = new AtomicInteger();
+		CountDownLatch release = new CountDownLatch(1);
+		ExecutorService pool = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<Integer>> results = new ArrayList<>();
+			for (int i = 0; i < 8; i++) {
+				results.add(pool.submit(() -> flights.execute("token", () -> {
+					awaitQuietly(release);
+					return computations.incrementAndGet();
+				})));
+			}
+			Thread.sleep(100);
+			release.countDown();
+			for (Future<Integer> result : results) {
+				assertThat(result.get()).isEqualTo(1);
+			}
+			assertThat(flights.execute("token", computations::incrementAndGet)).isEqualTo(1); // Still within the grace window
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	@Test
+	void forgetsResultsAfterTheGraceWindowAndDoesNotKeepFailures() throws Exception {
+		SingleFlight<String, Integer> flights = new SingleFlight<>(Duration.ofMillis(50));
+		assertThatThrownBy(() -> flights.execute("token", () -> {
+			throw new IllegalStateException("expired");
+		})).isInstanceOf(IllegalStateException.class);
+		assertThat(flights.execute("token", () -> 1)).isEqualTo(1);
+		Thread.sleep(200);
+		assertThat(flights.size()).isZero();
+		assertThat(flights.execute("token", () -> 2)).isEqualTo(2);
+	}
+
+	private static void awaitQuietly(CountDownLatch latch) {
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,43 @@
+package com.security.spring_security.warmup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.security.spring_security.jwt.JWTUtils;
+import com.security.spring_security.jwt.OpaqueTokenStore;
+import com.security.spring_security.mapper.OurUserMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.security.crypto.password.NoOpPasswordEncoder;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WarmupRunnerTests {
+
+	private static final String SECRET = "MmRiMmNjNTQzZGEwMmRlODljOTkyYzkzZjczNGE4YzYyYzAyYTIwOTc4MGIyMDBjNDNiNTA4ZjVjOTEzNmRl";
+
+	@Test
+	void runsEveryRoundAndLeavesNoOpaqueTokensBehind() throws Exception {
+		OpaqueTokenStore store = new OpaqueTokenStore("", Duration.ofMinutes(1), new SimpleMeterRegistry());
+		StaticListableBeanFactory beans = new StaticListableBeanFactory();
+		beans.addBean("opaqueTokenStore", store);
+
+		assertThat(runner(new JWTUtils(SECRET, beans.getBeanProvider(OpaqueTokenStore.class)), Duration.ofMinutes(1)).warmUp()).isEqualTo(200);
+		assertThat(store.size()).isZero();
+	}
+
+	@Test
+	void stopsWhenTheBudgetRunsOut() throws Exception {
+		JWTUtils jwtUtils = new JWTUtils(SECRET, new StaticListableBeanFactory().getBeanProvider(OpaqueTokenStore.class));
+
+		long start = System.nanoTime();
+		assertThat(runner(jwtUtils, Duration.ZERO).warmUp()).isZero();
+		assertThat(System.nanoTime() - start).isLessThan(Duration.ofSeconds(5).toNanos());
+	}
+
+	private static WarmupRunner runner(JWTUtils jwtUtils, Duration budget) {
+		return new WarmupRunner(jwtUtils, NoOpPasswordEncoder.getInstance(), new OurUserMapper(),
+				new ObjectMapper().findAndRegisterModules(), budget, 200, 2);
+	}
+}